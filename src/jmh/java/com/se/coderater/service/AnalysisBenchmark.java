@@ -0,0 +1,110 @@
+package com.se.coderater.service;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
+import com.se.coderater.entity.Analysis;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分析引擎各阶段的基准测试 (不连接数据库)。
+ * 运行方式见 README：mvn -P benchmark test-compile exec:exec
+ *
+ * Throughput 给出吞吐量，SampleTime 给出延迟分位数 (p50/p90/p99...)，
+ * 加上 -prof gc 可以看到每次操作的分配量 (gc.alloc.rate.norm)。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalysisBenchmark {
+
+    @Param({"tiny", "small", "medium", "large", "xlarge"})
+    public String size;
+
+    private AnalysisService analysisService;
+    private ScoreCalculator scoreCalculator;
+    private JavaParserPool javaParserPool;
+    private String content;
+    private File sourceFile;
+    private CompilationUnit compilationUnit;
+    private Analysis metrics;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, CheckstyleException {
+        scoreCalculator = new ScoreCalculator();
+        javaParserPool = new JavaParserPool();
+        // 只用到不访问数据库的部分，仓库和违规明细服务传 null
+        analysisService = new AnalysisService(null, null, scoreCalculator,
+                new AnalysisMetrics(new SimpleMeterRegistry()), null, null, javaParserPool, null, null, null, null,
+                "target/checkstyle-cache", 0);
+        content = BenchmarkCorpus.load(size);
+        sourceFile = Files.createTempFile("coderater_bench_", ".java").toFile();
+        Files.writeString(sourceFile.toPath(), content, StandardCharsets.UTF_8);
+        compilationUnit = javaParserPool.parse(JavaParserPool.Purpose.ANALYSIS, content);
+        metrics = analysisService.evaluate(size + ".java", content);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (sourceFile != null) {
+            sourceFile.delete();
+        }
+    }
+
+    @Benchmark
+    public int checkstyle() throws IOException, CheckstyleException {
+        return analysisService.runCheckstyle(sourceFile).getIssueCount();
+    }
+
+    @Benchmark
+    public CompilationUnit parse() {
+        return javaParserPool.parse(JavaParserPool.Purpose.ANALYSIS, content);
+    }
+
+    @Benchmark
+    public int complexity() {
+        return AnalysisService.averageComplexity(compilationUnit);
+    }
+
+    @Benchmark
+    public long comments() {
+        return AnalysisService.countCommentLines(compilationUnit) + AnalysisService.countNonEmptyLines(content);
+    }
+
+    @Benchmark
+    public Analysis scoring() {
+        return scoreCalculator.applyScores(metrics);
+    }
+
+    @Benchmark
+    public Analysis endToEnd() throws IOException, CheckstyleException {
+        return analysisService.evaluate(size + ".java", content);
+    }
+
+    // 快速 (近似) 模式的完整流程，与 endToEnd 对比得到加速比；误差见 FastModeAccuracy
+    @Benchmark
+    public Analysis fastMode() {
+        return analysisService.evaluateFast(size + ".java", content);
+    }
+}
@@ -0,0 +1,107 @@
+package com.se.coderater.service;
+
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ast.CompilationUnit;
+import com.se.coderater.entity.Analysis;
+import com.se.coderater.entity.AnalysisMode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 快速模式相对精确模式的误差报告 (不是 JMH 基准，耗时对比见 AnalysisBenchmark.fastMode / endToEnd)。
+ * 对每个语料文件分别用两种模式计算原始指标，输出逐项差值；
+ * 参数中的目录 (例如 src/main/java) 会被递归加入，汇总其中所有 .java 文件的误差。
+ *
+ * mvn -P benchmark test-compile exec:exec -Djmh.main=com.se.coderater.service.FastModeAccuracy -Djmh.args=src/main/java
+ */
+public final class FastModeAccuracy {
+
+    private FastModeAccuracy() {
+    }
+
+    private static final JavaParserPool PARSERS = new JavaParserPool();
+
+    public static void main(String[] args) throws IOException {
+        AnalysisService analysisService = new AnalysisService(null, null, new ScoreCalculator(),
+                new AnalysisMetrics(new SimpleMeterRegistry()), null, null, PARSERS, null, null, null, null,
+                "target/checkstyle-cache", 0);
+
+        System.out.printf("%-8s %8s %8s %8s %8s %8s %8s %8s %8s%n", "corpus", "lines", "lines~",
+                "comment", "comment~", "cc", "cc~", "score", "score~");
+        for (String size : BenchmarkCorpus.SIZES) {
+            String content = BenchmarkCorpus.load(size);
+            Analysis precise = evaluatePrecise(content);
+            Analysis fast = analysisService.evaluateFast(size + ".java", content);
+            System.out.printf("%-8s %8d %8d %8d %8d %8d %8d %8d %8d%n", size,
+                    precise.getNonEmptyLineCount(), fast.getNonEmptyLineCount(),
+                    precise.getCommentLineCount(), fast.getCommentLineCount(),
+                    precise.getCyclomaticComplexity(), fast.getCyclomaticComplexity(),
+                    precise.getOverallScore(), fast.getOverallScore());
+        }
+
+        for (String arg : args) {
+            Path dir = Path.of(arg);
+            if (Files.isDirectory(dir)) {
+                reportDirectory(analysisService, dir);
+            }
+        }
+    }
+
+    // 与 AnalysisService 精确模式相同的指标 (不运行 Checkstyle，综合分只比较复杂度和注释两项)
+    private static Analysis evaluatePrecise(String content) {
+        CompilationUnit cu = PARSERS.parse(JavaParserPool.Purpose.ANALYSIS, content);
+        long nonEmptyLines = AnalysisService.countNonEmptyLines(content);
+        long commentLines = AnalysisService.countCommentLines(cu);
+        double commentRatio = nonEmptyLines > 0 ? (double) commentLines / nonEmptyLines : 0.0;
+
+        Analysis analysis = new Analysis();
+        analysis.setAnalysisMode(AnalysisMode.FAST); // 按同一套 (无风格分) 公式评分
+        analysis.setCyclomaticComplexity(AnalysisService.averageComplexity(cu));
+        analysis.setCommentLineCount((int) commentLines);
+        analysis.setNonEmptyLineCount((int) nonEmptyLines);
+        analysis.setCommentRatio(Double.parseDouble(String.format("%.2f", commentRatio)));
+        return new ScoreCalculator().applyScores(analysis);
+    }
+
+    private static void reportDirectory(AnalysisService analysisService, Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> stream = Files.walk(dir)) {
+            stream.filter(path -> path.toString().endsWith(".java")).forEach(files::add);
+        }
+        int exactLines = 0;
+        int exactComments = 0;
+        int exactComplexity = 0;
+        int scoreErrorSum = 0;
+        int maxScoreError = 0;
+        int skipped = 0;
+        for (Path file : files) {
+            String content = Files.readString(file, StandardCharsets.UTF_8);
+            Analysis precise;
+            try {
+                precise = evaluatePrecise(content);
+            } catch (ParseProblemException e) {
+                skipped++; // 精确模式同样无法分析 (例如默认语言级别不支持的语法)
+                continue;
+            }
+            Analysis fast = analysisService.evaluateFast(file.getFileName().toString(), content);
+            exactLines += precise.getNonEmptyLineCount().equals(fast.getNonEmptyLineCount()) ? 1 : 0;
+            exactComments += precise.getCommentLineCount().equals(fast.getCommentLineCount()) ? 1 : 0;
+            exactComplexity += precise.getCyclomaticComplexity().equals(fast.getCyclomaticComplexity()) ? 1 : 0;
+            int scoreError = Math.abs(precise.getOverallScore() - fast.getOverallScore());
+            scoreErrorSum += scoreError;
+            maxScoreError = Math.max(maxScoreError, scoreError);
+        }
+        int compared = files.size() - skipped;
+        System.out.printf("%n%s: %d files compared (%d not parsable in precise mode), exact non-empty lines %d, "
+                        + "exact comment lines %d, exact complexity %d, score error avg %.2f / max %d%n",
+                dir, compared, skipped, exactLines, exactComments, exactComplexity,
+                (double) scoreErrorSum / Math.max(1, compared), maxScoreError);
+    }
+}
@@ -0,0 +1,76 @@
+package com.se.coderater.service;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StaticJavaParser 与 JavaParserPool 各用途配置的对比。
+ * 加上 -prof gc 时 gc.alloc.rate.norm 即每次解析的分配量；*Concurrent 版本用 4 个线程同时解析，看并发下的吞吐量。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"small", "medium", "large"})
+    public String size;
+
+    private JavaParserPool javaParserPool;
+    private String content;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        javaParserPool = new JavaParserPool();
+        content = BenchmarkCorpus.load(size);
+    }
+
+    @Benchmark
+    public CompilationUnit staticParser() {
+        return StaticJavaParser.parse(content);
+    }
+
+    @Benchmark
+    public CompilationUnit pooledAnalysis() {
+        return javaParserPool.parse(JavaParserPool.Purpose.ANALYSIS, content);
+    }
+
+    @Benchmark
+    public CompilationUnit pooledStructure() {
+        return javaParserPool.parse(JavaParserPool.Purpose.STRUCTURE, content);
+    }
+
+    @Benchmark
+    public CompilationUnit pooledSymbols() {
+        return javaParserPool.parse(JavaParserPool.Purpose.SYMBOLS, content);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public CompilationUnit staticParserConcurrent() {
+        return StaticJavaParser.parse(content);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public CompilationUnit pooledAnalysisConcurrent() {
+        return javaParserPool.parse(JavaParserPool.Purpose.ANALYSIS, content);
+    }
+}
@@ -0,0 +1,100 @@
+package com.se.coderater.loadtest;
+
+import java.util.Random;
+
+/**
+ * 合成 Java 源码生成器 (压测上传/分析/导入用)。
+ * 可以控制规模 (方法数)、控制流嵌套深度和注释密度；相同的参数和种子总是生成相同的源码。
+ */
+public class CorpusGenerator {
+
+    private final int methods;
+    private final int nesting;
+    private final double commentDensity;
+    private final Random random;
+
+    /**
+     * @param methods        每个类的方法数量 (决定文件大小)
+     * @param nesting        方法体内 if/for/while 的最大嵌套深度
+     * @param commentDensity 0.0 ~ 1.0，每条语句前附带注释的概率
+     * @param seed           随机种子
+     */
+    public CorpusGenerator(int methods, int nesting, double commentDensity, long seed) {
+        if (methods < 1 || nesting < 0 || commentDensity < 0 || commentDensity > 1) {
+            throw new IllegalArgumentException("methods >= 1, nesting >= 0, 0 <= commentDensity <= 1");
+        }
+        this.methods = methods;
+        this.nesting = nesting;
+        this.commentDensity = commentDensity;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * 生成一个完整的编译单元，类名与文件名一致 (className + ".java")
+     */
+    public synchronized String generate(String className) {
+        StringBuilder sb = new StringBuilder(methods * 400);
+        sb.append("package com.example.loadtest;\n\n")
+                .append("import java.util.ArrayList;\n")
+                .append("import java.util.List;\n\n");
+        comment(sb, "", "Synthetic class " + className + ".");
+        sb.append("public class ").append(className).append(" {\n\n")
+                .append("    private final List<Integer> values = new ArrayList<>();\n\n");
+        for (int m = 0; m < methods; m++) {
+            comment(sb, "    ", "Computes step " + m + ".");
+            sb.append("    public int step").append(m).append("(int input) {\n")
+                    .append("        int result = input;\n");
+            block(sb, 2, nesting);
+            sb.append("        values.add(result);\n")
+                    .append("        return result;\n")
+                    .append("    }\n\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private void block(StringBuilder sb, int indentLevel, int remainingDepth) {
+        String indent = "    ".repeat(indentLevel);
+        int statements = 1 + random.nextInt(3);
+        for (int s = 0; s < statements; s++) {
+            if (random.nextDouble() < commentDensity) {
+                sb.append(indent).append("// adjust the intermediate result (").append(random.nextInt(1000)).append(")\n");
+            }
+            int threshold = random.nextInt(100);
+            int kind = remainingDepth > 0 ? random.nextInt(4) : 3;
+            switch (kind) {
+                case 0:
+                    sb.append(indent).append("if (result > ").append(threshold).append(" && input % 2 == 0) {\n");
+                    block(sb, indentLevel + 1, remainingDepth - 1);
+                    sb.append(indent).append("} else {\n")
+                            .append(indent).append("    result += values.size();\n")
+                            .append(indent).append("}\n");
+                    break;
+                case 1:
+                    sb.append(indent).append("for (int i").append(indentLevel).append(" = 0; i").append(indentLevel)
+                            .append(" < ").append(1 + threshold % 5).append("; i").append(indentLevel).append("++) {\n");
+                    block(sb, indentLevel + 1, remainingDepth - 1);
+                    sb.append(indent).append("}\n");
+                    break;
+                case 2:
+                    sb.append(indent).append("while (result > ").append(threshold + 100).append(") {\n")
+                            .append(indent).append("    result /= 2;\n");
+                    block(sb, indentLevel + 1, remainingDepth - 1);
+                    sb.append(indent).append("}\n");
+                    break;
+                default:
+                    sb.append(indent).append("result = result > ").append(threshold).append(" ? result - ")
+                            .append(threshold).append(" : result + ").append(threshold).append(";\n");
+                    break;
+            }
+        }
+    }
+
+    private void comment(StringBuilder sb, String indent, String text) {
+        if (random.nextDouble() < commentDensity) {
+            sb.append(indent).append("/**\n")
+                    .append(indent).append(" * ").append(text).append("\n")
+                    .append(indent).append(" */\n");
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package com.se.coderater.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.se.coderater.CoderaterApplication;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 端到端压测脚本。
+ * 每个并发线程注册并登录一个独立账号，然后循环执行 上传 -> 分析 -> 读取分析 -> 我的代码 -> 公开列表；
+ * 可选地用管理员账号导入一个 zip 压缩包。结束后输出每类请求的吞吐量、延迟分位数、延迟直方图和错误率。
+ *
+ * 不指定 --base-url 时以 loadtest profile (内存 H2) 在本进程内启动应用。
+ * 参数格式为 --name=value，见 README 或 {@link Options}。
+ */
+public class LoadTestHarness {
+
+    /**
+     * 压测参数 (均有默认值)
+     */
+    static class Options {
+        String baseUrl;                 // 为空时在进程内启动应用
+        int concurrency = 8;            // 并发线程数 (= 虚拟用户数)
+        int iterations = 20;            // 每个用户的循环次数
+        int durationSeconds = 0;        // > 0 时改为按时长运行
+        int methods = 20;               // 生成源码的方法数
+        int nesting = 2;                // 控制流最大嵌套深度
+        double commentDensity = 0.2;    // 注释密度
+        long seed = 42L;
+        int importFiles = 0;            // > 0 时额外执行一次压缩包导入
+        String adminUsername = "loadadmin";
+        String adminPassword = "loadadmin123";
+        double maxErrorRate = -1;       // >= 0 时错误率超过该值以非零状态退出
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (String arg : args) {
+                if (!arg.startsWith("--") || !arg.contains("=")) {
+                    throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+                }
+                String name = arg.substring(2, arg.indexOf('='));
+                String value = arg.substring(arg.indexOf('=') + 1);
+                switch (name) {
+                    case "base-url" -> options.baseUrl = value.replaceAll("/+$", "");
+                    case "concurrency" -> options.concurrency = Integer.parseInt(value);
+                    case "iterations" -> options.iterations = Integer.parseInt(value);
+                    case "duration" -> options.durationSeconds = Integer.parseInt(value);
+                    case "methods" -> options.methods = Integer.parseInt(value);
+                    case "nesting" -> options.nesting = Integer.parseInt(value);
+                    case "comment-density" -> options.commentDensity = Double.parseDouble(value);
+                    case "seed" -> options.seed = Long.parseLong(value);
+                    case "import-files" -> options.importFiles = Integer.parseInt(value);
+                    case "admin-username" -> options.adminUsername = value;
+                    case "admin-password" -> options.adminPassword = value;
+                    case "max-error-rate" -> options.maxErrorRate = Double.parseDouble(value);
+                    default -> throw new IllegalArgumentException("Unknown option: --" + name);
+                }
+            }
+            return options;
+        }
+    }
+
+    /**
+     * 单类请求的统计：延迟直方图 (微秒) + 按状态码计数
+     */
+    static class OperationStats {
+        final Histogram latencyMicros = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(5), 3);
+        final LongAdder errors = new LongAdder();
+        final Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+
+        void record(long nanos, int status) {
+            latencyMicros.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), latencyMicros.getHighestTrackableValue()));
+            statusCounts.computeIfAbsent(status, s -> new LongAdder()).increment();
+            if (status < 200 || status >= 300) {
+                errors.increment();
+            }
+        }
+    }
+
+    private static final String[] OPERATIONS = {"register", "login", "upload", "analyze", "getAnalysis", "violations", "listMine", "publicList", "import"};
+
+    private final Options options;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CorpusGenerator generator;
+    private final Map<String, OperationStats> stats = new ConcurrentHashMap<>();
+    private final List<String> registeredUsernames = new ArrayList<>();
+    private final String runId = UUID.randomUUID().toString().substring(0, 6);
+    private String baseUrl;
+
+    LoadTestHarness(Options options) {
+        this.options = options;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newFixedThreadPool(Math.max(2, options.concurrency)))
+                .build();
+        this.generator = new CorpusGenerator(options.methods, options.nesting, options.commentDensity, options.seed);
+        for (String operation : OPERATIONS) {
+            stats.put(operation, new OperationStats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        ConfigurableApplicationContext context = null;
+        if (options.baseUrl == null) {
+            context = new SpringApplicationBuilder(CoderaterApplication.class)
+                    .profiles("loadtest")
+                    .properties("server.port=0")
+                    .run();
+            options.baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        }
+        int exitCode;
+        try {
+            exitCode = new LoadTestHarness(options).run();
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+        System.exit(exitCode);
+    }
+
+    int run() throws InterruptedException {
+        baseUrl = options.baseUrl;
+        System.out.printf(Locale.ROOT, "Load test against %s: concurrency=%d, %s, methods=%d, nesting=%d, commentDensity=%.2f%n",
+                baseUrl, options.concurrency,
+                options.durationSeconds > 0 ? "duration=" + options.durationSeconds + "s" : "iterations=" + options.iterations,
+                options.methods, options.nesting, options.commentDensity);
+
+        ExecutorService workers = Executors.newFixedThreadPool(options.concurrency);
+        CountDownLatch done = new CountDownLatch(options.concurrency);
+        long deadline = options.durationSeconds > 0
+                ? System.nanoTime() + TimeUnit.SECONDS.toNanos(options.durationSeconds) : Long.MAX_VALUE;
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < options.concurrency; i++) {
+            int userIndex = i;
+            workers.execute(() -> {
+                try {
+                    virtualUser(userIndex, deadline);
+                } catch (Exception e) {
+                    System.err.println("Virtual user " + userIndex + " aborted: " + e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        workers.shutdown();
+
+        if (options.importFiles > 0) {
+            importArchive();
+        }
+        double elapsedSeconds = (System.nanoTime() - startedAt) / 1e9;
+        return report(elapsedSeconds);
+    }
+
+    private void virtualUser(int index, long deadline) throws Exception {
+        String username = "lt" + runId + "u" + index;
+        String password = "password" + index;
+        HttpResponse<String> registered = send("register", post("/api/auth/register", null,
+                json(Map.of("username", username, "email", username + "@loadtest.local", "password", password))));
+        if (registered.statusCode() != 200) {
+            return;
+        }
+        synchronized (registeredUsernames) {
+            registeredUsernames.add(username);
+        }
+        String token = login(username, password);
+        if (token == null) {
+            return;
+        }
+        for (int iteration = 0; options.durationSeconds > 0 ? System.nanoTime() < deadline : iteration < options.iterations; iteration++) {
+            String className = "Load" + index + "x" + iteration;
+            HttpResponse<String> uploaded = send("upload", multipart("/api/code/upload", token, "file",
+                    className + ".java", generator.generate(className).getBytes(StandardCharsets.UTF_8), "text/x-java-source"));
+            if (uploaded.statusCode() == 201) {
+                long codeId = objectMapper.readTree(uploaded.body()).path("id").asLong();
+                send("analyze", post("/api/analysis/" + codeId, token, HttpRequest.BodyPublishers.noBody()));
+                send("getAnalysis", get("/api/analysis/" + codeId, token));
+                send("violations", get("/api/analysis/" + codeId + "/violations?page=0&size=100", token));
+            }
+            send("listMine", get("/api/code/mycode", token));
+            send("publicList", get("/api/code/public/list?page=0&size=20", null));
+        }
+    }
+
+    private String login(String username, String password) throws Exception {
+        HttpResponse<String> response = send("login", post("/api/auth/login", null,
+                json(Map.of("username", username, "password", password))));
+        if (response.statusCode() != 200) {
+            return null;
+        }
+        JsonNode body = objectMapper.readTree(response.body());
+        return body.path("accessToken").asText(null);
+    }
+
+    // 管理员导入：文件平均分配给本次注册的用户 (zip 第一级目录为用户名)
+    private void importArchive() {
+        try {
+            String token = login(options.adminUsername, options.adminPassword);
+            if (token == null || registeredUsernames.isEmpty()) {
+                System.err.println("Skipping import: admin login failed or no users were registered.");
+                return;
+            }
+            ByteArrayOutputStream zipBytes = new ByteArrayOutputStream();
+            try (ZipOutputStream zip = new ZipOutputStream(zipBytes)) {
+                for (int i = 0; i < options.importFiles; i++) {
+                    String owner = registeredUsernames.get(i % registeredUsernames.size());
+                    String className = "Imported" + i;
+                    zip.putNextEntry(new ZipEntry(owner + "/import/" + className + ".java"));
+                    zip.write(generator.generate(className).getBytes(StandardCharsets.UTF_8));
+                    zip.closeEntry();
+                }
+            }
+            HttpResponse<String> response = send("import", multipart("/api/admin/code/import", token, "archive",
+                    "loadtest.zip", zipBytes.toByteArray(), "application/zip"));
+            System.out.println("Import result: " + response.body());
+        } catch (Exception e) {
+            System.err.println("Import failed: " + e);
+        }
+    }
+
+    private HttpResponse<String> send(String operation, HttpRequest request) throws InterruptedException {
+        long start = System.nanoTime();
+        int status;
+        HttpResponse<String> response = null;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            status = response.statusCode();
+        } catch (IOException e) {
+            status = -1; // 连接错误
+        }
+        stats.get(operation).record(System.nanoTime() - start, status);
+        if (response == null) {
+            throw new IllegalStateException(operation + " failed: connection error");
+        }
+        return response;
+    }
+
+    private HttpRequest get(String path, String token) {
+        return authorize(HttpRequest.newBuilder(URI.create(baseUrl + path)), token).GET().build();
+    }
+
+    private HttpRequest post(String path, String token, HttpRequest.BodyPublisher body) {
+        return authorize(HttpRequest.newBuilder(URI.create(baseUrl + path)), token)
+                .header("Content-Type", "application/json")
+                .POST(body)
+                .build();
+    }
+
+    private HttpRequest multipart(String path, String token, String field, String fileName, byte[] content, String contentType) {
+        String boundary = "----coderater" + UUID.randomUUID();
+        ByteArrayOutputStream body = new ByteArrayOutputStream(content.length + 256);
+        byte[] head = ("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + field + "\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: " + contentType + "\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        body.writeBytes(head);
+        body.writeBytes(content);
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return authorize(HttpRequest.newBuilder(URI.create(baseUrl + path)), token)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+    }
+
+    private HttpRequest.Builder authorize(HttpRequest.Builder builder, String token) {
+        builder.timeout(Duration.ofMinutes(2));
+        return token == null ? builder : builder.header("Authorization", "Bearer " + token);
+    }
+
+    private HttpRequest.BodyPublisher json(Object value) throws IOException {
+        return HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(value));
+    }
+
+    private int report(double elapsedSeconds) {
+        System.out.printf(Locale.ROOT, "%nElapsed: %.1f s%n", elapsedSeconds);
+        System.out.printf(Locale.ROOT, "%-12s %8s %8s %8s %10s %9s %9s %9s %9s %9s%n",
+                "operation", "count", "errors", "err%", "ops/s", "mean ms", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        long totalCount = 0;
+        long totalErrors = 0;
+        for (String operation : OPERATIONS) {
+            OperationStats s = stats.get(operation);
+            Histogram h = s.latencyMicros;
+            long count = h.getTotalCount();
+            if (count == 0) {
+                continue;
+            }
+            long errors = s.errors.sum();
+            totalCount += count;
+            totalErrors += errors;
+            System.out.printf(Locale.ROOT, "%-12s %8d %8d %7.2f%% %10.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                    operation, count, errors, 100.0 * errors / count, count / elapsedSeconds,
+                    h.getMean() / 1000.0, h.getValueAtPercentile(50) / 1000.0, h.getValueAtPercentile(90) / 1000.0,
+                    h.getValueAtPercentile(99) / 1000.0, h.getMaxValue() / 1000.0);
+        }
+
+        // 延迟直方图 (按 2 的幂分桶，单位 ms) 和非 2xx 状态码分布
+        System.out.println("\nLatency histogram (requests per bucket, ms upper bound):");
+        for (String operation : OPERATIONS) {
+            Histogram h = stats.get(operation).latencyMicros;
+            if (h.getTotalCount() == 0) {
+                continue;
+            }
+            Map<Long, Long> buckets = new TreeMap<>();
+            for (var value : h.recordedValues()) {
+                long millis = Math.max(1, value.getValueIteratedTo() / 1000);
+                long bucket = Long.highestOneBit(millis) == millis ? millis : Long.highestOneBit(millis) << 1;
+                buckets.merge(bucket, value.getCountAtValueIteratedTo(), Long::sum);
+            }
+            StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "%-12s", operation));
+            buckets.forEach((bucket, count) -> line.append(" <=").append(bucket).append(':').append(count));
+            System.out.println(line);
+        }
+        Map<String, Map<Integer, Long>> failures = new HashMap<>();
+        stats.forEach((operation, s) -> s.statusCounts.forEach((status, count) -> {
+            if (status < 200 || status >= 300) {
+                failures.computeIfAbsent(operation, o -> new TreeMap<>()).put(status, count.sum());
+            }
+        }));
+        if (!failures.isEmpty()) {
+            System.out.println("\nNon-2xx responses (status -1 = connection error): " + failures);
+        }
+
+        double errorRate = totalCount == 0 ? 1.0 : (double) totalErrors / totalCount;
+        System.out.printf(Locale.ROOT, "%nTotal: %d requests, %.1f req/s, error rate %.2f%%%n",
+                totalCount, totalCount / elapsedSeconds, errorRate * 100);
+        if (options.maxErrorRate >= 0 && errorRate > options.maxErrorRate) {
+            System.out.printf(Locale.ROOT, "FAILED: error rate %.4f exceeds --max-error-rate=%.4f%n", errorRate, options.maxErrorRate);
+            return 1;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,135 @@
+package com.se.coderater.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hibernate 二级缓存配置 (JCache + Caffeine，本地内存)。
+ * 每个缓存区域的容量和过期时间都在 application.properties 中显式配置，
+ * 并按区域导出命中率指标 coderater.cache.hit.ratio。
+ * 缓存只在本节点内有效，其他节点写入数据库后不会失效 (只能等过期)；
+ * 多个节点共用一个数据库时 (coderater.cluster.multi-node=true) 关闭二级缓存和查询缓存。
+ */
+@Configuration
+public class HibernateCacheConfig {
+
+    // 实体/集合缓存区域，名字与实体上的 @Cache(region = ...) 保持一致
+    public static final String USERS_REGION = "users";
+    public static final String USER_ROLES_REGION = "users.roles";
+    public static final String CODES_REGION = "codes";
+    public static final String ANALYSES_REGION = "analyses";
+
+    // Hibernate 查询缓存使用的默认区域名
+    private static final String QUERY_RESULTS_REGION = "default-query-results-region";
+    private static final String UPDATE_TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+    @Value("${coderater.cache.users.max-entries:10000}")
+    private long usersMaxEntries;
+    @Value("${coderater.cache.users.ttl-seconds:600}")
+    private long usersTtlSeconds;
+    @Value("${coderater.cache.codes.max-entries:2000}")
+    private long codesMaxEntries;
+    @Value("${coderater.cache.codes.ttl-seconds:300}")
+    private long codesTtlSeconds;
+    @Value("${coderater.cache.analyses.max-entries:10000}")
+    private long analysesMaxEntries;
+    @Value("${coderater.cache.analyses.ttl-seconds:600}")
+    private long analysesTtlSeconds;
+    @Value("${coderater.cache.query.max-entries:10000}")
+    private long queryMaxEntries;
+    @Value("${coderater.cache.query.ttl-seconds:300}")
+    private long queryTtlSeconds;
+    @Value("${coderater.cluster.multi-node:false}")
+    private boolean multiNode;
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager() {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), getClass().getClassLoader());
+
+        createRegion(cacheManager, USERS_REGION, usersMaxEntries, usersTtlSeconds);
+        createRegion(cacheManager, USER_ROLES_REGION, usersMaxEntries, usersTtlSeconds);
+        createRegion(cacheManager, CODES_REGION, codesMaxEntries, codesTtlSeconds);
+        createRegion(cacheManager, ANALYSES_REGION, analysesMaxEntries, analysesTtlSeconds);
+        createRegion(cacheManager, QUERY_RESULTS_REGION, queryMaxEntries, queryTtlSeconds);
+        // 时间戳区域用于判断查询缓存是否过期，不能被淘汰或过期 (条目数 = 表的数量)
+        createRegion(cacheManager, UPDATE_TIMESTAMPS_REGION, 0, 0);
+        return cacheManager;
+    }
+
+    private void createRegion(CacheManager cacheManager, String region, long maxEntries, long ttlSeconds) {
+        if (cacheManager.getCache(region) != null) {
+            return;
+        }
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setStoreByValue(false); // Hibernate 缓存的是不可变的 CacheEntry，不需要序列化拷贝
+        configuration.setStatisticsEnabled(true);
+        configuration.setMaximumSize(maxEntries > 0 ? OptionalLong.of(maxEntries) : OptionalLong.empty());
+        configuration.setExpireAfterWrite(ttlSeconds > 0
+                ? OptionalLong.of(TimeUnit.SECONDS.toNanos(ttlSeconds)) : OptionalLong.empty());
+        cacheManager.createCache(region, configuration);
+    }
+
+    // 让 Hibernate 使用上面创建好的 CacheManager (而不是按默认配置自动创建缓存)
+    @Bean
+    public HibernatePropertiesCustomizer hibernateSecondLevelCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> {
+            properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+            if (multiNode) {
+                // 例如节点 B 的后台任务写入的分析结果，节点 A 的缓存会继续返回旧值和旧 ETag 直到过期
+                properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, false);
+                properties.put(AvailableSettings.USE_QUERY_CACHE, false);
+            }
+        };
+    }
+
+    // 每个区域的命中率 (hits / (hits + misses))；原始 hit/miss 计数由 hibernate-micrometer 导出
+    @Bean
+    public MeterBinder secondLevelCacheHitRatioMetrics(EntityManagerFactory entityManagerFactory) {
+        return registry -> {
+            if (multiNode) {
+                return; // 缓存已关闭，没有区域
+            }
+            Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+            for (String region : List.of(USERS_REGION, USER_ROLES_REGION, CODES_REGION, ANALYSES_REGION)) {
+                Gauge.builder("coderater.cache.hit.ratio", statistics,
+                                s -> hitRatio(s.getDomainDataRegionStatistics(region)))
+                        .tag("region", region)
+                        .register(registry);
+            }
+            Gauge.builder("coderater.cache.hit.ratio", statistics,
+                            s -> hitRatio(s.getQueryRegionStatistics(QUERY_RESULTS_REGION)))
+                    .tag("region", QUERY_RESULTS_REGION)
+                    .register(registry);
+        };
+    }
+
+    private static double hitRatio(CacheRegionStatistics regionStatistics) {
+        if (regionStatistics == null) {
+            return 0.0;
+        }
+        long hits = regionStatistics.getHitCount();
+        long total = hits + regionStatistics.getMissCount();
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+}
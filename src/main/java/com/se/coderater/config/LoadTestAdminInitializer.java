@@ -0,0 +1,52 @@
+package com.se.coderater.config;
+
+import com.se.coderater.entity.User;
+import com.se.coderater.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * loadtest profile 专用：启动时创建一个管理员账号，压测脚本用它调用 /api/admin 接口。
+ * 其他环境不会加载这个类。
+ */
+@Component
+@Profile("loadtest")
+public class LoadTestAdminInitializer implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestAdminInitializer.class);
+
+    private final UserRepository userRepository;
+    private final PasswordEncoder passwordEncoder;
+
+    @Value("${coderater.loadtest.admin.username}")
+    private String username;
+    @Value("${coderater.loadtest.admin.email}")
+    private String email;
+    @Value("${coderater.loadtest.admin.password}")
+    private String password;
+
+    public LoadTestAdminInitializer(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+        this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (userRepository.existsByUsername(username)) {
+            return;
+        }
+        User admin = new User(username, email, passwordEncoder.encode(password));
+        admin.setRoles(new HashSet<>(Set.of("ROLE_USER", "ROLE_ADMIN")));
+        userRepository.save(admin);
+        logger.warn("Load-test admin account '{}' created.", username);
+    }
+}
@@ -0,0 +1,10 @@
+package com.se.coderater.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// 启用 @Scheduled (例如符号索引的定期快照)
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
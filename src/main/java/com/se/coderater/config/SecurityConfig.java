@@ -4,6 +4,8 @@ import com.se.coderater.security.AuthEntryPointJwt;
 import com.se.coderater.security.AuthTokenFilter;
 import com.se.coderater.service.UserDetailsServiceImpl;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -30,6 +32,9 @@ public class SecurityConfig {
     @Autowired
     private AuthEntryPointJwt unauthorizedHandler;
 
+    @Value("${security.bcrypt.strength:10}") // BCrypt 强度 (log rounds)，调高后旧密码会在登录时自动升级
+    private int bcryptStrength;
+
     @Bean
     public AuthTokenFilter authenticationJwtTokenFilter() {
         return new AuthTokenFilter(); // 我们需要将 AuthTokenFilter 声明为一个 Bean
@@ -40,6 +45,8 @@ public class SecurityConfig {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService); // 设置 UserDetailsService
         authProvider.setPasswordEncoder(passwordEncoder());     // 设置 PasswordEncoder
+        // 旧密码哈希的强度低于当前配置时，登录成功后自动用新强度重新哈希并保存
+        authProvider.setUserDetailsPasswordService(userDetailsService);
         return authProvider;
     }
 
@@ -50,7 +57,7 @@ public class SecurityConfig {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(); // 使用 BCrypt 进行密码加密
+        return new BCryptPasswordEncoder(bcryptStrength); // 使用 BCrypt 进行密码加密
     }
 
     @Bean
@@ -60,16 +67,25 @@ public class SecurityConfig {
                 .exceptionHandling(exception -> exception.authenticationEntryPoint(unauthorizedHandler)) // 配置未授权处理器
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS)) // 设置会话管理为无状态 (因为我们用JWT)
                 .authorizeHttpRequests(authz -> authz
+                        // 流式响应 (StreamingResponseBody) 结束时的 ASYNC 分派：原请求已经通过授权，
+                        // 而 JWT 过滤器不会在 ASYNC 分派上再次运行，这里必须放行，否则已提交的响应会被中断
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/api/auth/**").permitAll() // 允许对 /api/auth/** (注册和登录) 的所有请求
                         .requestMatchers(HttpMethod.GET, "/api/code/public/list").permitAll() // 新增：公开的代码列表
                         .requestMatchers(HttpMethod.POST, "/api/code/upload").authenticated() // 允许上传 (后续可以改为需要认证)
                         .requestMatchers(HttpMethod.GET, "/api/code/mycode").authenticated() // 新增：获取自己的代码列表
+                        .requestMatchers(HttpMethod.GET, "/api/code/symbols").authenticated() // 符号搜索 (Service层按所有者过滤)
                         .requestMatchers(HttpMethod.GET, "/api/code/{codeId}").authenticated() // 新增：获取自己的代码详情
+                        .requestMatchers(HttpMethod.GET, "/api/code/{codeId}/raw").authenticated() // 代码原文 (从 blob 存储直接写出)
+                        .requestMatchers(HttpMethod.GET, "/api/code/{codeId}/revisions", "/api/code/{codeId}/revisions/{revisionNo}/raw").authenticated() // 修订历史
                         //.requestMatchers(HttpMethod.PUT, "/api/code/{codeId}/filename").authenticated() // 新增：修改文件名
                         .requestMatchers(HttpMethod.DELETE, "/api/code/{codeId}").authenticated()   // 新增：删除代码
                         .requestMatchers(HttpMethod.POST, "/api/analysis/**").authenticated() // 分析也需要认证 (Service层做所有权校验)
+                        .requestMatchers(HttpMethod.GET, "/api/analysis/**").authenticated() // 读取已有分析结果
                         .requestMatchers(HttpMethod.PUT, "/api/code/{codeId}").authenticated()      // 新增：修改代码详情 (内容和文件名)
                         .requestMatchers("/api/user/me").authenticated()
+                        .requestMatchers("/api/admin/**").hasRole("ADMIN") // 管理员接口 (批量开户等)
+                        .requestMatchers(HttpMethod.GET, "/actuator/health", "/actuator/prometheus").permitAll() // 健康检查和 Prometheus 抓取
                         // TODO: 对于其他接口，例如获取代码列表、获取用户信息等，需要配置为 .authenticated()
                         .anyRequest().authenticated() // 其他所有请求都需要认证
                 );
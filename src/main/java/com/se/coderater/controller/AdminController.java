@@ -0,0 +1,184 @@
+package com.se.coderater.controller;
+
+import com.se.coderater.dto.BulkProvisionResponse;
+import com.se.coderater.dto.CodeImportResult;
+import com.se.coderater.dto.RegisterRequest;
+import com.se.coderater.dto.RuleViolationStat;
+import com.se.coderater.dto.SimilarCodeDTO;
+import com.se.coderater.service.AnalysisExportService;
+import com.se.coderater.service.CodeImportService;
+import com.se.coderater.service.RuleStatisticsService;
+import com.se.coderater.service.SimilarityIndexService;
+import com.se.coderater.service.UserProvisioningService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+@RestController
+@RequestMapping("/api/admin")
+@PreAuthorize("hasRole('ADMIN')") // 仅管理员可用
+public class AdminController {
+
+    private final UserProvisioningService userProvisioningService;
+    private final CodeImportService codeImportService;
+    private final AnalysisExportService analysisExportService;
+    private final RuleStatisticsService ruleStatisticsService;
+    private final SimilarityIndexService similarityIndexService;
+
+    @Autowired
+    public AdminController(UserProvisioningService userProvisioningService, CodeImportService codeImportService,
+                           AnalysisExportService analysisExportService, RuleStatisticsService ruleStatisticsService,
+                           SimilarityIndexService similarityIndexService) {
+        this.userProvisioningService = userProvisioningService;
+        this.codeImportService = codeImportService;
+        this.analysisExportService = analysisExportService;
+        this.ruleStatisticsService = ruleStatisticsService;
+        this.similarityIndexService = similarityIndexService;
+    }
+
+    // 批量开户 (JSON 数组，每个元素与 /api/auth/register 的请求体相同)
+    @PostMapping(value = "/users/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> bulkProvisionJson(@RequestBody List<RegisterRequest> users) {
+        return bulkProvision(() -> userProvisioningService.provision(users));
+    }
+
+    // 批量开户 (CSV：username,email,password，第一行可以是表头)
+    @PostMapping(value = "/users/bulk", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<?> bulkProvisionCsv(@RequestBody String csv) {
+        return bulkProvision(() -> userProvisioningService.provisionFromCsv(csv));
+    }
+
+    private ResponseEntity<?> bulkProvision(Supplier<BulkProvisionResponse> provisioning) {
+        try {
+            return ResponseEntity.ok(provisioning.get());
+        } catch (IllegalArgumentException e) { // 空请求或行数超限
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Bad Request");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        } catch (DuplicateKeyException e) { // 校验之后、插入之前有人并发注册了同名用户，整批已回滚
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Conflict");
+            errorResponse.put("message", "A username or email was registered concurrently. No users were created; please retry.");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+        }
+    }
+
+    // 批量导入整门课的代码压缩包 (zip，第一级目录为用户名，例如 alice/hw1/Main.java)
+    @PostMapping("/code/import")
+    public ResponseEntity<?> importCodeArchive(@RequestParam("archive") MultipartFile archive) {
+        if (archive == null || archive.isEmpty()) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "File is empty or not provided.");
+            errorResponse.put("message", "Please select a zip archive to import.");
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+        try (InputStream in = archive.getInputStream()) {
+            CodeImportResult result = codeImportService.importArchive(in);
+            if (result.getError() != null) {
+                // 部分导入：之前的块已提交，返回结果以便确认从哪里继续
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(result);
+            }
+            return ResponseEntity.ok(result);
+        } catch (IOException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "File processing error.");
+            errorResponse.put("message", "Could not read the archive: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+
+    // 导出全部分析结果 (NDJSON)。中断后用最后收到的 analysisId 作为 afterId 续传；
+    // 客户端声明 Accept-Encoding: gzip 时边读边压缩
+    @GetMapping(value = "/analyses/export", produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportAnalyses(
+            @RequestParam(defaultValue = "0") long afterId,
+            @RequestParam(required = false) Integer limit,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream gzipOut = new GZIPOutputStream(out, 64 * 1024);
+                analysisExportService.exportNdjson(afterId, limit, gzipOut);
+                gzipOut.finish(); // 写出 gzip 尾部，底层输出流由容器关闭
+            } else {
+                analysisExportService.exportNdjson(afterId, limit, out);
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON_VALUE))
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    // 违规最多的 Checkstyle 规则，可按用户集合 (userIds=1,2,3) 和分析时间窗口 [from, to) 过滤，
+    // 默认统计最近 30 天的全部用户
+    @GetMapping("/rules/top")
+    public ResponseEntity<?> getTopRules(
+            @RequestParam(required = false) List<Long> userIds,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "20") int limit) {
+        LocalDateTime windowEnd = to != null ? to : LocalDateTime.now();
+        LocalDateTime windowStart = from != null ? from : windowEnd.minusDays(30);
+        try {
+            List<RuleViolationStat> rules = ruleStatisticsService.getTopRules(userIds, windowStart, windowEnd, limit);
+            Map<String, Object> response = new HashMap<>();
+            response.put("from", windowStart);
+            response.put("to", windowEnd);
+            response.put("userIds", userIds != null ? userIds : List.of());
+            response.put("rules", rules);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Bad Request");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+    }
+
+    // 近似重复代码：通过 LSH 桶找候选，再按 MinHash 估计的相似度过滤 (threshold 取 0 ~ 1)
+    @GetMapping("/code/{codeId}/similar")
+    public ResponseEntity<?> getSimilarCodes(@PathVariable Long codeId,
+                                             @RequestParam(defaultValue = "0.8") double threshold,
+                                             @RequestParam(defaultValue = "20") int limit) {
+        if (threshold < 0 || threshold > 1) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Bad Request");
+            errorResponse.put("message", "threshold must be between 0 and 1.");
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+        try {
+            List<SimilarCodeDTO> similar = similarityIndexService.findSimilar(codeId, threshold, limit);
+            return ResponseEntity.ok(similar);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Not Found");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        }
+    }
+
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+}
@@ -1,31 +1,82 @@
 package com.se.coderater.controller;
 
+import com.se.coderater.dto.AnalysisJobDTO;
+import com.se.coderater.dto.EnqueueAnalysisJobsRequest;
+import com.se.coderater.dto.ProjectAnalysisResult;
 import com.se.coderater.entity.Analysis;
+import com.se.coderater.entity.AnalysisJobStatus;
+import com.se.coderater.entity.AnalysisMode;
+import com.se.coderater.dto.StyleViolationDTO;
+import com.se.coderater.service.AnalysisEventService;
+import com.se.coderater.service.AnalysisJobService;
+import com.se.coderater.service.AnalysisPriority;
+import com.se.coderater.service.AnalysisScheduler;
 import com.se.coderater.service.AnalysisService;
+import com.se.coderater.security.RateLimitClass;
+import com.se.coderater.security.RateLimited;
+import com.se.coderater.service.StyleViolationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.security.access.AccessDeniedException; // 确保导入
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/analysis")
 public class AnalysisController {
 
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisController.class);
+
     private final AnalysisService analysisService;
+    private final StyleViolationService styleViolationService;
+    private final AnalysisEventService analysisEventService;
+    private final AnalysisScheduler analysisScheduler;
+    private final AnalysisJobService analysisJobService;
 
     @Autowired
-    public AnalysisController(AnalysisService analysisService) {
+    public AnalysisController(AnalysisService analysisService, StyleViolationService styleViolationService,
+                              AnalysisEventService analysisEventService, AnalysisScheduler analysisScheduler,
+                              AnalysisJobService analysisJobService) {
         this.analysisService = analysisService;
+        this.styleViolationService = styleViolationService;
+        this.analysisEventService = analysisEventService;
+        this.analysisScheduler = analysisScheduler;
+        this.analysisJobService = analysisJobService;
+    }
+
+    // 分析完成事件流 (text/event-stream)：当前用户的代码分析完成后推送 analysis-completed 事件，代替前端轮询
+    @GetMapping("/events")
+    // 返回类型必须声明为 SseEmitter，ResponseEntity<?> 会被当作普通对象序列化
+    public ResponseEntity<SseEmitter> subscribeAnalysisEvents() {
+        try {
+            return ResponseEntity.ok(analysisEventService.subscribeForCurrentUser());
+        } catch (IllegalStateException e) { // 用户未认证
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
     }
 
     // 通常分析是针对已上传的代码，所以用POST请求，并传入codeId作为路径变量
+    // mode=fast 时只做近似的词法分析 (适合超大文件，结果中 approximate=true)
     @PostMapping("/{codeId}")
-    public ResponseEntity<?> performAnalysis(@PathVariable Long codeId) {
+    @RateLimited(RateLimitClass.ANALYZE)
+    public ResponseEntity<?> performAnalysis(@PathVariable Long codeId,
+                                             @RequestParam(defaultValue = "precise") String mode) {
         try {
-            Analysis analysisResult = analysisService.analyzeCode(codeId);
+            AnalysisMode analysisMode = parseMode(mode);
+            // 交互式优先级：不和项目级分析、导入排在同一个队列里
+            Analysis analysisResult = analysisScheduler.executeForCurrentUser(AnalysisPriority.INTERACTIVE,
+                    () -> analysisService.analyzeCode(codeId, analysisMode));
             return ResponseEntity.ok(analysisResult);
         } catch (IllegalArgumentException e) { // 例如 codeId 不存在
             Map<String, String> errorResponse = new HashMap<>();
@@ -52,10 +103,198 @@ public class AnalysisController {
         }
     }
 
-    // 可选：获取特定代码的分析结果 (如果需要单独查询)
-    // @GetMapping("/{codeId}")
-    // public ResponseEntity<?> getAnalysisResult(@PathVariable Long codeId) {
-    //     // 实现从 analysisRepository 查询并返回的逻辑
-    //     // 注意处理 Analysis 可能不存在的情况
-    // }
-}
\ No newline at end of file
+    // 项目级分析：把当前用户的全部代码作为一个项目，只重新分析没有有效结果的代码 (一次 Checkstyle 运行，带持久化缓存)
+    @PostMapping("/project")
+    @RateLimited(RateLimitClass.ANALYZE)
+    public ResponseEntity<?> analyzeProject() {
+        try {
+            // 按要处理的文件数计开销：500 个文件的项目分析在公平排队中相当于 500 个单文件任务
+            int staleFiles = analysisService.countStaleCodesForCurrentUser();
+            ProjectAnalysisResult result = analysisScheduler.executeForCurrentUser(AnalysisPriority.BULK,
+                    Math.max(1, staleFiles), analysisService::analyzeStaleCodesForCurrentUser);
+            return ResponseEntity.ok(result);
+        } catch (IllegalStateException e) { // 用户未认证
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Authentication Required");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
+        } catch (Exception e) { // 包括 IOException, CheckstyleException 等
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Analysis Failed");
+            errorResponse.put("message", "An error occurred during project analysis: " + e.getMessage());
+            logger.error("Project analysis failed", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+
+    // 提交后台分析任务 (保存在 analysis_jobs 中，由任意节点的工作线程执行)，立即返回任务列表 (202)
+    // 请求体可省略：不指定 codeIds 时提交当前用户所有需要重新分析的代码
+    @PostMapping("/jobs")
+    @RateLimited(RateLimitClass.ANALYZE)
+    public ResponseEntity<?> enqueueAnalysisJobs(@RequestBody(required = false) EnqueueAnalysisJobsRequest request) {
+        try {
+            AnalysisMode analysisMode = parseMode(request == null || request.getMode() == null ? "precise" : request.getMode());
+            List<AnalysisJobDTO> jobs = analysisJobService.enqueueForCurrentUser(
+                    request == null ? null : request.getCodeIds(), analysisMode);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(jobs);
+        } catch (IllegalArgumentException e) { // codeId 不存在、mode 不合法、数量过多
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Bad Request");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        } catch (IllegalStateException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Authentication Required");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
+        } catch (AccessDeniedException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Forbidden");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(errorResponse);
+        }
+    }
+
+    // 当前用户最近的分析任务，可按状态过滤 (例如 status=DEAD 查看重试次数用完的任务)
+    @GetMapping("/jobs")
+    @RateLimited(RateLimitClass.LIST)
+    public ResponseEntity<?> listAnalysisJobs(@RequestParam(required = false) String status,
+                                              @RequestParam(defaultValue = "50") int limit) {
+        try {
+            AnalysisJobStatus jobStatus = status == null ? null : AnalysisJobStatus.valueOf(status.toUpperCase());
+            return ResponseEntity.ok(analysisJobService.listJobsForCurrentUser(jobStatus, limit));
+        } catch (IllegalArgumentException e) { // status 不合法
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Bad Request");
+            errorResponse.put("message", "status must be one of PENDING, RUNNING, SUCCEEDED, DEAD.");
+            return ResponseEntity.badRequest().body(errorResponse);
+        } catch (IllegalStateException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Authentication Required");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
+        }
+    }
+
+    // 分析任务的状态 (SUCCEEDED 后 analysisId 指向结果，GET /api/analysis/{codeId} 读取)
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<?> getAnalysisJob(@PathVariable Long jobId) {
+        try {
+            return ResponseEntity.ok(analysisJobService.getJobForCurrentUser(jobId));
+        } catch (IllegalArgumentException e) { // jobId 不存在
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Not Found");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        } catch (IllegalStateException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Authentication Required");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
+        } catch (AccessDeniedException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Forbidden");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(errorResponse);
+        }
+    }
+
+    // 把 DEAD 任务重新排队
+    @PostMapping("/jobs/{jobId}/retry")
+    @RateLimited(RateLimitClass.ANALYZE)
+    public ResponseEntity<?> retryAnalysisJob(@PathVariable Long jobId) {
+        try {
+            Optional<AnalysisJobDTO> job = analysisJobService.retryForCurrentUser(jobId);
+            if (job.isEmpty()) {
+                Map<String, String> errorResponse = new HashMap<>();
+                errorResponse.put("error", "Conflict");
+                errorResponse.put("message", "Only dead jobs can be retried.");
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+            }
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job.get());
+        } catch (IllegalArgumentException e) { // jobId 不存在
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Not Found");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        } catch (IllegalStateException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Authentication Required");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
+        } catch (AccessDeniedException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Forbidden");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(errorResponse);
+        }
+    }
+
+    // 分页获取最近一次分析的 Checkstyle 违规明细 (按报告顺序)
+    @GetMapping("/{codeId}/violations")
+    public ResponseEntity<?> getStyleViolations(@PathVariable Long codeId,
+                                                @PageableDefault(size = 100) Pageable pageable) {
+        try {
+            Page<StyleViolationDTO> violations = styleViolationService.getViolationsForCurrentUser(codeId, pageable);
+            return ResponseEntity.ok(violations);
+        } catch (IllegalArgumentException e) { // codeId 不存在
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Not Found");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        } catch (IllegalStateException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Authentication Required");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
+        } catch (AccessDeniedException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Forbidden");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(errorResponse);
+        }
+    }
+
+    // 获取已保存的分析结果 (不重新分析)，stale=true 表示分析之后代码已被修改
+    @GetMapping("/{codeId}")
+    public ResponseEntity<?> getAnalysisResult(@PathVariable Long codeId, WebRequest webRequest) {
+        try {
+            Optional<Analysis> analysisOpt = analysisService.getStoredAnalysisForCurrentUser(codeId);
+            if (analysisOpt.isEmpty()) {
+                Map<String, String> errorResponse = new HashMap<>();
+                errorResponse.put("error", "Not Found");
+                errorResponse.put("message", "Code " + codeId + " has not been analyzed yet. POST /api/analysis/" + codeId + " to analyze it.");
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+            }
+            if (webRequest.checkNotModified(AnalysisService.eTagOf(analysisOpt.get()))) {
+                return null; // checkNotModified 已设置 304 状态和 ETag 头
+            }
+            return ResponseEntity.ok(analysisOpt.get());
+        } catch (IllegalArgumentException e) { // codeId 不存在
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Not Found");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        } catch (IllegalStateException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Authentication Required");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
+        } catch (AccessDeniedException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Forbidden");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(errorResponse);
+        }
+    }
+
+    private static AnalysisMode parseMode(String mode) {
+        if ("precise".equalsIgnoreCase(mode)) {
+            return AnalysisMode.PRECISE;
+        }
+        if ("fast".equalsIgnoreCase(mode)) {
+            return AnalysisMode.FAST;
+        }
+        throw new IllegalArgumentException("mode must be one of precise, fast.");
+    }
+}
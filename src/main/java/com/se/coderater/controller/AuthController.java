@@ -3,6 +3,7 @@ package com.se.coderater.controller;
 import com.se.coderater.dto.LoginRequest;
 import com.se.coderater.dto.RegisterRequest;
 import com.se.coderater.dto.AuthResponse;
+import com.se.coderater.exception.CredentialHashingBusyException;
 import com.se.coderater.service.AuthService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -33,6 +34,8 @@ public class AuthController {
         try {
             AuthResponse response = authService.loginUser(loginRequest);
             return ResponseEntity.ok(response);
+        } catch (CredentialHashingBusyException e) {
+            throw e; // 交给 GlobalExceptionHandler 返回 503 + Retry-After
         } catch (Exception e) { // 例如 BadCredentialsException
             // 返回 401 Unauthorized 或其他合适的错误
             return ResponseEntity.status(401).body(new AuthResponse("Error: Invalid username or password", null));
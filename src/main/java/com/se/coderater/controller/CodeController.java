@@ -1,18 +1,36 @@
 package com.se.coderater.controller;
 
 import com.se.coderater.entity.Code;
+import com.se.coderater.dto.SymbolMatchDTO;
+import com.se.coderater.dto.CodeRevisionDTO;
 import com.se.coderater.service.CodeService;
+import com.se.coderater.security.RateLimitClass;
+import com.se.coderater.security.RateLimited;
+import com.se.coderater.service.SymbolIndexService;
+import com.se.coderater.service.SymbolKind;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
-import java.util.List;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import jakarta.validation.constraints.NotBlank; // 用于请求参数校验
 import org.springframework.data.domain.Page; // 导入 Page
@@ -20,19 +38,28 @@ import org.springframework.data.domain.Pageable; // 导入 Pageable
 import org.springframework.data.web.PageableDefault; // 可选，用于设置默认分页参数
 import com.se.coderater.dto.CodeSummaryDTO; // 导入 DTO
 import com.se.coderater.dto.UpdateCodeRequest; // 导入新的 DTO
+import com.se.coderater.exception.BlobStoreReadOnlyException;
 import jakarta.validation.Valid; // 用于校验请求体
 @RestController
 @RequestMapping("/api/code")
 public class CodeController {
 
     private final CodeService codeService;
+    private final SymbolIndexService symbolIndexService;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter codeWriter;
 
     @Autowired
-    public CodeController(CodeService codeService) {
+    public CodeController(CodeService codeService, SymbolIndexService symbolIndexService, ObjectMapper objectMapper) {
         this.codeService = codeService;
+        this.symbolIndexService = symbolIndexService;
+        this.objectMapper = objectMapper;
+        // 逐行写出时不要每行都 flush，由 Servlet 输出缓冲区决定何时发送
+        this.codeWriter = objectMapper.writerFor(Code.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
     }
 
     @PostMapping("/upload")
+    @RateLimited(RateLimitClass.UPLOAD)
     public ResponseEntity<?> uploadCodeFile(@RequestParam("file") MultipartFile file) {
         if (file == null || file.isEmpty()) {
             Map<String, String> errorResponse = new HashMap<>();
@@ -60,6 +87,8 @@ public class CodeController {
             errorResponse.put("error", "File processing error.");
             errorResponse.put("message", "Could not read or store the file: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        } catch (BlobStoreReadOnlyException e) {
+            throw e; // GlobalExceptionHandler 返回 503
         } catch (Exception e) {
             Map<String, String> errorResponse = new HashMap<>();
             errorResponse.put("error", "An unexpected error occurred.");
@@ -68,26 +97,84 @@ public class CodeController {
         }
     }
 
-    @GetMapping("/mycode")
-    public ResponseEntity<?> getCurrentUserCodes() {
+    // 符号搜索：按类名/方法名/字段名/导入查找代码 (内存索引，不扫描 content)。
+    // match=exact|prefix，kind=class|method|field|import (不传则查全部)；普通用户只能查自己的代码
+    @GetMapping("/symbols")
+    @RateLimited(RateLimitClass.LIST)
+    public ResponseEntity<?> searchSymbols(@RequestParam("q") String query,
+                                           @RequestParam(required = false) String kind,
+                                           @RequestParam(defaultValue = "exact") String match,
+                                           @RequestParam(required = false) Long ownerId,
+                                           @RequestParam(defaultValue = "50") int limit) {
         try {
-            List<Code> codes = codeService.getCodesForCurrentUser();
-            if (codes.isEmpty()) {
-                return ResponseEntity.ok("You have not uploaded any code yet.");
+            SymbolKind symbolKind = null;
+            if (kind != null) {
+                try {
+                    symbolKind = SymbolKind.valueOf(kind.toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("kind must be one of class, method, field, import.");
+                }
             }
-            return ResponseEntity.ok(codes);
+            if (!"exact".equalsIgnoreCase(match) && !"prefix".equalsIgnoreCase(match)) {
+                throw new IllegalArgumentException("match must be 'exact' or 'prefix'.");
+            }
+            List<SymbolMatchDTO> matches = symbolIndexService.searchForCurrentUser(query, symbolKind,
+                    "prefix".equalsIgnoreCase(match), ownerId, limit);
+            return ResponseEntity.ok(matches);
         } catch (IllegalStateException e) {
             Map<String, String> errorResponse = new HashMap<>();
             errorResponse.put("error", "Authentication Required");
             errorResponse.put("message", e.getMessage());
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
+        } catch (IllegalArgumentException e) { // 包括 kind/match 取值错误
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Bad Request");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        } catch (AccessDeniedException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Forbidden");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(errorResponse);
+        }
+    }
+
+    // 流式输出：不把所有 Code 放进内存，而是从数据库游标逐行读取并直接写入响应
+    @GetMapping("/mycode")
+    @RateLimited(RateLimitClass.LIST)
+    public ResponseEntity<StreamingResponseBody> getCurrentUserCodes() {
+        try {
+            Long userId = codeService.getCurrentUserId(); // 在请求线程上解析当前用户
+            if (codeService.countCodesForUser(userId) == 0) {
+                return ResponseEntity.ok()
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .body(out -> out.write("You have not uploaded any code yet.".getBytes(StandardCharsets.UTF_8)));
+            }
+            StreamingResponseBody body = out -> {
+                JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET); // 输出流由容器关闭
+                codeService.writeCodesForUser(userId, generator, codeWriter);
+            };
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+        } catch (IllegalStateException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Authentication Required");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(out -> objectMapper.writeValue(out, errorResponse));
         }
     }
 
 
     @GetMapping("/{codeId}")
-    public ResponseEntity<?> getCodeDetails(@PathVariable Long codeId) {
+    public ResponseEntity<?> getCodeDetails(@PathVariable Long codeId, WebRequest webRequest) {
         try {
+            // 条件 GET：If-None-Match 命中时直接返回 304，不读取也不序列化 content
+            Optional<String> etag = codeService.getCodeETagForCurrentUser(codeId);
+            if (etag.isPresent() && webRequest.checkNotModified(etag.get())) {
+                return null; // checkNotModified 已设置 304 状态和 ETag 头
+            }
             Optional<Code> codeOpt = codeService.getCodeByIdForCurrentUser(codeId);
             if (codeOpt.isPresent()) {
                 return ResponseEntity.ok(codeOpt.get());
@@ -111,6 +198,99 @@ public class CodeController {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(errorResponse);
         }
     }
+    // 代码原文 (text/plain)：从映射的 blob 段文件切片直接写入响应，不经过堆上的 String/byte[]
+    @GetMapping("/{codeId}/raw")
+    public ResponseEntity<StreamingResponseBody> getRawCode(@PathVariable Long codeId, WebRequest webRequest) {
+        Map<String, String> errorResponse = new HashMap<>();
+        HttpStatus errorStatus;
+        try {
+            Optional<String> etag = codeService.getCodeETagForCurrentUser(codeId);
+            if (etag.isPresent() && webRequest.checkNotModified(etag.get())) {
+                return null; // checkNotModified 已设置 304 状态和 ETag 头
+            }
+            Optional<ByteBuffer> content = codeService.openContentForCurrentUser(codeId);
+            if (content.isPresent()) {
+                ByteBuffer bytes = content.get();
+                StreamingResponseBody body = out -> {
+                    WritableByteChannel channel = Channels.newChannel(out);
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes);
+                    }
+                };
+                return ResponseEntity.ok() // ETag 头已由 checkNotModified 设置
+                        .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                        .contentLength(bytes.remaining())
+                        .body(body);
+            }
+            errorStatus = HttpStatus.NOT_FOUND;
+            errorResponse.put("error", "Not Found");
+            errorResponse.put("message", "Code not found or you do not have permission to view it.");
+        } catch (IllegalStateException e) { // 用户未认证
+            errorStatus = HttpStatus.UNAUTHORIZED;
+            errorResponse.put("error", "Authentication Required");
+            errorResponse.put("message", e.getMessage());
+        } catch (AccessDeniedException e) { // 权限不足
+            errorStatus = HttpStatus.FORBIDDEN;
+            errorResponse.put("error", "Forbidden");
+            errorResponse.put("message", e.getMessage());
+        }
+        return ResponseEntity.status(errorStatus)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> objectMapper.writeValue(out, errorResponse));
+    }
+
+    // 修订历史 (新的在前)：每一版的文件名、长度、存储方式 (快照/增量) 以及该版的分析指标和评分
+    @GetMapping("/{codeId}/revisions")
+    public ResponseEntity<?> getCodeRevisions(@PathVariable Long codeId) {
+        try {
+            Optional<List<CodeRevisionDTO>> revisions = codeService.getRevisionsForCurrentUser(codeId);
+            if (revisions.isPresent()) {
+                return ResponseEntity.ok(revisions.get());
+            }
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Not Found");
+            errorResponse.put("message", "Code not found or you do not have permission to view it.");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        } catch (IllegalStateException e) { // 用户未认证
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Authentication Required");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
+        } catch (AccessDeniedException e) { // 权限不足
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Forbidden");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(errorResponse);
+        }
+    }
+
+    // 某一版的代码原文 (text/plain)
+    @GetMapping("/{codeId}/revisions/{revisionNo}/raw")
+    public ResponseEntity<?> getCodeRevisionContent(@PathVariable Long codeId, @PathVariable int revisionNo) {
+        try {
+            Optional<String> content = codeService.getRevisionContentForCurrentUser(codeId, revisionNo);
+            if (content.isPresent()) {
+                return ResponseEntity.ok()
+                        .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                        .body(content.get());
+            }
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Not Found");
+            errorResponse.put("message", "Revision not found or you do not have permission to view it.");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).contentType(MediaType.APPLICATION_JSON).body(errorResponse);
+        } catch (IllegalStateException e) { // 用户未认证
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Authentication Required");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).contentType(MediaType.APPLICATION_JSON).body(errorResponse);
+        } catch (AccessDeniedException e) { // 权限不足
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Forbidden");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).contentType(MediaType.APPLICATION_JSON).body(errorResponse);
+        }
+    }
+
     /*@PutMapping("/{codeId}/filename") // 使用 PUT 请求更新资源
     public ResponseEntity<?> updateCodeFileName(
             @PathVariable Long codeId,
@@ -162,14 +342,20 @@ public class CodeController {
     }
     // API: 获取所有已上传代码的摘要分页列表
     @GetMapping("/public/list") // 使用一个更明确的路径，例如 /public/list 或直接 /codes
+    @RateLimited(RateLimitClass.LIST)
     public ResponseEntity<Page<CodeSummaryDTO>> getAllPublicCodeSummaries(
-            @PageableDefault(size = 10, sort = "uploadedAt", direction = Sort.Direction.DESC) Pageable pageable) {
+            @PageableDefault(size = 10, sort = "uploadedAt", direction = Sort.Direction.DESC) Pageable pageable,
+            WebRequest webRequest) {
         // @PageableDefault 可以设置默认的分页大小和排序规则
         // 例如：每页10条，按上传时间倒序排列
+        if (webRequest.checkNotModified(codeService.getPublicListingETag(pageable))) {
+            return null; // 列表没有变化：304，不执行分页查询
+        }
         Page<CodeSummaryDTO> codeSummaries = codeService.getPublicCodeSummaries(pageable);
         return ResponseEntity.ok(codeSummaries);
     }
     @PutMapping("/{codeId}") // 使用 PUT 请求更新整个代码资源（文件名和内容）
+    @RateLimited(RateLimitClass.UPLOAD)
     public ResponseEntity<?> updateCodeDetails(
             @PathVariable Long codeId,
             @Valid @RequestBody UpdateCodeRequest updateCodeRequest) { // 接收 DTO 并校验
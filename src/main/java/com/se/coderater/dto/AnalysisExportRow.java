@@ -0,0 +1,59 @@
+package com.se.coderater.dto;
+
+import com.se.coderater.entity.AnalysisMode;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+
+// NDJSON 导出的一行：分析的原始指标 + 评分 + 代码元数据 (不含代码内容)
+@Data
+@NoArgsConstructor
+public class AnalysisExportRow {
+    private Long analysisId;
+    private Long codeId;
+    private String fileName;
+    private Long uploaderId;
+    private String uploaderUsername;
+    private LocalDateTime uploadedAt;
+    private Integer classCount;
+    private Integer methodCount;
+    private Integer lineCount;
+
+    private Integer styleIssueCount;
+    private Integer cyclomaticComplexity;
+    private Double commentRatio;
+    private Integer commentLineCount;
+    private Integer nonEmptyLineCount;
+    private LocalDateTime analyzedAt;
+    private AnalysisMode analysisMode; // FAST 表示近似结果 (没有风格问题数和风格得分)
+
+    // 评分 (由 ScoreCalculator 根据上面的指标计算)
+    private Integer styleScore;
+    private Integer complexityScore;
+    private Integer commentScore;
+    private Integer overallScore;
+
+    // 供 JPQL 构造器表达式使用 (评分字段在导出时计算)
+    public AnalysisExportRow(Long analysisId, Long codeId, String fileName, Long uploaderId, String uploaderUsername,
+                             LocalDateTime uploadedAt, Integer classCount, Integer methodCount, Integer lineCount,
+                             Integer styleIssueCount, Integer cyclomaticComplexity, Double commentRatio,
+                             Integer commentLineCount, Integer nonEmptyLineCount, LocalDateTime analyzedAt,
+                             AnalysisMode analysisMode) {
+        this.analysisId = analysisId;
+        this.codeId = codeId;
+        this.fileName = fileName;
+        this.uploaderId = uploaderId;
+        this.uploaderUsername = uploaderUsername;
+        this.uploadedAt = uploadedAt;
+        this.classCount = classCount;
+        this.methodCount = methodCount;
+        this.lineCount = lineCount;
+        this.styleIssueCount = styleIssueCount;
+        this.cyclomaticComplexity = cyclomaticComplexity;
+        this.commentRatio = commentRatio;
+        this.commentLineCount = commentLineCount;
+        this.nonEmptyLineCount = nonEmptyLineCount;
+        this.analyzedAt = analyzedAt;
+        this.analysisMode = analysisMode;
+    }
+}
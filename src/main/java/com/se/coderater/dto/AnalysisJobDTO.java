@@ -0,0 +1,27 @@
+package com.se.coderater.dto;
+
+import com.se.coderater.entity.AnalysisJobStatus;
+import com.se.coderater.entity.AnalysisMode;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// 分析任务的状态 (GET /api/analysis/jobs/{id})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalysisJobDTO {
+    private Long id;
+    private Long codeId;
+    private AnalysisMode analysisMode;
+    private AnalysisJobStatus status;
+    private Integer attempts;
+    private Integer maxAttempts;
+    private LocalDateTime runAfter;     // PENDING：最早执行时间 (重试时为退避之后)
+    private String lastError;           // 最近一次失败的原因
+    private Long analysisId;            // SUCCEEDED：分析结果 id
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+}
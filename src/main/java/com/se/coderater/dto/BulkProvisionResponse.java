@@ -0,0 +1,16 @@
+package com.se.coderater.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkProvisionResponse {
+    private int created;
+    private int conflicts;
+    private int invalid;
+    private List<BulkUserResult> results; // 每一行的处理结果，顺序与输入一致
+}
@@ -0,0 +1,15 @@
+package com.se.coderater.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkUserResult {
+    private int row;          // 输入中的行号 (从1开始：CSV 为源文件中的行号，含表头和空行；JSON 为数组中的序号)
+    private String username;
+    private String status;    // CREATED / CONFLICT / INVALID
+    private String message;
+}
@@ -0,0 +1,21 @@
+package com.se.coderater.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.util.Set;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CodeImportResult {
+    private int imported;           // 成功写入的 .java 文件数
+    private int skipped;            // 非 .java、过大或用户不存在而跳过的条目数
+    private int parseFailures;      // 已写入但 JavaParser 解析失败 (统计字段为 null) 的文件数
+    private Set<String> unknownUsers; // 压缩包中出现但系统中不存在的用户名
+    private int committedChunks;    // 已提交的块数 (每块一个事务)
+    private String lastCommittedEntry; // 最后一个已提交的条目路径 (按压缩包中的顺序，此前的条目都已处理)
+    private String error;           // 导入中途失败时的原因 (失败的块已回滚、之后的条目未处理)；成功时为 null
+    private long elapsedMs;
+    private long filesPerMinute;
+}
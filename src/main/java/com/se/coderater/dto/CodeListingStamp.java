@@ -0,0 +1,18 @@
+package com.se.coderater.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+// 公开列表的版本信息：总数 + 最大 id + id 之和 + 最近上传/修改时间，任一变化都说明列表可能变了。
+// 只看总数和时间不够：删除一个、再上传一个时间更早的 (例如其他节点时钟偏慢)，两者都不变；新代码的 id 总是更大
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CodeListingStamp {
+    private Long totalCount;
+    private Long maxId;
+    private Long idSum;
+    private LocalDateTime latestUploadedAt;
+}
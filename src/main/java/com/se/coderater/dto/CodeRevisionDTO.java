@@ -0,0 +1,35 @@
+package com.se.coderater.dto;
+
+import com.se.coderater.entity.AnalysisMode;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// 修订历史的一条记录 (不含内容)；分析过的版本带原始指标和按当前规则计算的评分，用于评分趋势
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CodeRevisionDTO {
+    private Integer revisionNo;
+    private String fileName;
+    private String contentHash;
+    private Integer contentLength;  // 内容字符数
+    private boolean snapshot;       // true：保存了完整快照；false：保存的是相对上一版的增量
+    private Integer storedLength;   // 增量的字符数 (快照为 null，与代码内容共享 blob 存储)
+    private LocalDateTime createdAt;
+
+    private Long analysisId;
+    private LocalDateTime analyzedAt;
+    private AnalysisMode analysisMode;
+    private Integer styleIssueCount;
+    private Integer cyclomaticComplexity;
+    private Double commentRatio;
+
+    // 评分 (瞬时计算)
+    private Integer styleScore;
+    private Integer complexityScore;
+    private Integer commentScore;
+    private Integer overallScore;
+}
@@ -0,0 +1,17 @@
+package com.se.coderater.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+// 计算 ETag 所需的最少字段 (不含 content)，由 CodeRepository 的构造器表达式查询直接返回
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CodeVersionStamp {
+    private Long codeId;
+    private Long ownerId;
+    private String contentHash;
+    private LocalDateTime uploadedAt;
+}
@@ -0,0 +1,16 @@
+package com.se.coderater.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// 提交分析任务：codeIds 为空时提交当前用户所有需要重新分析的代码
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EnqueueAnalysisJobsRequest {
+    private List<Long> codeIds;
+    private String mode; // precise (默认) 或 fast
+}
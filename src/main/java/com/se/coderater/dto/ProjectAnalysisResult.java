@@ -0,0 +1,20 @@
+package com.se.coderater.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProjectAnalysisResult {
+    private long totalCodes;        // 用户的代码总数
+    private long upToDate;          // 已有有效精确分析结果、本次没有处理的代码数
+    private int analyzed;           // 本次重新分析并保存的代码数 (含 reused)
+    private int reused;             // 复用了内容相同代码的分析结果、没有进入 Checkstyle 的代码数
+    private int checkstyleChecked;  // Checkstyle 实际检查的文件数
+    private int checkstyleCached;   // Checkstyle 缓存命中 (内容和配置都没变且上次没有问题) 而跳过的文件数
+    private int parseFailures;      // JavaParser 解析失败、保持原状的代码数
+    private int changedDuringAnalysis; // 分析期间被修改或删除、没有保存结果的代码数
+    private long elapsedMs;
+}
@@ -0,0 +1,15 @@
+package com.se.coderater.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// 一条规则在统计范围内的违规汇总
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RuleViolationStat {
+    private String ruleId;
+    private Long violationCount; // 违规总数
+    private Long codeCount;      // 出现该规则违规的代码数
+}
@@ -0,0 +1,17 @@
+package com.se.coderater.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// 相似代码查询的一条结果
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SimilarCodeDTO {
+    private Long codeId;
+    private String fileName;
+    private Long uploaderId;
+    private String uploaderUsername;
+    private double similarity; // MinHash 估计的 Jaccard 相似度 (0 ~ 1)
+}
@@ -0,0 +1,17 @@
+package com.se.coderater.dto;
+
+import com.se.coderater.entity.Analysis;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+// 读取已有分析结果：分析实体 + 所属代码的所有者和最后修改时间 (一条查询取回，不读取代码内容)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredAnalysis {
+    private Analysis analysis;
+    private Long ownerId;
+    private LocalDateTime codeUploadedAt;
+}
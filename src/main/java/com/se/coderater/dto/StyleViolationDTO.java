@@ -0,0 +1,16 @@
+package com.se.coderater.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StyleViolationDTO {
+    private String ruleId;
+    private String messageKey;
+    private int line;
+    private int column;
+    private String severity; // 例如 "warning"
+}
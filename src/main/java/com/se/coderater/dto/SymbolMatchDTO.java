@@ -0,0 +1,17 @@
+package com.se.coderater.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// 符号搜索的一条结果
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SymbolMatchDTO {
+    private Long codeId;
+    private String fileName;
+    private Long ownerId;
+    private String kind; // class / method / field / import
+    private String name; // 源码中的原始写法
+}
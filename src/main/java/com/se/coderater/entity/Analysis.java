@@ -1,9 +1,12 @@
 package com.se.coderater.entity;
 
+import com.se.coderater.config.HibernateCacheConfig;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.time.LocalDateTime;
 import jakarta.persistence.Transient;
 import com.fasterxml.jackson.annotation.JsonBackReference; // 导入
@@ -14,6 +17,8 @@ import com.fasterxml.jackson.annotation.JsonBackReference; // 导入
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.ANALYSES_REGION)
 public class Analysis {
 
     @Id
@@ -42,6 +47,10 @@ public class Analysis {
     private Integer nonEmptyLineCount; // 非空行数量 (可以从 Code 实体获取或重新计算)
 
     private LocalDateTime analyzedAt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private AnalysisMode analysisMode; // null 表示该字段加入之前的精确分析
     @Transient // 表示这个字段不映射到数据库表列
     private Integer overallScore; // 综合评分 (0-100)
 
@@ -53,6 +62,14 @@ public class Analysis {
     @Transient
     private Integer commentScore;
 
+    @Transient
+    private Boolean stale; // 分析之后代码又被修改过 (code.uploadedAt 晚于 analyzedAt)
+
+    // 快速模式的结果是近似值 (风格问题数和风格得分为空)，在 JSON 中以 approximate 标明
+    public boolean isApproximate() {
+        return analysisMode == AnalysisMode.FAST;
+    }
+
     @PrePersist
     protected void onCreate() {
         analyzedAt = LocalDateTime.now();
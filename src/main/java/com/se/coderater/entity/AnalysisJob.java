@@ -0,0 +1,79 @@
+package com.se.coderater.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 持久化的分析任务。任意节点的 AnalysisJobWorker 用 SELECT ... FOR UPDATE SKIP LOCKED 领取任务，
+ * 领取时写入 lease_owner (节点 id) 和租约到期时间，执行期间定期续约；节点崩溃后租约到期，任务由其他节点重新领取。
+ * 失败后按指数退避推迟 run_after 重试，attempts 达到 max_attempts 后进入 DEAD。
+ * 时间列都使用数据库时钟，各节点的时钟偏差不影响租约判断。
+ * 行由 AnalysisJobService 用 JDBC 维护。
+ */
+@Entity
+@Table(name = "analysis_jobs", indexes = {
+        @Index(name = "idx_analysis_jobs_claim", columnList = "status, run_after"),
+        @Index(name = "idx_analysis_jobs_lease", columnList = "status, lease_expires_at"),
+        @Index(name = "idx_analysis_jobs_finished", columnList = "status, finished_at"),
+        @Index(name = "idx_analysis_jobs_user", columnList = "user_id, status")
+}, uniqueConstraints = @UniqueConstraint(name = "uk_analysis_jobs_active_key", columnNames = "active_key"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalysisJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "code_id", nullable = false)
+    private Long codeId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId; // 提交者 (代码所有者)，执行时以该用户的身份分析
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "analysis_mode", nullable = false, length = 16)
+    private AnalysisMode analysisMode;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private AnalysisJobStatus status;
+
+    @Column(nullable = false)
+    private Integer attempts; // 已领取的次数 (包括正在执行的这一次)
+
+    @Column(name = "max_attempts", nullable = false)
+    private Integer maxAttempts;
+
+    @Column(name = "run_after", nullable = false)
+    private LocalDateTime runAfter; // PENDING 任务最早可被领取的时间 (重试退避)
+
+    @Column(name = "lease_owner", length = 128)
+    private String leaseOwner;
+
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
+    @Column(name = "active_key", length = 48)
+    private String activeKey; // PENDING / RUNNING 时为 "代码 id:模式" (唯一)，完成或 DEAD 后为 NULL
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "analysis_id")
+    private Long analysisId; // 成功后的分析结果
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+}
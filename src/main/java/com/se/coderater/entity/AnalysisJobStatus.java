@@ -0,0 +1,11 @@
+package com.se.coderater.entity;
+
+/**
+ * 分析任务 (analysis_jobs) 的状态
+ */
+public enum AnalysisJobStatus {
+    PENDING,   // 等待执行 (run_after 之后可被领取；失败重试的任务也回到这个状态)
+    RUNNING,   // 已被某个节点领取，租约 (lease_expires_at) 到期前由该节点执行
+    SUCCEEDED, // 执行成功
+    DEAD       // 重试次数用完或不可重试的错误，不再自动执行 (可手动重新排队)
+}
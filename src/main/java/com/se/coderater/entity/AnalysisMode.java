@@ -0,0 +1,9 @@
+package com.se.coderater.entity;
+
+/**
+ * 分析模式
+ */
+public enum AnalysisMode {
+    PRECISE, // Checkstyle + JavaParser (默认)
+    FAST     // 单遍词法扫描，不构建 AST、不运行 Checkstyle，结果为近似值 (适合超大文件)
+}
@@ -0,0 +1,54 @@
+package com.se.coderater.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 分析完成事件的短期记录，用于把事件转发给其他节点上的 SSE 连接。
+ * 分析在哪个节点完成，就由该节点在分析的事务中写入一行 (node_id 为该节点)；
+ * 其他节点定期读取最近一段时间内别的节点写入的行，推送给自己的连接，过期的行定期删除。
+ * created_at 使用数据库时钟。行由 AnalysisEventService 用 JDBC 维护。
+ */
+@Entity
+@Table(name = "analysis_notifications", indexes = @Index(name = "idx_analysis_notifications_created_at", columnList = "created_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalysisNotification {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "node_id", nullable = false, length = 128)
+    private String nodeId;
+
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    @Column(name = "code_id", nullable = false)
+    private Long codeId;
+
+    @Column(name = "revision_no")
+    private Integer revisionNo;
+
+    @Column(name = "analysis_id")
+    private Long analysisId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "analysis_mode", length = 16)
+    private AnalysisMode analysisMode;
+
+    @Column(name = "analyzed_at")
+    private LocalDateTime analyzedAt;
+
+    @Column(name = "overall_score")
+    private Integer overallScore;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -1,18 +1,29 @@
 package com.se.coderater.entity;
 
+import com.se.coderater.config.HibernateCacheConfig;
+import com.se.coderater.service.CodeSymbols;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.time.LocalDateTime;
 import com.fasterxml.jackson.annotation.JsonBackReference; // 用于处理序列化时的循环引用
 import com.fasterxml.jackson.annotation.JsonManagedReference; // 导入
 import com.fasterxml.jackson.annotation.JsonIgnore;
 @Entity
-@Table(name = "codes") // 表名 codes
+@Table(name = "codes", // 表名 codes
+        indexes = {
+                @Index(name = "idx_codes_user_id", columnList = "user_id"), // 按上传者查询/所有权校验
+                @Index(name = "idx_codes_content_hash", columnList = "contentHash"), // 查找内容完全相同的代码 (复用分析结果)
+                @Index(name = "idx_codes_uploaded_at", columnList = "uploaded_at") // 符号索引拉取最近修改的代码 (多实例)
+        })
 @Data // Lombok: 自动生成 getter, setter, toString, equals, hashCode
 @NoArgsConstructor // Lombok: 自动生成无参构造函数
 @AllArgsConstructor // Lombok: 自动生成全参构造函数
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.CODES_REGION) // 二级缓存，区域大小见 application.properties
 public class Code {
 
     @Id
@@ -28,17 +39,29 @@ public class Code {
     @Column(nullable = false)
     private String fileName; // 文件名
 
-    @Lob // 表示这是一个大对象，适合存储较长文本
-    @Column(nullable = false, columnDefinition = "TEXT") // 明确指定数据库类型为TEXT
-    private String content; // 代码内容
+    @Transient
+    private String content; // 代码内容：保存在 blob 存储中 (按 contentHash 寻址)，需要时由 BlobStoreService.loadContent 加载
 
     private LocalDateTime uploadedAt; // 上传时间
 
+    @Column(length = 64)
+    private String contentHash; // content 的 SHA-256 (十六进制)：code_blobs 的主键，同时用于生成 ETag
+
+    private Integer currentRevision; // 最新修订版本号 (code_revisions.revision_no)；修订历史上线前上传且未修改过的代码为 null
+
     // 解析结果字段
     private Integer classCount;    // 类数量
     private Integer methodCount;   // 方法数量
     private Integer lineCount;     // 代码行数 (不含空行和注释的有效行数，或总行数，根据需求定)
 
+    @Transient
+    @JsonIgnore
+    private int[] similaritySignature; // 解析时顺便计算的 MinHash 签名，保存后写入相似度索引 (不持久化到 codes 表)
+
+    @Transient
+    @JsonIgnore
+    private CodeSymbols symbols; // 解析时提取的类名/方法名/字段名/导入，提交后写入符号索引 (不持久化)
+
 
     @OneToOne(mappedBy = "code", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @JsonManagedReference("code-analysis") // 新的引用名
@@ -0,0 +1,41 @@
+package com.se.coderater.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 代码内容的存储位置 (内容寻址：主键是 UTF-8 内容的 SHA-256，即 codes.contentHash)。
+ * 内容本身保存在本地段文件中 (BlobSegmentStore)，这里只记录段号、偏移、长度和引用计数；
+ * 行由 BlobStoreService 用 JDBC 维护，引用计数降为 0 时删除。
+ */
+@Entity
+@Table(name = "code_blobs",
+        indexes = @Index(name = "idx_code_blobs_segment", columnList = "segment")) // 回收空段时按段计数
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CodeBlob {
+
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    @Column(nullable = false)
+    private Integer segment;
+
+    @Column(name = "segment_offset", nullable = false)
+    private Long segmentOffset;
+
+    @Column(nullable = false)
+    private Integer length; // 字节数
+
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount; // 引用该内容的代码和修订快照数量
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
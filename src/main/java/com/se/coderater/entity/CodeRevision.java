@@ -0,0 +1,76 @@
+package com.se.coderater.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 代码的一个修订版本 (上传是第 1 版，每次修改加一版)。
+ * 内容要么是完整快照 (blob_id 引用 code_blobs，与代码内容共享存储)，要么是相对上一版的按行增量 (delta，见 LineDiff)；
+ * 每隔 snapshot-interval 版保存一次快照，还原任意一版最多应用 snapshot-interval - 1 个增量。
+ * 最新一版的内容就是 codes.content_hash 指向的 blob，不需要还原。
+ * 分析该版本时记录分析结果的 id 和原始指标 (Analysis 每个代码只有一行，重新分析会覆盖)，用于评分趋势。
+ * rules_recorded_at 是该版本第一次精确分析的时间，规则统计按它划分时间窗口，之后的重新分析不会移动它。
+ * 行由 CodeRevisionService 用 JDBC 维护。
+ */
+@Entity
+@Table(name = "code_revisions",
+        uniqueConstraints = @UniqueConstraint(name = "uk_code_revisions_code_revision", columnNames = {"code_id", "revision_no"}),
+        indexes = @Index(name = "idx_code_revisions_rules_recorded_at", columnList = "rules_recorded_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CodeRevision {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "code_id", nullable = false)
+    private Long codeId;
+
+    @Column(name = "revision_no", nullable = false)
+    private Integer revisionNo;
+
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash; // 该版本内容的 SHA-256
+
+    @Column(name = "content_length", nullable = false)
+    private Integer contentLength; // 字符数
+
+    @Column(name = "blob_id", length = 64)
+    private String blobId; // 快照：code_blobs 的主键 (持有一个引用)；增量版本为 null
+
+    @Lob
+    private String delta; // 相对上一版的增量；快照版本为 null
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // 分析结果 (该版本被分析过时才有值)
+    @Column(name = "analysis_id")
+    private Long analysisId;
+    @Column(name = "analyzed_at")
+    private LocalDateTime analyzedAt;
+    @Enumerated(EnumType.STRING)
+    @Column(name = "analysis_mode", length = 16)
+    private AnalysisMode analysisMode;
+    @Column(name = "style_issue_count")
+    private Integer styleIssueCount;
+    @Column(name = "cyclomatic_complexity")
+    private Integer cyclomaticComplexity;
+    @Column(name = "comment_line_count")
+    private Integer commentLineCount;
+    @Column(name = "non_empty_line_count")
+    private Integer nonEmptyLineCount;
+    @Column(name = "comment_ratio")
+    private Double commentRatio;
+    @Column(name = "rules_recorded_at")
+    private LocalDateTime rulesRecordedAt; // 第一次精确分析 (有按规则计数) 的时间；只做过快速分析时为 null
+}
@@ -0,0 +1,25 @@
+package com.se.coderater.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * 代码的 MinHash 签名 (NUM_HASHES 个 int，大端序)，用于估计候选代码之间的相似度。
+ * 行由 SimilarityIndexService 用 JDBC 写入，与 code_lsh_buckets 一起维护。
+ */
+@Entity
+@Table(name = "code_signatures")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CodeSignature {
+
+    @Id
+    @Column(name = "code_id")
+    private Long codeId;
+
+    @Column(nullable = false, length = 512)
+    private byte[] signature;
+}
@@ -0,0 +1,31 @@
+package com.se.coderater.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * LSH 倒排索引：(band, bucket_hash) -> code_id。
+ * 查找相似代码时按主键前缀 (band, bucket_hash) 做等值查询，不需要与全部代码两两比较。
+ */
+@Entity
+@Table(name = "code_lsh_buckets",
+        indexes = @Index(name = "idx_lsh_buckets_code_id", columnList = "code_id")) // 删除/重建某个代码的桶
+@IdClass(LshBucketId.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LshBucket {
+
+    @Id
+    private Short band;
+
+    @Id
+    @Column(name = "bucket_hash")
+    private Long bucketHash;
+
+    @Id
+    @Column(name = "code_id")
+    private Long codeId;
+}
@@ -0,0 +1,16 @@
+package com.se.coderater.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.io.Serializable;
+
+// LshBucket 的复合主键 (band, bucket_hash, code_id)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LshBucketId implements Serializable {
+    private Short band;
+    private Long bucketHash;
+    private Long codeId;
+}
@@ -0,0 +1,41 @@
+package com.se.coderater.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * 代码每个已分析版本中每条 Checkstyle 规则的违规数 (聚合历史表)。
+ * 按 (code_id, revision_no) 保存，修改代码后旧版本的计数保留下来，不同时间窗口可以互相比较；
+ * 只有重新分析同一版本时才替换该版本的行。分析时间取自 code_revisions.rules_recorded_at (该版本第一次精确分析的时间，没有违规的版本也有记录)。
+ * user_id 冗余存储，按用户集合统计时不需要关联 codes；行由 RuleStatisticsService 用 JDBC 写入。
+ */
+@Entity
+@Table(name = "analysis_rule_history", indexes = {
+        @Index(name = "idx_rule_history_user_id", columnList = "user_id")
+})
+@IdClass(RuleViolationCountId.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RuleViolationCount {
+
+    @Id
+    @Column(name = "code_id")
+    private Long codeId;
+
+    @Id
+    @Column(name = "revision_no")
+    private Integer revisionNo;
+
+    @Id
+    @Column(name = "rule_id", length = 64)
+    private String ruleId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId; // 代码所有者
+
+    @Column(name = "violation_count", nullable = false)
+    private int violationCount;
+}
@@ -0,0 +1,16 @@
+package com.se.coderater.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.io.Serializable;
+
+// RuleViolationCount 的复合主键 (code_id, revision_no, rule_id)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RuleViolationCountId implements Serializable {
+    private Long codeId;
+    private Integer revisionNo;
+    private String ruleId;
+}
@@ -0,0 +1,41 @@
+package com.se.coderater.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * 一条 Checkstyle 违规。主键 (code_id, seq) 同时就是按代码分页读取的顺序，
+ * 不单独建自增 id；行由 StyleViolationService 用 JDBC 批量写入，每次重新分析整体替换。
+ */
+@Entity
+@Table(name = "style_violations")
+@IdClass(StyleViolationId.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StyleViolation {
+
+    @Id
+    @Column(name = "code_id")
+    private Long codeId;
+
+    @Id
+    private Integer seq; // 在本次分析中的序号 (按 Checkstyle 报告顺序)
+
+    @Column(name = "rule_id", nullable = false, length = 64)
+    private String ruleId; // 规则名，例如 LineLength
+
+    @Column(name = "message_key", length = 64)
+    private String messageKey; // Checkstyle 消息模板的 key，例如 maxLineLen
+
+    @Column(name = "line_no", nullable = false)
+    private int line;
+
+    @Column(name = "column_no", nullable = false)
+    private int column;
+
+    @Column(nullable = false)
+    private byte severity; // SeverityLevel 的序号 (ignore/info/warning/error)
+}
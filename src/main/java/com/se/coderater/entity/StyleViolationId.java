@@ -0,0 +1,15 @@
+package com.se.coderater.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.io.Serializable;
+
+// StyleViolation 的复合主键 (code_id, seq)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StyleViolationId implements Serializable {
+    private Long codeId;
+    private Integer seq;
+}
@@ -1,11 +1,14 @@
 package com.se.coderater.entity;
 
+import com.se.coderater.config.HibernateCacheConfig;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -23,6 +26,8 @@ import java.util.stream.Collectors;
         })
 @Data
 @NoArgsConstructor
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.USERS_REGION) // 每个请求的 JWT 过滤器都会按用户名加载用户
 public class User implements UserDetails { // 实现 UserDetails 接口
 
     @Id
@@ -49,6 +54,7 @@ public class User implements UserDetails { // 实现 UserDetails 接口
     // @ElementCollection 会创建一个独立的表来存储角色
     // FetchType.EAGER 因为 UserDetails 需要立即加载权限
     @ElementCollection(fetch = FetchType.EAGER)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = HibernateCacheConfig.USER_ROLES_REGION)
     @CollectionTable(name = "user_roles", joinColumns = @JoinColumn(name = "user_id"))
     @Column(name = "role")
     private Set<String> roles = new HashSet<>();
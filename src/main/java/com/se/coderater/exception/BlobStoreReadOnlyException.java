@@ -0,0 +1,13 @@
+package com.se.coderater.exception;
+
+/**
+ * 本节点不是 blob 段文件的写入者 (coderater.blobs.writer=false)，却需要写入新的代码内容；
+ * 由 GlobalExceptionHandler 转换为 503，上传、修改和导入应发到可以写入的节点
+ */
+public class BlobStoreReadOnlyException extends RuntimeException {
+
+    public BlobStoreReadOnlyException() {
+        super("This node only reads the blob store (coderater.blobs.writer=false). "
+                + "Send uploads, edits and imports to a node that can write blobs.");
+    }
+}
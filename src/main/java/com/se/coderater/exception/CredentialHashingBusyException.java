@@ -0,0 +1,18 @@
+package com.se.coderater.exception;
+
+/**
+ * 密码哈希线程池已满时抛出，由 GlobalExceptionHandler 转换为 503 + Retry-After
+ */
+public class CredentialHashingBusyException extends RuntimeException {
+
+    private final int retryAfterSeconds;
+
+    public CredentialHashingBusyException(int retryAfterSeconds) {
+        super("Too many concurrent login/registration requests. Please retry later.");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
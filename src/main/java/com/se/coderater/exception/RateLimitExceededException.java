@@ -0,0 +1,18 @@
+package com.se.coderater.exception;
+
+/**
+ * 请求超过了该类接口的速率限制，由 GlobalExceptionHandler 转换为 429 + Retry-After
+ */
+public class RateLimitExceededException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public RateLimitExceededException(String limitName, long retryAfterSeconds) {
+        super("Too many " + limitName + " requests. Please retry in " + retryAfterSeconds + " seconds.");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
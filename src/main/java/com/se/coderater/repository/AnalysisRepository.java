@@ -1,17 +1,60 @@
 package com.se.coderater.repository;
 
+import com.se.coderater.dto.AnalysisExportRow;
+import com.se.coderater.dto.StoredAnalysis;
 import com.se.coderater.entity.Analysis;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface AnalysisRepository extends JpaRepository<Analysis, Long> {
 
     // 根据 Code ID 查找分析结果 (因为 code_id 是唯一的)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true")) // 查询缓存
     Optional<Analysis> findByCodeId(Long codeId);
 
+    // 只读查询：分析结果连同代码所有者和修改时间一起取回 (join codes，但不读取 content)
+    @Query("select new com.se.coderater.dto.StoredAnalysis(a, c.uploader.id, c.uploadedAt) "
+            + "from Analysis a join a.code c where c.id = :codeId")
+    Optional<StoredAnalysis> findStoredByCodeId(@Param("codeId") Long codeId);
+
+    int EXPORT_FETCH_SIZE = 500; // 每次从游标取回的行数
+
+    // 批量导出：按 id 升序的只读游标 (afterId 续传，避免 OFFSET 分页)
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select new com.se.coderater.dto.AnalysisExportRow(a.id, c.id, c.fileName, u.id, u.username, c.uploadedAt, "
+            + "c.classCount, c.methodCount, c.lineCount, a.styleIssueCount, a.cyclomaticComplexity, a.commentRatio, "
+            + "a.commentLineCount, a.nonEmptyLineCount, a.analyzedAt, a.analysisMode) "
+            + "from Analysis a join a.code c join c.uploader u where a.id > :afterId order by a.id")
+    Stream<AnalysisExportRow> streamForExport(@Param("afterId") long afterId, Limit limit);
+
+    // 内容和文件名都相同、并且分析时间不早于其最后修改时间的其它代码的精确分析结果 (用于复用，不读取 content)
+    @Query("select a from Analysis a join a.code c where c.contentHash = :contentHash and c.fileName = :fileName "
+            + "and c.id <> :codeId and a.analyzedAt >= c.uploadedAt "
+            + "and (a.analysisMode is null or a.analysisMode <> com.se.coderater.entity.AnalysisMode.FAST) "
+            + "order by a.analyzedAt desc")
+    List<Analysis> findReusable(@Param("contentHash") String contentHash, @Param("fileName") String fileName,
+                                @Param("codeId") Long codeId, Limit limit);
+
     // 检查是否存在针对某个 Code ID 的分析结果
     boolean existsByCodeId(Long codeId);
+
+    // 删除代码前先删除其分析结果 (批量 DELETE，不加载实体)
+    @Modifying
+    @Query("delete from Analysis a where a.code.id = :codeId")
+    int deleteByCodeIdDirectly(@Param("codeId") Long codeId);
 }
\ No newline at end of file
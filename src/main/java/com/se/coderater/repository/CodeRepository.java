@@ -1,13 +1,68 @@
 package com.se.coderater.repository;
 
+import com.se.coderater.dto.CodeListingStamp;
+import com.se.coderater.dto.CodeVersionStamp;
 import com.se.coderater.entity.Code;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface CodeRepository extends JpaRepository<Code, Long> {
     // 根据上传者ID查找代码列表
     List<Code> findByUploaderId(Long userId); // 我们之前可能已经有这个了
     List<Code> findByUploaderUsername(String username); // 新增：根据用户名查找更方便
+
+    int STREAM_FETCH_SIZE = 200; // 每次从游标取回的行数
+
+    // 流式读取某个用户的全部代码 (/api/code/mycode)：
+    // 按 fetch size 分批从游标取行 (MySQL 需要 useCursorFetch=true)，只读且不写入二级缓存
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")
+    })
+    @Query("select c from Code c where c.uploader.id = :userId order by c.id")
+    Stream<Code> streamByUploaderId(@Param("userId") Long userId);
+
+    long countByUploaderId(Long userId);
+
+    // 所有权校验专用：只取 codes.user_id，不加载 content，也不关联 users 表
+    @Query("select c.uploader.id from Code c where c.id = :codeId")
+    Optional<Long> findUploaderIdById(@Param("codeId") Long codeId);
+
+    // 项目级分析：没有有效精确分析结果 (从未分析、修改后未重新分析、只有快速模式结果) 的代码
+    @Query("select c.id from Code c where c.uploader.id = :userId and not exists ("
+            + "select a.id from Analysis a where a.code = c and a.analyzedAt >= c.uploadedAt "
+            + "and (a.analysisMode is null or a.analysisMode <> com.se.coderater.entity.AnalysisMode.FAST)) "
+            + "order by c.id")
+    List<Long> findStaleCodeIds(@Param("userId") Long userId, Limit limit);
+
+    // 与 findStaleCodeIds 条件相同，只计数 (项目级分析在调度队列中的开销)
+    @Query("select count(c) from Code c where c.uploader.id = :userId and not exists ("
+            + "select a.id from Analysis a where a.code = c and a.analyzedAt >= c.uploadedAt "
+            + "and (a.analysisMode is null or a.analysisMode <> com.se.coderater.entity.AnalysisMode.FAST))")
+    long countStaleCodes(@Param("userId") Long userId);
+
+    // 条件 GET：只取生成 ETag 所需的字段，不读取 content
+    @Query("select new com.se.coderater.dto.CodeVersionStamp(c.id, c.uploader.id, c.contentHash, c.uploadedAt) "
+            + "from Code c where c.id = :codeId")
+    Optional<CodeVersionStamp> findVersionStampById(@Param("codeId") Long codeId);
+
+    @Query("select new com.se.coderater.dto.CodeListingStamp(count(c), max(c.id), sum(c.id), max(c.uploadedAt)) from Code c")
+    CodeListingStamp findListingStamp();
+
+    // 直接按主键删除，不需要先把整行 (含 content) 读进内存
+    @Modifying
+    @Query("delete from Code c where c.id = :codeId")
+    int deleteByIdDirectly(@Param("codeId") Long codeId);
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.se.coderater.repository;
+
+import com.se.coderater.entity.RuleViolationCount;
+import com.se.coderater.entity.RuleViolationCountId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface RuleViolationCountRepository extends JpaRepository<RuleViolationCount, RuleViolationCountId> {
+
+    // 删除代码时一并删除 (批量 DELETE，不加载实体)
+    @Modifying
+    @Query("delete from RuleViolationCount r where r.codeId = :codeId")
+    int deleteByCodeIdDirectly(@Param("codeId") Long codeId);
+}
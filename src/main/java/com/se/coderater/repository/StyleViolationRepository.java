@@ -0,0 +1,23 @@
+package com.se.coderater.repository;
+
+import com.se.coderater.entity.StyleViolation;
+import com.se.coderater.entity.StyleViolationId;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StyleViolationRepository extends JpaRepository<StyleViolation, StyleViolationId> {
+
+    // 按主键顺序分页读取某个代码的违规
+    Page<StyleViolation> findByCodeId(Long codeId, Pageable pageable);
+
+    // 删除代码时一并删除 (批量 DELETE，不加载实体)
+    @Modifying
+    @Query("delete from StyleViolation v where v.codeId = :codeId")
+    int deleteByCodeIdDirectly(@Param("codeId") Long codeId);
+}
@@ -1,15 +1,24 @@
 package com.se.coderater.repository;
 
 import com.se.coderater.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 
     // 根据用户名查找用户 (Spring Security UserDetailsService 会用到)
+    // 走查询缓存：用户名 -> 主键，实体本身再从二级缓存取
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<User> findByUsername(String username);
 
     // 检查用户名是否存在 (用于注册时校验)
@@ -17,4 +26,9 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     // 检查邮箱是否存在 (用于注册时校验)
     Boolean existsByEmail(String email);
+
+    // 批量开户时一次查出所有冲突的用户名/邮箱 (返回 [username, email])
+    @Query("select u.username, u.email from User u where u.username in :usernames or u.email in :emails")
+    List<Object[]> findUsernamesAndEmailsIn(@Param("usernames") Collection<String> usernames,
+                                            @Param("emails") Collection<String> emails);
 }
\ No newline at end of file
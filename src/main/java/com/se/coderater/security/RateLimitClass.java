@@ -0,0 +1,33 @@
+package com.se.coderater.security;
+
+/**
+ * 限流的接口类别。每个类别、每个用户 (未登录时按客户端 IP) 一个令牌桶，
+ * 容量和补充速率由 coderater.ratelimit.<name>.capacity / per-minute 配置，这里是默认值。
+ */
+public enum RateLimitClass {
+    UPLOAD("upload", 20, 30),     // 上传、修改代码
+    ANALYZE("analyze", 10, 20),   // 触发分析 (单个或项目级)
+    LIST("list", 60, 300);        // 代码列表、公开列表、符号搜索
+
+    private final String propertyName;
+    private final int defaultCapacity;
+    private final int defaultPerMinute;
+
+    RateLimitClass(String propertyName, int defaultCapacity, int defaultPerMinute) {
+        this.propertyName = propertyName;
+        this.defaultCapacity = defaultCapacity;
+        this.defaultPerMinute = defaultPerMinute;
+    }
+
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    public int getDefaultCapacity() {
+        return defaultCapacity;
+    }
+
+    public int getDefaultPerMinute() {
+        return defaultPerMinute;
+    }
+}
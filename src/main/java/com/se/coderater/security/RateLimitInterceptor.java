@@ -0,0 +1,51 @@
+package com.se.coderater.security;
+
+import com.se.coderater.entity.User;
+import com.se.coderater.exception.RateLimitExceededException;
+import com.se.coderater.service.RateLimiterService;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对标注了 @RateLimited 的控制器方法限流：已登录用户按 JWT 中的用户 id，未登录时按客户端 IP。
+ * 在 Spring Security 过滤器之后运行，能拿到认证信息；超限时抛出 RateLimitExceededException (429)。
+ */
+@Component
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private final RateLimiterService rateLimiterService;
+
+    public RateLimitInterceptor(RateLimiterService rateLimiterService) {
+        this.rateLimiterService = rateLimiterService;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // 流式响应结束时的 ASYNC 分派会再次经过拦截器，同一个请求只计一次
+        if (request.getDispatcherType() != DispatcherType.REQUEST || !(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        RateLimited rateLimited = handlerMethod.getMethodAnnotation(RateLimited.class);
+        if (rateLimited == null) {
+            return true;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        Object key = authentication != null && authentication.getPrincipal() instanceof User user
+                ? user.getId()
+                : "ip:" + request.getRemoteAddr();
+        long waitNanos = rateLimiterService.tryAcquire(rateLimited.value(), key);
+        if (waitNanos > 0) {
+            long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+            throw new RateLimitExceededException(rateLimited.value().getPropertyName(), retryAfterSeconds);
+        }
+        return true;
+    }
+}
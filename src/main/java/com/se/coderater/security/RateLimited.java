@@ -0,0 +1,15 @@
+package com.se.coderater.security;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标注在控制器方法上：请求先从该类别的令牌桶取一个令牌，取不到时返回 429 (见 RateLimitInterceptor)
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimited {
+    RateLimitClass value();
+}
@@ -0,0 +1,21 @@
+package com.se.coderater.security;
+
+import com.se.coderater.entity.User;
+import org.springframework.security.core.Authentication;
+
+/**
+ * 从认证信息中取出当前用户 ID。
+ * AuthTokenFilter 会把 User 实体设为 principal，这样所有权校验只需比较 ID，不必再查用户表。
+ */
+public final class SecurityUtils {
+
+    private SecurityUtils() {
+    }
+
+    public static Long getUserId(Authentication authentication) {
+        if (authentication != null && authentication.getPrincipal() instanceof User user) {
+            return user.getId();
+        }
+        throw new IllegalStateException("User must be authenticated.");
+    }
+}
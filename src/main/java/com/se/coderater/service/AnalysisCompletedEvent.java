@@ -0,0 +1,61 @@
+package com.se.coderater.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.se.coderater.entity.AnalysisMode;
+
+import java.time.LocalDateTime;
+
+/**
+ * 一次分析结果保存完成 (应用内事件，事务提交后通过 SSE 推送给代码所有者；序列化后即推送的 data)。
+ * 同时记入 analysis_notifications，由其他节点转发给它们的连接
+ */
+public final class AnalysisCompletedEvent {
+
+    private final Long ownerId;
+    private final Long codeId;
+    private final Integer revisionNo;
+    private final Long analysisId;
+    private final AnalysisMode analysisMode;
+    private final LocalDateTime analyzedAt;
+    private final Integer overallScore;
+
+    public AnalysisCompletedEvent(Long ownerId, Long codeId, Integer revisionNo, Long analysisId,
+                                  AnalysisMode analysisMode, LocalDateTime analyzedAt, Integer overallScore) {
+        this.ownerId = ownerId;
+        this.codeId = codeId;
+        this.revisionNo = revisionNo;
+        this.analysisId = analysisId;
+        this.analysisMode = analysisMode;
+        this.analyzedAt = analyzedAt;
+        this.overallScore = overallScore;
+    }
+
+    @JsonIgnore // 只用于路由到所有者的连接
+    public Long getOwnerId() {
+        return ownerId;
+    }
+
+    public Long getCodeId() {
+        return codeId;
+    }
+
+    public Integer getRevisionNo() {
+        return revisionNo;
+    }
+
+    public Long getAnalysisId() {
+        return analysisId;
+    }
+
+    public AnalysisMode getAnalysisMode() {
+        return analysisMode;
+    }
+
+    public LocalDateTime getAnalyzedAt() {
+        return analyzedAt;
+    }
+
+    public Integer getOverallScore() {
+        return overallScore;
+    }
+}
@@ -0,0 +1,427 @@
+package com.se.coderater.service;
+
+import com.se.coderater.entity.AnalysisMode;
+import com.se.coderater.security.SecurityUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分析完成事件的 SSE 推送。
+ * 连接使用 Servlet 异步请求 (SseEmitter)，空闲连接不占用线程；事务提交后把事件放入该用户每个连接的有界队列，
+ * 由少量共享的发送线程写出。队列满 (客户端长时间读不动) 时关闭该连接，由客户端重连后重新拉取状态，
+ * 慢客户端不会让服务端无限堆积事件。定期发送注释行作为心跳，让代理不因空闲断开连接，也能及时发现已断开的连接。
+ * 写出是阻塞的：客户端不读 (TCP 窗口满) 时一次发送会一直占用发送线程，直到容器的写超时。
+ * 发送超过 send-timeout-ms 的连接被移除 (不再接收事件)，并临时为线程池补一个线程，
+ * 被卡住的发送返回后再收回，少数卡住的连接不会挡住其他连接的推送。连接的关闭 (complete) 也在发送线程上进行，
+ * 不会让推送事件或心跳的线程等在一个卡住的发送上。
+ * 多实例部署时分析可能在另一个节点完成 (例如由其他节点的 AnalysisJobWorker 执行)：每次分析在事务中写入一行
+ * analysis_notifications，各节点每 poll-interval-ms 读取最近 poll-window-seconds 内其他节点写入的行，推送给本节点的连接。
+ */
+@Service
+public class AnalysisEventService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisEventService.class);
+
+    static final String EVENT_ANALYSIS_COMPLETED = "analysis-completed";
+
+    private static final String INSERT_NOTIFICATION_SQL = "INSERT INTO analysis_notifications (node_id, owner_id, code_id, "
+            + "revision_no, analysis_id, analysis_mode, analyzed_at, overall_score, created_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, LOCALTIMESTAMP)";
+    private static final String RECENT_NOTIFICATIONS_SQL = "SELECT id, owner_id, code_id, revision_no, analysis_id, "
+            + "analysis_mode, analyzed_at, overall_score FROM analysis_notifications "
+            + "WHERE created_at >= TIMESTAMPADD(SECOND, ?, LOCALTIMESTAMP) AND node_id <> ? ORDER BY id";
+
+    private final ConcurrentMap<Long, Deque<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final ThreadPoolExecutor sender;
+    private final int senderThreads;
+    private int stalledSenders; // 卡在超时发送上的线程数 (受 this 保护)，线程池按此补充线程
+    private final long timeoutMs;
+    private final long sendTimeoutNanos;
+    private final int queueCapacity;
+    private final int maxConnectionsPerUser;
+    private final JdbcTemplate jdbcTemplate;
+    private final String nodeId;
+    private final int pollWindowSeconds;
+    // 上一次读取到的其他节点的行：窗口内的行每次都会读到，只推送不在这里的
+    private Set<Long> seenNotifications = new HashSet<>();
+
+    private final Counter deliveredCounter;
+    private final Counter overflowCounter;
+    private final Counter stalledCounter;
+
+    public AnalysisEventService(MeterRegistry meterRegistry, JdbcTemplate jdbcTemplate,
+                                @Value("${coderater.events.sender-threads:2}") int senderThreads,
+                                @Value("${coderater.events.timeout-ms:1800000}") long timeoutMs,
+                                @Value("${coderater.events.queue-capacity:32}") int queueCapacity,
+                                @Value("${coderater.events.max-connections-per-user:4}") int maxConnectionsPerUser,
+                                @Value("${coderater.events.poll-window-seconds:30}") int pollWindowSeconds,
+                                @Value("${coderater.events.send-timeout-ms:10000}") long sendTimeoutMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.nodeId = ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        this.pollWindowSeconds = pollWindowSeconds;
+        this.timeoutMs = timeoutMs;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        this.queueCapacity = queueCapacity;
+        this.maxConnectionsPerUser = maxConnectionsPerUser;
+        this.senderThreads = senderThreads;
+        AtomicInteger threadIndex = new AtomicInteger();
+        // 无界任务队列 (每个连接同时最多一个任务)，线程数为 core，卡住的发送由 setCorePoolSize 补充
+        this.sender = new ThreadPoolExecutor(senderThreads, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "analysis-events-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("coderater.events.connections", connectionCount, AtomicInteger::get)
+                .description("Open server-sent event connections").register(meterRegistry);
+        this.deliveredCounter = Counter.builder("coderater.events.delivered")
+                .description("Analysis completion events queued for open connections").register(meterRegistry);
+        this.overflowCounter = Counter.builder("coderater.events.overflows")
+                .description("Connections closed because their event buffer was full").register(meterRegistry);
+        this.stalledCounter = Counter.builder("coderater.events.stalled")
+                .description("Connections closed because a send exceeded the send timeout").register(meterRegistry);
+    }
+
+    /**
+     * 为当前登录用户打开一个事件流
+     */
+    public SseEmitter subscribeForCurrentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || "anonymousUser".equals(authentication.getPrincipal())) {
+            throw new IllegalStateException("User must be authenticated to subscribe to analysis events.");
+        }
+        return subscribe(SecurityUtils.getUserId(authentication));
+    }
+
+    /**
+     * 为用户打开一个事件流；该用户的连接数达到上限时关闭最早的连接 (例如刷新页面后残留的旧连接)
+     */
+    public SseEmitter subscribe(Long userId) {
+        return subscribe(userId, new SseEmitter(timeoutMs));
+    }
+
+    SseEmitter subscribe(Long userId, SseEmitter emitter) {
+        Subscription subscription = new Subscription(userId, emitter);
+        emitter.onCompletion(subscription::remove);
+        emitter.onTimeout(subscription::remove);
+        emitter.onError(error -> subscription.remove());
+
+        // compute/computeIfPresent 与 remove 互斥，不会加入一个刚被移出 map 的空队列
+        Deque<Subscription> userSubscriptions = subscriptions.compute(userId, (id, existing) -> {
+            Deque<Subscription> deque = existing != null ? existing : new ConcurrentLinkedDeque<>();
+            deque.addLast(subscription);
+            return deque;
+        });
+        connectionCount.incrementAndGet();
+        while (userSubscriptions.size() > maxConnectionsPerUser) {
+            Subscription oldest = userSubscriptions.pollFirst();
+            if (oldest == null) {
+                break;
+            }
+            oldest.close();
+        }
+        // 立即写出响应头和第一行，客户端据此确认连接已建立
+        subscription.offer(SseEmitter.event().comment("connected").build(), false);
+        return emitter;
+    }
+
+    /**
+     * 在分析的事务中记下事件，供其他节点转发 (随分析一起提交或回滚)
+     */
+    @EventListener
+    public void recordForOtherNodes(AnalysisCompletedEvent event) {
+        jdbcTemplate.update(INSERT_NOTIFICATION_SQL, nodeId, event.getOwnerId(), event.getCodeId(), event.getRevisionNo(),
+                event.getAnalysisId(), event.getAnalysisMode() != null ? event.getAnalysisMode().name() : null,
+                event.getAnalyzedAt() != null ? Timestamp.valueOf(event.getAnalyzedAt()) : null, event.getOverallScore());
+    }
+
+    /**
+     * 分析结果提交后推送给所有者的全部连接 (回滚的分析不会推送)
+     */
+    @TransactionalEventListener
+    public void onAnalysisCompleted(AnalysisCompletedEvent event) {
+        deliver(event);
+    }
+
+    /**
+     * 转发其他节点最近完成的分析 (本节点没有连接时不查询)
+     */
+    @Scheduled(fixedDelayString = "${coderater.events.poll-interval-ms:1000}")
+    public void forwardFromOtherNodes() {
+        if (connectionCount.get() > 0) {
+            pollOtherNodes();
+        }
+    }
+
+    /**
+     * 读取并推送其他节点最近完成的分析。窗口 (poll-window-seconds) 覆盖写入到提交之间的延迟，窗口内的行每次都会读到，
+     * 已推送过的按 id 跳过。返回本次新推送的事件
+     */
+    synchronized List<AnalysisCompletedEvent> pollOtherNodes() {
+        List<AnalysisCompletedEvent> fresh = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        try {
+            jdbcTemplate.query(RECENT_NOTIFICATIONS_SQL, rs -> {
+                long id = rs.getLong("id");
+                seen.add(id);
+                if (seenNotifications.contains(id)) {
+                    return;
+                }
+                String mode = rs.getString("analysis_mode");
+                Timestamp analyzedAt = rs.getTimestamp("analyzed_at");
+                fresh.add(new AnalysisCompletedEvent(rs.getLong("owner_id"), rs.getLong("code_id"),
+                        rs.getObject("revision_no", Integer.class), rs.getObject("analysis_id", Long.class),
+                        mode != null ? AnalysisMode.valueOf(mode) : null,
+                        analyzedAt != null ? analyzedAt.toLocalDateTime() : null,
+                        rs.getObject("overall_score", Integer.class)));
+            }, -pollWindowSeconds, nodeId);
+        } catch (RuntimeException e) {
+            logger.warn("Reading analysis notifications from other nodes failed: {}", e.getMessage());
+            return List.of();
+        }
+        seenNotifications = seen;
+        fresh.forEach(this::deliver);
+        return fresh;
+    }
+
+    /**
+     * 删除超出转发窗口的记录 (每个节点都会执行，重复删除无害)
+     */
+    @Scheduled(fixedDelayString = "${coderater.events.purge-interval-ms:60000}")
+    public void purgeNotifications() {
+        try {
+            jdbcTemplate.update("DELETE FROM analysis_notifications WHERE created_at < TIMESTAMPADD(SECOND, ?, LOCALTIMESTAMP)",
+                    -2 * pollWindowSeconds);
+        } catch (RuntimeException e) {
+            logger.warn("Purging analysis notifications failed: {}", e.getMessage());
+        }
+    }
+
+    private void deliver(AnalysisCompletedEvent event) {
+        Deque<Subscription> userSubscriptions = subscriptions.get(event.getOwnerId());
+        if (userSubscriptions == null || userSubscriptions.isEmpty()) {
+            return;
+        }
+        Set<ResponseBodyEmitter.DataWithMediaType> message = SseEmitter.event()
+                .name(EVENT_ANALYSIS_COMPLETED)
+                .data(event, MediaType.APPLICATION_JSON)
+                .build();
+        for (Subscription subscription : userSubscriptions) {
+            if (subscription.offer(message, false)) {
+                deliveredCounter.increment();
+            }
+        }
+    }
+
+    @Scheduled(fixedRateString = "${coderater.events.heartbeat-interval-ms:15000}")
+    public void sendHeartbeats() {
+        if (connectionCount.get() == 0) {
+            return;
+        }
+        Set<ResponseBodyEmitter.DataWithMediaType> heartbeat = SseEmitter.event().comment("heartbeat").build();
+        for (Deque<Subscription> userSubscriptions : subscriptions.values()) {
+            for (Subscription subscription : userSubscriptions) {
+                subscription.offer(heartbeat, true);
+            }
+        }
+    }
+
+    /**
+     * 移除发送超过 send-timeout-ms 的连接，并为卡住的发送线程补一个线程
+     */
+    @Scheduled(fixedDelayString = "${coderater.events.send-check-interval-ms:1000}")
+    public void checkStalledSends() {
+        long now = System.nanoTime();
+        for (Deque<Subscription> userSubscriptions : subscriptions.values()) {
+            for (Subscription subscription : userSubscriptions) {
+                if (subscription.markStalled(now)) {
+                    stalledCounter.increment();
+                    logger.debug("Closing event stream of user {}: a send has been blocked for over {} ms.",
+                            subscription.userId, TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+                    subscription.remove(); // 卡住的发送返回后由发送线程 complete
+                }
+            }
+        }
+    }
+
+    private synchronized void adjustStalledSenders(int delta) {
+        stalledSenders += delta;
+        sender.setCorePoolSize(senderThreads + stalledSenders); // 变小时多出的线程空闲后退出
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscriptions.values().forEach(userSubscriptions -> userSubscriptions.forEach(Subscription::close));
+        sender.shutdown();
+        try {
+            sender.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sender.shutdownNow();
+    }
+
+    /**
+     * 一个连接：有界发送队列 + 是否已提交发送任务的标志 (同一连接同时最多一个发送任务，保证顺序)
+     */
+    private final class Subscription implements Runnable {
+
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final ArrayBlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> queue;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean removed = new AtomicBoolean();
+        private long sendStartedAt; // 正在进行的发送开始的时间 (System.nanoTime，0 表示没有)，受 this 保护
+        private boolean stalled; // 该发送已被判定超时并补充了线程，受 this 保护
+
+        Subscription(Long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        /**
+         * 放入发送队列；队列已满时心跳直接丢弃，事件则关闭连接。返回是否已放入
+         */
+        boolean offer(Set<ResponseBodyEmitter.DataWithMediaType> message, boolean heartbeat) {
+            if (removed.get()) {
+                return false;
+            }
+            if (!queue.offer(message)) {
+                if (!heartbeat) {
+                    overflowCounter.increment();
+                    logger.debug("Closing event stream of user {}: client is not reading its events.", userId);
+                    close();
+                }
+                return false;
+            }
+            if (scheduled.compareAndSet(false, true)) {
+                sender.execute(this);
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Set<ResponseBodyEmitter.DataWithMediaType> message;
+                while ((message = queue.poll()) != null && !removed.get()) {
+                    send(message);
+                }
+                if (removed.get()) {
+                    completeQuietly(); // 溢出、超时或被挤掉的连接在这里结束，不阻塞调用 close 的线程
+                    return;
+                }
+            } catch (Exception e) { // 客户端已断开 (IOException) 或连接已结束 (IllegalStateException)
+                remove();
+                return;
+            } finally {
+                scheduled.set(false);
+            }
+            // 释放标志之后又有新消息入队 (或连接被 close)，而对方看到的标志仍为 true，由这里重新提交
+            if ((removed.get() || !queue.isEmpty()) && scheduled.compareAndSet(false, true)) {
+                sender.execute(this);
+            }
+        }
+
+        private void send(Set<ResponseBodyEmitter.DataWithMediaType> message) throws Exception {
+            synchronized (this) {
+                sendStartedAt = System.nanoTime();
+            }
+            try {
+                emitter.send(message);
+            } finally {
+                synchronized (this) {
+                    sendStartedAt = 0;
+                    if (stalled) {
+                        stalled = false;
+                        adjustStalledSenders(-1);
+                    }
+                }
+            }
+        }
+
+        /**
+         * 当前发送已超过 send-timeout-ms 时标记为卡住并补充一个发送线程 (每次发送最多一次)，返回是否新标记
+         */
+        synchronized boolean markStalled(long now) {
+            if (sendStartedAt == 0 || stalled || now - sendStartedAt < sendTimeoutNanos) {
+                return false;
+            }
+            stalled = true;
+            adjustStalledSenders(1);
+            return true;
+        }
+
+        /**
+         * 移除连接，由发送线程结束它 (正在发送时等这次发送返回后结束)
+         */
+        void close() {
+            remove();
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    sender.execute(this);
+                } catch (RejectedExecutionException e) { // 正在停机
+                    scheduled.set(false);
+                    completeQuietly();
+                }
+            }
+        }
+
+        private void completeQuietly() {
+            try {
+                emitter.complete();
+            } catch (Exception e) {
+                // 连接已经结束
+            }
+        }
+
+        void remove() {
+            if (!removed.compareAndSet(false, true)) {
+                return;
+            }
+            queue.clear();
+            connectionCount.decrementAndGet();
+            subscriptions.computeIfPresent(userId, (id, userSubscriptions) -> {
+                userSubscriptions.remove(this);
+                return userSubscriptions.isEmpty() ? null : userSubscriptions;
+            });
+        }
+    }
+}
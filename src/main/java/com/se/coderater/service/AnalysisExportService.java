@@ -0,0 +1,72 @@
+package com.se.coderater.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.se.coderater.dto.AnalysisExportRow;
+import com.se.coderater.repository.AnalysisRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * 分析结果批量导出 (NDJSON，每行一个 JSON 对象)。
+ * 按 analysis id 升序从服务端游标逐行读取，使用 afterId 续传而不是 OFFSET 分页；
+ * 行是构造器投影的 DTO，不进入持久化上下文，堆内存占用与导出行数无关。
+ */
+@Service
+public class AnalysisExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisExportService.class);
+
+    private final AnalysisRepository analysisRepository;
+    private final ScoreCalculator scoreCalculator;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter rowWriter;
+
+    public AnalysisExportService(AnalysisRepository analysisRepository, ScoreCalculator scoreCalculator,
+                                 ObjectMapper objectMapper) {
+        this.analysisRepository = analysisRepository;
+        this.scoreCalculator = scoreCalculator;
+        this.objectMapper = objectMapper;
+        this.rowWriter = objectMapper.writerFor(AnalysisExportRow.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * 把 id 大于 afterId 的分析结果写成 NDJSON
+     *
+     * @param limit 最多导出的行数，null 或非正数表示不限制
+     * @return 实际导出的行数
+     */
+    @Transactional(readOnly = true)
+    public long exportNdjson(long afterId, Integer limit, OutputStream out) throws IOException {
+        long startTime = System.nanoTime();
+        long rows = 0;
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null); // 行之间只用换行分隔
+        try (Stream<AnalysisExportRow> stream = analysisRepository.streamForExport(afterId,
+                limit != null && limit > 0 ? Limit.of(limit) : Limit.unlimited())) {
+            Iterator<AnalysisExportRow> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                AnalysisExportRow row = iterator.next();
+                scoreCalculator.applyScores(row);
+                rowWriter.writeValue(generator, row);
+                generator.writeRaw('\n');
+                rows++;
+            }
+        }
+        generator.flush();
+        logger.info("Exported {} analyses after id {} in {} ms", rows, afterId, (System.nanoTime() - startTime) / 1_000_000);
+        return rows;
+    }
+}
@@ -0,0 +1,464 @@
+package com.se.coderater.service;
+
+import com.se.coderater.dto.AnalysisJobDTO;
+import com.se.coderater.entity.AnalysisJobStatus;
+import com.se.coderater.entity.AnalysisMode;
+import com.se.coderater.repository.CodeRepository;
+import com.se.coderater.security.SecurityUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 持久化的分析任务队列 (analysis_jobs)，多个节点共用一个数据库即可横向扩展分析能力。
+ * <p>
+ * 领取：SELECT ... FOR UPDATE SKIP LOCKED 锁住一批可执行的任务 (到期的 PENDING，或租约已过期的 RUNNING)，
+ * 其他节点同时领取时跳过已被锁住的行而不是等待，然后把这批任务改为 RUNNING，写入节点 id 和租约到期时间。
+ * 执行中的节点定期续约；节点崩溃或失联后租约过期，任务被其他节点重新领取 (分析结果是覆盖写，重复执行无害)。
+ * <p>
+ * 完成、失败、续约都以 (id, lease_owner, attempts) 作为条件，租约已被其他节点接手后旧节点的写入不生效。
+ * 失败后按 base * 2^(attempts-1) 退避 (不超过 max-backoff) 重新排队，attempts 达到 max_attempts 或错误不可重试时进入 DEAD。
+ * 所有时间都取数据库的 LOCALTIMESTAMP，不依赖各节点的时钟。
+ * <p>
+ * 排队中和执行中的任务带唯一的 active_key (代码 id + 模式)，同一代码同一模式最多只有一个活动任务；
+ * 完成和进入 DEAD 的任务保留 retention-days 天供查询，之后由 purgeFinished 删除。
+ */
+@Service
+public class AnalysisJobService {
+
+    private static final String ACTIVE = "('PENDING', 'RUNNING')";
+    // 与 activeKey(codeId, mode) 相同的 SQL 表达式
+    private static final String ACTIVE_KEY_EXPRESSION = "CONCAT(code_id, ':', analysis_mode)";
+    private static final String JOB_COLUMNS = "id, code_id, analysis_mode, status, attempts, max_attempts, run_after, "
+            + "last_error, analysis_id, created_at, finished_at";
+
+    private static final String INSERT_SQL = "INSERT INTO analysis_jobs (code_id, user_id, analysis_mode, status, "
+            + "attempts, max_attempts, run_after, active_key, created_at, updated_at) "
+            + "VALUES (?, ?, ?, 'PENDING', 0, ?, LOCALTIMESTAMP, ?, LOCALTIMESTAMP, LOCALTIMESTAMP)";
+    private static final String CLAIM_COLUMNS = "SELECT id, code_id, user_id, analysis_mode, status, attempts, "
+            + "max_attempts FROM analysis_jobs ";
+    // 两个查询分别走 (status, lease_expires_at) 和 (status, run_after) 索引；OR 在一个查询里会退化为扫描
+    private static final String CLAIM_EXPIRED_SQL = CLAIM_COLUMNS
+            + "WHERE status = 'RUNNING' AND lease_expires_at < LOCALTIMESTAMP "
+            + "ORDER BY lease_expires_at, id LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String CLAIM_PENDING_SQL = CLAIM_COLUMNS
+            + "WHERE status = 'PENDING' AND run_after <= LOCALTIMESTAMP "
+            + "ORDER BY run_after, id LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String CLAIM_UPDATE_SQL = "UPDATE analysis_jobs SET status = 'RUNNING', "
+            + "attempts = attempts + 1, lease_owner = :owner, "
+            + "lease_expires_at = TIMESTAMPADD(SECOND, :leaseSeconds, LOCALTIMESTAMP), updated_at = LOCALTIMESTAMP "
+            + "WHERE id IN (:ids)";
+    private static final String EXPIRE_SQL = "UPDATE analysis_jobs SET status = 'DEAD', lease_owner = NULL, "
+            + "lease_expires_at = NULL, active_key = NULL, last_error = :error, updated_at = LOCALTIMESTAMP, finished_at = LOCALTIMESTAMP "
+            + "WHERE id IN (:ids)";
+    private static final String OWNED = " WHERE id = ? AND lease_owner = ? AND attempts = ? AND status = 'RUNNING'";
+    private static final String COMPLETE_SQL = "UPDATE analysis_jobs SET status = 'SUCCEEDED', analysis_id = ?, "
+            + "active_key = NULL, lease_owner = NULL, lease_expires_at = NULL, updated_at = LOCALTIMESTAMP, finished_at = LOCALTIMESTAMP" + OWNED;
+    private static final String RETRY_SQL = "UPDATE analysis_jobs SET status = 'PENDING', last_error = ?, "
+            + "run_after = TIMESTAMPADD(SECOND, ?, LOCALTIMESTAMP), lease_owner = NULL, lease_expires_at = NULL, "
+            + "updated_at = LOCALTIMESTAMP" + OWNED;
+    private static final String DEAD_SQL = "UPDATE analysis_jobs SET status = 'DEAD', last_error = ?, "
+            + "active_key = NULL, lease_owner = NULL, lease_expires_at = NULL, updated_at = LOCALTIMESTAMP, finished_at = LOCALTIMESTAMP" + OWNED;
+    private static final String EXTEND_SQL = "UPDATE analysis_jobs SET "
+            + "lease_expires_at = TIMESTAMPADD(SECOND, :leaseSeconds, LOCALTIMESTAMP), updated_at = LOCALTIMESTAMP "
+            + "WHERE id IN (:ids) AND lease_owner = :owner AND status = 'RUNNING'";
+    // 正常停机时交还未完成的任务：这次领取不计入重试次数
+    private static final String RELEASE_SQL = "UPDATE analysis_jobs SET status = 'PENDING', attempts = attempts - 1, "
+            + "run_after = LOCALTIMESTAMP, lease_owner = NULL, lease_expires_at = NULL, updated_at = LOCALTIMESTAMP "
+            + "WHERE id IN (:ids) AND lease_owner = :owner AND status = 'RUNNING'";
+    private static final String PURGE_SQL = "DELETE FROM analysis_jobs WHERE status IN ('SUCCEEDED', 'DEAD') "
+            + "AND finished_at < TIMESTAMPADD(DAY, ?, LOCALTIMESTAMP) LIMIT ?";
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final int PURGE_BATCH_SIZE = 1000;
+
+    /**
+     * 领取到的一个任务 (attempts 为包括本次在内的领取次数，与 lease_owner 一起作为后续写入的条件)
+     */
+    public static final class ClaimedJob {
+        private final long id;
+        private final long codeId;
+        private final long userId;
+        private final AnalysisMode mode;
+        private final int attempts;
+        private final int maxAttempts;
+
+        ClaimedJob(long id, long codeId, long userId, AnalysisMode mode, int attempts, int maxAttempts) {
+            this.id = id;
+            this.codeId = codeId;
+            this.userId = userId;
+            this.mode = mode;
+            this.attempts = attempts;
+            this.maxAttempts = maxAttempts;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public long getCodeId() {
+            return codeId;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public AnalysisMode getMode() {
+            return mode;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final CodeRepository codeRepository;
+    private final int maxAttempts;
+    private final int maxEnqueue;
+    private final long backoffBaseSeconds;
+    private final long backoffMaxSeconds;
+    private final int retentionDays;
+
+    public AnalysisJobService(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate,
+                              CodeRepository codeRepository,
+                              @Value("${coderater.jobs.max-attempts:5}") int maxAttempts,
+                              @Value("${coderater.jobs.max-enqueue:500}") int maxEnqueue,
+                              @Value("${coderater.jobs.backoff-base-seconds:5}") long backoffBaseSeconds,
+                              @Value("${coderater.jobs.backoff-max-seconds:600}") long backoffMaxSeconds,
+                              @Value("${coderater.jobs.retention-days:7}") int retentionDays) {
+        if (maxAttempts < 1 || maxEnqueue < 1 || backoffBaseSeconds < 1 || backoffMaxSeconds < backoffBaseSeconds
+                || retentionDays < 1) {
+            throw new IllegalArgumentException("coderater.jobs.max-attempts, max-enqueue, backoff-base-seconds and "
+                    + "retention-days must be at least 1, backoff-max-seconds at least backoff-base-seconds");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.codeRepository = codeRepository;
+        this.maxAttempts = maxAttempts;
+        this.maxEnqueue = maxEnqueue;
+        this.backoffBaseSeconds = backoffBaseSeconds;
+        this.backoffMaxSeconds = backoffMaxSeconds;
+        this.retentionDays = retentionDays;
+    }
+
+    /**
+     * 为当前用户的代码提交分析任务；codeIds 为空时提交所有需要重新分析的代码 (与项目级分析的选择条件相同)。
+     * 已有排队中或执行中的同模式任务的代码不重复提交，返回已有的任务
+     * (active_key 唯一索引保证多个节点同时提交时也只有一个活动任务)。
+     *
+     * @throws IllegalArgumentException 代码不存在或数量超过 max-enqueue
+     * @throws AccessDeniedException    包含其他用户的代码
+     */
+    @Transactional
+    public List<AnalysisJobDTO> enqueueForCurrentUser(List<Long> codeIds, AnalysisMode mode) {
+        Long userId = currentUserId("User must be authenticated to submit analysis jobs.");
+        List<Long> ids;
+        if (codeIds == null || codeIds.isEmpty()) {
+            ids = codeRepository.findStaleCodeIds(userId, Limit.of(maxEnqueue));
+        } else {
+            ids = new ArrayList<>(new LinkedHashSet<>(codeIds));
+            if (ids.size() > maxEnqueue) {
+                throw new IllegalArgumentException("At most " + maxEnqueue + " codes can be submitted at once.");
+            }
+            checkOwnership(userId, ids);
+        }
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource("userId", userId)
+                .addValue("codeIds", ids).addValue("mode", mode.name());
+        Map<Long, Long> jobIdByCode = new HashMap<>();
+        namedJdbcTemplate.query("SELECT id, code_id FROM analysis_jobs WHERE user_id = :userId "
+                + "AND code_id IN (:codeIds) AND analysis_mode = :mode AND status IN " + ACTIVE, params,
+                rs -> {
+                    jobIdByCode.putIfAbsent(rs.getLong("code_id"), rs.getLong("id"));
+                });
+        for (Long codeId : ids) {
+            if (!jobIdByCode.containsKey(codeId)) {
+                jobIdByCode.put(codeId, insertOrFindActive(codeId, userId, mode));
+            }
+        }
+        return namedJdbcTemplate.query("SELECT " + JOB_COLUMNS + " FROM analysis_jobs WHERE id IN (:ids) ORDER BY id",
+                new MapSqlParameterSource("ids", jobIdByCode.values()), JOB_ROW_MAPPER);
+    }
+
+    /**
+     * @throws IllegalArgumentException 任务不存在
+     * @throws AccessDeniedException    不是当前用户提交的任务
+     */
+    @Transactional(readOnly = true)
+    public AnalysisJobDTO getJobForCurrentUser(Long jobId) {
+        Long userId = currentUserId("User must be authenticated to view analysis jobs.");
+        checkJobOwner(userId, jobId);
+        return jdbcTemplate.queryForObject("SELECT " + JOB_COLUMNS + " FROM analysis_jobs WHERE id = ?",
+                JOB_ROW_MAPPER, jobId);
+    }
+
+    /**
+     * 当前用户最近的任务 (按 id 倒序，status 为 null 时不过滤)
+     */
+    @Transactional(readOnly = true)
+    public List<AnalysisJobDTO> listJobsForCurrentUser(AnalysisJobStatus status, int limit) {
+        Long userId = currentUserId("User must be authenticated to view analysis jobs.");
+        int rows = Math.max(1, Math.min(limit, maxEnqueue));
+        if (status == null) {
+            return jdbcTemplate.query("SELECT " + JOB_COLUMNS + " FROM analysis_jobs WHERE user_id = ? "
+                    + "ORDER BY id DESC LIMIT ?", JOB_ROW_MAPPER, userId, rows);
+        }
+        return jdbcTemplate.query("SELECT " + JOB_COLUMNS + " FROM analysis_jobs WHERE user_id = ? AND status = ? "
+                + "ORDER BY id DESC LIMIT ?", JOB_ROW_MAPPER, userId, status.name(), rows);
+    }
+
+    /**
+     * 把 DEAD 任务重新排队 (重试次数清零)。同一代码和模式此时已有排队中或执行中的任务时不重新排队，返回那个任务。
+     *
+     * @return 任务不是 DEAD 状态时返回 Optional.empty()
+     */
+    @Transactional
+    public Optional<AnalysisJobDTO> retryForCurrentUser(Long jobId) {
+        Long userId = currentUserId("User must be authenticated to retry analysis jobs.");
+        checkJobOwner(userId, jobId);
+        long resultId = jobId;
+        try {
+            int updated = jdbcTemplate.update("UPDATE analysis_jobs SET status = 'PENDING', attempts = 0, "
+                    + "active_key = " + ACTIVE_KEY_EXPRESSION + ", run_after = LOCALTIMESTAMP, finished_at = NULL, "
+                    + "updated_at = LOCALTIMESTAMP WHERE id = ? AND status = 'DEAD'", jobId);
+            if (updated == 0) {
+                return Optional.empty();
+            }
+        } catch (DuplicateKeyException e) {
+            resultId = jdbcTemplate.queryForObject("SELECT j.id FROM analysis_jobs j JOIN analysis_jobs dead "
+                    + "ON j.code_id = dead.code_id AND j.analysis_mode = dead.analysis_mode "
+                    + "WHERE dead.id = ? AND j.status IN " + ACTIVE, Long.class, jobId);
+        }
+        return Optional.ofNullable(jdbcTemplate.queryForObject("SELECT " + JOB_COLUMNS + " FROM analysis_jobs WHERE id = ?",
+                JOB_ROW_MAPPER, resultId));
+    }
+
+    /**
+     * 领取最多 max 个任务，租约 leaseSeconds 秒。
+     * 已用完重试次数且租约过期的任务 (执行节点在最后一次尝试中崩溃) 在这里转为 DEAD，不再领取。
+     */
+    @Transactional
+    public List<ClaimedJob> claim(String owner, int max, long leaseSeconds) {
+        List<ClaimedJob> claimed = new ArrayList<>();
+        List<Long> expired = new ArrayList<>();
+        RowCallbackHandler collector = rs -> {
+            int attempts = rs.getInt("attempts");
+            int jobMaxAttempts = rs.getInt("max_attempts");
+            if ("RUNNING".equals(rs.getString("status")) && attempts >= jobMaxAttempts) {
+                expired.add(rs.getLong("id"));
+                return;
+            }
+            claimed.add(new ClaimedJob(rs.getLong("id"), rs.getLong("code_id"), rs.getLong("user_id"),
+                    AnalysisMode.valueOf(rs.getString("analysis_mode")), attempts + 1, jobMaxAttempts));
+        };
+        // 先接手租约过期的任务 (它们等待得更久)，剩余名额再领取排队中的任务
+        jdbcTemplate.query(CLAIM_EXPIRED_SQL, collector, max);
+        if (claimed.size() < max) {
+            jdbcTemplate.query(CLAIM_PENDING_SQL, collector, max - claimed.size());
+        }
+
+        if (!expired.isEmpty()) {
+            namedJdbcTemplate.update(EXPIRE_SQL, new MapSqlParameterSource("ids", expired)
+                    .addValue("error", "Lease expired during the last attempt (worker node lost)."));
+        }
+        if (!claimed.isEmpty()) {
+            namedJdbcTemplate.update(CLAIM_UPDATE_SQL, new MapSqlParameterSource("ids", idsOf(claimed))
+                    .addValue("owner", owner).addValue("leaseSeconds", leaseSeconds));
+        }
+        return claimed;
+    }
+
+    /**
+     * @return false 表示租约已经不属于 owner (任务已被其他节点接手)，结果没有记录
+     */
+    @Transactional
+    public boolean complete(ClaimedJob job, String owner, Long analysisId) {
+        return jdbcTemplate.update(COMPLETE_SQL, analysisId, job.getId(), owner, job.getAttempts()) > 0;
+    }
+
+    /**
+     * 记录一次失败：可重试且还有重试次数时退避后重新排队，否则进入 DEAD。
+     *
+     * @return 任务的新状态 (PENDING 或 DEAD)；租约已不属于 owner 时返回 null
+     */
+    @Transactional
+    public AnalysisJobStatus fail(ClaimedJob job, String owner, String error, boolean retryable) {
+        String message = error == null ? "Unknown error" : error;
+        if (message.length() > MAX_ERROR_LENGTH) {
+            message = message.substring(0, MAX_ERROR_LENGTH);
+        }
+        if (retryable && job.getAttempts() < job.getMaxAttempts()) {
+            int updated = jdbcTemplate.update(RETRY_SQL, message, backoffSeconds(job.getAttempts()),
+                    job.getId(), owner, job.getAttempts());
+            return updated > 0 ? AnalysisJobStatus.PENDING : null;
+        }
+        int updated = jdbcTemplate.update(DEAD_SQL, message, job.getId(), owner, job.getAttempts());
+        return updated > 0 ? AnalysisJobStatus.DEAD : null;
+    }
+
+    /**
+     * 为 owner 仍持有的任务续约
+     */
+    @Transactional
+    public int extendLeases(String owner, Collection<Long> jobIds, long leaseSeconds) {
+        if (jobIds.isEmpty()) {
+            return 0;
+        }
+        return namedJdbcTemplate.update(EXTEND_SQL, new MapSqlParameterSource("ids", jobIds)
+                .addValue("owner", owner).addValue("leaseSeconds", leaseSeconds));
+    }
+
+    /**
+     * 停机时交还尚未完成的任务，其他节点可以立即领取
+     */
+    @Transactional
+    public int release(String owner, Collection<Long> jobIds) {
+        if (jobIds.isEmpty()) {
+            return 0;
+        }
+        return namedJdbcTemplate.update(RELEASE_SQL, new MapSqlParameterSource("ids", jobIds).addValue("owner", owner));
+    }
+
+    /**
+     * 删除完成时间早于 retention-days 的 SUCCEEDED / DEAD 任务 (分批删除，每批一个短事务)，返回删除的行数
+     */
+    public int purgeFinished() {
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(PURGE_SQL, -retentionDays, PURGE_BATCH_SIZE);
+            total += deleted;
+        } while (deleted == PURGE_BATCH_SIZE);
+        return total;
+    }
+
+    @Transactional(readOnly = true)
+    public long countPending() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM analysis_jobs WHERE status = 'PENDING'", Long.class);
+        return count == null ? 0 : count;
+    }
+
+    long backoffSeconds(int attempts) {
+        int exponent = Math.min(attempts - 1, 30);
+        return Math.min(backoffMaxSeconds, backoffBaseSeconds << exponent);
+    }
+
+    private long insertOrFindActive(Long codeId, Long userId, AnalysisMode mode) {
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        try {
+            jdbcTemplate.update(connection -> {
+                PreparedStatement statement = connection.prepareStatement(INSERT_SQL, new String[]{"id"});
+                statement.setLong(1, codeId);
+                statement.setLong(2, userId);
+                statement.setString(3, mode.name());
+                statement.setInt(4, maxAttempts);
+                statement.setString(5, activeKey(codeId, mode));
+                return statement;
+            }, keyHolder);
+        } catch (DuplicateKeyException e) { // 其他请求或节点刚刚提交了同一个任务
+            return jdbcTemplate.queryForObject("SELECT id FROM analysis_jobs WHERE active_key = ?", Long.class,
+                    activeKey(codeId, mode));
+        }
+        return keyHolder.getKey().longValue();
+    }
+
+    /**
+     * 排队中和执行中的任务的 active_key (唯一)，完成或进入 DEAD 时置为 NULL
+     */
+    static String activeKey(long codeId, AnalysisMode mode) {
+        return codeId + ":" + mode.name();
+    }
+
+    private void checkOwnership(Long userId, List<Long> codeIds) {
+        Map<Long, Long> ownerByCode = new HashMap<>();
+        namedJdbcTemplate.query("SELECT id, user_id FROM codes WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", codeIds),
+                rs -> {
+                    ownerByCode.put(rs.getLong("id"), rs.getLong("user_id"));
+                });
+        for (Long codeId : codeIds) {
+            Long ownerId = ownerByCode.get(codeId);
+            if (ownerId == null) {
+                throw new IllegalArgumentException("Code not found with id: " + codeId);
+            }
+            if (!ownerId.equals(userId)) {
+                throw new AccessDeniedException("You do not have permission to analyze this code.");
+            }
+        }
+    }
+
+    private void checkJobOwner(Long userId, Long jobId) {
+        List<Long> owners = jdbcTemplate.queryForList("SELECT user_id FROM analysis_jobs WHERE id = ?", Long.class, jobId);
+        if (owners.isEmpty()) {
+            throw new IllegalArgumentException("Analysis job not found with id: " + jobId);
+        }
+        if (!owners.get(0).equals(userId)) {
+            throw new AccessDeniedException("You do not have permission to view this analysis job.");
+        }
+    }
+
+    private static Long currentUserId(String message) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || "anonymousUser".equals(authentication.getPrincipal())) {
+            throw new IllegalStateException(message);
+        }
+        return SecurityUtils.getUserId(authentication);
+    }
+
+    private static List<Long> idsOf(List<ClaimedJob> jobs) {
+        List<Long> ids = new ArrayList<>(jobs.size());
+        for (ClaimedJob job : jobs) {
+            ids.add(job.getId());
+        }
+        return ids;
+    }
+
+    private static final RowMapper<AnalysisJobDTO> JOB_ROW_MAPPER = (rs, rowNum) -> {
+        AnalysisJobDTO job = new AnalysisJobDTO();
+        job.setId(rs.getLong("id"));
+        job.setCodeId(rs.getLong("code_id"));
+        job.setAnalysisMode(AnalysisMode.valueOf(rs.getString("analysis_mode")));
+        job.setStatus(AnalysisJobStatus.valueOf(rs.getString("status")));
+        job.setAttempts(rs.getInt("attempts"));
+        job.setMaxAttempts(rs.getInt("max_attempts"));
+        job.setRunAfter(rs.getTimestamp("run_after").toLocalDateTime());
+        job.setLastError(rs.getString("last_error"));
+        long analysisId = rs.getLong("analysis_id");
+        job.setAnalysisId(rs.wasNull() ? null : analysisId);
+        job.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        Timestamp finishedAt = rs.getTimestamp("finished_at");
+        job.setFinishedAt(finishedAt != null ? finishedAt.toLocalDateTime() : null);
+        return job;
+    };
+}
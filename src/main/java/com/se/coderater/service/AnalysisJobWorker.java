@@ -0,0 +1,279 @@
+package com.se.coderater.service;
+
+import com.github.javaparser.ParseProblemException;
+import com.se.coderater.entity.Analysis;
+import com.se.coderater.entity.AnalysisJobStatus;
+import com.se.coderater.entity.User;
+import com.se.coderater.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 每个节点上的分析任务执行者：一个轮询线程从 analysis_jobs 领取任务 (最多领取空闲名额那么多)，
+ * 以提交者的身份交给本节点的 AnalysisScheduler 按 BULK 优先级执行，与交互式分析共用工作线程和公平调度。
+ * 队列为空时每 poll-interval-ms 查询一次；执行中的任务每 heartbeat-interval-ms 续约一次。
+ * 多个节点连接同一个数据库即可分摊任务，节点之间不需要其他协调。
+ */
+@Service
+public class AnalysisJobWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisJobWorker.class);
+
+    private final AnalysisJobService jobService;
+    private final AnalysisService analysisService;
+    private final AnalysisScheduler analysisScheduler;
+    private final UserRepository userRepository;
+    private final boolean enabled;
+    private final int concurrency;
+    private final long leaseSeconds;
+    private final long pollIntervalMs;
+    private final String nodeId;
+
+    private final Object lock = new Object();
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private volatile boolean stopped;
+    private Thread poller;
+
+    private final Timer claimTimer;
+    private final Map<String, Counter> resultCounters = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    public AnalysisJobWorker(AnalysisJobService jobService, AnalysisService analysisService,
+                             AnalysisScheduler analysisScheduler, UserRepository userRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${coderater.jobs.worker.enabled:true}") boolean enabled,
+                             @Value("${coderater.jobs.worker.concurrency:0}") int concurrency,
+                             @Value("${coderater.jobs.lease-seconds:60}") long leaseSeconds,
+                             @Value("${coderater.jobs.worker.poll-interval-ms:1000}") long pollIntervalMs) {
+        this.jobService = jobService;
+        this.analysisService = analysisService;
+        this.analysisScheduler = analysisScheduler;
+        this.userRepository = userRepository;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        // 默认与调度器中 BULK 可用的线程数一致，领取的任务不会在本地排队太久
+        this.concurrency = concurrency > 0 ? concurrency : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        this.leaseSeconds = leaseSeconds;
+        this.pollIntervalMs = pollIntervalMs;
+        // 进程名 (pid@host) 加随机后缀：同一台机器上的多个实例、重启后的同一实例都是不同的租约持有者
+        this.nodeId = ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+        this.claimTimer = Timer.builder("coderater.jobs.claim")
+                .description("Time to claim a batch of analysis jobs from the shared table").register(meterRegistry);
+        Gauge.builder("coderater.jobs.inflight", inFlight, Set::size)
+                .description("Analysis jobs claimed by this node and not yet finished").register(meterRegistry);
+        Gauge.builder("coderater.jobs.pending", jobService, AnalysisJobService::countPending)
+                .description("Analysis jobs waiting in the shared table (all nodes)").register(meterRegistry);
+    }
+
+    /**
+     * 应用完全启动后才开始领取任务
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            logger.info("Analysis job worker disabled on this node.");
+            return;
+        }
+        poller = new Thread(this::pollLoop, "analysis-job-poller");
+        poller.setDaemon(true);
+        poller.start();
+        logger.info("Analysis job worker {} started (concurrency {}).", nodeId, concurrency);
+    }
+
+    private void pollLoop() {
+        while (!stopped) {
+            int free;
+            synchronized (lock) {
+                while (!stopped && inFlight.size() >= concurrency) {
+                    waitQuietly(0);
+                }
+                free = concurrency - inFlight.size();
+            }
+            if (stopped) {
+                return;
+            }
+            List<AnalysisJobService.ClaimedJob> jobs;
+            try {
+                jobs = claimTimer.recordCallable(() -> jobService.claim(nodeId, free, leaseSeconds));
+            } catch (Exception e) {
+                logger.warn("Claiming analysis jobs failed: {}", e.getMessage());
+                jobs = List.of();
+            }
+            for (AnalysisJobService.ClaimedJob job : jobs) {
+                try {
+                    dispatch(job);
+                } catch (RuntimeException e) { // 租约到期后任务会被重新领取
+                    inFlight.remove(job.getId());
+                    logger.warn("Dispatching analysis job {} failed: {}", job.getId(), e.getMessage());
+                }
+            }
+            if (jobs.size() < free) { // 没有更多可执行的任务，等下一次轮询
+                synchronized (lock) {
+                    if (!stopped) {
+                        waitQuietly(pollIntervalMs);
+                    }
+                }
+            }
+        }
+    }
+
+    private void dispatch(AnalysisJobService.ClaimedJob job) {
+        User user = userRepository.findById(job.getUserId()).orElse(null);
+        if (user == null) {
+            finish(job, jobService.fail(job, nodeId, "User no longer exists.", false));
+            return;
+        }
+        inFlight.add(job.getId());
+        // 与 AuthTokenFilter 相同的认证信息，调度器把它带到工作线程上，服务层的所有权校验照常生效
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+        SecurityContextHolder.setContext(context);
+        try {
+            analysisScheduler.submitForCurrentUser(AnalysisPriority.BULK, 1, () -> {
+                execute(job);
+                return null;
+            });
+        } catch (IllegalStateException e) { // 调度器已关闭 (正在停机)，交还任务
+            inFlight.remove(job.getId());
+            jobService.release(nodeId, List.of(job.getId()));
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private void execute(AnalysisJobService.ClaimedJob job) {
+        AnalysisJobStatus status = null;
+        try {
+            try {
+                Analysis analysis = analysisService.analyzeCode(job.getCodeId(), job.getMode());
+                status = jobService.complete(job, nodeId, analysis.getId()) ? AnalysisJobStatus.SUCCEEDED : null;
+            } catch (IllegalArgumentException | AccessDeniedException | ParseProblemException e) {
+                // 代码已删除、所有者变化、语法错误：重试也不会成功
+                status = jobService.fail(job, nodeId, e.getMessage(), false);
+            } catch (Exception e) {
+                logger.warn("Analysis job {} (code {}) failed on attempt {}: {}",
+                        job.getId(), job.getCodeId(), job.getAttempts(), e.toString());
+                status = jobService.fail(job, nodeId, e.toString(), true);
+            }
+        } catch (RuntimeException e) { // 写回状态失败 (例如数据库不可用)：租约到期后任务会被重新领取
+            logger.warn("Recording the result of analysis job {} failed: {}", job.getId(), e.getMessage());
+            status = null;
+        } finally {
+            inFlight.remove(job.getId());
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+            finish(job, status);
+        }
+    }
+
+    private void finish(AnalysisJobService.ClaimedJob job, AnalysisJobStatus status) {
+        String result;
+        if (status == null) {
+            result = "lost"; // 租约已被其他节点接手，本次结果没有记录
+        } else if (status == AnalysisJobStatus.PENDING) {
+            result = "retried";
+        } else {
+            result = status.name().toLowerCase();
+        }
+        if (status == AnalysisJobStatus.DEAD) {
+            logger.warn("Analysis job {} (code {}) moved to the dead-letter state after {} attempt(s).",
+                    job.getId(), job.getCodeId(), job.getAttempts());
+        }
+        resultCounters.computeIfAbsent(result, key -> Counter.builder("coderater.jobs.completed").tag("result", key)
+                .description("Analysis jobs finished by this node, by outcome").register(meterRegistry)).increment();
+    }
+
+    /**
+     * 为本节点执行中的任务续约；续约间隔应明显短于租约时长 (默认 15 秒 / 60 秒)
+     */
+    @Scheduled(fixedDelayString = "${coderater.jobs.worker.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        if (inFlight.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(inFlight);
+        try {
+            int extended = jobService.extendLeases(nodeId, ids, leaseSeconds);
+            if (extended < ids.size()) {
+                logger.debug("{} of {} analysis job leases were no longer held by {}.", ids.size() - extended, ids.size(), nodeId);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Extending analysis job leases failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 删除超过保留期的已完成任务 (每个节点都会执行，重复删除无害)
+     */
+    @Scheduled(initialDelayString = "${coderater.jobs.purge-interval-ms:3600000}",
+            fixedDelayString = "${coderater.jobs.purge-interval-ms:3600000}")
+    public void purgeFinished() {
+        try {
+            int purged = jobService.purgeFinished();
+            if (purged > 0) {
+                logger.info("Purged {} finished analysis job(s) past the retention period.", purged);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Purging finished analysis jobs failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 停止领取，并交还还没执行完的任务 (AnalysisScheduler 在本 bean 之后关闭，任务不会再有结果写回)
+     */
+    @PreDestroy
+    public void shutdown() {
+        synchronized (lock) {
+            stopped = true;
+            lock.notifyAll();
+        }
+        if (poller != null) {
+            try {
+                poller.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<Long> ids = new ArrayList<>(inFlight);
+        if (!ids.isEmpty()) {
+            try {
+                logger.info("Releasing {} unfinished analysis job(s) held by {}.", jobService.release(nodeId, ids), nodeId);
+            } catch (RuntimeException e) {
+                logger.warn("Releasing analysis jobs failed, their leases will expire instead: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void waitQuietly(long timeoutMs) {
+        try {
+            lock.wait(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopped = true;
+        }
+    }
+}
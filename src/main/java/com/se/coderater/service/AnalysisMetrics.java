@@ -0,0 +1,140 @@
+package com.se.coderater.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 代码分析的各阶段指标 (通过 /actuator/prometheus 导出)。
+ * 每个阶段的耗时带 phase 和 sizeBucket 两个标签，可以按文件大小分桶对 p99 告警。
+ */
+@Component
+public class AnalysisMetrics {
+
+    // 分析阶段 (phase 标签的取值)
+    public static final String PHASE_CHECKSTYLE = "checkstyle";
+    public static final String PHASE_PARSE = "parse";
+    public static final String PHASE_COMPLEXITY = "complexity";
+    public static final String PHASE_COMMENTS = "comments";
+    public static final String PHASE_LEXICAL = "lexical"; // 快速模式的单遍词法扫描 (代替 checkstyle/parse/complexity/comments)
+    public static final String PHASE_SCORING = "scoring";
+    public static final String PHASE_PERSISTENCE = "persistence";
+
+    // 整次分析的结果 (outcome 标签的取值)
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_FAILURE = "failure";
+    public static final String OUTCOME_REUSED = "reused"; // 复用了内容相同的代码的分析结果
+
+    // 项目级分析中各文件的去向
+    public static final String PROJECT_CHECKED = "checked";       // Checkstyle 实际检查
+    public static final String PROJECT_CACHED = "cached";         // Checkstyle 缓存命中而跳过
+    public static final String PROJECT_REUSED = "reused";         // 复用了内容相同的代码的分析结果
+    public static final String PROJECT_UP_TO_DATE = "up_to_date"; // 已有有效结果，没有处理
+
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter issuesFound;
+    private final Counter bytesAnalyzed;
+    private final DistributionSummary issuesPerFile;
+    private final DistributionSummary fileSize;
+
+    public AnalysisMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.issuesFound = Counter.builder("coderater.analysis.issues.found")
+                .description("Checkstyle issues found across all analyses")
+                .register(meterRegistry);
+        this.bytesAnalyzed = Counter.builder("coderater.analysis.bytes")
+                .description("Source bytes analyzed")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.issuesPerFile = DistributionSummary.builder("coderater.analysis.issues")
+                .description("Checkstyle issues per analyzed file")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.fileSize = DistributionSummary.builder("coderater.analysis.file.size")
+                .description("Size of analyzed source files")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("coderater.analysis.inflight", inFlight, AtomicInteger::get)
+                .description("Analyses currently running")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 按源码大小 (UTF-8 字节数) 分桶，桶的数量固定，避免标签基数失控
+     */
+    public static String sizeBucket(long bytes) {
+        if (bytes < 1024) return "tiny";          // < 1 KB
+        if (bytes < 8 * 1024) return "small";     // < 8 KB
+        if (bytes < 64 * 1024) return "medium";   // < 64 KB
+        if (bytes < 512 * 1024) return "large";   // < 512 KB
+        return "xlarge";
+    }
+
+    public Timer.Sample startPhase() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void stopPhase(Timer.Sample sample, String phase, String sizeBucket) {
+        sample.stop(Timer.builder("coderater.analysis.phase")
+                .description("Time spent in each analysis phase")
+                .tag("phase", phase)
+                .tag("sizeBucket", sizeBucket)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    /**
+     * 整次分析的耗时，outcome 为 success、failure 或 reused
+     */
+    public void stopAnalysis(Timer.Sample sample, String sizeBucket, String outcome) {
+        sample.stop(Timer.builder("coderater.analysis.duration")
+                .description("End-to-end analysis time")
+                .tag("sizeBucket", sizeBucket)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    public void recordFile(long bytes) {
+        fileSize.record(bytes);
+        bytesAnalyzed.increment(bytes);
+    }
+
+    public void recordIssues(int issueCount) {
+        issuesPerFile.record(issueCount);
+        issuesFound.increment(issueCount);
+    }
+
+    /**
+     * 项目级分析中一次 Checker.process 的耗时 (检查多个文件，不按文件大小分桶)
+     */
+    public void stopProjectCheckstyle(Timer.Sample sample) {
+        sample.stop(Timer.builder("coderater.analysis.project.checkstyle")
+                .description("Time spent in one Checkstyle run over a project")
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    public void recordProjectFiles(String result, int count) {
+        Counter.builder("coderater.analysis.project.files")
+                .description("Files in project analyses, by what happened to them")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment(count);
+    }
+
+    public void analysisStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    public void analysisFinished() {
+        inFlight.decrementAndGet();
+    }
+}
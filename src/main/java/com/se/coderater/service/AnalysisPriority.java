@@ -0,0 +1,26 @@
+package com.se.coderater.service;
+
+/**
+ * 分析任务的优先级类别。类别之间按权重分配工作线程 (默认 4:1，BULK 不会被饿死)，
+ * 类别内部按用户加权公平排队 (见 FairShareQueue)。
+ */
+public enum AnalysisPriority {
+    INTERACTIVE("interactive", 4), // 用户在页面上点 "分析" 等待结果
+    BULK("bulk", 1);               // 项目级重新分析、批量导入的解析
+
+    private final String tagValue;
+    private final int defaultWeight;
+
+    AnalysisPriority(String tagValue, int defaultWeight) {
+        this.tagValue = tagValue;
+        this.defaultWeight = defaultWeight;
+    }
+
+    public String getTagValue() {
+        return tagValue;
+    }
+
+    public int getDefaultWeight() {
+        return defaultWeight;
+    }
+}
@@ -0,0 +1,181 @@
+package com.se.coderater.service;
+
+import com.se.coderater.entity.User;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.concurrent.DelegatingSecurityContextCallable;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分析工作的调度器：固定数量的工作线程从 FairShareQueue 中取任务，
+ * 交互式分析和批量工作 (项目级分析、导入解析) 按类别权重分配线程，类别内部按用户公平排队，
+ * 一个用户的大批量任务不会让其他用户一直等待。
+ * BULK 同时最多占用 bulk-max-workers 个线程，总会留出线程给交互式请求。
+ * 任务在提交者的 SecurityContext 中执行 (服务层的所有权校验照常生效)，事务在工作线程上开启。
+ */
+@Service
+public class AnalysisScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisScheduler.class);
+
+    private final Object lock = new Object();
+    private final FairShareQueue<ScheduledTask<?>> queue;
+    private final Map<AnalysisPriority, Integer> running = new EnumMap<>(AnalysisPriority.class);
+    private final Map<AnalysisPriority, Timer> waitTimers = new EnumMap<>(AnalysisPriority.class);
+    private final int bulkMaxWorkers;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean shutdown;
+
+    public AnalysisScheduler(MeterRegistry meterRegistry,
+                             @Value("${coderater.analysis.scheduler.workers:0}") int workerCount,
+                             @Value("${coderater.analysis.scheduler.bulk-max-workers:0}") int bulkMaxWorkers,
+                             @Value("${coderater.analysis.scheduler.interactive-weight:4}") int interactiveWeight,
+                             @Value("${coderater.analysis.scheduler.bulk-weight:1}") int bulkWeight) {
+        int threads = workerCount > 0 ? workerCount : Runtime.getRuntime().availableProcessors();
+        // 默认给交互式请求留一个线程；只有一个线程时 BULK 也只能用它
+        this.bulkMaxWorkers = bulkMaxWorkers > 0 ? Math.min(bulkMaxWorkers, threads) : Math.max(1, threads - 1);
+        this.queue = new FairShareQueue<>(Map.of(AnalysisPriority.INTERACTIVE, interactiveWeight,
+                AnalysisPriority.BULK, bulkWeight));
+        for (AnalysisPriority priority : AnalysisPriority.values()) {
+            running.put(priority, 0);
+            waitTimers.put(priority, Timer.builder("coderater.analysis.queue.wait")
+                    .tag("priority", priority.getTagValue())
+                    .description("Time analysis work spent queued before a worker picked it up")
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+            Gauge.builder("coderater.analysis.queue.depth", this, scheduler -> scheduler.queuedCount(priority))
+                    .tag("priority", priority.getTagValue())
+                    .description("Analysis work waiting for a worker").register(meterRegistry);
+        }
+        for (int i = 1; i <= threads; i++) {
+            Thread worker = new Thread(this::workLoop, "analysis-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * 以当前登录用户的名义排队执行并等待结果；任务抛出的异常原样抛出
+     */
+    public <T> T executeForCurrentUser(AnalysisPriority priority, Callable<T> work) throws Exception {
+        return executeForCurrentUser(priority, 1, work);
+    }
+
+    /**
+     * 同上，cost 为任务的相对开销 (例如项目级分析要处理的文件数)，计入该用户的公平份额
+     */
+    public <T> T executeForCurrentUser(AnalysisPriority priority, double cost, Callable<T> work) throws Exception {
+        Future<T> future = submitForCurrentUser(priority, cost, work);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    /**
+     * 以当前登录用户的名义排队 (未登录时所有匿名请求共用一个队列)，cost 为任务的相对开销
+     */
+    public <T> Future<T> submitForCurrentUser(AnalysisPriority priority, double cost, Callable<T> work) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        Object user = authentication != null && authentication.getPrincipal() instanceof User principal
+                ? principal.getId()
+                : "anonymous";
+        // 工作线程上恢复提交者的 SecurityContext，执行完后清除
+        ScheduledTask<T> task = new ScheduledTask<>(priority, new DelegatingSecurityContextCallable<>(work));
+        synchronized (lock) {
+            if (shutdown) {
+                throw new IllegalStateException("Analysis scheduler is shut down.");
+            }
+            queue.add(priority, user, 1.0, cost, task);
+            lock.notify();
+        }
+        return task;
+    }
+
+    private void workLoop() {
+        while (true) {
+            ScheduledTask<?> task;
+            synchronized (lock) {
+                while ((task = queue.poll(this::hasFreeWorker)) == null) {
+                    if (shutdown) {
+                        return;
+                    }
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        // 只有 shutdown 会中断空闲的工作线程，下一轮循环检查后退出
+                    }
+                }
+                running.merge(task.priority, 1, Integer::sum);
+            }
+            waitTimers.get(task.priority).record(System.nanoTime() - task.enqueuedAt, TimeUnit.NANOSECONDS);
+            try {
+                task.run(); // FutureTask 捕获任务异常，交给等待结果的一方
+            } catch (RuntimeException e) {
+                logger.error("Analysis worker failed unexpectedly", e);
+            } finally {
+                Thread.interrupted(); // 清除 future.cancel(true) 留下的中断标志，线程继续服务下一个任务
+                synchronized (lock) {
+                    running.merge(task.priority, -1, Integer::sum);
+                    lock.notifyAll(); // BULK 名额释放后，可能有等待 BULK 任务的线程可以继续
+                }
+            }
+        }
+    }
+
+    private boolean hasFreeWorker(AnalysisPriority priority) {
+        return priority != AnalysisPriority.BULK || running.get(AnalysisPriority.BULK) < bulkMaxWorkers;
+    }
+
+    private int queuedCount(AnalysisPriority priority) {
+        synchronized (lock) {
+            return queue.size(priority);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (lock) {
+            shutdown = true;
+            lock.notifyAll();
+        }
+        workers.forEach(Thread::interrupt);
+    }
+
+    private static final class ScheduledTask<T> extends FutureTask<T> {
+        private final AnalysisPriority priority;
+        private final long enqueuedAt = System.nanoTime();
+
+        ScheduledTask(AnalysisPriority priority, Callable<T> callable) {
+            super(callable);
+            this.priority = priority;
+        }
+    }
+}
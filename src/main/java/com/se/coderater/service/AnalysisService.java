@@ -1,5 +1,6 @@
 package com.se.coderater.service;
 
+import com.github.javaparser.ParseProblemException;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.puppycrawl.tools.checkstyle.Checker;
 import com.puppycrawl.tools.checkstyle.ConfigurationLoader;
@@ -7,70 +8,164 @@ import com.puppycrawl.tools.checkstyle.PropertiesExpander;
 import com.puppycrawl.tools.checkstyle.api.AuditListener;
 import com.puppycrawl.tools.checkstyle.api.CheckstyleException;
 import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
-import com.github.javaparser.StaticJavaParser;
+import com.puppycrawl.tools.checkstyle.api.Violation;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.comments.Comment;
 import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
+import com.se.coderater.dto.ProjectAnalysisResult;
+import com.se.coderater.dto.StoredAnalysis;
 import com.se.coderater.entity.Analysis;
+import com.se.coderater.entity.AnalysisMode;
 import com.se.coderater.entity.Code;
 import com.se.coderater.repository.AnalysisRepository;
 import com.se.coderater.repository.CodeRepository;
+import com.se.coderater.security.SecurityUtils;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ClassPathResource; // 用于加载 classpath 下的资源
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional; // 推荐在服务层方法上使用事务
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.access.AccessDeniedException; // 用于权限不足的异常
+import org.springframework.data.domain.Limit;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 @Service
 public class AnalysisService {
-    // 评分参数 (可以考虑将这些参数外部化到配置文件中)
-    private static final double WEIGHT_STYLE = 0.40;
-    private static final double WEIGHT_COMPLEXITY = 0.30;
-    private static final double WEIGHT_COMMENT = 0.30;
-
-    private static final int STYLE_SCORE_PER_ISSUE_DEDUCTION = 5;
-    private static final int STYLE_MAX_ISSUES_FOR_ZERO_SCORE = 20; // 超过20个问题，风格得0分
-
-    private static final int COMPLEXITY_IDEAL_MAX = 5;
-    private static final int COMPLEXITY_PENALTY_THRESHOLD = 10;
-    private static final int COMPLEXITY_UPPER_LIMIT = 20;
-    private static final int COMPLEXITY_DEDUCTION_NORMAL = 10;
-    private static final int COMPLEXITY_DEDUCTION_HIGH = 15;
-
-    private static final double COMMENT_RATIO_IDEAL_MIN = 0.10;
-    private static final double COMMENT_RATIO_IDEAL_MAX = 0.30;
-    private static final int COMMENT_DEDUCTION_PER_PERCENT = 5; // 低于或高于理想区间的每1%扣分
-
     private static final Logger logger = LoggerFactory.getLogger(AnalysisService.class);
 
     private final CodeRepository codeRepository;
     private final AnalysisRepository analysisRepository;
+    private final ScoreCalculator scoreCalculator;
+    private final AnalysisMetrics analysisMetrics;
+    private final StyleViolationService styleViolationService;
+    private final RuleStatisticsService ruleStatisticsService;
+    private final JavaParserPool javaParserPool;
+    private final BlobStoreService blobStoreService;
+    private final CodeRevisionService codeRevisionService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Path checkstyleCacheDir;
+    private final int projectMaxFiles;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    // 正在使用自己固定的 Checkstyle 工作目录和缓存文件的用户
+    private final Set<Long> projectWorkDirsInUse = ConcurrentHashMap.newKeySet();
 
     // Checkstyle 配置文件的路径 (相对于 classpath)
     private static final String CHECKSTYLE_CONFIG_PATH = "checkstyle.xml";
+    // 缓存文件名中的配置名：不同配置各用一个缓存文件 (Checkstyle 在配置内容变化时也会清空缓存)
+    private static final String CHECKSTYLE_PROFILE = "default";
 
     @Autowired
-    public AnalysisService(CodeRepository codeRepository, AnalysisRepository analysisRepository) {
+    public AnalysisService(CodeRepository codeRepository, AnalysisRepository analysisRepository,
+                           ScoreCalculator scoreCalculator, AnalysisMetrics analysisMetrics,
+                           StyleViolationService styleViolationService,
+                           RuleStatisticsService ruleStatisticsService,
+                           JavaParserPool javaParserPool,
+                           BlobStoreService blobStoreService,
+                           CodeRevisionService codeRevisionService,
+                           ApplicationEventPublisher eventPublisher,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${coderater.checkstyle.cache-dir:data/checkstyle-cache}") String checkstyleCacheDir,
+                           @Value("${coderater.analysis.project-max-files:500}") int projectMaxFiles) {
         this.codeRepository = codeRepository;
         this.analysisRepository = analysisRepository;
+        this.scoreCalculator = scoreCalculator;
+        this.analysisMetrics = analysisMetrics;
+        this.styleViolationService = styleViolationService;
+        this.ruleStatisticsService = ruleStatisticsService;
+        this.javaParserPool = javaParserPool;
+        this.blobStoreService = blobStoreService;
+        this.codeRevisionService = codeRevisionService;
+        this.eventPublisher = eventPublisher;
+        this.checkstyleCacheDir = Paths.get(checkstyleCacheDir);
+        this.projectMaxFiles = projectMaxFiles;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * 读取已有的分析结果 (不重新分析)。
+     * 正常情况只执行一条查询；结果不存在时再区分 "代码不存在" / "无权访问" / "尚未分析"。
+     *
+     * @return 尚未分析时返回 Optional.empty()
+     * @throws IllegalArgumentException 代码不存在
+     */
+    @Transactional(readOnly = true)
+    public Optional<Analysis> getStoredAnalysisForCurrentUser(Long codeId) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || "anonymousUser".equals(authentication.getPrincipal())) {
+            throw new IllegalStateException("User must be authenticated to view analysis results.");
+        }
+        Long currentUserId = SecurityUtils.getUserId(authentication);
+
+        Optional<StoredAnalysis> storedOpt = analysisRepository.findStoredByCodeId(codeId);
+        Long ownerId = storedOpt.map(StoredAnalysis::getOwnerId)
+                .or(() -> codeRepository.findUploaderIdById(codeId))
+                .orElseThrow(() -> new IllegalArgumentException("Code not found with id: " + codeId));
+        if (!ownerId.equals(currentUserId)) {
+            logger.warn("User '{}' attempted to view analysis of code '{}' owned by user id {}. Access denied.",
+                    authentication.getName(), codeId, ownerId);
+            throw new AccessDeniedException("You do not have permission to view this analysis.");
+        }
+        if (storedOpt.isEmpty()) {
+            return Optional.empty();
+        }
+
+        StoredAnalysis stored = storedOpt.get();
+        Analysis analysis = stored.getAnalysis();
+        analysis.setStale(analysis.getAnalyzedAt() != null && stored.getCodeUploadedAt() != null
+                && stored.getCodeUploadedAt().isAfter(analysis.getAnalyzedAt()));
+        return Optional.of(scoreCalculator.applyScores(analysis));
+    }
+
+    /**
+     * 分析结果的强 ETag：分析时间和 stale 状态决定了响应内容
+     */
+    public static String eTagOf(Analysis analysis) {
+        long analyzedAt = analysis.getAnalyzedAt() == null ? 0L
+                : analysis.getAnalyzedAt().toInstant(ZoneOffset.UTC).toEpochMilli();
+        return "\"analysis-" + analysis.getId() + "-" + analyzedAt + "-" + Boolean.TRUE.equals(analysis.getStale()) + "\"";
     }
 
     @Transactional // 建议将涉及数据库修改的操作放在事务中
     public Analysis analyzeCode(Long codeId) throws IOException, CheckstyleException {
+        return analyzeCode(codeId, AnalysisMode.PRECISE);
+    }
+
+    /**
+     * 分析代码。FAST 模式只做一遍词法扫描 (见 FastLexicalAnalyzer)，不运行 Checkstyle，
+     * 结果是近似值：styleIssueCount 为空，违规明细被清空；按规则计数不变 (保留该版本精确分析的结果)。
+     */
+    @Transactional
+    public Analysis analyzeCode(Long codeId, AnalysisMode mode) throws IOException, CheckstyleException {
         // 1. 获取当前登录用户
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication == null || !authentication.isAuthenticated() || "anonymousUser".equals(authentication.getPrincipal())) {
@@ -79,101 +174,433 @@ public class AnalysisService {
             throw new IllegalStateException("User must be authenticated to analyze code.");
         }
         String currentUsername = authentication.getName();
+        Long currentUserId = SecurityUtils.getUserId(authentication);
+
+        // 2. **这就是所有权校验逻辑**：只查 codes.user_id，不加载 content
+        Long ownerId = codeRepository.findUploaderIdById(codeId)
+                .orElseThrow(() -> new IllegalArgumentException("Code not found with id: " + codeId));
+        if (!ownerId.equals(currentUserId)) {
+            logger.warn("User '{}' attempted to analyze code '{}' owned by user id {}. Access denied.",
+                    currentUsername, codeId, ownerId);
+            throw new AccessDeniedException("You do not have permission to analyze this code."); // 抛出 AccessDeniedException
+        }
 
-        // 2. 获取 Code 实体
+        // 3. 校验通过后再获取 Code 实体
         Code code = codeRepository.findById(codeId)
                 .orElseThrow(() -> new IllegalArgumentException("Code not found with id: " + codeId));
 
-        // 3. **这就是所有权校验逻辑**
-        if (!code.getUploader().getUsername().equals(currentUsername)) {
-            logger.warn("User '{}' attempted to analyze code '{}' owned by '{}'. Access denied.",
-                    currentUsername, codeId, code.getUploader().getUsername());
-            throw new AccessDeniedException("You do not have permission to analyze this code."); // 抛出 AccessDeniedException
+        // 查找是否已存在该代码的分析，如果存在则更新，否则创建新的
+        Analysis analysis = analysisRepository.findByCodeId(codeId)
+                .orElse(new Analysis()); // 如果不存在，则创建一个新的Analysis对象
+        analysis.setCode(code);
+        analysis.setAnalysisMode(mode);
+
+        // 各阶段指标：按文件大小分桶
+        String content = blobStoreService.loadContent(code);
+        long contentBytes = content.getBytes(StandardCharsets.UTF_8).length;
+        String sizeBucket = AnalysisMetrics.sizeBucket(contentBytes);
+        analysisMetrics.recordFile(contentBytes);
+        analysisMetrics.analysisStarted();
+        Timer.Sample analysisSample = analysisMetrics.startPhase();
+        String outcome = AnalysisMetrics.OUTCOME_FAILURE;
+        try {
+            // 已有内容和文件名完全相同的代码分析过时直接复用，不再运行 Checkstyle 和解析
+            StyleViolations violations;
+            boolean reused = false;
+            if (mode == AnalysisMode.FAST) {
+                violations = evaluateFastInto(analysis, code.getFileName(), content, sizeBucket);
+            } else {
+                violations = reuseIdenticalAnalysis(analysis, code);
+                reused = violations != null;
+                if (!reused) {
+                    violations = evaluateInto(analysis, code.getFileName(), content, sizeBucket);
+                }
+            }
+
+            Analysis saved = saveAnalysis(analysis, codeId, ownerId, violations, sizeBucket);
+            outcome = reused ? AnalysisMetrics.OUTCOME_REUSED : AnalysisMetrics.OUTCOME_SUCCESS;
+            return saved;
+        } finally {
+            analysisMetrics.analysisFinished();
+            analysisMetrics.stopAnalysis(analysisSample, sizeBucket, outcome);
+        }
+    }
+
+    /**
+     * 当前用户的项目级分析要处理的文件数 (最多 project-max-files)，作为调度开销
+     */
+    @Transactional(readOnly = true)
+    public int countStaleCodesForCurrentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || "anonymousUser".equals(authentication.getPrincipal())) {
+            throw new IllegalStateException("User must be authenticated to analyze code.");
+        }
+        long stale = codeRepository.countStaleCodes(SecurityUtils.getUserId(authentication));
+        return (int) Math.min(stale, projectMaxFiles);
+    }
+
+    /**
+     * 项目级分析：当前用户的全部代码作为一个项目，只重新分析没有有效精确结果的代码
+     * (从未分析、修改后未重新分析、只有快速模式结果；每次最多 project-max-files 个)。
+     * 内容相同的代码先尝试复用结果，其余文件用一次 Checker.process 检查，
+     * 并使用按用户和 Checkstyle 配置保存的持久化缓存文件。
+     * 解析失败的代码保持原状 (下次仍会被选中)。
+     * 不在一个事务中执行：先在只读事务中选出要分析的代码，Checkstyle 和解析在事务之外运行，
+     * 每个文件的结果在各自的短事务中保存；分析期间被修改或删除的代码不保存结果。
+     */
+    public ProjectAnalysisResult analyzeStaleCodesForCurrentUser() throws IOException, CheckstyleException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || "anonymousUser".equals(authentication.getPrincipal())) {
+            throw new IllegalStateException("User must be authenticated to analyze code.");
+        }
+        Long userId = SecurityUtils.getUserId(authentication);
+        long startedAt = System.nanoTime();
+        ProjectAnalysisResult result = new ProjectAnalysisResult();
+
+        // 1. 只读事务：选出要分析的代码 (实体在事务结束后作为快照使用)
+        List<Code> staleCodes = readOnlyTransactionTemplate.execute(status -> {
+            result.setTotalCodes(codeRepository.countByUploaderId(userId));
+            List<Code> codes = new ArrayList<>();
+            for (Long codeId : codeRepository.findStaleCodeIds(userId, Limit.of(projectMaxFiles))) {
+                codeRepository.findById(codeId).ifPresent(codes::add);
+            }
+            return codes;
+        });
+        result.setUpToDate(result.getTotalCodes() - staleCodes.size());
+        analysisMetrics.recordProjectFiles(AnalysisMetrics.PROJECT_UP_TO_DATE, (int) result.getUpToDate());
+
+        // 2. 内容相同的代码已有有效结果时直接复用 (每个文件一个短事务)
+        List<ProjectFile> pending = new ArrayList<>(staleCodes.size());
+        for (Code code : staleCodes) {
+            String content = blobStoreService.loadContent(code);
+            String sizeBucket = AnalysisMetrics.sizeBucket(content.getBytes(StandardCharsets.UTF_8).length);
+            SaveOutcome outcome = saveProjectResult(code, userId, sizeBucket,
+                    analysis -> reuseIdenticalAnalysis(analysis, code));
+            if (outcome == SaveOutcome.SAVED) {
+                result.setReused(result.getReused() + 1);
+            } else if (outcome == SaveOutcome.CODE_CHANGED) {
+                result.setChangedDuringAnalysis(result.getChangedDuringAnalysis() + 1);
+            } else {
+                pending.add(new ProjectFile(code, content, sizeBucket));
+            }
+        }
+
+        // 3. 不在事务中：一次 Checker.process 检查其余全部文件
+        Map<String, CheckstyleResult> checkstyleResults = Map.of();
+        if (!pending.isEmpty()) {
+            Timer.Sample phase = analysisMetrics.startPhase();
+            checkstyleResults = runProjectCheckstyle(userId, pending);
+            analysisMetrics.stopProjectCheckstyle(phase);
         }
 
+        // 4. 逐个文件解析、计算指标 (不在事务中)，再在各自的短事务中保存 (缓存命中的文件没有问题)
+        for (ProjectFile file : pending) {
+            CheckstyleResult checkstyleResult = checkstyleResults.get(file.getFile().getAbsolutePath());
+            if (checkstyleResult != null) {
+                result.setCheckstyleChecked(result.getCheckstyleChecked() + 1);
+            } else {
+                checkstyleResult = new CheckstyleResult(0, new StyleViolations());
+                result.setCheckstyleCached(result.getCheckstyleCached() + 1);
+            }
+            analysisMetrics.recordFile(file.getContent().getBytes(StandardCharsets.UTF_8).length);
+            analysisMetrics.recordIssues(checkstyleResult.getIssueCount());
+            Code code = file.getCode();
+            Analysis computed = new Analysis();
+            try {
+                applyParsedMetrics(computed, code.getFileName(), file.getContent(), checkstyleResult,
+                        file.getSizeBucket());
+            } catch (ParseProblemException e) {
+                logger.warn("Project analysis skipped code {}: {}", code.getId(), e.getMessage());
+                result.setParseFailures(result.getParseFailures() + 1);
+                continue; // 语法错误时不修改已有的分析结果
+            }
+            StyleViolations violations = checkstyleResult.getViolations();
+            SaveOutcome outcome = saveProjectResult(code, userId, file.getSizeBucket(), analysis -> {
+                copyMetrics(computed, analysis);
+                return violations;
+            });
+            if (outcome == SaveOutcome.CODE_CHANGED) {
+                result.setChangedDuringAnalysis(result.getChangedDuringAnalysis() + 1);
+            }
+        }
+
+        result.setAnalyzed(result.getReused() + pending.size() - result.getParseFailures()
+                - result.getChangedDuringAnalysis());
+        result.setElapsedMs((System.nanoTime() - startedAt) / 1_000_000);
+        analysisMetrics.recordProjectFiles(AnalysisMetrics.PROJECT_REUSED, result.getReused());
+        analysisMetrics.recordProjectFiles(AnalysisMetrics.PROJECT_CHECKED, result.getCheckstyleChecked());
+        analysisMetrics.recordProjectFiles(AnalysisMetrics.PROJECT_CACHED, result.getCheckstyleCached());
+        logger.info("Project analysis for user {}: {} of {} codes analyzed ({} reused, {} checked, {} cached, {} changed meanwhile) in {} ms",
+                userId, result.getAnalyzed(), result.getTotalCodes(), result.getReused(), result.getCheckstyleChecked(),
+                result.getCheckstyleCached(), result.getChangedDuringAnalysis(), result.getElapsedMs());
+        return result;
+    }
+
+    /**
+     * 把文件写入工作目录并运行一次 Checkstyle。工作目录中的路径按用户固定 (缓存按路径记录)，
+     * 修改时间设为代码的最后修改时间，代码被修改后缓存自然失效。
+     * 同一用户的另一次项目分析正在使用固定目录时不等待，改用临时目录且不使用缓存。
+     */
+    private Map<String, CheckstyleResult> runProjectCheckstyle(Long userId, List<ProjectFile> files)
+            throws IOException, CheckstyleException {
+        boolean ownWorkDir = projectWorkDirsInUse.add(userId);
+        Path workDir;
+        Path cacheFile = null;
+        try {
+            if (ownWorkDir) {
+                workDir = Files.createDirectories(checkstyleCacheDir.resolve("work").resolve("user-" + userId));
+                cacheFile = checkstyleCacheDir.resolve("user-" + userId + "-" + CHECKSTYLE_PROFILE + ".cache");
+            } else {
+                workDir = Files.createTempDirectory(Files.createDirectories(checkstyleCacheDir.resolve("work")),
+                        "user-" + userId + "-");
+            }
+        } catch (IOException e) {
+            if (ownWorkDir) {
+                projectWorkDirsInUse.remove(userId);
+            }
+            throw e;
+        }
+        try {
+            for (ProjectFile file : files) {
+                file.setFile(workDir.resolve(file.getCode().getId() + ".java").toFile());
+                Files.writeString(file.getFile().toPath(), file.getContent(), StandardCharsets.UTF_8);
+                if (file.getCode().getUploadedAt() != null) {
+                    file.getFile().setLastModified(file.getCode().getUploadedAt().toInstant(ZoneOffset.UTC).toEpochMilli());
+                }
+            }
+            return runCheckstyle(files.stream().map(ProjectFile::getFile).toList(), cacheFile);
+        } finally {
+            for (ProjectFile file : files) {
+                if (file.getFile() != null) {
+                    Files.deleteIfExists(file.getFile().toPath());
+                }
+            }
+            if (ownWorkDir) {
+                projectWorkDirsInUse.remove(userId);
+            } else {
+                Files.deleteIfExists(workDir);
+            }
+        }
+    }
+
+    /**
+     * 在单独的短事务中保存项目级分析中一个文件的结果。fill 把指标写入该代码的分析结果并返回违规明细，
+     * 返回 null 表示没有结果可保存。快照之后代码被修改 (内容或文件名变化) 或删除时不保存，下次仍会被选中。
+     */
+    private SaveOutcome saveProjectResult(Code snapshot, Long userId, String sizeBucket,
+                                          Function<Analysis, StyleViolations> fill) {
+        return transactionTemplate.execute(status -> {
+            Code code = codeRepository.findById(snapshot.getId()).orElse(null);
+            if (code == null || !Objects.equals(code.getContentHash(), snapshot.getContentHash())
+                    || !Objects.equals(code.getFileName(), snapshot.getFileName())) {
+                return SaveOutcome.CODE_CHANGED;
+            }
+            Analysis analysis = analysisRepository.findByCodeId(code.getId()).orElse(new Analysis());
+            analysis.setCode(code);
+            StyleViolations violations = fill.apply(analysis);
+            if (violations == null) {
+                return SaveOutcome.NOTHING_TO_SAVE;
+            }
+            analysis.setAnalysisMode(AnalysisMode.PRECISE);
+            saveAnalysis(analysis, code.getId(), userId, violations, sizeBucket);
+            return SaveOutcome.SAVED;
+        });
+    }
+
+    private enum SaveOutcome {
+        SAVED, NOTHING_TO_SAVE, CODE_CHANGED
+    }
+
+    /**
+     * 项目级分析中等待 Checkstyle 的一个文件 (code 是选择时的快照，不受事务管理)
+     */
+    private static class ProjectFile {
+        private final Code code;
+        private final String content;
+        private final String sizeBucket;
+        private File file; // 写入工作目录后才有
+
+        ProjectFile(Code code, String content, String sizeBucket) {
+            this.code = code;
+            this.content = content;
+            this.sizeBucket = sizeBucket;
+        }
+
+        Code getCode() {
+            return code;
+        }
+
+        File getFile() {
+            return file;
+        }
+
+        void setFile(File file) {
+            this.file = file;
+        }
+
+        String getContent() {
+            return content;
+        }
+
+        String getSizeBucket() {
+            return sizeBucket;
+        }
+    }
+
+    /**
+     * 保存分析结果、违规明细和按规则计数
+     */
+    private Analysis saveAnalysis(Analysis analysis, Long codeId, Long ownerId, StyleViolations violations,
+                                  String sizeBucket) {
+        // 重新分析时 @PrePersist 不会触发，需要手动刷新分析时间
+        analysis.setAnalyzedAt(LocalDateTime.now());
+        analysis.setStale(false);
+
+        // saveAndFlush：让 INSERT/UPDATE 在这里执行，persistence 阶段的耗时才准确
+        Timer.Sample phase = analysisMetrics.startPhase();
+        Analysis saved = analysisRepository.saveAndFlush(analysis); // 保存包含原始指标的Analysis对象
+        styleViolationService.replaceViolations(codeId, violations); // 违规明细 (JDBC 批量写入)
+        Integer revisionNo = linkRevision(analysis.getCode(), saved);
+        // 按规则聚合计数 (记在该版本上；快速分析没有违规明细，不修改计数)
+        ruleStatisticsService.recordCounts(codeId, revisionNo, ownerId, saved.getAnalysisMode(), saved.getAnalyzedAt(),
+                violations);
+        // 事务提交后推送给代码所有者 (SSE，见 AnalysisEventService)
+        eventPublisher.publishEvent(new AnalysisCompletedEvent(ownerId, codeId, revisionNo, saved.getId(),
+                saved.getAnalysisMode(), saved.getAnalyzedAt(), scoreCalculator.applyScores(saved).getOverallScore()));
+        analysisMetrics.stopPhase(phase, AnalysisMetrics.PHASE_PERSISTENCE, sizeBucket);
+        return saved;
+    }
+
+    /**
+     * 把分析结果记到代码当前的版本上 (Analysis 每个代码只有一行，重新分析会覆盖，历史指标保存在修订记录中)。
+     * 修订历史上线前的代码先补记第 1 版。
+     */
+    private Integer linkRevision(Code code, Analysis saved) {
+        Integer revisionNo = code.getCurrentRevision();
+        if (revisionNo == null) {
+            revisionNo = codeRevisionService.recordInitial(code.getId(), code.getFileName(),
+                    blobStoreService.loadContent(code), code.getUploadedAt());
+            code.setCurrentRevision(revisionNo);
+        }
+        codeRevisionService.linkAnalysis(code.getId(), revisionNo, saved);
+        return revisionNo;
+    }
+
+    /**
+     * 查找内容哈希和文件名都相同、分析结果仍然有效的其它代码，复制其原始指标和违规明细。
+     * 文件名会影响 Checkstyle 结果 (OuterTypeFilename)，所以也必须相同。
+     * 没有可复用的结果 (或对方缺少违规明细) 时返回 null。
+     */
+    private StyleViolations reuseIdenticalAnalysis(Analysis analysis, Code code) {
+        if (code.getContentHash() == null) {
+            return null;
+        }
+        List<Analysis> donors = analysisRepository.findReusable(code.getContentHash(), code.getFileName(),
+                code.getId(), Limit.of(1));
+        if (donors.isEmpty()) {
+            return null;
+        }
+        Analysis donor = donors.get(0);
+        Long donorCodeId = donor.getCode().getId(); // 代理对象取 id 不会触发加载
+        StyleViolations violations = styleViolationService.loadViolations(donorCodeId);
+        if (!hasCompleteViolations(donor, violations)) {
+            return null; // 违规明细功能上线之前的分析结果
+        }
+        copyMetrics(donor, analysis);
+        logger.info("Reused analysis of identical code {} for code {}.", donorCodeId, code.getId());
+        return violations;
+    }
+
+    /**
+     * 复制原始指标并重新计算评分
+     */
+    private void copyMetrics(Analysis from, Analysis to) {
+        to.setStyleIssueCount(from.getStyleIssueCount());
+        to.setCyclomaticComplexity(from.getCyclomaticComplexity());
+        to.setCommentLineCount(from.getCommentLineCount());
+        to.setNonEmptyLineCount(from.getNonEmptyLineCount());
+        to.setCommentRatio(from.getCommentRatio());
+        scoreCalculator.applyScores(to);
+    }
+
+    /**
+     * 保存的违规明细是否完整对应 donor 的分析结果。styleIssueCount 只统计 ERROR 级别 (checker.process 的返回值)，
+     * 明细还包括 WARNING 级别，所以只比较 ERROR 级别的条数
+     */
+    static boolean hasCompleteViolations(Analysis donor, StyleViolations violations) {
+        return donor.getStyleIssueCount() != null
+                && violations.count(SeverityLevel.ERROR) == donor.getStyleIssueCount();
+    }
+
+    /**
+     * 不访问数据库的完整分析流程 (Checkstyle + 解析 + 复杂度 + 注释 + 评分)，供基准测试等场景直接调用
+     */
+    public Analysis evaluate(String fileName, String content) throws IOException, CheckstyleException {
+        Analysis analysis = new Analysis();
+        analysis.setAnalysisMode(AnalysisMode.PRECISE);
+        evaluateInto(analysis, fileName, content,
+                AnalysisMetrics.sizeBucket(content.getBytes(StandardCharsets.UTF_8).length));
+        return analysis;
+    }
+
+    /**
+     * 快速模式的不访问数据库的分析流程，供基准测试等场景直接调用
+     */
+    public Analysis evaluateFast(String fileName, String content) {
+        Analysis analysis = new Analysis();
+        analysis.setAnalysisMode(AnalysisMode.FAST);
+        evaluateFastInto(analysis, fileName, content,
+                AnalysisMetrics.sizeBucket(content.getBytes(StandardCharsets.UTF_8).length));
+        return analysis;
+    }
+
+    /**
+     * 快速模式：一遍词法扫描得到复杂度和注释指标并写入 analysis (不保存)。
+     * 不运行 Checkstyle，返回空的违规明细 (覆盖掉之前精确分析留下的明细)。
+     */
+    StyleViolations evaluateFastInto(Analysis analysis, String fileName, String content, String sizeBucket) {
+        Timer.Sample phase = analysisMetrics.startPhase();
+        FastLexicalAnalyzer.Result result = FastLexicalAnalyzer.analyze(content);
+        analysisMetrics.stopPhase(phase, AnalysisMetrics.PHASE_LEXICAL, sizeBucket);
+
+        int nonEmptyLines = result.getNonEmptyLines();
+        double commentRatio = (nonEmptyLines > 0) ? (double) result.getCommentLines() / nonEmptyLines : 0.0;
+        analysis.setStyleIssueCount(null);
+        analysis.setCyclomaticComplexity(result.getAverageComplexity());
+        analysis.setCommentLineCount(result.getCommentLines());
+        analysis.setNonEmptyLineCount(nonEmptyLines);
+        analysis.setCommentRatio(Double.parseDouble(String.format("%.2f", commentRatio)));
+
+        phase = analysisMetrics.startPhase();
+        scoreCalculator.applyScores(analysis);
+        analysisMetrics.stopPhase(phase, AnalysisMetrics.PHASE_SCORING, sizeBucket);
+        logger.info("Fast (approximate) analysis for {}: Complexity={}, NonEmptyLines={}, CommentLines={}, Overall={}",
+                fileName, analysis.getCyclomaticComplexity(), nonEmptyLines, result.getCommentLines(),
+                analysis.getOverallScore());
+        return new StyleViolations();
+    }
+
+    /**
+     * 计算各项指标和评分并写入 analysis (不保存)，返回 Checkstyle 违规明细
+     */
+    StyleViolations evaluateInto(Analysis analysis, String fileName, String content, String sizeBucket)
+            throws IOException, CheckstyleException {
         // 创建临时文件来运行 Checkstyle
-        Path tempFilePath = null;
         File tempFile = null;
         try {
-            tempFilePath = Files.createTempFile("coderater_temp_", ".java");
-            tempFile = tempFilePath.toFile();
-            try (FileWriter writer = new FileWriter(tempFile)) {
-                writer.write(code.getContent());
-            }
+            tempFile = Files.createTempFile("coderater_temp_", ".java").toFile();
+            // 按 UTF-8 写出，与 checkstyle.xml 中的 charset 一致 (FileWriter 使用平台默认编码，非 UTF-8 环境下中文会变成 ?)
+            Files.writeString(tempFile.toPath(), content, StandardCharsets.UTF_8);
 
             // 1. 执行 Checkstyle 分析
+            Timer.Sample phase = analysisMetrics.startPhase();
             CheckstyleResult checkstyleResult = runCheckstyle(tempFile);
-            logger.info("Checkstyle for {}: {} issues found.", code.getFileName(), checkstyleResult.getIssueCount());
-
-            // 2. 使用 JavaParser 分析复杂度、注释等
-            // 我们可以直接解析已有的 code.getContent()，避免重复读取文件
-            CompilationUnit cu = StaticJavaParser.parse(code.getContent());
-
-            // 计算圈复杂度 (这里我们计算所有方法的平均圈复杂度作为示例)
-            // 更复杂的可以是最大圈复杂度，或每个方法的复杂度列表
-            CyclomaticComplexityVisitor complexityVisitor = new CyclomaticComplexityVisitor();
-            cu.accept(complexityVisitor, null);
-            int totalCyclomaticComplexity = complexityVisitor.getTotalComplexity();
-            int methodCountForComplexity = complexityVisitor.getMethodCount();
-            double averageCyclomaticComplexity = (methodCountForComplexity > 0) ?
-                    (double) totalCyclomaticComplexity / methodCountForComplexity : 0.0;
-            // 四舍五入到整数，或者你可以让 Analysis 实体中的字段是 double
-            int roundedAverageComplexity = (int) Math.round(averageCyclomaticComplexity);
-            logger.info("Average Cyclomatic Complexity for {}: {}", code.getFileName(), roundedAverageComplexity);
-
-
-            // 计算注释行数和非空行数
-            long totalLines = code.getContent().lines().count(); // 总行数
-            long nonEmptyLines = code.getContent().lines().filter(line -> !line.trim().isEmpty()).count();
-            long commentLineCount = cu.getAllComments().stream()
-                    .mapToInt(comment -> comment.getRange()
-                            .map(range -> range.end.line - range.begin.line + 1)
-                            .orElse(0))
-                    .sum();
-            // 注意：JavaParser 的 comment.getRange() 对于块注释会给出整个块的行数。
-            // 对于单行注释，是1行。这种统计方式比简单地按行startsWith("//")更准确。
-
-            double commentRatio = (nonEmptyLines > 0) ? (double) commentLineCount / nonEmptyLines : 0.0;
-            logger.info("Comment stats for {}: TotalLines={}, NonEmptyLines={}, CommentLines={}, Ratio={}",
-                    code.getFileName(), totalLines, nonEmptyLines, commentLineCount, String.format("%.2f", commentRatio));
-
-
-            // 3. 创建或更新 Analysis 实体
-            // 查找是否已存在该代码的分析，如果存在则更新，否则创建新的
-            Analysis analysis = analysisRepository.findByCodeId(codeId)
-                    .orElse(new Analysis()); // 如果不存在，则创建一个新的Analysis对象
+            analysisMetrics.stopPhase(phase, AnalysisMetrics.PHASE_CHECKSTYLE, sizeBucket);
+            analysisMetrics.recordIssues(checkstyleResult.getIssueCount());
+            logger.info("Checkstyle for {}: {} issues found.", fileName, checkstyleResult.getIssueCount());
 
-            analysis.setCode(code);
-            analysis.setStyleIssueCount(checkstyleResult.getIssueCount());
-            // analysis.setStyleIssuesDetails(checkstyleResult.getDetailedMessagesAsJson()); // 如果需要存储详细信息
-            analysis.setCyclomaticComplexity(roundedAverageComplexity);
-            analysis.setCommentLineCount((int) commentLineCount);
-            analysis.setNonEmptyLineCount((int) nonEmptyLines); // 确保 Code 实体也有这个字段或从这里获取
-            analysis.setCommentRatio(Double.parseDouble(String.format("%.2f", commentRatio))); // 保留两位小数
-
-            // 计算各项评分
-            int styleScore = calculateStyleScore(analysis.getStyleIssueCount());
-            int complexityScore = calculateComplexityScore(analysis.getCyclomaticComplexity());
-            int commentScore = calculateCommentScore(analysis.getCommentRatio());
-
-            // 计算总分
-            int overallScore = (int) Math.round(
-                    (styleScore * WEIGHT_STYLE) +
-                            (complexityScore * WEIGHT_COMPLEXITY) +
-                            (commentScore * WEIGHT_COMMENT)
-            );
-            overallScore = Math.max(0, Math.min(100, overallScore)); // 确保在0-100之间
-
-            // 设置瞬时评分字段 (这些不会保存到数据库，仅用于API响应)
-            analysis.setStyleScore(styleScore);
-            analysis.setComplexityScore(complexityScore);
-            analysis.setCommentScore(commentScore);
-            analysis.setOverallScore(overallScore);
-
-            logger.info("Scores for {}: Style={}, Complexity={}, Comment={}, Overall={}",
-                    code.getFileName(), styleScore, complexityScore, commentScore, overallScore);
-
-            return analysisRepository.save(analysis); // 保存包含原始指标的Analysis对象
+            applyParsedMetrics(analysis, fileName, content, checkstyleResult, sizeBucket);
+            return checkstyleResult.getViolations();
         } finally {
             // 清理临时文件
             if (tempFile != null && tempFile.exists()) {
@@ -184,84 +611,193 @@ public class AnalysisService {
                 }
             }
         }
+    }
 
+    /**
+     * Checkstyle 之后的步骤：解析、复杂度、注释和评分，写入 analysis (单文件分析和项目级分析共用)
+     */
+    private void applyParsedMetrics(Analysis analysis, String fileName, String content,
+                                    CheckstyleResult checkstyleResult, String sizeBucket) {
+        // 2. 使用 JavaParser 分析复杂度、注释等
+        // 我们可以直接解析已有的 content，避免重复读取文件
+        Timer.Sample phase = analysisMetrics.startPhase();
+        CompilationUnit cu = javaParserPool.parse(JavaParserPool.Purpose.ANALYSIS, content); // 复用本线程的解析器
+        analysisMetrics.stopPhase(phase, AnalysisMetrics.PHASE_PARSE, sizeBucket);
+
+        // 计算圈复杂度 (这里我们计算所有方法的平均圈复杂度作为示例)
+        // 更复杂的可以是最大圈复杂度，或每个方法的复杂度列表
+        phase = analysisMetrics.startPhase();
+        int roundedAverageComplexity = averageComplexity(cu);
+        analysisMetrics.stopPhase(phase, AnalysisMetrics.PHASE_COMPLEXITY, sizeBucket);
+        logger.info("Average Cyclomatic Complexity for {}: {}", fileName, roundedAverageComplexity);
+
+        // 计算注释行数和非空行数
+        phase = analysisMetrics.startPhase();
+        long nonEmptyLines = countNonEmptyLines(content);
+        long commentLineCount = countCommentLines(cu);
+        double commentRatio = (nonEmptyLines > 0) ? (double) commentLineCount / nonEmptyLines : 0.0;
+        analysisMetrics.stopPhase(phase, AnalysisMetrics.PHASE_COMMENTS, sizeBucket);
+        logger.info("Comment stats for {}: NonEmptyLines={}, CommentLines={}, Ratio={}",
+                fileName, nonEmptyLines, commentLineCount, String.format("%.2f", commentRatio));
+
+        analysis.setStyleIssueCount(checkstyleResult.getIssueCount());
+        // analysis.setStyleIssuesDetails(checkstyleResult.getDetailedMessagesAsJson()); // 如果需要存储详细信息
+        analysis.setCyclomaticComplexity(roundedAverageComplexity);
+        analysis.setCommentLineCount((int) commentLineCount);
+        analysis.setNonEmptyLineCount((int) nonEmptyLines); // 确保 Code 实体也有这个字段或从这里获取
+        analysis.setCommentRatio(Double.parseDouble(String.format("%.2f", commentRatio))); // 保留两位小数
+
+        // 3. 计算各项评分 (瞬时字段，不会保存到数据库，仅用于API响应)
+        phase = analysisMetrics.startPhase();
+        scoreCalculator.applyScores(analysis);
+        analysisMetrics.stopPhase(phase, AnalysisMetrics.PHASE_SCORING, sizeBucket);
+
+        logger.info("Scores for {}: Style={}, Complexity={}, Comment={}, Overall={}",
+                fileName, analysis.getStyleScore(), analysis.getComplexityScore(),
+                analysis.getCommentScore(), analysis.getOverallScore());
     }
-    private int calculateStyleScore(Integer styleIssueCount) {
-        if (styleIssueCount == null) return 0; // 如果没有分析结果，给0分
-        if (styleIssueCount == 0) return 100;
-        int score = 100 - (styleIssueCount * STYLE_SCORE_PER_ISSUE_DEDUCTION);
-        return Math.max(0, score); // 最低0分
-        // 或者： return (styleIssueCount >= STYLE_MAX_ISSUES_FOR_ZERO_SCORE) ? 0 : Math.max(0, score);
+
+    /**
+     * 所有方法的平均圈复杂度 (四舍五入到整数)
+     */
+    static int averageComplexity(CompilationUnit cu) {
+        CyclomaticComplexityVisitor complexityVisitor = new CyclomaticComplexityVisitor();
+        cu.accept(complexityVisitor, null);
+        int methodCountForComplexity = complexityVisitor.getMethodCount();
+        double averageCyclomaticComplexity = (methodCountForComplexity > 0) ?
+                (double) complexityVisitor.getTotalComplexity() / methodCountForComplexity : 0.0;
+        // 四舍五入到整数，或者你可以让 Analysis 实体中的字段是 double
+        return (int) Math.round(averageCyclomaticComplexity);
     }
 
-    private int calculateComplexityScore(Integer avgComplexity) {
-        if (avgComplexity == null) return 0;
-        if (avgComplexity <= COMPLEXITY_IDEAL_MAX) return 100;
-        if (avgComplexity > COMPLEXITY_UPPER_LIMIT) return 0;
+    static long countNonEmptyLines(String content) {
+        return content.lines().filter(line -> !line.trim().isEmpty()).count();
+    }
 
-        int score = 100;
-        if (avgComplexity > COMPLEXITY_IDEAL_MAX && avgComplexity <= COMPLEXITY_PENALTY_THRESHOLD) {
-            score -= (avgComplexity - COMPLEXITY_IDEAL_MAX) * COMPLEXITY_DEDUCTION_NORMAL;
-        } else { // avgComplexity > COMPLEXITY_PENALTY_THRESHOLD
-            score -= (COMPLEXITY_PENALTY_THRESHOLD - COMPLEXITY_IDEAL_MAX) * COMPLEXITY_DEDUCTION_NORMAL;
-            score -= (avgComplexity - COMPLEXITY_PENALTY_THRESHOLD) * COMPLEXITY_DEDUCTION_HIGH;
-        }
-        return Math.max(0, score);
+    /**
+     * 注释行数。JavaParser 的 comment.getRange() 对于块注释会给出整个块的行数，
+     * 对于单行注释是1行。这种统计方式比简单地按行startsWith("//")更准确。
+     */
+    static long countCommentLines(CompilationUnit cu) {
+        return cu.getAllComments().stream()
+                .mapToInt(comment -> comment.getRange()
+                        .map(range -> range.end.line - range.begin.line + 1)
+                        .orElse(0))
+                .sum();
     }
+    /**
+     * 运行 Checkstyle 并返回结果
+     */
+    CheckstyleResult runCheckstyle(File javaFile) throws CheckstyleException, IOException {
+        // 创建 AuditListener 来收集错误
+        SimpleAuditListener listener = new SimpleAuditListener();
 
-    private int calculateCommentScore(Double commentRatio) {
-        if (commentRatio == null) return 0;
-        if (commentRatio >= COMMENT_RATIO_IDEAL_MIN && commentRatio <= COMMENT_RATIO_IDEAL_MAX) {
-            return 100;
-        }
+        Checker checker = createChecker();
+        // 添加监听器
+        checker.addListener(listener);
 
-        int score = 100;
-        if (commentRatio < COMMENT_RATIO_IDEAL_MIN) {
-            // 每低1个百分点扣分
-            score -= (int) ((COMMENT_RATIO_IDEAL_MIN - commentRatio) * 100 * COMMENT_DEDUCTION_PER_PERCENT);
-        } else { // commentRatio > COMMENT_RATIO_IDEAL_MAX
-            // 每高1个百分点扣分 (也可以设置一个上限，例如超过60%直接给低分)
-            score -= (int) ((commentRatio - COMMENT_RATIO_IDEAL_MAX) * 100 * COMMENT_DEDUCTION_PER_PERCENT);
-        }
-        return Math.max(0, score);
+        // 处理文件
+        List<File> filesToProcess = new ArrayList<>();
+        filesToProcess.add(javaFile);
+        int errorCount = checker.process(filesToProcess);
+
+        checker.destroy(); // 清理资源
+
+        return new CheckstyleResult(errorCount, listener.getViolations());
     }
 
     /**
-     * 运行 Checkstyle 并返回结果
+     * 一次 Checker.process 检查多个文件，返回 绝对路径 -> 结果。
+     * cacheFile 不为 null 时使用 Checkstyle 的持久化缓存：路径、修改时间和配置都没变、并且上次没有问题的文件直接跳过，
+     * 不会出现在返回结果中 (即 0 个问题)。
      */
-    private CheckstyleResult runCheckstyle(File javaFile) throws CheckstyleException, IOException {
+    Map<String, CheckstyleResult> runCheckstyle(List<File> javaFiles, Path cacheFile)
+            throws CheckstyleException, IOException {
+        ProjectAuditListener listener = new ProjectAuditListener();
+        Checker checker = createChecker();
+        if (cacheFile != null) {
+            Files.createDirectories(cacheFile.toAbsolutePath().getParent());
+            checker.setCacheFile(cacheFile.toString()); // 需要在 configure 之后调用 (缓存中保存了配置的哈希)
+        }
+        checker.addListener(listener);
+        try {
+            checker.process(javaFiles);
+        } finally {
+            checker.destroy(); // 同时把缓存写回文件
+        }
+        return listener.getResults();
+    }
+
+    private Checker createChecker() throws CheckstyleException, IOException {
         File configFile = new ClassPathResource(CHECKSTYLE_CONFIG_PATH).getFile();
         if (!configFile.exists()) {
             throw new IOException("Checkstyle configuration file not found: " + CHECKSTYLE_CONFIG_PATH);
         }
-
-        // 创建 AuditListener 来收集错误
-        SimpleAuditListener listener = new SimpleAuditListener();
-
         Checker checker = new Checker();
         // 设置类加载器，非常重要，否则 Checkstyle 可能找不到它的模块
         checker.setModuleClassLoader(Checker.class.getClassLoader());
         // 加载配置
         checker.configure(ConfigurationLoader.loadConfiguration(
                 configFile.getAbsolutePath(), new PropertiesExpander(new Properties())));
-        // 添加监听器
-        checker.addListener(listener);
+        return checker;
+    }
 
-        // 处理文件
-        List<File> filesToProcess = new ArrayList<>();
-        filesToProcess.add(javaFile);
-        int errorCount = checker.process(filesToProcess);
+    /**
+     * 辅助类：按文件收集 Checkstyle 结果 (项目级分析)。
+     * 问题数与单文件时 checker.process 的返回值一致：只统计 ERROR 级别的事件和异常；违规明细与 SimpleAuditListener 相同。
+     */
+    private static class ProjectAuditListener implements AuditListener {
+        private final Map<String, SimpleAuditListener> files = new HashMap<>();
+        private final Map<String, Integer> errorCounts = new HashMap<>();
 
-        checker.destroy(); // 清理资源
+        @Override
+        public void auditStarted(com.puppycrawl.tools.checkstyle.api.AuditEvent event) {
+            // Not used
+        }
+
+        @Override
+        public void auditFinished(com.puppycrawl.tools.checkstyle.api.AuditEvent event) {
+            // Not used
+        }
 
-        return new CheckstyleResult(errorCount, listener.getErrors());
+        @Override
+        public void fileStarted(com.puppycrawl.tools.checkstyle.api.AuditEvent event) {
+            files.computeIfAbsent(event.getFileName(), name -> new SimpleAuditListener());
+        }
+
+        @Override
+        public void fileFinished(com.puppycrawl.tools.checkstyle.api.AuditEvent event) {
+            // Not used
+        }
+
+        @Override
+        public void addError(com.puppycrawl.tools.checkstyle.api.AuditEvent event) {
+            files.computeIfAbsent(event.getFileName(), name -> new SimpleAuditListener()).addError(event);
+            if (event.getSeverityLevel() == SeverityLevel.ERROR) {
+                errorCounts.merge(event.getFileName(), 1, Integer::sum);
+            }
+        }
+
+        @Override
+        public void addException(com.puppycrawl.tools.checkstyle.api.AuditEvent event, Throwable throwable) {
+            files.computeIfAbsent(event.getFileName(), name -> new SimpleAuditListener()).addException(event, throwable);
+            errorCounts.merge(event.getFileName(), 1, Integer::sum);
+        }
+
+        Map<String, CheckstyleResult> getResults() {
+            Map<String, CheckstyleResult> results = new HashMap<>();
+            files.forEach((fileName, listener) -> results.put(fileName,
+                    new CheckstyleResult(errorCounts.getOrDefault(fileName, 0), listener.getViolations())));
+            return results;
+        }
     }
 
     /**
      * 辅助类：用于收集 Checkstyle 错误信息的 AuditListener
+     * 违规以结构化形式 (规则、行、列、级别) 记录到 StyleViolations，不格式化消息文本
      */
     private static class SimpleAuditListener implements AuditListener {
-        private final List<String> errors = new ArrayList<>();
+        private final StyleViolations violations = new StyleViolations();
         private int issueCount = 0;
 
         @Override
@@ -288,24 +824,25 @@ public class AnalysisService {
         public void addError(com.puppycrawl.tools.checkstyle.api.AuditEvent event) {
             // 只记录错误和警告级别的问题
             if (event.getSeverityLevel() == SeverityLevel.ERROR || event.getSeverityLevel() == SeverityLevel.WARNING) {
-                errors.add(String.format("Checkstyle [%s] %s:%d:%d: %s",
-                        event.getSeverityLevel().getName(),
-                        event.getFileName(),
+                Violation violation = event.getViolation();
+                violations.add(StyleViolations.ruleName(event.getModuleId(), event.getSourceName()),
+                        violation != null ? violation.getKey() : null,
                         event.getLine(),
                         event.getColumn(),
-                        event.getMessage()));
+                        event.getSeverityLevel());
                 issueCount++;
             }
         }
 
         @Override
         public void addException(com.puppycrawl.tools.checkstyle.api.AuditEvent event, Throwable throwable) {
-            errors.add("Checkstyle Exception: " + throwable.getMessage());
+            logger.warn("Checkstyle exception: {}", throwable.getMessage());
+            violations.add("CheckstyleException", null, 0, 0, SeverityLevel.ERROR);
             issueCount++; // 也算作一个问题
         }
 
-        public List<String> getErrors() {
-            return errors;
+        public StyleViolations getViolations() {
+            return violations;
         }
         public int getIssueCount() { return issueCount; }
     }
@@ -313,35 +850,22 @@ public class AnalysisService {
     /**
      * 辅助类：用于封装 Checkstyle 结果
      */
-    private static class CheckstyleResult {
+    static class CheckstyleResult {
         private final int issueCount;
-        private final List<String> detailedMessages;
+        private final StyleViolations violations;
 
-        public CheckstyleResult(int issueCount, List<String> detailedMessages) {
+        public CheckstyleResult(int issueCount, StyleViolations violations) {
             this.issueCount = issueCount;
-            this.detailedMessages = detailedMessages;
+            this.violations = violations;
         }
 
         public int getIssueCount() {
             return issueCount;
         }
 
-        public List<String> getDetailedMessages() {
-            return detailedMessages;
+        public StyleViolations getViolations() {
+            return violations;
         }
-
-        // 可选：将详细信息转换为 JSON 字符串以便存储
-        // public String getDetailedMessagesAsJson() {
-        //     // 使用 Jackson 或 Gson 等库将 detailedMessages 列表转换为 JSON 字符串
-        //     // ObjectMapper objectMapper = new ObjectMapper();
-        //     // try {
-        //     //     return objectMapper.writeValueAsString(detailedMessages);
-        //     // } catch (JsonProcessingException e) {
-        //     //     logger.error("Error converting Checkstyle messages to JSON", e);
-        //     //     return "[]";
-        //     // }
-        //     return "Implement JSON conversion if needed";
-        // }
     }
 
 
@@ -350,7 +874,7 @@ public class AnalysisService {
      * 圈复杂度 V(G) = E - N + 2P  (E: 边数, N: 节点数, P: 连接组件数，通常为1)
      * 简化计算：1 (基础) + (if, for, while, case, catch, &&, ||, ?, -> 数量)
      */
-    private static class CyclomaticComplexityVisitor extends VoidVisitorAdapter<Void> {
+    static class CyclomaticComplexityVisitor extends VoidVisitorAdapter<Void> {
         private int complexity = 1; // 每个方法的基础复杂度为1
         private int currentMethodComplexity = 0;
         private int totalComplexity = 0;
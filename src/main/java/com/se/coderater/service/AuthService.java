@@ -11,7 +11,6 @@ import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.HashSet;
@@ -27,7 +26,7 @@ public class AuthService {
     UserRepository userRepository;
 
     @Autowired
-    PasswordEncoder encoder; // 用于密码加密
+    CredentialHashingService credentialHashingService; // 在有界线程池中执行 BCrypt
 
     @Autowired
     JwtUtils jwtUtils; // 用于生成JWT
@@ -46,7 +45,7 @@ public class AuthService {
         User user = new User(
                 registerRequest.getUsername(),
                 registerRequest.getEmail(),
-                encoder.encode(registerRequest.getPassword()) // 加密密码
+                credentialHashingService.encode(registerRequest.getPassword()) // 加密密码 (线程池满时抛 CredentialHashingBusyException)
         );
 
         // 设置默认角色 (例如 ROLE_USER)
@@ -63,8 +62,9 @@ public class AuthService {
 
     public AuthResponse loginUser(LoginRequest loginRequest) {
         // 使用 AuthenticationManager 进行用户认证
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword()));
+        // BCrypt 校验 (以及强度变化时的自动重新哈希) 放到哈希线程池中执行
+        Authentication authentication = credentialHashingService.verify(() -> authenticationManager.authenticate(
+                new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword())));
 
         // 如果认证成功，将 Authentication 对象设置到 SecurityContext 中
         SecurityContextHolder.getContext().setAuthentication(authentication);
@@ -0,0 +1,348 @@
+package com.se.coderater.service;
+
+import com.se.coderater.exception.BlobStoreReadOnlyException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 只追加的本地段文件：内容依次写入当前段，段超过 segment-size 后切换到新段。
+ * 读取时把整个段以只读方式映射到内存 (MappedByteBuffer)，返回对应区间的切片，不经过堆上的 byte[]。
+ * 这里只负责文件；哪个内容在哪个段、偏移和长度、引用计数由 BlobStoreService 保存在 code_blobs 表中。
+ * 多实例共享同一目录时每个节点都可以写入，但只追加到自己创建的段：新段用 CREATE_NEW 创建 (编号已被占用时换下一个)，
+ * 并对段文件加独占文件锁，直到不再写入该段、且该段上的追加都已提交或回滚后才释放。
+ * 回收段文件时先尝试加锁，其他节点仍持有锁 (正在写入或有未提交的追加) 时不删除。
+ * coderater.blobs.writer=false 的节点只映射读取，需要写入新内容时抛出 BlobStoreReadOnlyException，也不删除段文件。
+ */
+@Component
+public class BlobSegmentStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobSegmentStore.class);
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.blob");
+
+    /**
+     * 内容在段文件中的位置
+     */
+    public static final class Location {
+        private final int segment;
+        private final long offset;
+        private final int length;
+
+        public Location(int segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public int getSegment() {
+            return segment;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getLength() {
+            return length;
+        }
+    }
+
+    private final Path directory;
+    private final long segmentSize;
+    private final boolean writer;
+    private final ConcurrentHashMap<Integer, MappedByteBuffer> mappings = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Integer> pendingAppends = new ConcurrentHashMap<>(); // 段号 -> 尚未提交的追加数
+
+    private final Object appendLock = new Object();
+    // 以下受 appendLock 保护
+    private final Map<Integer, FileChannel> heldSegments = new HashMap<>(); // 本节点创建并持有文件锁的段 (当前段和有未提交追加的旧段)
+    private FileChannel activeChannel; // 第一次追加时才创建段
+    private volatile int activeSegment;
+    private long activeSize;
+
+    public BlobSegmentStore(@Value("${coderater.blobs.dir:data/blobs}") String directory,
+                            @Value("${coderater.blobs.segment-size-bytes:67108864}") long segmentSize,
+                            @Value("${coderater.blobs.writer:true}") boolean writer) {
+        if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE) {
+            // 读取时整段映射为一个 MappedByteBuffer，单个映射不能超过 2GB
+            throw new IllegalArgumentException("coderater.blobs.segment-size-bytes must be between 1 and " + Integer.MAX_VALUE);
+        }
+        this.directory = Paths.get(directory);
+        this.segmentSize = segmentSize;
+        this.writer = writer;
+    }
+
+    public boolean isWriter() {
+        return writer;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        logger.info("Blob segment store at {} ({})", directory.toAbsolutePath(),
+                writer ? "appends to segments it creates" : "read-only, coderater.blobs.writer=false");
+    }
+
+    /**
+     * 追加一段内容并刷到磁盘 (在写入 code_blobs 行之前调用，事务回滚时这段字节成为无人引用的数据)。
+     * 该段在调用方 release(location) 之前不会被 deleteSegment 删除 (对应的行提交前其他事务看不到；其他节点加不上锁)。
+     */
+    public Location append(byte[] bytes) throws IOException {
+        requireWriter();
+        synchronized (appendLock) {
+            if (activeChannel == null || activeSize > 0 && activeSize + bytes.length > segmentSize) {
+                openNewSegment();
+            }
+            long offset = activeSize;
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                activeChannel.write(buffer, offset + buffer.position());
+            }
+            activeChannel.force(false);
+            activeSize += bytes.length;
+            pendingAppends.merge(activeSegment, 1, Integer::sum);
+            return new Location(activeSegment, offset, bytes.length);
+        }
+    }
+
+    /**
+     * 批量追加：同一段内的内容用一次聚集写入，最后只刷盘一次 (写满一段切换新段时先刷旧段)。
+     * 返回的位置与 contents 顺序一致，每个位置都要在事务结束后 release。
+     */
+    public List<Location> appendAll(List<byte[]> contents) throws IOException {
+        requireWriter();
+        List<Location> locations = new ArrayList<>(contents.size());
+        if (contents.isEmpty()) {
+            return locations;
+        }
+        synchronized (appendLock) {
+            List<ByteBuffer> buffers = new ArrayList<>();
+            if (activeChannel == null) {
+                openNewSegment();
+            }
+            long start = activeSize;
+            try {
+                for (byte[] bytes : contents) {
+                    if (activeSize > 0 && activeSize + bytes.length > segmentSize) {
+                        write(buffers, start);
+                        activeChannel.force(false);
+                        openNewSegment(); // 旧段上已记下本批的追加，锁保留到 release
+                        buffers.clear();
+                        start = activeSize;
+                    }
+                    locations.add(new Location(activeSegment, activeSize, bytes.length));
+                    pendingAppends.merge(activeSegment, 1, Integer::sum);
+                    buffers.add(ByteBuffer.wrap(bytes));
+                    activeSize += bytes.length;
+                }
+                write(buffers, start);
+                activeChannel.force(false);
+            } catch (IOException e) {
+                activeSize = start; // 与 append 相同：写失败的区间之后会被覆盖
+                locations.forEach(this::release); // 调用方拿不到这些位置，不会再 release
+                throw e;
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * 追加内容所在的事务结束 (提交或回滚) 后调用；旧段上的追加全部结束后释放该段的文件锁
+     */
+    public void release(Location location) {
+        synchronized (appendLock) {
+            Integer remaining = pendingAppends.computeIfPresent(location.getSegment(),
+                    (segment, count) -> count > 1 ? count - 1 : null);
+            if (remaining == null && location.getSegment() != activeSegment) {
+                unhold(location.getSegment());
+            }
+        }
+    }
+
+    /**
+     * 只读切片，直接指向映射的段文件 (段比上次映射时长时重新映射)
+     */
+    public ByteBuffer read(int segment, long offset, int length) {
+        long end = offset + length;
+        MappedByteBuffer mapped = mappings.get(segment);
+        if (mapped == null || mapped.capacity() < end) {
+            mapped = mappings.compute(segment, (key, current) ->
+                    current != null && current.capacity() >= end ? current : map(key, end));
+        }
+        return mapped.slice((int) offset, length).asReadOnlyBuffer();
+    }
+
+    /**
+     * 删除已不再被引用的段文件；调用方保证该段中已没有已提交的 code_blobs 行。
+     * 本节点正在写入或还有未提交追加的段不删除；其他节点的段加不上锁 (对方仍在写入或有未提交的追加) 时也不删除。
+     * 空文件是其他节点刚创建、还没写入的新段，同样不删除。只读节点从不删除，由写入节点之后释放同一段的内容时回收
+     */
+    public boolean deleteSegment(int segment) throws IOException {
+        if (!writer) {
+            return false;
+        }
+        synchronized (appendLock) {
+            if (segment == activeSegment || heldSegments.containsKey(segment) || pendingAppends.containsKey(segment)) {
+                return false;
+            }
+        }
+        Path path = segmentPath(segment);
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.WRITE);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        try (channel) { // 关闭时释放锁
+            if (tryLock(channel) == null || channel.size() == 0) {
+                return false;
+            }
+            mappings.remove(segment); // 映射在 GC 时释放；Linux 上删除仍被映射的文件是安全的
+            return Files.deleteIfExists(path);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            for (FileChannel channel : heldSegments.values()) {
+                channel.close(); // 同时释放锁
+            }
+            heldSegments.clear();
+            activeChannel = null;
+        }
+    }
+
+    /**
+     * 创建一个新段作为当前段 (编号取目录中最大的编号 + 1，已被其他节点占用时换下一个) 并加锁。
+     * 之前的当前段没有未提交的追加时立即释放它的锁，否则等到 release
+     */
+    private void openNewSegment() throws IOException {
+        int previous = activeSegment;
+        int segment = Math.max(previous, lastSegmentOnDisk()) + 1;
+        while (true) {
+            FileChannel channel;
+            try {
+                channel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            } catch (FileAlreadyExistsException e) {
+                segment++;
+                continue;
+            }
+            FileLock lock;
+            try {
+                lock = tryLock(channel);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            if (lock == null) {
+                channel.close(); // 另一个节点正在检查这个刚创建的空文件，换下一个编号
+                segment++;
+                continue;
+            }
+            heldSegments.put(segment, channel);
+            activeChannel = channel;
+            activeSegment = segment;
+            activeSize = 0;
+            break;
+        }
+        if (previous != 0 && !pendingAppends.containsKey(previous)) {
+            unhold(previous);
+        }
+    }
+
+    private void unhold(int segment) {
+        FileChannel channel = heldSegments.remove(segment);
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Could not close blob segment {}: {}", segment, e.getMessage());
+        }
+    }
+
+    private int lastSegmentOnDisk() throws IOException {
+        int lastSegment = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    lastSegment = Math.max(lastSegment, Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+        return lastSegment;
+    }
+
+    /**
+     * 独占锁 (不等待)；其他进程或本进程中的另一个实例已持有时返回 null
+     */
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    private void requireWriter() {
+        if (!writer) {
+            throw new BlobStoreReadOnlyException();
+        }
+    }
+
+    private void write(List<ByteBuffer> buffers, long offset) throws IOException {
+        if (buffers.isEmpty()) {
+            return;
+        }
+        ByteBuffer[] array = buffers.toArray(new ByteBuffer[0]);
+        activeChannel.position(offset);
+        long remaining = buffers.stream().mapToLong(ByteBuffer::remaining).sum();
+        while (remaining > 0) {
+            remaining -= activeChannel.write(array);
+        }
+    }
+
+    private MappedByteBuffer map(int segment, long requiredSize) {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < requiredSize) {
+                throw new IOException("Blob segment " + segment + " is truncated: " + size + " < " + requiredSize + " bytes");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve(String.format("segment-%06d.blob", segment));
+    }
+}
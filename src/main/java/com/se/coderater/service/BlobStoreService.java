@@ -0,0 +1,248 @@
+package com.se.coderater.service;
+
+import com.se.coderater.entity.Code;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * 内容寻址的代码存储：codes.contentHash (SHA-256) 即 code_blobs 的主键，内容相同的代码共享同一份存储。
+ * 上传时按主键把引用计数加一即完成去重 (O(1))，只有新内容才追加到段文件；
+ * 删除或修改代码时引用计数减一，降为 0 时删除该行，段中不再有任何内容时删除段文件。
+ */
+@Service
+public class BlobStoreService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobStoreService.class);
+
+    private static final String INCREMENT_SQL = "UPDATE code_blobs SET ref_count = ref_count + 1 WHERE id = ?";
+    private static final String INSERT_SQL = "INSERT INTO code_blobs (id, segment, segment_offset, length, ref_count, created_at) "
+            + "VALUES (?, ?, ?, ?, 1, ?)";
+    private static final String INCREMENT_BY_SQL = "UPDATE code_blobs SET ref_count = ref_count + ? WHERE id = ?";
+    private static final String INSERT_COUNTED_SQL = "INSERT INTO code_blobs "
+            + "(id, segment, segment_offset, length, ref_count, created_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final BlobSegmentStore segmentStore;
+    private final Counter storedCounter;
+    private final Counter dedupedCounter;
+
+    public BlobStoreService(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate,
+                            BlobSegmentStore segmentStore, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.segmentStore = segmentStore;
+        this.storedCounter = Counter.builder("coderater.blobs.acquired").tag("result", "stored")
+                .description("Code contents added to the blob store, by whether new bytes were written").register(meterRegistry);
+        this.dedupedCounter = Counter.builder("coderater.blobs.acquired").tag("result", "deduplicated")
+                .description("Code contents added to the blob store, by whether new bytes were written").register(meterRegistry);
+    }
+
+    /**
+     * 为一份内容增加一个引用 (内容尚未保存时写入段文件)，返回 blob id，即内容的 SHA-256
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public String acquire(String content) {
+        String blobId = CodeService.sha256Hex(content);
+        if (jdbcTemplate.update(INCREMENT_SQL, blobId) == 1) {
+            dedupedCounter.increment();
+            return blobId;
+        }
+        BlobSegmentStore.Location location;
+        try {
+            location = segmentStore.append(content.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store code content " + blobId, e);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                segmentStore.release(location); // 之后该段才可能被回收
+            }
+        });
+        try {
+            jdbcTemplate.update(INSERT_SQL, blobId, location.getSegment(), location.getOffset(), location.getLength(),
+                    Timestamp.valueOf(LocalDateTime.now()));
+            storedCounter.increment();
+        } catch (DuplicateKeyException e) {
+            // 并发上传了相同的新内容，对方先插入：改为增加引用，本次追加的字节不再被引用
+            jdbcTemplate.update(INCREMENT_SQL, blobId);
+            dedupedCounter.increment();
+        }
+        return blobId;
+    }
+
+    /**
+     * acquire 的批量版本 (批量导入每块调用一次)：每份内容增加 references 个引用，返回与 contents 顺序一致的 blob id。
+     * 一次 IN 查询找出已有的内容 (加行锁，提交前不会被 release 删除)，一次批量增加引用计数；
+     * 新内容一次追加到段文件、只刷盘一次，再一次批量插入。块内重复的内容只保存一份。
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<String> acquireAll(List<String> contents, int references) {
+        List<String> blobIds = new ArrayList<>(contents.size());
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        Map<String, String> contentById = new HashMap<>();
+        for (String content : contents) {
+            String blobId = CodeService.sha256Hex(content);
+            blobIds.add(blobId);
+            counts.merge(blobId, references, Integer::sum);
+            contentById.putIfAbsent(blobId, content);
+        }
+        if (counts.isEmpty()) {
+            return blobIds;
+        }
+        Set<String> existing = new HashSet<>(namedJdbcTemplate.queryForList(
+                "SELECT id FROM code_blobs WHERE id IN (:ids) FOR UPDATE",
+                new MapSqlParameterSource("ids", counts.keySet()), String.class));
+        List<String> newIds = counts.keySet().stream().filter(id -> !existing.contains(id)).toList();
+        if (!existing.isEmpty()) {
+            jdbcTemplate.batchUpdate(INCREMENT_BY_SQL, existing.stream()
+                    .map(id -> new Object[]{counts.get(id), id}).toList());
+        }
+        if (!newIds.isEmpty()) {
+            insertNew(newIds, counts, contentById);
+        }
+        storedCounter.increment(newIds.size());
+        dedupedCounter.increment(contents.size() - newIds.size());
+        return blobIds;
+    }
+
+    private void insertNew(List<String> newIds, Map<String, Integer> counts, Map<String, String> contentById) {
+        List<BlobSegmentStore.Location> locations;
+        try {
+            locations = segmentStore.appendAll(newIds.stream()
+                    .map(id -> contentById.get(id).getBytes(StandardCharsets.UTF_8)).toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store " + newIds.size() + " code contents", e);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                locations.forEach(segmentStore::release);
+            }
+        });
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(newIds.size());
+        for (int i = 0; i < newIds.size(); i++) {
+            BlobSegmentStore.Location location = locations.get(i);
+            rows.add(new Object[]{newIds.get(i), location.getSegment(), location.getOffset(), location.getLength(),
+                    counts.get(newIds.get(i)), now});
+        }
+        try {
+            jdbcTemplate.batchUpdate(INSERT_COUNTED_SQL, rows);
+        } catch (DuplicateKeyException e) {
+            // 并发导入了相同的新内容：逐行重做；段和偏移与本批追加的位置一致的行是本批已插入的
+            Map<String, String> positions = new HashMap<>();
+            namedJdbcTemplate.query("SELECT id, segment, segment_offset FROM code_blobs WHERE id IN (:ids)",
+                    new MapSqlParameterSource("ids", newIds), rs -> {
+                        positions.put(rs.getString("id"), rs.getInt("segment") + ":" + rs.getLong("segment_offset"));
+                    });
+            for (Object[] row : rows) {
+                String position = positions.get((String) row[0]);
+                if ((row[1] + ":" + row[2]).equals(position)) {
+                    continue;
+                }
+                if (position != null || !insertQuietly(row)) {
+                    jdbcTemplate.update(INCREMENT_BY_SQL, row[4], row[0]);
+                }
+            }
+        }
+    }
+
+    private boolean insertQuietly(Object[] row) {
+        try {
+            jdbcTemplate.update(INSERT_COUNTED_SQL, row);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 减少一个引用；降为 0 时删除该行，提交后尝试回收其所在的段文件
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(String blobId) {
+        if (blobId == null) {
+            return;
+        }
+        jdbcTemplate.update("UPDATE code_blobs SET ref_count = ref_count - 1 WHERE id = ?", blobId);
+        List<Integer> segments = jdbcTemplate.queryForList(
+                "SELECT segment FROM code_blobs WHERE id = ? AND ref_count <= 0", Integer.class, blobId);
+        if (segments.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update("DELETE FROM code_blobs WHERE id = ?", blobId);
+        int segment = segments.get(0);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                reclaimSegment(segment);
+            }
+        });
+    }
+
+    /**
+     * 内容的只读切片 (直接指向映射的段文件)；blob 不存在时返回 Optional.empty()
+     */
+    public Optional<ByteBuffer> open(String blobId) {
+        if (blobId == null) {
+            return Optional.empty();
+        }
+        return jdbcTemplate.query("SELECT segment, segment_offset, length FROM code_blobs WHERE id = ?",
+                        (rs, rowNum) -> segmentStore.read(rs.getInt("segment"), rs.getLong("segment_offset"), rs.getInt("length")),
+                        blobId)
+                .stream().findFirst();
+    }
+
+    /**
+     * 按 contentHash 读取内容并写入 code.content (已加载时直接返回)
+     */
+    public String loadContent(Code code) {
+        if (code.getContent() == null) {
+            ByteBuffer bytes = open(code.getContentHash()).orElseThrow(() -> new UncheckedIOException(
+                    new FileNotFoundException("Content of code " + code.getId() + " is missing from the blob store")));
+            code.setContent(StandardCharsets.UTF_8.decode(bytes).toString());
+        }
+        return code.getContent();
+    }
+
+    private void reclaimSegment(int segment) {
+        try {
+            Integer remaining = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM code_blobs WHERE segment = ?",
+                    Integer.class, segment);
+            if (remaining != null && remaining == 0 && segmentStore.deleteSegment(segment)) {
+                logger.info("Deleted blob segment {}: no content references it any more.", segment);
+            }
+        } catch (Exception e) {
+            logger.warn("Could not reclaim blob segment {}: {}", segment, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.se.coderater.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * 通过 JdbcTemplate 直接写库 (批量开户、批量导入) 时 Hibernate 感知不到这些修改，
+ * 需要在事务提交后手动清理对应的二级缓存和查询缓存，避免读到过期数据
+ * (例如缓存了 "用户名不存在" 的 findByUsername 结果)。
+ * 通过 JPA 仓库的写操作 (save / @Modifying 查询) 由 Hibernate 自动维护缓存，无需调用。
+ */
+@Service
+public class CacheEvictionService {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public CacheEvictionService(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    public void evictAfterJdbcWrite(Class<?>... entityClasses) {
+        Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        for (Class<?> entityClass : entityClasses) {
+            cache.evictEntityData(entityClass);
+        }
+        cache.evictQueryRegions();
+    }
+}
@@ -0,0 +1,334 @@
+package com.se.coderater.service;
+
+import com.se.coderater.dto.CodeImportResult;
+import com.se.coderater.entity.Code;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * 夜间批量导入整门课的代码压缩包。
+ * 压缩包内路径的第一级目录是用户名，例如 alice/hw1/Main.java。
+ * 文件按块处理：块内并行解析统计信息，再用一次 JDBC executeBatch 写入 codes 表，
+ * 绕开 IDENTITY 主键导致的 Hibernate 逐条 INSERT；取回生成的主键后在同一事务中批量写入相似度索引，
+ * 提交后更新符号索引。代码内容在同一事务中批量写入 blob 存储 (相同内容只保存一份，每块一次追加、一次刷盘)。
+ * 解析任何文件之前先读一遍压缩包目录，一次校验全部用户，不存在的用户的文件直接跳过。
+ * 每块各自提交：某一块失败时该块回滚、导入停止，结果中报告已提交的块数和最后一个已导入的条目。
+ */
+@Service
+public class CodeImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CodeImportService.class);
+
+    private static final String INSERT_CODE_SQL =
+            "INSERT INTO codes (user_id, file_name, content_hash, uploaded_at, class_count, method_count, line_count, current_revision) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, 1)";
+
+    private final CodeService codeService;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CacheEvictionService cacheEvictionService;
+    private final SimilarityIndexService similarityIndexService;
+    private final SymbolIndexService symbolIndexService;
+    private final BlobStoreService blobStoreService;
+    private final CodeRevisionService codeRevisionService;
+    private final AnalysisScheduler analysisScheduler;
+    private final int chunkSize;
+    private final int maxFileBytes;
+
+    public CodeImportService(CodeService codeService,
+                             JdbcTemplate jdbcTemplate,
+                             NamedParameterJdbcTemplate namedJdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             CacheEvictionService cacheEvictionService,
+                             SimilarityIndexService similarityIndexService,
+                             SymbolIndexService symbolIndexService,
+                             BlobStoreService blobStoreService,
+                             CodeRevisionService codeRevisionService,
+                             AnalysisScheduler analysisScheduler,
+                             @Value("${coderater.import.chunk-size:500}") int chunkSize,
+                             @Value("${coderater.import.max-file-bytes:1048576}") int maxFileBytes) {
+        this.codeService = codeService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.cacheEvictionService = cacheEvictionService;
+        this.similarityIndexService = similarityIndexService;
+        this.symbolIndexService = symbolIndexService;
+        this.blobStoreService = blobStoreService;
+        this.codeRevisionService = codeRevisionService;
+        this.chunkSize = chunkSize;
+        this.maxFileBytes = maxFileBytes;
+        this.analysisScheduler = analysisScheduler;
+    }
+
+    public CodeImportResult importArchive(InputStream archive) throws IOException {
+        long startedAt = System.nanoTime();
+        ImportStats stats = new ImportStats();
+        // 先落到临时文件：需要在解析任何文件之前读一遍目录，校验全部用户
+        Path spooled = Files.createTempFile("coderater_import_", ".zip");
+        try {
+            Files.copy(archive, spooled, StandardCopyOption.REPLACE_EXISTING);
+            try (ZipFile zip = new ZipFile(spooled.toFile(), StandardCharsets.UTF_8)) {
+                importEntries(zip, stats);
+            }
+        } finally {
+            Files.deleteIfExists(spooled);
+        }
+        if (stats.imported > 0) {
+            cacheEvictionService.evictAfterJdbcWrite(Code.class); // JDBC 直接写入，绕过了 Hibernate 缓存
+        }
+
+        long elapsedMs = Math.max(1, (System.nanoTime() - startedAt) / 1_000_000);
+        long filesPerMinute = stats.imported * 60_000L / elapsedMs;
+        logger.info("Archive import finished: {} imported in {} chunks, {} skipped, {} parse failures in {} ms ({} files/min)",
+                stats.imported, stats.committedChunks, stats.skipped, stats.parseFailures, elapsedMs, filesPerMinute);
+        return new CodeImportResult(stats.imported, stats.skipped, stats.parseFailures,
+                stats.unknownUsers, stats.committedChunks, stats.lastCommittedEntry, stats.error,
+                elapsedMs, filesPerMinute);
+    }
+
+    private void importEntries(ZipFile zip, ImportStats stats) throws IOException {
+        // 1. 只读目录：收集 .java 条目，一次校验全部用户 (不存在的用户的文件不解析、不写入)
+        List<ZipEntry> javaEntries = new ArrayList<>();
+        Set<String> usernames = new HashSet<>();
+        for (ZipEntry entry : Collections.list(zip.entries())) {
+            if (entry.isDirectory()) {
+                continue;
+            }
+            String path = pathOf(entry);
+            int slash = path.indexOf('/');
+            if (slash <= 0 || !path.toLowerCase(Locale.ROOT).endsWith(".java")) {
+                stats.skipped++;
+                continue;
+            }
+            javaEntries.add(entry);
+            usernames.add(path.substring(0, slash));
+        }
+        Map<String, Long> userIds = resolveUserIds(usernames);
+
+        // 2. 按块读取、解析并写入；某一块失败时该块整体回滚，停止导入并报告已提交的块
+        List<PendingFile> chunk = new ArrayList<>(chunkSize);
+        for (ZipEntry entry : javaEntries) {
+            String path = pathOf(entry);
+            String username = path.substring(0, path.indexOf('/'));
+            Long userId = userIds.get(username.toLowerCase(Locale.ROOT));
+            if (userId == null) {
+                stats.skipped++;
+                stats.unknownUsers.add(username);
+                continue;
+            }
+            byte[] bytes;
+            try (InputStream in = zip.getInputStream(entry)) {
+                bytes = in.readNBytes(maxFileBytes + 1);
+            }
+            if (bytes.length == 0 || bytes.length > maxFileBytes) {
+                stats.skipped++;
+                continue;
+            }
+            String fileName = path.substring(path.lastIndexOf('/') + 1);
+            chunk.add(new PendingFile(path, userId, fileName, new String(bytes, StandardCharsets.UTF_8)));
+            if (chunk.size() >= chunkSize) {
+                if (!commitChunk(chunk, stats)) {
+                    return;
+                }
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            commitChunk(chunk, stats);
+        }
+    }
+
+    private static String pathOf(ZipEntry entry) {
+        return entry.getName().replace('\\', '/');
+    }
+
+    /**
+     * 用户名 (小写) 到 user_id 的映射，每 1000 个用户名一次查询
+     */
+    private Map<String, Long> resolveUserIds(Set<String> usernames) {
+        Map<String, Long> userIds = new HashMap<>();
+        List<String> pending = new ArrayList<>(usernames);
+        for (int from = 0; from < pending.size(); from += 1000) {
+            List<String> batch = pending.subList(from, Math.min(pending.size(), from + 1000));
+            namedJdbcTemplate.query("SELECT id, username FROM users WHERE username IN (:usernames)",
+                    new MapSqlParameterSource("usernames", batch),
+                    rs -> {
+                        userIds.put(rs.getString("username").toLowerCase(Locale.ROOT), rs.getLong("id"));
+                    });
+        }
+        return userIds;
+    }
+
+    /**
+     * 写入一块；失败时记录错误并返回 false (该块的事务已回滚，之前的块保持已提交)
+     */
+    private boolean commitChunk(List<PendingFile> chunk, ImportStats stats) {
+        String first = chunk.get(0).path;
+        String last = chunk.get(chunk.size() - 1).path;
+        try {
+            flushChunk(chunk, stats);
+        } catch (RuntimeException e) {
+            logger.error("Archive import stopped: chunk {} ({} .. {}) was rolled back.",
+                    stats.committedChunks + 1, first, last, e);
+            stats.error = "Chunk " + (stats.committedChunks + 1) + " (" + first + " .. " + last
+                    + ") failed and was rolled back: " + e.getMessage();
+            return false;
+        }
+        stats.committedChunks++;
+        stats.lastCommittedEntry = last;
+        return true;
+    }
+
+    private void flushChunk(List<PendingFile> chunk, ImportStats stats) {
+        // 1. 在分析工作线程上并行解析 (BULK 优先级，与其他用户的分析公平排队；与单文件上传使用同一套统计逻辑)
+        List<Future<Code>> parsed = new ArrayList<>(chunk.size());
+        List<Code> codes = new ArrayList<>(chunk.size());
+        try {
+            for (PendingFile file : chunk) {
+                Callable<Code> task = () -> {
+                    Code code = new Code(file.fileName, file.content);
+                    codeService.applyParsedStatistics(code);
+                    return code;
+                };
+                parsed.add(analysisScheduler.submitForCurrentUser(AnalysisPriority.BULK, 1, task));
+            }
+            for (Future<Code> future : parsed) {
+                codes.add(await(future));
+            }
+        } catch (RuntimeException e) {
+            parsed.forEach(future -> future.cancel(true)); // 本块不再写入，剩下的解析任务不必执行
+            throw e;
+        }
+
+        // 2. 组装批量参数 (用户已在导入开始时校验)
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(chunk.size());
+        List<String> contents = new ArrayList<>(chunk.size());
+        List<int[]> signatures = new ArrayList<>(chunk.size());
+        List<CodeSymbols> symbols = new ArrayList<>(chunk.size());
+        int parseFailures = 0;
+        for (int i = 0; i < chunk.size(); i++) {
+            Code code = codes.get(i);
+            if (code.getClassCount() == null) {
+                parseFailures++;
+            }
+            rows.add(new Object[]{chunk.get(i).userId, code.getFileName(), null, now,
+                    code.getClassCount(), code.getMethodCount(), code.getLineCount()});
+            contents.add(code.getContent());
+            signatures.add(code.getSimilaritySignature());
+            symbols.add(code.getSymbols());
+        }
+
+        // 3. 每块一个事务、一次 executeBatch；按返回的主键 (与 rows 顺序一致) 写入相似度索引
+        transactionTemplate.executeWithoutResult(status -> {
+            // 每份内容两个引用：codes 行和第 1 版快照；content_hash 即 blob id
+            List<String> blobIds = blobStoreService.acquireAll(contents, 2);
+            for (int i = 0; i < rows.size(); i++) {
+                rows.get(i)[2] = blobIds.get(i);
+            }
+            GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERT_CODE_SQL, Statement.RETURN_GENERATED_KEYS),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            Object[] row = rows.get(i);
+                            for (int column = 0; column < row.length; column++) {
+                                StatementCreatorUtils.setParameterValue(ps, column + 1, SqlTypeValue.TYPE_UNKNOWN, row[column]);
+                            }
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return rows.size();
+                        }
+                    }, keyHolder);
+            List<Long> codeIds = keyHolder.getKeyList().stream()
+                    .map(keys -> ((Number) keys.values().iterator().next()).longValue())
+                    .toList();
+            similarityIndexService.indexAll(codeIds, signatures);
+            codeRevisionService.recordInitialAll(codeIds, rows.stream().map(row -> (String) row[1]).toList(),
+                    contents, blobIds, now.toLocalDateTime());
+            for (int i = 0; i < codeIds.size(); i++) {
+                Object[] row = rows.get(i);
+                symbolIndexService.indexAfterCommit(codeIds.get(i), (Long) row[0], (String) row[1],
+                        now.toLocalDateTime(), symbols.get(i));
+            }
+        });
+        stats.imported += rows.size();
+        stats.parseFailures += parseFailures;
+    }
+
+    private static Code await(Future<Code> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while parsing imported files.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to parse imported file.", e.getCause());
+        }
+    }
+
+    private static class PendingFile {
+        private final String path;
+        private final Long userId;
+        private final String fileName;
+        private final String content;
+
+        PendingFile(String path, Long userId, String fileName, String content) {
+            this.path = path;
+            this.userId = userId;
+            this.fileName = fileName;
+            this.content = content;
+        }
+    }
+
+    private static class ImportStats {
+        private int imported;
+        private int skipped;
+        private int parseFailures;
+        private final Set<String> unknownUsers = new TreeSet<>();
+        private int committedChunks;
+        private String lastCommittedEntry;
+        private String error;
+    }
+}
@@ -0,0 +1,211 @@
+package com.se.coderater.service;
+
+import com.se.coderater.dto.CodeRevisionDTO;
+import com.se.coderater.entity.Analysis;
+import com.se.coderater.entity.AnalysisMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.FileNotFoundException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 代码修订历史 (code_revisions)。
+ * 每版保存相对上一版的按行增量 (LineDiff)，第 1 版和此后每隔 snapshot-interval 版保存完整快照
+ * (快照通过 BlobStoreService 引用 blob，与代码内容共享存储并计入引用计数)；增量不比内容小或编辑距离过大时也保存快照。
+ * 还原历史版本时从最近的快照开始应用增量；最新版本直接读取代码当前的 blob (codes.current_revision 指向它)。
+ */
+@Service
+public class CodeRevisionService {
+
+    private static final String INSERT_SQL = "INSERT INTO code_revisions "
+            + "(code_id, revision_no, file_name, content_hash, content_length, blob_id, delta, created_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String LINK_ANALYSIS_SQL = "UPDATE code_revisions SET analysis_id = ?, analyzed_at = ?, "
+            + "analysis_mode = ?, style_issue_count = ?, cyclomatic_complexity = ?, comment_line_count = ?, "
+            + "non_empty_line_count = ?, comment_ratio = ? WHERE code_id = ? AND revision_no = ?";
+    private static final String LIST_SQL = "SELECT revision_no, file_name, content_hash, content_length, "
+            + "blob_id IS NOT NULL AS snapshot, CHAR_LENGTH(delta) AS stored_length, created_at, analysis_id, "
+            + "analyzed_at, analysis_mode, style_issue_count, cyclomatic_complexity, comment_ratio "
+            + "FROM code_revisions WHERE code_id = ? ORDER BY revision_no DESC";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlobStoreService blobStoreService;
+    private final ScoreCalculator scoreCalculator;
+    private final int snapshotInterval;
+
+    public CodeRevisionService(JdbcTemplate jdbcTemplate, BlobStoreService blobStoreService,
+                               ScoreCalculator scoreCalculator,
+                               @Value("${coderater.revisions.snapshot-interval:10}") int snapshotInterval) {
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException("coderater.revisions.snapshot-interval must be at least 1");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.blobStoreService = blobStoreService;
+        this.scoreCalculator = scoreCalculator;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * 第 1 版 (上传、导入，或为修订历史上线前的代码补记)：保存快照，返回版本号 1
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public int recordInitial(Long codeId, String fileName, String content, LocalDateTime createdAt) {
+        jdbcTemplate.update(INSERT_SQL, snapshotRow(codeId, 1, fileName, content, createdAt));
+        return 1;
+    }
+
+    /**
+     * 批量导入的新代码各记第 1 版 (一次 executeBatch)。
+     * blobIds 是调用方已经为这些快照各多取得一个引用的 blob (BlobStoreService.acquireAll 的 references)，这里不再重复计算哈希和取引用。
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordInitialAll(List<Long> codeIds, List<String> fileNames, List<String> contents,
+                                 List<String> blobIds, LocalDateTime createdAt) {
+        List<Object[]> rows = new ArrayList<>(codeIds.size());
+        for (int i = 0; i < codeIds.size(); i++) {
+            rows.add(snapshotRow(codeIds.get(i), 1, fileNames.get(i), blobIds.get(i), contents.get(i).length(), createdAt));
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        }
+    }
+
+    /**
+     * 修改代码后记录新的一版，返回新版本号。
+     * previousRevision 为 null (修订历史上线前的代码) 时先把修改前的内容补记为第 1 版。
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public int recordRevision(Long codeId, Integer previousRevision, String previousFileName, String previousContent,
+                              LocalDateTime previousCreatedAt, String fileName, String content) {
+        int previous = previousRevision != null ? previousRevision
+                : recordInitial(codeId, previousFileName, previousContent,
+                        previousCreatedAt != null ? previousCreatedAt : LocalDateTime.now());
+        int revisionNo = previous + 1;
+        LocalDateTime now = LocalDateTime.now();
+        String delta = null;
+        if ((revisionNo - 1) % snapshotInterval != 0) { // 第 1、1+interval、1+2*interval ... 版保存快照
+            delta = LineDiff.encode(previousContent, content);
+            if (delta != null && delta.length() >= content.length()) {
+                delta = null; // 几乎整体重写：快照更省空间，还原也更快
+            }
+        }
+        if (delta == null) {
+            jdbcTemplate.update(INSERT_SQL, snapshotRow(codeId, revisionNo, fileName, content, now));
+        } else {
+            jdbcTemplate.update(INSERT_SQL, codeId, revisionNo, fileName, CodeService.sha256Hex(content),
+                    content.length(), null, delta, Timestamp.valueOf(now));
+        }
+        return revisionNo;
+    }
+
+    /**
+     * 分析结果保存后，把分析 id 和原始指标记到对应版本上
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void linkAnalysis(Long codeId, int revisionNo, Analysis analysis) {
+        jdbcTemplate.update(LINK_ANALYSIS_SQL, analysis.getId(),
+                analysis.getAnalyzedAt() != null ? Timestamp.valueOf(analysis.getAnalyzedAt()) : null,
+                analysis.getAnalysisMode() != null ? analysis.getAnalysisMode().name() : null,
+                analysis.getStyleIssueCount(), analysis.getCyclomaticComplexity(), analysis.getCommentLineCount(),
+                analysis.getNonEmptyLineCount(), analysis.getCommentRatio(), codeId, revisionNo);
+    }
+
+    /**
+     * 全部版本 (新的在前)，分析过的版本带评分
+     */
+    public List<CodeRevisionDTO> listRevisions(Long codeId) {
+        return jdbcTemplate.query(LIST_SQL, REVISION_ROW_MAPPER, codeId).stream()
+                .map(scoreCalculator::applyScores)
+                .toList();
+    }
+
+    /**
+     * 某一版的内容；最新版本直接读取代码当前的 blob，历史版本从最近的快照开始应用增量。版本不存在时返回 Optional.empty()
+     */
+    @Transactional(readOnly = true)
+    public Optional<String> loadRevisionContent(Long codeId, int revisionNo) {
+        List<String> current = jdbcTemplate.queryForList(
+                "SELECT content_hash FROM codes WHERE id = ? AND current_revision = ?", String.class, codeId, revisionNo);
+        if (!current.isEmpty()) {
+            return Optional.of(decode(current.get(0)));
+        }
+        List<Object[]> snapshots = jdbcTemplate.query("SELECT revision_no, blob_id FROM code_revisions "
+                        + "WHERE code_id = ? AND revision_no <= ? AND blob_id IS NOT NULL ORDER BY revision_no DESC LIMIT 1",
+                (rs, rowNum) -> new Object[]{rs.getInt("revision_no"), rs.getString("blob_id")}, codeId, revisionNo);
+        if (snapshots.isEmpty()) {
+            return Optional.empty();
+        }
+        int snapshotNo = (Integer) snapshots.get(0)[0];
+        String content = decode((String) snapshots.get(0)[1]);
+        List<String> deltas = jdbcTemplate.queryForList("SELECT delta FROM code_revisions "
+                        + "WHERE code_id = ? AND revision_no > ? AND revision_no <= ? ORDER BY revision_no",
+                String.class, codeId, snapshotNo, revisionNo);
+        if (deltas.size() != revisionNo - snapshotNo) {
+            return Optional.empty(); // 请求的版本不存在
+        }
+        for (String delta : deltas) {
+            content = LineDiff.apply(content, delta);
+        }
+        return Optional.of(content);
+    }
+
+    /**
+     * 删除代码时删除全部版本，并释放快照持有的 blob 引用
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void deleteRevisions(Long codeId) {
+        List<String> blobIds = jdbcTemplate.queryForList(
+                "SELECT blob_id FROM code_revisions WHERE code_id = ? AND blob_id IS NOT NULL", String.class, codeId);
+        jdbcTemplate.update("DELETE FROM code_revisions WHERE code_id = ?", codeId);
+        blobIds.forEach(blobStoreService::release);
+    }
+
+    private Object[] snapshotRow(Long codeId, int revisionNo, String fileName, String content, LocalDateTime createdAt) {
+        return snapshotRow(codeId, revisionNo, fileName, blobStoreService.acquire(content), content.length(), createdAt);
+    }
+
+    private Object[] snapshotRow(Long codeId, int revisionNo, String fileName, String blobId, int contentLength,
+                                 LocalDateTime createdAt) {
+        return new Object[]{codeId, revisionNo, fileName, blobId, contentLength, blobId, null,
+                Timestamp.valueOf(createdAt)};
+    }
+
+    private String decode(String blobId) {
+        return blobStoreService.open(blobId)
+                .map(bytes -> StandardCharsets.UTF_8.decode(bytes).toString())
+                .orElseThrow(() -> new UncheckedIOException(
+                        new FileNotFoundException("Revision content " + blobId + " is missing from the blob store")));
+    }
+
+    private static final RowMapper<CodeRevisionDTO> REVISION_ROW_MAPPER = (rs, rowNum) -> {
+        CodeRevisionDTO revision = new CodeRevisionDTO();
+        revision.setRevisionNo(rs.getInt("revision_no"));
+        revision.setFileName(rs.getString("file_name"));
+        revision.setContentHash(rs.getString("content_hash"));
+        revision.setContentLength(rs.getInt("content_length"));
+        revision.setSnapshot(rs.getBoolean("snapshot"));
+        revision.setStoredLength(rs.getObject("stored_length") != null ? rs.getInt("stored_length") : null);
+        revision.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        revision.setAnalysisId(rs.getObject("analysis_id") != null ? rs.getLong("analysis_id") : null);
+        Timestamp analyzedAt = rs.getTimestamp("analyzed_at");
+        revision.setAnalyzedAt(analyzedAt != null ? analyzedAt.toLocalDateTime() : null);
+        String mode = rs.getString("analysis_mode");
+        revision.setAnalysisMode(mode != null ? AnalysisMode.valueOf(mode) : null);
+        revision.setStyleIssueCount(rs.getObject("style_issue_count") != null ? rs.getInt("style_issue_count") : null);
+        revision.setCyclomaticComplexity(rs.getObject("cyclomatic_complexity") != null
+                ? rs.getInt("cyclomatic_complexity") : null);
+        revision.setCommentRatio(rs.getObject("comment_ratio") != null ? rs.getDouble("comment_ratio") : null);
+        return revision;
+    };
+}
@@ -1,12 +1,13 @@
 package com.se.coderater.service;
 
 import com.github.javaparser.ParseProblemException;
-import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.se.coderater.entity.Analysis;
 import com.se.coderater.repository.AnalysisRepository;
+import com.se.coderater.repository.RuleViolationCountRepository;
+import com.se.coderater.repository.StyleViolationRepository;
 import com.se.coderater.entity.Code;
 import com.se.coderater.repository.CodeRepository;
 import org.slf4j.Logger; // 用于日志记录
@@ -18,16 +19,31 @@ import org.springframework.web.multipart.MultipartFile;
 import org.springframework.util.StringUtils;
 import com.se.coderater.entity.User; // 确保导入
 import com.se.coderater.repository.UserRepository; // 需要注入 UserRepository
+import com.se.coderater.security.SecurityUtils;
 import org.springframework.security.core.Authentication; // 用于获取认证信息
 import org.springframework.security.core.context.SecurityContextHolder; // 用于获取当前安全上下文
 import org.springframework.security.core.userdetails.UsernameNotFoundException; // 用于用户未找到异常
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HexFormat;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.security.access.AccessDeniedException; // 用于权限不足的异常
 import com.se.coderater.dto.CodeSummaryDTO; // 导入 DTO
+import com.se.coderater.dto.CodeListingStamp;
+import com.se.coderater.dto.CodeVersionStamp;
+import com.se.coderater.dto.CodeRevisionDTO;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 @Service
@@ -36,15 +52,42 @@ public class CodeService {
     private static final Logger logger = LoggerFactory.getLogger(CodeService.class); // 日志记录器
     private final UserRepository userRepository; // 新增注入
     private final CodeRepository codeRepository;
+    private final AnalysisRepository analysisRepository;
+    private final StyleViolationRepository styleViolationRepository;
+    private final RuleViolationCountRepository ruleViolationCountRepository;
+    private final SimilarityIndexService similarityIndexService;
+    private final SymbolIndexService symbolIndexService;
+    private final JavaParserPool javaParserPool;
+    private final BlobStoreService blobStoreService;
+    private final CodeRevisionService codeRevisionService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
 
     @Autowired
-    public CodeService(CodeRepository codeRepository, UserRepository userRepository) { // 修改构造函数
+    public CodeService(CodeRepository codeRepository, UserRepository userRepository,
+                       AnalysisRepository analysisRepository,
+                       StyleViolationRepository styleViolationRepository,
+                       RuleViolationCountRepository ruleViolationCountRepository,
+                       SimilarityIndexService similarityIndexService,
+                       SymbolIndexService symbolIndexService,
+                       JavaParserPool javaParserPool,
+                       BlobStoreService blobStoreService,
+                       CodeRevisionService codeRevisionService) { // 修改构造函数
         this.codeRepository = codeRepository;
         this.userRepository = userRepository; // 初始化
+        this.analysisRepository = analysisRepository;
+        this.styleViolationRepository = styleViolationRepository;
+        this.ruleViolationCountRepository = ruleViolationCountRepository;
+        this.similarityIndexService = similarityIndexService;
+        this.symbolIndexService = symbolIndexService;
+        this.javaParserPool = javaParserPool;
+        this.blobStoreService = blobStoreService;
+        this.codeRevisionService = codeRevisionService;
     }
 
 
-
+    @Transactional // 代码、blob 引用计数和相似度索引一起提交
     public Code storeFileAndParse(MultipartFile file) throws IOException, IllegalArgumentException {
         // 1. 获取当前登录用户
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -76,48 +119,76 @@ public class CodeService {
         Code newCode = new Code();
         newCode.setFileName(originalFileName);
         newCode.setContent(content);
+        newCode.setContentHash(blobStoreService.acquire(content)); // 相同内容已存在时只增加引用计数
         newCode.setUploader(currentUser); // 关联当前登录用户
+        newCode.setCurrentRevision(1);
+
+        // 5. 使用 JavaParser 解析代码 (语法错误时仍然保存文件，解析字段为 null)
+        if (applyParsedStatistics(newCode)) {
+            logger.info("Parsed {}: Classes={}, Methods={}, Lines={}", originalFileName,
+                    newCode.getClassCount(), newCode.getMethodCount(), newCode.getLineCount());
+        }
+
+        // 6. 保存到数据库，并写入近似重复检测索引和符号索引
+        Code savedCode = codeRepository.save(newCode);
+        codeRevisionService.recordInitial(savedCode.getId(), originalFileName, content, savedCode.getUploadedAt());
+        similarityIndexService.index(savedCode.getId(), newCode.getSimilaritySignature());
+        symbolIndexService.indexAfterCommit(savedCode.getId(), currentUser.getId(), savedCode.getFileName(),
+                savedCode.getUploadedAt(), newCode.getSymbols());
+        return savedCode;
+    }
 
-        // 5. 使用 JavaParser 解析代码
+    /**
+     * 用 JavaParser 统计类数量、方法数量和非空行数并写入 Code (上传、修改、批量导入共用)。
+     * 同时从词法单元计算 MinHash 签名 (similaritySignature)，并提取符号 (symbols)。
+     * 语法错误时统计字段、签名和符号置为 null，返回 false。
+     */
+    public boolean applyParsedStatistics(Code code) {
+        code.setClassCount(null);
+        code.setMethodCount(null);
+        code.setLineCount(null);
+        code.setSimilaritySignature(null);
+        code.setSymbols(null);
         try {
-            CompilationUnit cu = StaticJavaParser.parse(content);
+            CompilationUnit cu = javaParserPool.parse(JavaParserPool.Purpose.STRUCTURE, code.getContent()); // 不归属注释
+            code.setSimilaritySignature(MinHash.signature(cu));
+            code.setSymbols(CodeSymbols.of(cu));
 
             // 统计类数量 (包括接口、枚举、注解类型)
             // findAll(ClassOrInterfaceDeclaration.class) 会找到所有的类和接口声明
             // 你可以根据需要更精确地过滤，例如只统计 public class
             int classCount = cu.findAll(ClassOrInterfaceDeclaration.class).size();
-            newCode.setClassCount(classCount);
+            code.setClassCount(classCount);
 
             // 统计方法数量
             int methodCount = cu.findAll(MethodDeclaration.class).size();
-            newCode.setMethodCount(methodCount);
+            code.setMethodCount(methodCount);
 
             // 统计代码行数 (这里我们统计非空行数作为示例)
             // 你也可以直接使用 content.lines().count() 来获取总行数
-            long nonEmptyLines = content.lines().filter(line -> !line.trim().isEmpty()).count();
-            newCode.setLineCount((int) nonEmptyLines); // 注意类型转换
+            long nonEmptyLines = code.getContent().lines().filter(line -> !line.trim().isEmpty()).count();
+            code.setLineCount((int) nonEmptyLines); // 注意类型转换
 
-            logger.info("Parsed {}: Classes={}, Methods={}, Lines={}", originalFileName, classCount, methodCount, nonEmptyLines);
+            logger.debug("Parsed {}: Classes={}, Methods={}, Lines={}", code.getFileName(), classCount, methodCount, nonEmptyLines);
+            return true;
 
         } catch (ParseProblemException e) {
             // 如果 Java 代码有语法错误，JavaParser 会抛出 ParseProblemException
-            logger.error("Failed to parse Java file: {}. Reason: {}", originalFileName, e.getMessage());
+            logger.error("Failed to parse Java file: {}. Reason: {}", code.getFileName(), e.getMessage());
             // 你可以选择如何处理：
             // 1. 仍然保存文件，但解析相关的字段为 null 或 0 (当前实现会是这样，因为字段是Integer，默认为null)
             // 2. 抛出异常，不允许保存语法错误的文件
             // 3. 保存文件，并记录错误信息到 Code 实体的一个新字段中
             // 这里我们选择记录日志，并继续保存（解析字段将保持null或默认值）
             // 如果希望严格一点，可以再次抛出异常：
-            // throw new IllegalArgumentException("Invalid Java syntax in file: " + originalFileName + ". " + e.getMessage());
+            // throw new IllegalArgumentException("Invalid Java syntax in file: " + code.getFileName() + ". " + e.getMessage());
         } catch (Exception e) {
             // 其他可能的解析时异常
-            logger.error("An unexpected error occurred during parsing file: {}. Reason: {}", originalFileName, e.getMessage());
+            logger.error("An unexpected error occurred during parsing file: {}. Reason: {}", code.getFileName(), e.getMessage());
         }
-
-
-        // 6. 保存到数据库
-        return codeRepository.save(newCode);
+        return false;
     }
+
     // CodeService.java
 // ...
     public List<Code> getCodesForCurrentUser() {
@@ -127,7 +198,44 @@ public class CodeService {
         }
         String currentUsername = authentication.getName();
         // 使用 findByUploaderUsername 可以避免再次查询 User 对象
-        return codeRepository.findByUploaderUsername(currentUsername);
+        List<Code> codes = codeRepository.findByUploaderUsername(currentUsername);
+        codes.forEach(blobStoreService::loadContent);
+        return codes;
+    }
+
+    /**
+     * 当前登录用户的 id (在请求线程上调用；流式响应的写出阶段可能运行在其他线程)
+     */
+    public Long getCurrentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || "anonymousUser".equals(authentication.getPrincipal())) {
+            throw new IllegalStateException("User must be authenticated to view their codes.");
+        }
+        return SecurityUtils.getUserId(authentication);
+    }
+
+    public long countCodesForUser(Long userId) {
+        return codeRepository.countByUploaderId(userId);
+    }
+
+    /**
+     * 把用户的全部代码以 JSON 数组逐行写出。
+     * 每写完一行就把实体从持久化上下文中移除，内存占用与代码数量无关。
+     */
+    @Transactional(readOnly = true)
+    public void writeCodesForUser(Long userId, JsonGenerator generator, ObjectWriter codeWriter) throws IOException {
+        generator.writeStartArray();
+        try (Stream<Code> codes = codeRepository.streamByUploaderId(userId)) {
+            Iterator<Code> iterator = codes.iterator();
+            while (iterator.hasNext()) {
+                Code code = iterator.next();
+                blobStoreService.loadContent(code);
+                codeWriter.writeValue(generator, code);
+                entityManager.detach(code);
+            }
+        }
+        generator.writeEndArray();
+        generator.flush();
     }
 
     // 可选：根据 codeId 获取代码详情，并检查是否属于当前用户
@@ -136,19 +244,75 @@ public class CodeService {
         if (authentication == null || !authentication.isAuthenticated() || "anonymousUser".equals(authentication.getPrincipal())) {
             throw new IllegalStateException("User must be authenticated to view this code."); // 或者返回 Optional.empty()
         }
-        String currentUsername = authentication.getName();
+        Long currentUserId = SecurityUtils.getUserId(authentication);
 
-        Optional<Code> codeOpt = codeRepository.findById(codeId);
-        if (codeOpt.isPresent()) {
-            if (codeOpt.get().getUploader().getUsername().equals(currentUsername)) {
-                return codeOpt; // 用户是所有者，返回代码
-            } else {
-                // 用户不是所有者，抛出 AccessDeniedException
-                throw new AccessDeniedException("You do not have permission to view this code.");
-            }
+        // 先用轻量查询 (只取 user_id) 做所有权校验，通过后才加载完整的 Code
+        Optional<Long> ownerIdOpt = codeRepository.findUploaderIdById(codeId);
+        if (ownerIdOpt.isEmpty()) {
+            return Optional.empty(); // 代码本身未找到
+        }
+        if (!ownerIdOpt.get().equals(currentUserId)) {
+            // 用户不是所有者，抛出 AccessDeniedException
+            throw new AccessDeniedException("You do not have permission to view this code.");
+        }
+        Optional<Code> code = codeRepository.findById(codeId); // 用户是所有者，返回代码
+        code.ifPresent(blobStoreService::loadContent);
+        return code;
+    }
+    /**
+     * 代码原文的只读切片 (直接指向映射的 blob 段文件，不复制到堆上)，校验所有权；代码不存在时返回 Optional.empty()
+     */
+    public Optional<ByteBuffer> openContentForCurrentUser(Long codeId) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || "anonymousUser".equals(authentication.getPrincipal())) {
+            throw new IllegalStateException("User must be authenticated to view this code.");
+        }
+        Optional<CodeVersionStamp> stampOpt = codeRepository.findVersionStampById(codeId);
+        if (stampOpt.isEmpty()) {
+            return Optional.empty();
+        }
+        if (!stampOpt.get().getOwnerId().equals(SecurityUtils.getUserId(authentication))) {
+            throw new AccessDeniedException("You do not have permission to view this code.");
+        }
+        return blobStoreService.open(stampOpt.get().getContentHash());
+    }
+
+    /**
+     * 代码的修订历史 (新的在前)，校验所有权；代码不存在时返回 Optional.empty()
+     */
+    public Optional<List<CodeRevisionDTO>> getRevisionsForCurrentUser(Long codeId) {
+        if (!checkOwnershipForView(codeId)) {
+            return Optional.empty();
+        }
+        return Optional.of(codeRevisionService.listRevisions(codeId));
+    }
+
+    /**
+     * 某一版的代码内容，校验所有权；代码或该版本不存在时返回 Optional.empty()
+     */
+    public Optional<String> getRevisionContentForCurrentUser(Long codeId, int revisionNo) {
+        if (!checkOwnershipForView(codeId)) {
+            return Optional.empty();
         }
-        return Optional.empty(); // 代码本身未找到
+        return codeRevisionService.loadRevisionContent(codeId, revisionNo);
     }
+
+    // 代码不存在时返回 false，不属于当前用户时抛出 AccessDeniedException
+    private boolean checkOwnershipForView(Long codeId) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || "anonymousUser".equals(authentication.getPrincipal())) {
+            throw new IllegalStateException("User must be authenticated to view this code.");
+        }
+        Optional<Long> ownerId = codeRepository.findUploaderIdById(codeId);
+        if (ownerId.isEmpty()) {
+            return false;
+        }
+        if (!ownerId.get().equals(SecurityUtils.getUserId(authentication))) {
+            throw new AccessDeniedException("You do not have permission to view this code.");
+        }
+        return true;
+    }
+
     @Transactional // 确保数据库操作的原子性
     public void deleteCodeForCurrentUser(Long codeId) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -156,15 +320,16 @@ public class CodeService {
             throw new IllegalStateException("User must be authenticated to delete code.");
         }
         String currentUsername = authentication.getName();
+        Long currentUserId = SecurityUtils.getUserId(authentication);
 
-        Code codeToDelete = codeRepository.findById(codeId)
+        CodeVersionStamp stamp = codeRepository.findVersionStampById(codeId) // 同时取回 contentHash，用于释放 blob 引用
                 .orElseThrow(() -> new IllegalArgumentException("Code not found with id: " + codeId));
-
+        Long ownerId = stamp.getOwnerId();
 
         // 权限校验：确保代码属于当前登录用户
-        if (!codeToDelete.getUploader().getUsername().equals(currentUsername)) {
-            logger.warn("User '{}' attempted to delete code '{}' owned by '{}'. Access denied.",
-                    currentUsername, codeId, codeToDelete.getUploader().getUsername());
+        if (!ownerId.equals(currentUserId)) {
+            logger.warn("User '{}' attempted to delete code '{}' owned by user id {}. Access denied.",
+                    currentUsername, codeId, ownerId);
             throw new AccessDeniedException("You do not have permission to delete this code.");
         }
 
@@ -175,7 +340,15 @@ public class CodeService {
         //    假设我们已经在 Code 实体中对 Analysis 设置了级联删除 (e.g., @OneToOne(mappedBy = "code", cascade = CascadeType.ALL))
         //    或者 Analysis 实体中对 Code 的引用允许 Code 被删除。
 
-        codeRepository.delete(codeToDelete);
+        // 这里直接按 ID 批量删除：先删 Analysis (外键)，再删 Code，都不需要把实体读进内存
+        styleViolationRepository.deleteByCodeIdDirectly(codeId);
+        ruleViolationCountRepository.deleteByCodeIdDirectly(codeId);
+        similarityIndexService.remove(codeId);
+        symbolIndexService.removeAfterCommit(codeId);
+        analysisRepository.deleteByCodeIdDirectly(codeId);
+        codeRevisionService.deleteRevisions(codeId);
+        codeRepository.deleteByIdDirectly(codeId);
+        blobStoreService.release(stamp.getContentHash());
         logger.info("User '{}' successfully deleted code with id: {}", currentUsername, codeId);
     }
     /*@Transactional
@@ -209,6 +382,56 @@ public class CodeService {
         logger.info("User '{}' successfully updated file name for code id: {} to '{}'", currentUsername, codeId, newFileName);
         return updatedCode;
     }*/
+    /**
+     * 条件 GET 用：校验所有权后返回代码的强 ETag，整个过程不读取 content 列。
+     * 代码不存在时返回 Optional.empty()。
+     */
+    public Optional<String> getCodeETagForCurrentUser(Long codeId) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || "anonymousUser".equals(authentication.getPrincipal())) {
+            throw new IllegalStateException("User must be authenticated to view this code.");
+        }
+        Long currentUserId = SecurityUtils.getUserId(authentication);
+
+        Optional<CodeVersionStamp> stampOpt = codeRepository.findVersionStampById(codeId);
+        if (stampOpt.isEmpty()) {
+            return Optional.empty();
+        }
+        CodeVersionStamp stamp = stampOpt.get();
+        if (!stamp.getOwnerId().equals(currentUserId)) {
+            throw new AccessDeniedException("You do not have permission to view this code.");
+        }
+        // 修改代码会同时更新 contentHash 和 uploadedAt (文件名修改也会刷新 uploadedAt)
+        String hash = stamp.getContentHash() != null ? stamp.getContentHash().substring(0, 16) : "0";
+        return Optional.of("\"code-" + stamp.getCodeId() + "-" + hash + "-" + toEpochMillis(stamp.getUploadedAt()) + "\"");
+    }
+
+    /**
+     * 公开列表的 ETag：由代码总数、最大 id、id 之和、最近上传/修改时间和分页参数决定，只需一条聚合查询
+     */
+    public String getPublicListingETag(Pageable pageable) {
+        CodeListingStamp stamp = codeRepository.findListingStamp();
+        String version = stamp.getTotalCount() + "-" + stamp.getMaxId() + "-" + stamp.getIdSum() + "-"
+                + toEpochMillis(stamp.getLatestUploadedAt()) + "-" + pageable;
+        return "\"list-" + sha256Hex(version).substring(0, 16) + "\"";
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time == null ? 0L : time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * 计算文本的 SHA-256 (UTF-8 编码，小写十六进制)
+     */
+    public static String sha256Hex(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // 所有 JVM 都必须支持 SHA-256
+        }
+    }
+
     public Page<CodeSummaryDTO> getPublicCodeSummaries(Pageable pageable) {
         Page<Code> codePage = codeRepository.findAll(pageable); // 获取分页的 Code 实体
 
@@ -228,17 +451,21 @@ public class CodeService {
             throw new IllegalStateException("User must be authenticated to update code.");
         }
         String currentUsername = authentication.getName();
+        Long currentUserId = SecurityUtils.getUserId(authentication);
 
-        Code codeToUpdate = codeRepository.findById(codeId)
+        Long ownerId = codeRepository.findUploaderIdById(codeId)
                 .orElseThrow(() -> new IllegalArgumentException("Code not found with id: " + codeId));
 
         // 权限校验
-        if (!codeToUpdate.getUploader().getUsername().equals(currentUsername)) {
-            logger.warn("User '{}' attempted to update code '{}' owned by '{}'. Access denied.",
-                    currentUsername, codeId, codeToUpdate.getUploader().getUsername());
+        if (!ownerId.equals(currentUserId)) {
+            logger.warn("User '{}' attempted to update code '{}' owned by user id {}. Access denied.",
+                    currentUsername, codeId, ownerId);
             throw new AccessDeniedException("You do not have permission to update this code.");
         }
 
+        Code codeToUpdate = codeRepository.findById(codeId)
+                .orElseThrow(() -> new IllegalArgumentException("Code not found with id: " + codeId));
+
         // 校验新文件名和内容
         if (newFileName == null || newFileName.trim().isEmpty()) {
             throw new IllegalArgumentException("New file name cannot be empty.");
@@ -250,29 +477,32 @@ public class CodeService {
             throw new IllegalArgumentException("Code content cannot be empty.");
         }
 
-        // 更新文件名和内容
+        // 记录新的一版 (需要修改前的内容计算增量)，再更新文件名和内容
+        int revisionNo = codeRevisionService.recordRevision(codeId, codeToUpdate.getCurrentRevision(),
+                codeToUpdate.getFileName(), blobStoreService.loadContent(codeToUpdate), codeToUpdate.getUploadedAt(),
+                newFileName.trim(), newContent);
+        codeToUpdate.setCurrentRevision(revisionNo);
         codeToUpdate.setFileName(newFileName.trim());
+        String previousHash = codeToUpdate.getContentHash();
+        String newHash = sha256Hex(newContent);
+        if (!newHash.equals(previousHash)) {
+            codeToUpdate.setContentHash(blobStoreService.acquire(newContent));
+            blobStoreService.release(previousHash);
+        }
         codeToUpdate.setContent(newContent);
         codeToUpdate.setUploadedAt(LocalDateTime.now()); // 手动更新时间
 
-        // **重新解析新的代码内容，并更新 Code 实体的统计字段**
-        try {
-            CompilationUnit cu = StaticJavaParser.parse(newContent);
-            codeToUpdate.setClassCount(cu.findAll(com.github.javaparser.ast.body.ClassOrInterfaceDeclaration.class).size());
-            codeToUpdate.setMethodCount(cu.findAll(com.github.javaparser.ast.body.MethodDeclaration.class).size());
-            codeToUpdate.setLineCount((int) newContent.lines().filter(line -> !line.trim().isEmpty()).count());
+        // **重新解析新的代码内容，并更新 Code 实体的统计字段** (解析失败时统计字段为 null)
+        if (applyParsedStatistics(codeToUpdate)) {
             logger.info("Re-parsed content for codeId: {} after update. Counts: Class={}, Method={}, Line={}",
                     codeId, codeToUpdate.getClassCount(), codeToUpdate.getMethodCount(), codeToUpdate.getLineCount());
-        } catch (Exception e) {
-            logger.error("Failed to re-parse updated Java content for codeId: {}. Setting counts to null. Reason: {}", codeId, e.getMessage());
-            // 如果解析失败，将统计数据设为 null 或 0，以表示当前内容无法解析
-            codeToUpdate.setClassCount(null);
-            codeToUpdate.setMethodCount(null);
-            codeToUpdate.setLineCount(null);
         }
 
 
         Code updatedCode = codeRepository.save(codeToUpdate);
+        similarityIndexService.index(codeId, codeToUpdate.getSimilaritySignature());
+        symbolIndexService.indexAfterCommit(codeId, ownerId, codeToUpdate.getFileName(), codeToUpdate.getUploadedAt(),
+                codeToUpdate.getSymbols());
         logger.info("User '{}' successfully updated details (content and stats) for code id: {}", currentUsername, codeId);
         return updatedCode;
     }
@@ -0,0 +1,60 @@
+package com.se.coderater.service;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 一个源文件中声明的类名、方法名、字段名和导入 (每种去重，保持出现顺序)
+ */
+public final class CodeSymbols {
+
+    public static final CodeSymbols EMPTY = new CodeSymbols(List.of(), List.of(), List.of(), List.of());
+
+    private final List<String> classes;
+    private final List<String> methods;
+    private final List<String> fields;
+    private final List<String> imports;
+
+    public CodeSymbols(List<String> classes, List<String> methods, List<String> fields, List<String> imports) {
+        this.classes = classes;
+        this.methods = methods;
+        this.fields = fields;
+        this.imports = imports;
+    }
+
+    public static CodeSymbols of(CompilationUnit cu) {
+        Set<String> classes = new LinkedHashSet<>();
+        for (TypeDeclaration<?> type : cu.findAll(TypeDeclaration.class)) {
+            classes.add(type.getNameAsString());
+        }
+        Set<String> methods = new LinkedHashSet<>();
+        for (MethodDeclaration method : cu.findAll(MethodDeclaration.class)) {
+            methods.add(method.getNameAsString());
+        }
+        Set<String> fields = new LinkedHashSet<>();
+        for (FieldDeclaration field : cu.findAll(FieldDeclaration.class)) {
+            field.getVariables().forEach(variable -> fields.add(variable.getNameAsString()));
+        }
+        Set<String> imports = new LinkedHashSet<>();
+        for (ImportDeclaration importDeclaration : cu.getImports()) {
+            imports.add(importDeclaration.getNameAsString() + (importDeclaration.isAsterisk() ? ".*" : ""));
+        }
+        return new CodeSymbols(List.copyOf(classes), List.copyOf(methods), List.copyOf(fields), List.copyOf(imports));
+    }
+
+    public List<String> get(SymbolKind kind) {
+        return switch (kind) {
+            case CLASS -> classes;
+            case METHOD -> methods;
+            case FIELD -> fields;
+            case IMPORT -> imports;
+        };
+    }
+}
@@ -0,0 +1,195 @@
+package com.se.coderater.service;
+
+import com.se.coderater.exception.CredentialHashingBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * BCrypt 计算专用的有界线程池。
+ * 登录/注册时的哈希运算都在这里执行，池和队列都满时立即拒绝 (503)，
+ * 避免上课高峰的大量登录把所有 CPU 占满，拖慢分析和列表接口。
+ * 批量开户使用另一个更小的线程池 (bulk-threads)，大批量导入不会占用登录和注册的线程和队列位置。
+ */
+@Service
+public class CredentialHashingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CredentialHashingService.class);
+
+    private final PasswordEncoder encoder;
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor bulkExecutor;
+    private final int retryAfterSeconds;
+
+    private final Timer encodeTimer;
+    private final Timer verifyTimer;
+    private final Timer queueWaitTimer;
+    private final Counter rejectedCounter;
+
+    public CredentialHashingService(PasswordEncoder encoder,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${coderater.auth.hashing.threads:2}") int threads,
+                                    @Value("${coderater.auth.hashing.queue-capacity:64}") int queueCapacity,
+                                    @Value("${coderater.auth.hashing.bulk-threads:0}") int bulkThreads,
+                                    @Value("${coderater.auth.hashing.bulk-queue-capacity:0}") int bulkQueueCapacity,
+                                    @Value("${coderater.auth.hashing.retry-after-seconds:2}") int retryAfterSeconds) {
+        this.encoder = encoder;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        this.executor = newExecutor("credential-hashing-", threads, queueCapacity);
+        // 批量线程数 0 表示半数 CPU (至少 1 个)；队列容量 0 表示与线程数相同 (再排一次完整的批量开户)
+        int bulkPoolSize = bulkThreads > 0 ? bulkThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.bulkExecutor = newExecutor("credential-hashing-bulk-", bulkPoolSize,
+                bulkQueueCapacity > 0 ? bulkQueueCapacity : bulkPoolSize);
+
+        this.encodeTimer = Timer.builder("coderater.auth.hashing.latency")
+                .description("BCrypt hashing time on the credential executor")
+                .tag("operation", "encode")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.verifyTimer = Timer.builder("coderater.auth.hashing.latency")
+                .description("BCrypt hashing time on the credential executor")
+                .tag("operation", "verify")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("coderater.auth.hashing.queue.wait")
+                .description("Time a hashing task waited for a free worker")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("coderater.auth.hashing.rejected")
+                .description("Hashing tasks rejected because the queue was full")
+                .register(meterRegistry);
+        Gauge.builder("coderater.auth.hashing.queue.depth", executor, e -> e.getQueue().size())
+                .description("Hashing tasks waiting in the queue")
+                .register(meterRegistry);
+        Gauge.builder("coderater.auth.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Hashing tasks currently running")
+                .register(meterRegistry);
+        Gauge.builder("coderater.auth.hashing.bulk.active", bulkExecutor, ThreadPoolExecutor::getActiveCount)
+                .description("Bulk provisioning hashing slices currently running")
+                .register(meterRegistry);
+    }
+
+    private static ThreadPoolExecutor newExecutor(String threadPrefix, int threads, int queueCapacity) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, threadPrefix + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()); // 队列满时抛 RejectedExecutionException
+    }
+
+    /**
+     * 在哈希线程池中加密密码 (注册等场景)
+     */
+    public String encode(String rawPassword) {
+        return submit(encodeTimer, () -> encoder.encode(rawPassword));
+    }
+
+    /**
+     * 批量加密 (管理员批量开户)：在批量线程池中把列表切成与其线程数相同的分片并行计算，
+     * 不占用登录和注册的线程和队列位置。返回结果与输入顺序一致。
+     * 某个分片被拒绝或失败时取消其余分片 (正在计算的分片在下一个密码之前停止)。
+     */
+    public List<String> encodeAll(List<String> rawPasswords) {
+        int slices = Math.max(1, Math.min(bulkExecutor.getCorePoolSize(), rawPasswords.size()));
+        int sliceSize = (rawPasswords.size() + slices - 1) / slices;
+        List<Future<List<String>>> futures = new ArrayList<>(slices);
+        try {
+            for (int from = 0; from < rawPasswords.size(); from += sliceSize) {
+                List<String> slice = rawPasswords.subList(from, Math.min(from + sliceSize, rawPasswords.size()));
+                futures.add(enqueue(bulkExecutor, () -> {
+                    List<String> encoded = new ArrayList<>(slice.size());
+                    for (String raw : slice) {
+                        if (Thread.currentThread().isInterrupted()) {
+                            throw new CancellationException("Bulk credential hashing was cancelled.");
+                        }
+                        encoded.add(encodeTimer.record(() -> encoder.encode(raw)));
+                    }
+                    return encoded;
+                }));
+            }
+            List<String> result = new ArrayList<>(rawPasswords.size());
+            for (Future<List<String>> future : futures) {
+                result.addAll(await(future));
+            }
+            return result;
+        } catch (RuntimeException | Error e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e;
+        }
+    }
+
+    /**
+     * 在哈希线程池中执行一次密码校验 (例如 AuthenticationManager.authenticate)，
+     * 校验过程中抛出的 RuntimeException (如 BadCredentialsException) 会原样抛给调用方。
+     */
+    public <T> T verify(Supplier<T> verification) {
+        return submit(verifyTimer, verification::get);
+    }
+
+    private <T> T submit(Timer timer, Callable<T> task) {
+        return await(enqueue(executor, () -> timer.recordCallable(task)));
+    }
+
+    private <T> Future<T> enqueue(ThreadPoolExecutor pool, Callable<T> task) {
+        long enqueuedAt = System.nanoTime();
+        try {
+            return pool.submit(() -> {
+                queueWaitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+                return task.call();
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            logger.warn("Credential hashing queue is full ({} waiting). Rejecting request.", pool.getQueue().size());
+            throw new CredentialHashingBusyException(retryAfterSeconds);
+        }
+    }
+
+    private <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for credential hashing.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Credential hashing failed.", cause);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        bulkExecutor.shutdownNow();
+    }
+}
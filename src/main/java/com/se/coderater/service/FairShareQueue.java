@@ -0,0 +1,130 @@
+package com.se.coderater.service;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * 两级加权公平队列 (非线程安全，由 AnalysisScheduler 加锁使用)。
+ * <p>
+ * 第一级在优先级类别之间按权重分配 (步长调度)：每取出一个任务，该类别的 pass 增加 1/权重，
+ * 总是从 pass 最小的非空类别中取，所以权重 4:1 时积压的 BULK 任务每 5 个任务至少轮到 1 个，不会被饿死。
+ * <p>
+ * 第二级在类别内部按用户做自计时公平排队 (SCFQ)：任务的完成标签 = max(类别虚拟时间, 该用户上一个任务的完成标签)
+ * + cost / 用户权重，总是取完成标签最小的任务，虚拟时间推进到该任务的完成标签。
+ * 一个用户排了 500 个任务时，后到用户的任务从当前虚拟时间开始计标签，与前者交替取出，而不是排在 500 个之后；
+ * 空闲后重新排队的类别和用户同样从当前虚拟时间开始，不能攒下额度。
+ * <p>
+ * 标签相同时先入队的先出，同一用户的任务保持入队顺序。结果只取决于入队和出队的顺序，不依赖时钟。
+ */
+final class FairShareQueue<T> {
+
+    private final Map<AnalysisPriority, ClassQueue<T>> classes = new EnumMap<>(AnalysisPriority.class);
+    private double classVirtualTime;
+    private long sequence;
+    private int size;
+
+    FairShareQueue(Map<AnalysisPriority, Integer> classWeights) {
+        for (AnalysisPriority priority : AnalysisPriority.values()) {
+            int weight = classWeights.getOrDefault(priority, priority.getDefaultWeight());
+            if (weight < 1) {
+                throw new IllegalArgumentException("Weight of " + priority + " must be at least 1");
+            }
+            classes.put(priority, new ClassQueue<>(weight));
+        }
+    }
+
+    /**
+     * 入队。user 为公平排队的对象 (通常是用户 id)，userWeight 越大分到的份额越多，cost 为任务的相对开销
+     */
+    void add(AnalysisPriority priority, Object user, double userWeight, double cost, T item) {
+        if (userWeight <= 0 || cost <= 0) {
+            throw new IllegalArgumentException("userWeight and cost must be positive");
+        }
+        ClassQueue<T> queue = classes.get(priority);
+        if (queue.entries.isEmpty()) {
+            queue.pass = Math.max(queue.pass, classVirtualTime); // 空闲的类别不能攒下额度
+        }
+        UserState state = queue.users.computeIfAbsent(user, key -> new UserState());
+        double start = Math.max(queue.virtualTime, state.lastFinish);
+        state.lastFinish = start + cost / userWeight;
+        state.queued++;
+        queue.entries.add(new Entry<>(state.lastFinish, sequence++, user, item));
+        size++;
+    }
+
+    /**
+     * 从 eligible 允许的类别中取出下一个任务；没有可取的任务时返回 null
+     */
+    T poll(Predicate<AnalysisPriority> eligible) {
+        AnalysisPriority selected = null;
+        ClassQueue<T> selectedQueue = null;
+        for (Map.Entry<AnalysisPriority, ClassQueue<T>> candidate : classes.entrySet()) {
+            ClassQueue<T> queue = candidate.getValue();
+            if (queue.entries.isEmpty() || !eligible.test(candidate.getKey())) {
+                continue;
+            }
+            if (selectedQueue == null || queue.pass < selectedQueue.pass) { // pass 相同时按枚举顺序，INTERACTIVE 优先
+                selected = candidate.getKey();
+                selectedQueue = queue;
+            }
+        }
+        if (selected == null) {
+            return null;
+        }
+        classVirtualTime = selectedQueue.pass;
+        selectedQueue.pass += 1.0 / selectedQueue.weight;
+
+        Entry<T> entry = selectedQueue.entries.poll();
+        selectedQueue.virtualTime = entry.finish;
+        UserState state = selectedQueue.users.get(entry.user);
+        if (--state.queued == 0 && state.lastFinish <= selectedQueue.virtualTime) {
+            selectedQueue.users.remove(entry.user); // 没有排队任务也没有未用完的标签，之后从虚拟时间重新开始
+        }
+        size--;
+        return entry.item;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int size(AnalysisPriority priority) {
+        return classes.get(priority).entries.size();
+    }
+
+    private static final class ClassQueue<T> {
+        private final int weight;
+        private final PriorityQueue<Entry<T>> entries = new PriorityQueue<>(
+                Comparator.<Entry<T>>comparingDouble(entry -> entry.finish).thenComparingLong(entry -> entry.sequence));
+        private final Map<Object, UserState> users = new HashMap<>();
+        private double pass;
+        private double virtualTime;
+
+        ClassQueue(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private static final class UserState {
+        private double lastFinish;
+        private int queued;
+    }
+
+    private static final class Entry<T> {
+        private final double finish;
+        private final long sequence;
+        private final Object user;
+        private final T item;
+
+        Entry(double finish, long sequence, Object user, T item) {
+            this.finish = finish;
+            this.sequence = sequence;
+            this.user = user;
+            this.item = item;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.se.coderater.service;
+
+/**
+ * 快速 (近似) 分析模式：对源码做一遍字符扫描，不构建 AST、不运行 Checkstyle。
+ * 识别字符串/字符/文本块字面量和注释，统计：
+ *   - 非空行数、注释行数 (与精确模式的定义相同，结果一般完全一致)；
+ *   - 判定点：if / for / while / case / catch 关键字，&&、||，以及三元运算符 ?；
+ *   - 方法声明数：名字前面是类型 (标识符、基本类型、void、> 或 ]) 且后面紧跟 ( 的标识符。
+ * 平均圈复杂度 = (方法数 + 判定点数) / 方法数。与精确模式的差别：构造函数、初始化块、
+ * 字段初始值中的判定点也会计入，少数写法 (例如 a > b(c)) 可能被误认为方法声明，所以只是近似值。
+ */
+public final class FastLexicalAnalyzer {
+
+    // 除 if/for/while/case/catch 和基本类型以外的保留字及 record (出现在 "(" 前面时不是方法名)
+    private static final String[] OTHER_KEYWORDS = {
+            "abstract", "assert", "break", "class", "const", "continue", "default", "do", "else", "enum",
+            "extends", "final", "finally", "goto", "implements", "import", "instanceof", "interface", "native",
+            "new", "package", "private", "protected", "public", "return", "static", "strictfp", "super",
+            "switch", "synchronized", "this", "throw", "throws", "transient", "try", "volatile",
+            "true", "false", "null", "yield", "record"
+    };
+    private static final String[] DECISION_KEYWORDS = {"if", "for", "while", "case", "catch"};
+    private static final String[] TYPE_KEYWORDS = {"boolean", "byte", "char", "short", "int", "long", "float", "double", "void", "var"};
+
+    // 上一个有效词法单元的类别 (用于识别方法声明)
+    private static final int PREV_OTHER = 0;
+    private static final int PREV_TYPE = 1;       // 标识符 / 基本类型 / void / > / ]
+    private static final int PREV_DECLARATOR = 2; // 紧跟在类型之后的标识符 (可能是方法名)
+
+    private FastLexicalAnalyzer() {
+    }
+
+    /**
+     * 一遍扫描得到的原始指标
+     */
+    public static final class Result {
+        private final int nonEmptyLines;
+        private final int commentLines;
+        private final int methodCount;
+        private final int decisionPoints;
+
+        Result(int nonEmptyLines, int commentLines, int methodCount, int decisionPoints) {
+            this.nonEmptyLines = nonEmptyLines;
+            this.commentLines = commentLines;
+            this.methodCount = methodCount;
+            this.decisionPoints = decisionPoints;
+        }
+
+        public int getNonEmptyLines() {
+            return nonEmptyLines;
+        }
+
+        public int getCommentLines() {
+            return commentLines;
+        }
+
+        public int getMethodCount() {
+            return methodCount;
+        }
+
+        public int getDecisionPoints() {
+            return decisionPoints;
+        }
+
+        /**
+         * 与 AnalysisService.averageComplexity 相同的取整方式
+         */
+        public int getAverageComplexity() {
+            return methodCount > 0 ? (int) Math.round((double) (methodCount + decisionPoints) / methodCount) : 0;
+        }
+    }
+
+    public static Result analyze(String content) {
+        int length = content.length();
+        int nonEmptyLines = 0;
+        int commentLines = 0;
+        int methodCount = 0;
+        int decisionPoints = 0;
+        boolean lineHasContent = false;
+        int prev = PREV_OTHER;
+
+        int i = 0;
+        while (i < length) {
+            char c = content.charAt(i);
+
+            // 换行 (\n、\r\n、\r，与 String.lines() 一致)
+            if (c == '\n' || c == '\r') {
+                if (lineHasContent) {
+                    nonEmptyLines++;
+                }
+                lineHasContent = false;
+                i += (c == '\r' && i + 1 < length && content.charAt(i + 1) == '\n') ? 2 : 1;
+                continue;
+            }
+            if (c <= ' ') { // 与 String.trim() 相同的空白定义
+                i++;
+                continue;
+            }
+            lineHasContent = true;
+
+            // 注释
+            if (c == '/' && i + 1 < length) {
+                char next = content.charAt(i + 1);
+                if (next == '/') {
+                    commentLines++;
+                    i += 2;
+                    while (i < length && content.charAt(i) != '\n' && content.charAt(i) != '\r') {
+                        i++;
+                    }
+                    continue;
+                }
+                if (next == '*') {
+                    int spannedLines = 1;
+                    i += 2;
+                    while (i < length && !(content.charAt(i) == '*' && i + 1 < length && content.charAt(i + 1) == '/')) {
+                        char inner = content.charAt(i);
+                        if (inner == '\n' || inner == '\r') {
+                            // 注释中的换行同时结束当前行
+                            if (lineHasContent) {
+                                nonEmptyLines++;
+                            }
+                            spannedLines++;
+                            i += (inner == '\r' && i + 1 < length && content.charAt(i + 1) == '\n') ? 2 : 1;
+                            lineHasContent = skipToContent(content, i); // 下一行在注释内是否有非空白字符
+                            continue;
+                        }
+                        i++;
+                    }
+                    i = Math.min(length, i + 2);
+                    lineHasContent = true;
+                    commentLines += spannedLines;
+                    continue;
+                }
+            }
+
+            // 文本块、字符串、字符字面量 (内容中的换行同样计入行数)
+            if (c == '"' || c == '\'') {
+                boolean textBlock = c == '"' && content.startsWith("\"\"\"", i);
+                i += textBlock ? 3 : 1;
+                while (i < length) {
+                    char inner = content.charAt(i);
+                    if (inner == '\\') {
+                        i += 2;
+                        continue;
+                    }
+                    if (textBlock) {
+                        if (inner == '"' && content.startsWith("\"\"\"", i)) {
+                            i += 3;
+                            break;
+                        }
+                        if (inner == '\n' || inner == '\r') {
+                            if (lineHasContent) {
+                                nonEmptyLines++;
+                            }
+                            i += (inner == '\r' && i + 1 < length && content.charAt(i + 1) == '\n') ? 2 : 1;
+                            lineHasContent = skipToContent(content, i);
+                            continue;
+                        }
+                    } else if (inner == c || inner == '\n' || inner == '\r') {
+                        if (inner == c) {
+                            i++;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                lineHasContent = true;
+                prev = PREV_OTHER;
+                continue;
+            }
+
+            // 标识符和关键字
+            if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                while (i < length && Character.isJavaIdentifierPart(content.charAt(i))) {
+                    i++;
+                }
+                int wordLength = i - start;
+                if (matchesAny(content, start, wordLength, DECISION_KEYWORDS)) {
+                    decisionPoints++;
+                    prev = PREV_OTHER;
+                } else if (matchesAny(content, start, wordLength, TYPE_KEYWORDS)) {
+                    prev = PREV_TYPE;
+                } else if (matchesAny(content, start, wordLength, OTHER_KEYWORDS)) {
+                    prev = PREV_OTHER;
+                } else {
+                    prev = prev == PREV_TYPE ? PREV_DECLARATOR : PREV_TYPE;
+                }
+                continue;
+            }
+
+            // 数字字面量 (包括 1_000、0x1F、1.5e3 等)
+            if (Character.isDigit(c)) {
+                while (i < length && (Character.isLetterOrDigit(content.charAt(i)) || content.charAt(i) == '_'
+                        || content.charAt(i) == '.')) {
+                    i++;
+                }
+                prev = PREV_OTHER;
+                continue;
+            }
+
+            // 运算符和分隔符
+            if ((c == '&' || c == '|') && i + 1 < length && content.charAt(i + 1) == c) {
+                decisionPoints++;
+                i += 2;
+                prev = PREV_OTHER;
+                continue;
+            }
+            if (c == '?') {
+                if (!isWildcard(content, i + 1)) {
+                    decisionPoints++;
+                }
+                i++;
+                prev = PREV_OTHER;
+                continue;
+            }
+            if (c == '(' && prev == PREV_DECLARATOR) {
+                methodCount++;
+            }
+            if (c == '>' || c == ']') {
+                prev = PREV_TYPE; // List<String> name( 或 int[] name(
+            } else if (c == '<' || c == '[' || c == ',' || c == '.' || c == '@') {
+                // 泛型参数和数组维度之间保持 "类型" 状态；. 和 @ 之后的名字不是声明
+                prev = (c == '.' || c == '@') ? PREV_OTHER : prev == PREV_DECLARATOR ? PREV_TYPE : prev;
+            } else {
+                prev = PREV_OTHER;
+            }
+            i++;
+        }
+        if (lineHasContent) {
+            nonEmptyLines++;
+        }
+        return new Result(nonEmptyLines, commentLines, methodCount, decisionPoints);
+    }
+
+    // 泛型通配符：? 后面是 >、,、) 或 extends/super
+    private static boolean isWildcard(String content, int from) {
+        int i = from;
+        while (i < content.length() && content.charAt(i) <= ' ') {
+            i++;
+        }
+        if (i >= content.length()) {
+            return false;
+        }
+        char next = content.charAt(i);
+        return next == '>' || next == ',' || next == ')'
+                || content.startsWith("extends", i) || content.startsWith("super", i);
+    }
+
+    // 从 from 开始到行尾之前是否有非空白字符 (用于多行注释/文本块内部的行)
+    private static boolean skipToContent(String content, int from) {
+        for (int i = from; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c == '\n' || c == '\r') {
+                return false;
+            }
+            if (c > ' ') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesAny(String content, int start, int length, String[] words) {
+        for (String word : words) {
+            if (word.length() == length && content.regionMatches(start, word, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
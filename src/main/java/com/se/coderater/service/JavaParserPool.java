@@ -0,0 +1,91 @@
+package com.se.coderater.service;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ParserConfiguration.LanguageLevel;
+import com.github.javaparser.ast.CompilationUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 按用途复用的 JavaParser 实例 (每个线程每种用途一个)，代替 StaticJavaParser。
+ * StaticJavaParser 每次解析都新建 JavaParser 和生成的语法分析器，并且总是保存词法单元、归属注释；
+ * 这里每种用途只打开需要的功能，同一线程上的 JavaParser 在解析之间重置后复用。
+ * 语言级别默认 JAVA_17 (StaticJavaParser 默认只到 Java 11，无法解析 instanceof 模式匹配、record 等)。
+ * JavaParser 不是线程安全的，所以按线程隔离；解析过大的源码后丢弃该线程的实例，
+ * 避免分析器内部按最大输入扩容的缓冲区一直被 Tomcat 工作线程持有。
+ */
+@Component
+public class JavaParserPool {
+
+    /**
+     * 解析用途 (决定 ParserConfiguration)
+     */
+    public enum Purpose {
+        // 复杂度 + 注释行数：注释的行号来自词法单元 (不保存词法单元时节点没有 range，注释也无法归属)
+        ANALYSIS(true, true),
+        STRUCTURE(true, false), // 类/方法数 + MinHash 签名 + 符号：需要词法单元，不需要注释
+        SYMBOLS(false, false);  // 只提取符号 (索引重建)：不需要位置信息
+
+        private final boolean storeTokens;
+        private final boolean attributeComments;
+
+        Purpose(boolean storeTokens, boolean attributeComments) {
+            this.storeTokens = storeTokens;
+            this.attributeComments = attributeComments;
+        }
+    }
+
+    public static final LanguageLevel DEFAULT_LANGUAGE_LEVEL = LanguageLevel.JAVA_17;
+    public static final int DEFAULT_MAX_RETAINED_CHARS = 256 * 1024;
+
+    private final Map<Purpose, ThreadLocal<JavaParser>> parsers = new EnumMap<>(Purpose.class);
+    private final int maxRetainedChars;
+
+    @Autowired
+    public JavaParserPool(@Value("${coderater.parser.language-level:JAVA_17}") LanguageLevel languageLevel,
+                          @Value("${coderater.parser.max-retained-chars:262144}") int maxRetainedChars) {
+        this.maxRetainedChars = maxRetainedChars;
+        for (Purpose purpose : Purpose.values()) {
+            ParserConfiguration configuration = new ParserConfiguration()
+                    .setLanguageLevel(languageLevel)
+                    .setStoreTokens(purpose.storeTokens)
+                    .setAttributeComments(purpose.attributeComments)
+                    .setLexicalPreservationEnabled(false)
+                    .setDetectOriginalLineSeparator(false);
+            parsers.put(purpose, ThreadLocal.withInitial(() -> new JavaParser(configuration)));
+        }
+    }
+
+    /**
+     * 供基准测试等不经过 Spring 的场景使用默认配置
+     */
+    public JavaParserPool() {
+        this(DEFAULT_LANGUAGE_LEVEL, DEFAULT_MAX_RETAINED_CHARS);
+    }
+
+    /**
+     * 与 StaticJavaParser.parse 相同的约定：语法错误时抛出 ParseProblemException
+     */
+    public CompilationUnit parse(Purpose purpose, String content) {
+        ThreadLocal<JavaParser> holder = parsers.get(purpose);
+        ParseResult<CompilationUnit> result;
+        try {
+            result = holder.get().parse(content);
+        } finally {
+            if (content.length() > maxRetainedChars) {
+                holder.remove();
+            }
+        }
+        if (result.isSuccessful() && result.getResult().isPresent()) {
+            return result.getResult().get();
+        }
+        throw new ParseProblemException(result.getProblems());
+    }
+}
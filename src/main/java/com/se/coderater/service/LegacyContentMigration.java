@@ -0,0 +1,89 @@
+package com.se.coderater.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一次性迁移：把旧版本保存在 codes.content 列中的代码内容移入 blob 存储。
+ * 启动时 (Web 服务开始接收请求之前) 执行；新建的数据库没有 content 列，直接跳过。
+ * 迁移后 content 列保留但全部为 NULL (ddl-auto=update 不会删除列)，可以手动 DROP。
+ */
+@Component
+public class LegacyContentMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(LegacyContentMigration.class);
+    private static final int BATCH_SIZE = 200;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BlobStoreService blobStoreService;
+    private final BlobSegmentStore segmentStore;
+
+    // 注入 EntityManagerFactory 只是为了保证 Hibernate 已经更新过表结构 (code_blobs 已存在)
+    public LegacyContentMigration(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                  BlobStoreService blobStoreService, BlobSegmentStore segmentStore,
+                                  EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.blobStoreService = blobStoreService;
+        this.segmentStore = segmentStore;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        if (!segmentStore.isWriter()) {
+            return; // 由可以写入 blob 的节点迁移
+        }
+        Boolean nullable = jdbcTemplate.execute((ConnectionCallback<Boolean>) con -> {
+            DatabaseMetaData metaData = con.getMetaData();
+            try (ResultSet columns = metaData.getColumns(con.getCatalog(), null, "codes", "content")) {
+                return columns.next() ? columns.getInt("NULLABLE") != DatabaseMetaData.columnNoNulls : null;
+            }
+        });
+        if (nullable == null) {
+            return; // 没有旧的 content 列
+        }
+        if (!nullable) {
+            // 旧表结构中 content 是 NOT NULL，新代码不再写这一列
+            jdbcTemplate.execute("ALTER TABLE codes MODIFY content TEXT NULL");
+            logger.info("codes.content is now nullable; code contents are stored in the blob store.");
+        }
+
+        long migrated = 0;
+        while (true) {
+            Integer moved = transactionTemplate.execute(status -> {
+                List<Object[]> updates = new ArrayList<>(BATCH_SIZE);
+                List<Object[]> rows = jdbcTemplate.query(
+                        "SELECT id, content FROM codes WHERE content IS NOT NULL ORDER BY id LIMIT " + BATCH_SIZE
+                                + " FOR UPDATE SKIP LOCKED", // 多个节点同时启动时各迁移不同的行
+                        (rs, rowNum) -> new Object[]{rs.getLong("id"), rs.getString("content")});
+                for (Object[] row : rows) {
+                    updates.add(new Object[]{blobStoreService.acquire((String) row[1]), row[0]});
+                }
+                if (!updates.isEmpty()) {
+                    jdbcTemplate.batchUpdate("UPDATE codes SET content_hash = ?, content = NULL WHERE id = ?", updates);
+                }
+                return updates.size();
+            });
+            if (moved == null || moved == 0) {
+                break;
+            }
+            migrated += moved;
+        }
+        if (migrated > 0) {
+            logger.info("Moved {} code contents from codes.content into the blob store.", migrated);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.se.coderater.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按行的增量编码 (Myers O(ND) 差分算法)，用于代码修订历史。
+ * 行包含各自的换行符，apply(base, encode(base, target)) 逐字符还原 target。
+ * 增量格式是依次排列的操作：
+ * "=N\n" 保留 base 的 N 行，"-N\n" 跳过 base 的 N 行，"+L\n" 后接 L 个字符的新文本。
+ */
+public final class LineDiff {
+
+    // 编辑距离超过该值时放弃差分 (调用方改为保存完整快照)，限制 Myers 回溯路径的内存
+    public static final int MAX_EDIT_DISTANCE = 2000;
+
+    private LineDiff() {
+    }
+
+    /**
+     * target 相对 base 的增量；编辑距离超过 MAX_EDIT_DISTANCE 时返回 null
+     */
+    public static String encode(String base, String target) {
+        List<String> baseLines = splitLines(base);
+        List<String> targetLines = splitLines(target);
+        Map<String, Integer> ids = new HashMap<>();
+        int[] a = toIds(baseLines, ids);
+        int[] b = toIds(targetLines, ids);
+
+        // 先去掉相同的前缀和后缀，Myers 只处理中间部分
+        int prefix = 0;
+        while (prefix < a.length && prefix < b.length && a[prefix] == b[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < a.length - prefix && suffix < b.length - prefix
+                && a[a.length - 1 - suffix] == b[b.length - 1 - suffix]) {
+            suffix++;
+        }
+        char[] script = diff(Arrays.copyOfRange(a, prefix, a.length - suffix),
+                Arrays.copyOfRange(b, prefix, b.length - suffix));
+        if (script == null) {
+            return null;
+        }
+
+        StringBuilder delta = new StringBuilder();
+        appendRun(delta, '=', prefix);
+        int targetIndex = prefix;
+        int i = 0;
+        while (i < script.length) {
+            char op = script[i];
+            int run = 0;
+            while (i < script.length && script[i] == op) {
+                run++;
+                i++;
+            }
+            if (op == '+') {
+                StringBuilder text = new StringBuilder();
+                for (int line = targetIndex; line < targetIndex + run; line++) {
+                    text.append(targetLines.get(line));
+                }
+                delta.append('+').append(text.length()).append('\n').append(text);
+                targetIndex += run;
+            } else {
+                appendRun(delta, op, run);
+                if (op == '=') {
+                    targetIndex += run;
+                }
+            }
+        }
+        appendRun(delta, '=', suffix);
+        return delta.toString();
+    }
+
+    /**
+     * 对 base 应用增量，还原出目标文本；增量与 base 不匹配时抛出 IllegalArgumentException
+     */
+    public static String apply(String base, String delta) {
+        List<String> baseLines = splitLines(base);
+        StringBuilder result = new StringBuilder(base.length() + 64);
+        int line = 0;
+        int pos = 0;
+        while (pos < delta.length()) {
+            char op = delta.charAt(pos);
+            int newline = delta.indexOf('\n', pos);
+            if (newline < 0) {
+                throw new IllegalArgumentException("Corrupt revision delta at offset " + pos);
+            }
+            int count = Integer.parseInt(delta, pos + 1, newline, 10);
+            pos = newline + 1;
+            switch (op) {
+                case '=':
+                    if (line + count > baseLines.size()) {
+                        throw new IllegalArgumentException("Revision delta does not match its base revision");
+                    }
+                    for (int i = line; i < line + count; i++) {
+                        result.append(baseLines.get(i));
+                    }
+                    line += count;
+                    break;
+                case '-':
+                    line += count;
+                    break;
+                case '+':
+                    result.append(delta, pos, pos + count);
+                    pos += count;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Corrupt revision delta at offset " + (newline + 1));
+            }
+        }
+        if (line != baseLines.size()) {
+            throw new IllegalArgumentException("Revision delta does not match its base revision");
+        }
+        return result.toString();
+    }
+
+    /**
+     * 按行切分，每行保留自己的换行符 (\n、\r\n 或 \r)，最后一行可能没有换行符
+     */
+    static List<String> splitLines(String text) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                if (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                lines.add(text.substring(start, i + 1));
+                start = i + 1;
+            }
+        }
+        if (start < length) {
+            lines.add(text.substring(start));
+        }
+        return lines;
+    }
+
+    private static int[] toIds(List<String> lines, Map<String, Integer> ids) {
+        int[] result = new int[lines.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.computeIfAbsent(lines.get(i), line -> ids.size());
+        }
+        return result;
+    }
+
+    private static void appendRun(StringBuilder delta, char op, int count) {
+        if (count > 0) {
+            delta.append(op).append(count).append('\n');
+        }
+    }
+
+    /**
+     * Myers 差分：返回逐行的编辑脚本 ('=' 保留、'-' 删除、'+' 插入)，编辑距离超过上限时返回 null
+     */
+    private static char[] diff(int[] a, int[] b) {
+        int n = a.length;
+        int m = b.length;
+        int maxD = Math.min(n + m, MAX_EDIT_DISTANCE);
+        int offset = maxD + 1;
+        int[] v = new int[2 * maxD + 3];
+        List<int[]> trace = new ArrayList<>(); // trace.get(d)：第 d 步之前各对角线 k ∈ [-d, d] 到达的 x
+        for (int d = 0; d <= maxD; d++) {
+            trace.add(Arrays.copyOfRange(v, offset - d, offset + d + 1));
+            for (int k = -d; k <= d; k += 2) {
+                int x = (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1]))
+                        ? v[offset + k + 1]      // 从 k+1 对角线向下走：插入
+                        : v[offset + k - 1] + 1; // 从 k-1 对角线向右走：删除
+                int y = x - k;
+                while (x < n && y < m && a[x] == b[y]) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    return backtrack(trace, n, m, d);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static char[] backtrack(List<int[]> trace, int n, int m, int distance) {
+        char[] script = new char[n + m];
+        int length = 0;
+        int x = n;
+        int y = m;
+        for (int d = distance; d > 0; d--) {
+            int[] v = trace.get(d);
+            int k = x - y;
+            boolean down = k == -d || (k != d && v[k - 1 + d] < v[k + 1 + d]);
+            int prevK = down ? k + 1 : k - 1;
+            int prevX = v[prevK + d];
+            int prevY = prevX - prevK;
+            while (x > prevX && y > prevY) {
+                script[length++] = '=';
+                x--;
+                y--;
+            }
+            script[length++] = down ? '+' : '-';
+            x = prevX;
+            y = prevY;
+        }
+        while (x > 0 && y > 0) {
+            script[length++] = '=';
+            x--;
+            y--;
+        }
+        // 倒序生成，翻转为正序
+        char[] result = new char[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = script[length - 1 - i];
+        }
+        return result;
+    }
+}
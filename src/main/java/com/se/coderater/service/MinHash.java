@@ -0,0 +1,146 @@
+package com.se.coderater.service;
+
+import com.github.javaparser.JavaToken;
+import com.github.javaparser.ast.CompilationUnit;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * 基于 JavaParser 词法单元的 MinHash 签名和 LSH 分桶。
+ * 标识符和字面量按类别归一化 (改名、改常量不影响签名)，忽略空白和注释；
+ * 连续 SHINGLE_SIZE 个词法单元组成一个 shingle，签名的 NUM_HASHES 个分量对应 NUM_HASHES 个哈希函数下的最小值。
+ * 签名分成 BANDS 段、每段 ROWS 个分量，任一段完全相同即成为候选，
+ * Jaccard 相似度约 (1/BANDS)^(1/ROWS) ≈ 0.7 以上的代码大概率至少共享一个桶。
+ */
+public final class MinHash {
+
+    public static final int SHINGLE_SIZE = 5;
+    public static final int BANDS = 16;
+    public static final int ROWS = 8;
+    public static final int NUM_HASHES = BANDS * ROWS;
+
+    private static final int IDENTIFIER_KIND = -1;
+    private static final int LITERAL_KIND = -2;
+
+    // 哈希函数 h_i(x) = (A[i] * x + B[i]) 的高 32 位，A 为奇数；固定种子保证签名可持久化
+    private static final long[] A = new long[NUM_HASHES];
+    private static final long[] B = new long[NUM_HASHES];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5EEDC0DEL);
+        for (int i = 0; i < NUM_HASHES; i++) {
+            A[i] = random.nextLong() | 1L;
+            B[i] = random.nextLong();
+        }
+    }
+
+    private MinHash() {
+    }
+
+    /**
+     * 计算签名；有效词法单元不足一个 shingle 时返回 null (不参与索引)
+     */
+    public static int[] signature(CompilationUnit cu) {
+        if (cu.getTokenRange().isEmpty()) {
+            return null;
+        }
+        int[] window = new int[SHINGLE_SIZE];
+        int tokenCount = 0;
+        int[] signature = new int[NUM_HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        boolean any = false;
+        for (JavaToken token : cu.getTokenRange().get()) {
+            int kind = normalizedKind(token);
+            if (kind == Integer.MIN_VALUE) {
+                continue;
+            }
+            window[tokenCount % SHINGLE_SIZE] = kind;
+            tokenCount++;
+            if (tokenCount < SHINGLE_SIZE) {
+                continue;
+            }
+            long shingle = shingleHash(window, tokenCount);
+            for (int i = 0; i < NUM_HASHES; i++) {
+                int value = (int) ((A[i] * shingle + B[i]) >>> 32);
+                if (value < signature[i]) {
+                    signature[i] = value;
+                }
+            }
+            any = true;
+        }
+        return any ? signature : null;
+    }
+
+    /**
+     * 每个 band 的桶哈希 (band 下标参与混合，不同 band 的同值分量不会落到同一个桶)
+     */
+    public static long[] bandHashes(int[] signature) {
+        long[] hashes = new long[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            long h = mix64(band + 1L);
+            for (int row = 0; row < ROWS; row++) {
+                h = mix64(h ^ (signature[band * ROWS + row] & 0xFFFFFFFFL));
+            }
+            hashes[band] = h;
+        }
+        return hashes;
+    }
+
+    /**
+     * 两个签名相同分量的比例，即 Jaccard 相似度的估计值
+     */
+    public static double similarity(int[] a, int[] b) {
+        int equal = 0;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / NUM_HASHES;
+    }
+
+    public static byte[] toBytes(int[] signature) {
+        ByteBuffer buffer = ByteBuffer.allocate(NUM_HASHES * Integer.BYTES);
+        buffer.asIntBuffer().put(signature);
+        return buffer.array();
+    }
+
+    public static int[] fromBytes(byte[] bytes) {
+        int[] signature = new int[NUM_HASHES];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(signature);
+        return signature;
+    }
+
+    // 返回 Integer.MIN_VALUE 表示跳过 (空白、换行、注释)
+    private static int normalizedKind(JavaToken token) {
+        JavaToken.Category category = token.getCategory();
+        if (category.isWhitespaceOrComment()) {
+            return Integer.MIN_VALUE;
+        }
+        if (category.isIdentifier()) {
+            return IDENTIFIER_KIND;
+        }
+        if (category.isLiteral()) {
+            return LITERAL_KIND;
+        }
+        return token.getKind(); // 关键字、运算符、分隔符保留具体种类
+    }
+
+    // window 是环形缓冲区，tokenCount 指向最旧元素之后的位置
+    private static long shingleHash(int[] window, int tokenCount) {
+        long h = 0x9E3779B97F4A7C15L;
+        for (int k = 0; k < SHINGLE_SIZE; k++) {
+            h = mix64(h ^ window[(tokenCount + k) % SHINGLE_SIZE]);
+        }
+        return h;
+    }
+
+    // SplitMix64 的最终混合步骤
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,117 @@
+package com.se.coderater.service;
+
+import com.se.coderater.security.RateLimitClass;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内的按用户令牌桶限流 (每个接口类别、每个用户一个桶)。
+ * 令牌桶用 GCRA 形式表示：桶的全部状态是一个 "理论到达时间" (AtomicLong)，
+ * 取令牌就是一次 CAS，不加锁也不需要定时补充令牌；空闲到桶重新装满的桶定期从 map 中移除。
+ * 多实例部署时每个实例各自限流。
+ */
+@Service
+public class RateLimiterService {
+
+    private final boolean enabled;
+    private final Map<RateLimitClass, Limit> limits = new EnumMap<>(RateLimitClass.class);
+
+    public RateLimiterService(Environment environment, MeterRegistry meterRegistry,
+                              @Value("${coderater.ratelimit.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+        for (RateLimitClass limitClass : RateLimitClass.values()) {
+            String prefix = "coderater.ratelimit." + limitClass.getPropertyName() + ".";
+            int capacity = environment.getProperty(prefix + "capacity", Integer.class, limitClass.getDefaultCapacity());
+            int perMinute = environment.getProperty(prefix + "per-minute", Integer.class, limitClass.getDefaultPerMinute());
+            if (capacity < 1 || perMinute < 1) {
+                throw new IllegalArgumentException(prefix + "capacity and " + prefix + "per-minute must be at least 1");
+            }
+            limits.put(limitClass, new Limit(limitClass.getPropertyName(), capacity, perMinute, meterRegistry));
+        }
+    }
+
+    /**
+     * 为 key (用户 id，未登录时为客户端地址) 从该类别的桶中取一个令牌。
+     *
+     * @return 0 表示放行；否则为需要等待的纳秒数 (请求被拒绝)
+     */
+    public long tryAcquire(RateLimitClass limitClass, Object key) {
+        if (!enabled) {
+            return 0;
+        }
+        Limit limit = limits.get(limitClass);
+        long now = System.nanoTime();
+        TokenBucket bucket = limit.buckets.computeIfAbsent(key, k -> new TokenBucket(now));
+        long waitNanos = bucket.tryAcquire(now, limit.intervalNanos, limit.toleranceNanos);
+        (waitNanos == 0 ? limit.allowedCounter : limit.rejectedCounter).increment();
+        return waitNanos;
+    }
+
+    /**
+     * 移除已经重新装满的桶 (之后再请求时会新建一个满桶，效果相同)。
+     * 与 tryAcquire 并发时可能丢掉刚取出的一个令牌，相当于多放行一次，可以接受。
+     */
+    @Scheduled(fixedDelayString = "${coderater.ratelimit.eviction-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        for (Limit limit : limits.values()) {
+            limit.buckets.values().removeIf(bucket -> bucket.isFull(now));
+        }
+    }
+
+    private static final class Limit {
+        private final ConcurrentHashMap<Object, TokenBucket> buckets = new ConcurrentHashMap<>();
+        private final long intervalNanos;   // 补充一个令牌的间隔
+        private final long toleranceNanos;  // 允许的突发：(capacity - 1) 个间隔
+        private final Counter allowedCounter;
+        private final Counter rejectedCounter;
+
+        Limit(String name, int capacity, int perMinute, MeterRegistry meterRegistry) {
+            this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / perMinute;
+            this.toleranceNanos = intervalNanos * (capacity - 1);
+            this.allowedCounter = Counter.builder("coderater.ratelimit.requests").tag("class", name).tag("result", "allowed")
+                    .description("Rate-limited requests, by endpoint class and whether a token was available").register(meterRegistry);
+            this.rejectedCounter = Counter.builder("coderater.ratelimit.requests").tag("class", name).tag("result", "rejected")
+                    .description("Rate-limited requests, by endpoint class and whether a token was available").register(meterRegistry);
+            Gauge.builder("coderater.ratelimit.buckets", buckets, Map::size).tag("class", name)
+                    .description("Token buckets currently tracked").register(meterRegistry);
+        }
+    }
+
+    private static final class TokenBucket {
+        // 理论到达时间：桶在这一时刻恰好装满；比 now 超前 tolerance 以上说明令牌已经取完
+        private final AtomicLong theoreticalArrival;
+
+        TokenBucket(long now) {
+            this.theoreticalArrival = new AtomicLong(now);
+        }
+
+        long tryAcquire(long now, long interval, long tolerance) {
+            while (true) {
+                long tat = theoreticalArrival.get();
+                long base = Math.max(tat, now);
+                if (base - now > tolerance) {
+                    return base - now - tolerance;
+                }
+                if (theoreticalArrival.compareAndSet(tat, base + interval)) {
+                    return 0;
+                }
+            }
+        }
+
+        boolean isFull(long now) {
+            return theoreticalArrival.get() - now <= 0;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.se.coderater.service;
+
+import com.se.coderater.dto.RuleViolationStat;
+import com.se.coderater.entity.AnalysisMode;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 全量规则违规统计。每次分析时把违规明细按规则聚合，写入 analysis_rule_history 中被分析的那一版，
+ * 统计查询只扫描这张聚合表和 code_revisions，不需要重新运行 Checkstyle 或读取违规明细。
+ * 修改代码产生新版本，旧版本的计数不会被覆盖；每个版本按第一次精确分析的时间计入窗口，
+ * 重新分析 (包括不运行 Checkstyle 的快速分析) 不会移动它，所以过去的时间窗口查询结果保持不变。
+ */
+@Service
+public class RuleStatisticsService {
+
+    public static final int MAX_LIMIT = 200;
+
+    // 每个代码取窗口内第一次精确分析的最新一版 (rules_recorded_at 覆盖没有违规的版本)，再按规则汇总该版的计数
+    private static final String TOP_RULES_SQL = "SELECT h.rule_id, SUM(h.violation_count) AS violation_count, "
+            + "COUNT(*) AS code_count FROM analysis_rule_history h "
+            + "JOIN (SELECT code_id, MAX(revision_no) AS revision_no FROM code_revisions "
+            + "WHERE rules_recorded_at >= :from AND rules_recorded_at < :to GROUP BY code_id) latest "
+            + "ON latest.code_id = h.code_id AND latest.revision_no = h.revision_no ";
+    private static final String TOP_RULES_ORDER = "GROUP BY h.rule_id ORDER BY violation_count DESC, h.rule_id LIMIT :limit";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public RuleStatisticsService(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+    }
+
+    /**
+     * 记录某个代码第 revisionNo 版的按规则计数 (在分析的事务中调用，该版本的行已存在)；重新精确分析同一版本时替换该版本原有的计数。
+     * 快速分析不运行 Checkstyle，没有违规明细，不修改计数，否则有违规的版本会被当成没有违规。
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCounts(Long codeId, int revisionNo, Long userId, AnalysisMode mode, LocalDateTime analyzedAt,
+                             StyleViolations violations) {
+        if (mode == AnalysisMode.FAST) {
+            return;
+        }
+        jdbcTemplate.update("UPDATE code_revisions SET rules_recorded_at = COALESCE(rules_recorded_at, ?) "
+                + "WHERE code_id = ? AND revision_no = ?", Timestamp.valueOf(analyzedAt), codeId, revisionNo);
+        // 规则名已在 StyleViolations 中驻留，规则种类通常只有几十个
+        Map<String, int[]> counts = new HashMap<>();
+        for (int i = 0; i < violations.size(); i++) {
+            counts.computeIfAbsent(violations.ruleId(i), k -> new int[1])[0]++;
+        }
+        jdbcTemplate.update("DELETE FROM analysis_rule_history WHERE code_id = ? AND revision_no = ?", codeId, revisionNo);
+        if (counts.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(counts.size());
+        counts.forEach((ruleId, count) -> rows.add(new Object[]{codeId, revisionNo, ruleId, userId, count[0]}));
+        jdbcTemplate.batchUpdate("INSERT INTO analysis_rule_history (code_id, revision_no, rule_id, user_id, violation_count) "
+                + "VALUES (?, ?, ?, ?, ?)", rows);
+    }
+
+    /**
+     * 时间窗口 [from, to) 内违规最多的规则；userIds 为空时统计全部用户。
+     * 每个代码只计窗口内第一次精确分析的最新一版，比较不同时间窗口的结果即可看出趋势。
+     */
+    @Transactional(readOnly = true)
+    public List<RuleViolationStat> getTopRules(Collection<Long> userIds, LocalDateTime from, LocalDateTime to, int limit) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("'from' must be before 'to'.");
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Timestamp.valueOf(from))
+                .addValue("to", Timestamp.valueOf(to))
+                .addValue("limit", Math.min(Math.max(limit, 1), MAX_LIMIT));
+        String sql = TOP_RULES_SQL;
+        if (userIds != null && !userIds.isEmpty()) {
+            sql += "WHERE h.user_id IN (:userIds) ";
+            params.addValue("userIds", userIds);
+        }
+        return namedJdbcTemplate.query(sql + TOP_RULES_ORDER, params, (rs, rowNum) -> new RuleViolationStat(
+                rs.getString("rule_id"), rs.getLong("violation_count"), rs.getLong("code_count")));
+    }
+}
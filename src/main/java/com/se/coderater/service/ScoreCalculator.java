@@ -0,0 +1,154 @@
+package com.se.coderater.service;
+
+import com.se.coderater.dto.AnalysisExportRow;
+import com.se.coderater.dto.CodeRevisionDTO;
+import com.se.coderater.entity.Analysis;
+import com.se.coderater.entity.AnalysisMode;
+import org.springframework.stereotype.Component;
+
+/**
+ * 根据 Analysis 中保存的原始指标计算各项得分。
+ * 得分本身不入库 (@Transient)，分析完成和读取已有结果时都通过这里计算，保证两者一致。
+ */
+@Component
+public class ScoreCalculator {
+    // 评分参数 (可以考虑将这些参数外部化到配置文件中)
+    private static final double WEIGHT_STYLE = 0.40;
+    private static final double WEIGHT_COMPLEXITY = 0.30;
+    private static final double WEIGHT_COMMENT = 0.30;
+
+    private static final int STYLE_SCORE_PER_ISSUE_DEDUCTION = 5;
+    private static final int STYLE_MAX_ISSUES_FOR_ZERO_SCORE = 20; // 超过20个问题，风格得0分
+
+    private static final int COMPLEXITY_IDEAL_MAX = 5;
+    private static final int COMPLEXITY_PENALTY_THRESHOLD = 10;
+    private static final int COMPLEXITY_UPPER_LIMIT = 20;
+    private static final int COMPLEXITY_DEDUCTION_NORMAL = 10;
+    private static final int COMPLEXITY_DEDUCTION_HIGH = 15;
+
+    private static final double COMMENT_RATIO_IDEAL_MIN = 0.10;
+    private static final double COMMENT_RATIO_IDEAL_MAX = 0.30;
+    private static final int COMMENT_DEDUCTION_PER_PERCENT = 5; // 低于或高于理想区间的每1%扣分
+
+    /**
+     * 计算并设置瞬时评分字段 (styleScore / complexityScore / commentScore / overallScore)。
+     * 快速模式没有风格问题数：styleScore 为空，综合评分只按复杂度和注释的权重计算。
+     */
+    public Analysis applyScores(Analysis analysis) {
+        int complexityScore = calculateComplexityScore(analysis.getCyclomaticComplexity());
+        int commentScore = calculateCommentScore(analysis.getCommentRatio());
+        analysis.setComplexityScore(complexityScore);
+        analysis.setCommentScore(commentScore);
+        if (analysis.getAnalysisMode() == AnalysisMode.FAST) {
+            analysis.setStyleScore(null);
+            analysis.setOverallScore(calculateApproximateOverallScore(complexityScore, commentScore));
+            return analysis;
+        }
+
+        int styleScore = calculateStyleScore(analysis.getStyleIssueCount());
+        analysis.setStyleScore(styleScore);
+        analysis.setOverallScore(calculateOverallScore(styleScore, complexityScore, commentScore));
+        return analysis;
+    }
+
+    /**
+     * 导出行使用的同一套评分规则
+     */
+    public AnalysisExportRow applyScores(AnalysisExportRow row) {
+        int complexityScore = calculateComplexityScore(row.getCyclomaticComplexity());
+        int commentScore = calculateCommentScore(row.getCommentRatio());
+        row.setComplexityScore(complexityScore);
+        row.setCommentScore(commentScore);
+        if (row.getAnalysisMode() == AnalysisMode.FAST) {
+            row.setStyleScore(null);
+            row.setOverallScore(calculateApproximateOverallScore(complexityScore, commentScore));
+            return row;
+        }
+
+        int styleScore = calculateStyleScore(row.getStyleIssueCount());
+        row.setStyleScore(styleScore);
+        row.setOverallScore(calculateOverallScore(styleScore, complexityScore, commentScore));
+        return row;
+    }
+
+    /**
+     * 修订历史中分析过的版本使用的同一套评分规则 (没有分析结果时不计算)
+     */
+    public CodeRevisionDTO applyScores(CodeRevisionDTO revision) {
+        if (revision.getAnalyzedAt() == null) {
+            return revision;
+        }
+        int complexityScore = calculateComplexityScore(revision.getCyclomaticComplexity());
+        int commentScore = calculateCommentScore(revision.getCommentRatio());
+        revision.setComplexityScore(complexityScore);
+        revision.setCommentScore(commentScore);
+        if (revision.getAnalysisMode() == AnalysisMode.FAST) {
+            revision.setStyleScore(null);
+            revision.setOverallScore(calculateApproximateOverallScore(complexityScore, commentScore));
+            return revision;
+        }
+
+        int styleScore = calculateStyleScore(revision.getStyleIssueCount());
+        revision.setStyleScore(styleScore);
+        revision.setOverallScore(calculateOverallScore(styleScore, complexityScore, commentScore));
+        return revision;
+    }
+
+    int calculateOverallScore(int styleScore, int complexityScore, int commentScore) {
+        int overallScore = (int) Math.round(
+                (styleScore * WEIGHT_STYLE) +
+                        (complexityScore * WEIGHT_COMPLEXITY) +
+                        (commentScore * WEIGHT_COMMENT)
+        );
+        return Math.max(0, Math.min(100, overallScore)); // 确保在0-100之间
+    }
+
+    // 没有风格得分时按剩余两项的权重归一化
+    int calculateApproximateOverallScore(int complexityScore, int commentScore) {
+        int overallScore = (int) Math.round(
+                ((complexityScore * WEIGHT_COMPLEXITY) + (commentScore * WEIGHT_COMMENT))
+                        / (WEIGHT_COMPLEXITY + WEIGHT_COMMENT)
+        );
+        return Math.max(0, Math.min(100, overallScore));
+    }
+
+    int calculateStyleScore(Integer styleIssueCount) {
+        if (styleIssueCount == null) return 0; // 如果没有分析结果，给0分
+        if (styleIssueCount == 0) return 100;
+        int score = 100 - (styleIssueCount * STYLE_SCORE_PER_ISSUE_DEDUCTION);
+        return Math.max(0, score); // 最低0分
+        // 或者： return (styleIssueCount >= STYLE_MAX_ISSUES_FOR_ZERO_SCORE) ? 0 : Math.max(0, score);
+    }
+
+    int calculateComplexityScore(Integer avgComplexity) {
+        if (avgComplexity == null) return 0;
+        if (avgComplexity <= COMPLEXITY_IDEAL_MAX) return 100;
+        if (avgComplexity > COMPLEXITY_UPPER_LIMIT) return 0;
+
+        int score = 100;
+        if (avgComplexity > COMPLEXITY_IDEAL_MAX && avgComplexity <= COMPLEXITY_PENALTY_THRESHOLD) {
+            score -= (avgComplexity - COMPLEXITY_IDEAL_MAX) * COMPLEXITY_DEDUCTION_NORMAL;
+        } else { // avgComplexity > COMPLEXITY_PENALTY_THRESHOLD
+            score -= (COMPLEXITY_PENALTY_THRESHOLD - COMPLEXITY_IDEAL_MAX) * COMPLEXITY_DEDUCTION_NORMAL;
+            score -= (avgComplexity - COMPLEXITY_PENALTY_THRESHOLD) * COMPLEXITY_DEDUCTION_HIGH;
+        }
+        return Math.max(0, score);
+    }
+
+    int calculateCommentScore(Double commentRatio) {
+        if (commentRatio == null) return 0;
+        if (commentRatio >= COMMENT_RATIO_IDEAL_MIN && commentRatio <= COMMENT_RATIO_IDEAL_MAX) {
+            return 100;
+        }
+
+        int score = 100;
+        if (commentRatio < COMMENT_RATIO_IDEAL_MIN) {
+            // 每低1个百分点扣分
+            score -= (int) ((COMMENT_RATIO_IDEAL_MIN - commentRatio) * 100 * COMMENT_DEDUCTION_PER_PERCENT);
+        } else { // commentRatio > COMMENT_RATIO_IDEAL_MAX
+            // 每高1个百分点扣分 (也可以设置一个上限，例如超过60%直接给低分)
+            score -= (int) ((commentRatio - COMMENT_RATIO_IDEAL_MAX) * 100 * COMMENT_DEDUCTION_PER_PERCENT);
+        }
+        return Math.max(0, score);
+    }
+}
@@ -0,0 +1,149 @@
+package com.se.coderater.service;
+
+import com.se.coderater.dto.SimilarCodeDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 近似重复代码索引 (MinHash 签名 + LSH 分桶)。
+ * 上传/修改/导入时写入签名和桶；查询时只按桶等值查找候选，再用签名估计相似度，
+ * 复杂度与候选数量有关，与代码总数无关。
+ */
+@Service
+public class SimilarityIndexService {
+
+    public static final int MAX_LIMIT = 200;
+
+    private static final String INSERT_SIGNATURE_SQL = "INSERT INTO code_signatures (code_id, signature) VALUES (?, ?)";
+    private static final String INSERT_BUCKET_SQL = "INSERT INTO code_lsh_buckets (band, bucket_hash, code_id) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final int maxCandidates;
+
+    public SimilarityIndexService(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate,
+                                  @Value("${coderater.similarity.max-candidates:2000}") int maxCandidates) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.maxCandidates = maxCandidates;
+    }
+
+    /**
+     * 写入或替换某个代码的签名和桶；signature 为 null (解析失败) 时只删除旧索引
+     */
+    @Transactional
+    public void index(Long codeId, int[] signature) {
+        remove(codeId);
+        if (signature != null) {
+            indexAll(List.of(codeId), List.of(signature));
+        }
+    }
+
+    /**
+     * 批量写入新代码的索引 (批量导入，调用方保证这些代码尚未建立索引)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void indexAll(List<Long> codeIds, List<int[]> signatures) {
+        List<Object[]> signatureRows = new ArrayList<>(codeIds.size());
+        List<Object[]> bucketRows = new ArrayList<>(codeIds.size() * MinHash.BANDS);
+        for (int i = 0; i < codeIds.size(); i++) {
+            int[] signature = signatures.get(i);
+            if (signature == null) {
+                continue;
+            }
+            Long codeId = codeIds.get(i);
+            signatureRows.add(new Object[]{codeId, MinHash.toBytes(signature)});
+            long[] bandHashes = MinHash.bandHashes(signature);
+            for (int band = 0; band < MinHash.BANDS; band++) {
+                bucketRows.add(new Object[]{band, bandHashes[band], codeId});
+            }
+        }
+        if (!signatureRows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SIGNATURE_SQL, signatureRows);
+            jdbcTemplate.batchUpdate(INSERT_BUCKET_SQL, bucketRows);
+        }
+    }
+
+    @Transactional
+    public void remove(Long codeId) {
+        jdbcTemplate.update("DELETE FROM code_lsh_buckets WHERE code_id = ?", codeId);
+        jdbcTemplate.update("DELETE FROM code_signatures WHERE code_id = ?", codeId);
+    }
+
+    /**
+     * 与指定代码估计相似度不低于 threshold 的其它代码，按相似度降序
+     *
+     * @throws IllegalArgumentException 代码不存在
+     */
+    @Transactional(readOnly = true)
+    public List<SimilarCodeDTO> findSimilar(Long codeId, double threshold, int limit) {
+        Integer exists = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM codes WHERE id = ?", Integer.class, codeId);
+        if (exists == null || exists == 0) {
+            throw new IllegalArgumentException("Code not found with id: " + codeId);
+        }
+        List<byte[]> own = jdbcTemplate.query("SELECT signature FROM code_signatures WHERE code_id = ?",
+                (rs, rowNum) -> rs.getBytes(1), codeId);
+        if (own.isEmpty()) {
+            return List.of(); // 解析失败的代码没有签名
+        }
+        int[] signature = MinHash.fromBytes(own.get(0));
+
+        // 1. 按桶查候选：每个 band 一次主键等值匹配
+        long[] bandHashes = MinHash.bandHashes(signature);
+        StringBuilder sql = new StringBuilder("SELECT DISTINCT code_id FROM code_lsh_buckets WHERE (");
+        MapSqlParameterSource params = new MapSqlParameterSource("codeId", codeId).addValue("maxCandidates", maxCandidates);
+        for (int band = 0; band < MinHash.BANDS; band++) {
+            if (band > 0) {
+                sql.append(" OR ");
+            }
+            sql.append("(band = ").append(band).append(" AND bucket_hash = :h").append(band).append(')');
+            params.addValue("h" + band, bandHashes[band]);
+        }
+        sql.append(") AND code_id <> :codeId LIMIT :maxCandidates");
+        List<Long> candidates = namedJdbcTemplate.queryForList(sql.toString(), params, Long.class);
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+
+        // 2. 用签名估计相似度并过滤
+        Map<Long, Double> similarities = new HashMap<>();
+        namedJdbcTemplate.query("SELECT code_id, signature FROM code_signatures WHERE code_id IN (:ids)",
+                new MapSqlParameterSource("ids", candidates),
+                rs -> {
+                    double similarity = MinHash.similarity(signature, MinHash.fromBytes(rs.getBytes("signature")));
+                    if (similarity >= threshold) {
+                        similarities.put(rs.getLong("code_id"), similarity);
+                    }
+                });
+        if (similarities.isEmpty()) {
+            return List.of();
+        }
+        List<Long> top = similarities.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(Math.min(Math.max(limit, 1), MAX_LIMIT))
+                .map(Map.Entry::getKey)
+                .toList();
+
+        // 3. 补充文件名和上传者 (不读取 content)
+        List<SimilarCodeDTO> result = namedJdbcTemplate.query(
+                "SELECT c.id, c.file_name, u.id AS user_id, u.username FROM codes c JOIN users u ON u.id = c.user_id "
+                        + "WHERE c.id IN (:ids)",
+                new MapSqlParameterSource("ids", top),
+                (rs, rowNum) -> new SimilarCodeDTO(rs.getLong("id"), rs.getString("file_name"),
+                        rs.getLong("user_id"), rs.getString("username"), similarities.get(rs.getLong("id"))));
+        result.sort(Comparator.comparingDouble(SimilarCodeDTO::getSimilarity).reversed()
+                .thenComparing(SimilarCodeDTO::getCodeId));
+        return result;
+    }
+}
@@ -0,0 +1,122 @@
+package com.se.coderater.service;
+
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+import com.se.coderater.dto.StyleViolationDTO;
+import com.se.coderater.repository.CodeRepository;
+import com.se.coderater.repository.StyleViolationRepository;
+import com.se.coderater.security.SecurityUtils;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * Checkstyle 违规明细的写入和分页查询
+ */
+@Service
+public class StyleViolationService {
+
+    private static final int JDBC_BATCH_SIZE = 500;
+    private static final String[] SEVERITY_NAMES = new String[SeverityLevel.values().length];
+
+    static {
+        for (SeverityLevel level : SeverityLevel.values()) {
+            SEVERITY_NAMES[level.ordinal()] = level.getName().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final StyleViolationRepository styleViolationRepository;
+    private final CodeRepository codeRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    public StyleViolationService(StyleViolationRepository styleViolationRepository, CodeRepository codeRepository,
+                                 JdbcTemplate jdbcTemplate) {
+        this.styleViolationRepository = styleViolationRepository;
+        this.codeRepository = codeRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 用本次分析的结果替换某个代码的全部违规 (在分析的事务中调用)。
+     * 直接从列式缓冲区绑定参数，按 JDBC_BATCH_SIZE 分批 executeBatch。
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void replaceViolations(Long codeId, StyleViolations violations) {
+        jdbcTemplate.update("DELETE FROM style_violations WHERE code_id = ?", codeId);
+        for (int from = 0; from < violations.size(); from += JDBC_BATCH_SIZE) {
+            int offset = from;
+            int batchSize = Math.min(JDBC_BATCH_SIZE, violations.size() - from);
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO style_violations (code_id, seq, rule_id, message_key, line_no, column_no, severity) "
+                            + "VALUES (?, ?, ?, ?, ?, ?, ?)",
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            int index = offset + i;
+                            ps.setLong(1, codeId);
+                            ps.setInt(2, index);
+                            ps.setString(3, violations.ruleId(index));
+                            ps.setString(4, violations.messageKey(index));
+                            ps.setInt(5, violations.line(index));
+                            ps.setInt(6, violations.column(index));
+                            ps.setByte(7, violations.severity(index));
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return batchSize;
+                        }
+                    });
+        }
+    }
+
+    /**
+     * 读取某个代码已保存的全部违规 (复用内容相同的代码的分析结果时使用)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public StyleViolations loadViolations(Long codeId) {
+        StyleViolations violations = new StyleViolations();
+        SeverityLevel[] levels = SeverityLevel.values();
+        jdbcTemplate.query("SELECT rule_id, message_key, line_no, column_no, severity FROM style_violations "
+                        + "WHERE code_id = ? ORDER BY seq",
+                rs -> {
+                    violations.add(rs.getString(1), rs.getString(2), rs.getInt(3), rs.getInt(4), levels[rs.getByte(5)]);
+                }, codeId);
+        return violations;
+    }
+
+    /**
+     * 分页读取当前用户某个代码的违规 (按报告顺序)
+     *
+     * @throws IllegalArgumentException 代码不存在
+     */
+    @Transactional(readOnly = true)
+    public Page<StyleViolationDTO> getViolationsForCurrentUser(Long codeId, Pageable pageable) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || "anonymousUser".equals(authentication.getPrincipal())) {
+            throw new IllegalStateException("User must be authenticated to view style violations.");
+        }
+        Long ownerId = codeRepository.findUploaderIdById(codeId)
+                .orElseThrow(() -> new IllegalArgumentException("Code not found with id: " + codeId));
+        if (!ownerId.equals(SecurityUtils.getUserId(authentication))) {
+            throw new AccessDeniedException("You do not have permission to view this code's violations.");
+        }
+        // 固定按主键顺序，忽略客户端传入的排序
+        Pageable bySeq = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by("seq"));
+        return styleViolationRepository.findByCodeId(codeId, bySeq)
+                .map(v -> new StyleViolationDTO(v.getRuleId(), v.getMessageKey(), v.getLine(), v.getColumn(),
+                        SEVERITY_NAMES[v.getSeverity()]));
+    }
+}
@@ -0,0 +1,105 @@
+package com.se.coderater.service;
+
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 一次 Checkstyle 运行产生的全部违规，按列存放在几个可增长的数组中：
+ * 每条违规只占 2 个 int + 1 个 byte + 2 个引用 (指向共享的规则名/消息键)，
+ * 不为每条违规创建对象或格式化消息文本，几千条违规也不会产生大量临时对象。
+ */
+public final class StyleViolations {
+
+    // 规则名和消息键在所有分析之间共享 (数量只与启用的规则数有关)
+    private static final ConcurrentHashMap<String, String> INTERNED = new ConcurrentHashMap<>();
+    // Checkstyle 模块类名 -> 简短规则名 (例如 ...checks.sizes.LineLengthCheck -> LineLength)
+    private static final ConcurrentHashMap<String, String> RULE_NAMES = new ConcurrentHashMap<>();
+
+    private String[] ruleIds = new String[16];
+    private String[] messageKeys = new String[16];
+    private int[] lines = new int[16];
+    private int[] columns = new int[16];
+    private byte[] severities = new byte[16];
+    private int size;
+
+    public void add(String ruleId, String messageKey, int line, int column, SeverityLevel severity) {
+        if (size == lines.length) {
+            int capacity = size * 2;
+            ruleIds = Arrays.copyOf(ruleIds, capacity);
+            messageKeys = Arrays.copyOf(messageKeys, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            columns = Arrays.copyOf(columns, capacity);
+            severities = Arrays.copyOf(severities, capacity);
+        }
+        ruleIds[size] = intern(ruleId);
+        messageKeys[size] = intern(messageKey);
+        lines[size] = line;
+        columns[size] = column;
+        severities[size] = (byte) severity.ordinal();
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String ruleId(int index) {
+        return ruleIds[index];
+    }
+
+    public String messageKey(int index) {
+        return messageKeys[index];
+    }
+
+    public int line(int index) {
+        return lines[index];
+    }
+
+    public int column(int index) {
+        return columns[index];
+    }
+
+    public byte severity(int index) {
+        return severities[index];
+    }
+
+    /**
+     * 某个级别的违规条数 (styleIssueCount 与 checker.process 的返回值一致，只统计 ERROR 级别)
+     */
+    public int count(SeverityLevel severity) {
+        byte ordinal = (byte) severity.ordinal();
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (severities[i] == ordinal) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 由 Checkstyle 模块名得到简短的规则名 (有配置 id 时优先使用 id)
+     */
+    static String ruleName(String moduleId, String sourceName) {
+        if (moduleId != null) {
+            return moduleId;
+        }
+        if (sourceName == null) {
+            return "Unknown";
+        }
+        return RULE_NAMES.computeIfAbsent(sourceName, name -> {
+            String simpleName = name.substring(name.lastIndexOf('.') + 1);
+            return simpleName.endsWith("Check") ? simpleName.substring(0, simpleName.length() - "Check".length()) : simpleName;
+        });
+    }
+
+    private static String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String existing = INTERNED.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+}
@@ -0,0 +1,457 @@
+package com.se.coderater.service;
+
+import com.github.javaparser.ParseProblemException;
+import com.se.coderater.dto.SymbolMatchDTO;
+import com.se.coderater.security.SecurityUtils;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 类名、方法名、字段名和导入的内存倒排索引，替代对 content 列的 LIKE '%...%' 扫描。
+ * 每种符号一个按小写名字排序的跳表 (名字 -> 代码 ID)，精确查询和前缀查询都是一次有序区间查找。
+ * 上传、修改、导入、删除在事务提交后增量更新；索引定期写入快照文件，
+ * 启动时先加载快照，再只重新解析快照之后修改过的代码，并清除已删除的代码。
+ * 多实例部署时其他节点的写入不会触发本节点的增量更新，所以每个节点定期按 codes.uploaded_at 拉取最近修改的代码
+ * (版本未变的跳过，不重新解析)，并定期清除数据库中已删除的代码。
+ */
+@Service
+public class SymbolIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SymbolIndexService.class);
+
+    public static final int MAX_LIMIT = 500;
+
+    private static final int SNAPSHOT_MAGIC = 0x43525359; // "CRSY"
+    private static final int SNAPSHOT_FORMAT = 1;
+    private static final int REBUILD_FETCH_SIZE = 200;
+    // 快照时间往前留的余量：这段时间内修改的代码在启动时会再解析一次
+    private static final long SNAPSHOT_MARGIN_SECONDS = 60;
+
+    // 符号种类 -> 小写名字 -> 声明了该名字的代码 ID
+    private final Map<SymbolKind, ConcurrentSkipListMap<String, Set<Long>>> postings = new EnumMap<>(SymbolKind.class);
+    // 代码 ID -> 所有者、文件名、版本和符号
+    private final ConcurrentHashMap<Long, IndexedCode> documents = new ConcurrentHashMap<>();
+    // 写操作 (增删倒排表) 串行执行；读操作不加锁
+    private final Object writeLock = new Object();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private volatile boolean ready;
+    private volatile LocalDateTime lastSyncAt; // 上一次拉取 (或启动重建) 开始的时间，只由加载线程和定时任务修改
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JavaParserPool javaParserPool;
+    private final BlobSegmentStore blobSegmentStore;
+    private final Path snapshotPath; // null 表示不使用快照 (每次启动全量重建)
+    private final long syncMarginSeconds;
+
+    public SymbolIndexService(JdbcTemplate jdbcTemplate, JavaParserPool javaParserPool, BlobSegmentStore blobSegmentStore,
+                              @Value("${coderater.symbols.snapshot-path:data/symbol-index.snapshot}") String snapshotPath,
+                              @Value("${coderater.symbols.sync-margin-seconds:120}") long syncMarginSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.javaParserPool = javaParserPool;
+        this.blobSegmentStore = blobSegmentStore;
+        this.snapshotPath = snapshotPath.isBlank() ? null : Paths.get(snapshotPath);
+        this.syncMarginSeconds = syncMarginSeconds;
+        for (SymbolKind kind : SymbolKind.values()) {
+            postings.put(kind, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    /**
+     * 当前事务提交后写入 (或替换) 某个代码的符号；不在事务中时立即写入
+     */
+    public void indexAfterCommit(Long codeId, Long ownerId, String fileName, LocalDateTime uploadedAt, CodeSymbols symbols) {
+        runAfterCommit(() -> put(codeId, ownerId, fileName, versionOf(uploadedAt), symbols != null ? symbols : CodeSymbols.EMPTY));
+    }
+
+    /**
+     * 当前事务提交后移除某个代码
+     */
+    public void removeAfterCommit(Long codeId) {
+        runAfterCommit(() -> remove(codeId));
+    }
+
+    /**
+     * 按名字查找符号 (不区分大小写)。kind 为 null 时查所有种类，prefix 为 true 时做前缀匹配。
+     * 普通用户只能查自己的代码；管理员可以查全部代码，或用 ownerId 限定某个用户。
+     */
+    public List<SymbolMatchDTO> searchForCurrentUser(String query, SymbolKind kind, boolean prefix, Long ownerId, int limit) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || "anonymousUser".equals(authentication.getPrincipal())) {
+            throw new IllegalStateException("User must be authenticated to search symbols.");
+        }
+        Long currentUserId = SecurityUtils.getUserId(authentication);
+        boolean admin = authentication.getAuthorities().stream().anyMatch(a -> "ROLE_ADMIN".equals(a.getAuthority()));
+        if (!admin) {
+            if (ownerId != null && !ownerId.equals(currentUserId)) {
+                throw new AccessDeniedException("You can only search your own code.");
+            }
+            ownerId = currentUserId;
+        }
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Query must not be empty.");
+        }
+        return search(query.trim(), kind, prefix, ownerId, Math.min(Math.max(limit, 1), MAX_LIMIT));
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    List<SymbolMatchDTO> search(String query, SymbolKind kind, boolean prefix, Long ownerId, int limit) {
+        String key = query.toLowerCase(Locale.ROOT);
+        List<SymbolMatchDTO> matches = new ArrayList<>();
+        for (SymbolKind k : kind != null ? new SymbolKind[]{kind} : SymbolKind.values()) {
+            ConcurrentSkipListMap<String, Set<Long>> names = postings.get(k);
+            NavigableMap<String, Set<Long>> range = prefix
+                    ? names.subMap(key, true, key + Character.MAX_VALUE, true)
+                    : names.subMap(key, true, key, true);
+            for (Map.Entry<String, Set<Long>> entry : range.entrySet()) {
+                for (Long codeId : entry.getValue()) {
+                    IndexedCode document = documents.get(codeId);
+                    if (document == null || (ownerId != null && document.ownerId != ownerId)) {
+                        continue;
+                    }
+                    // 同一文件中大小写不同的名字各返回一条
+                    for (String name : document.symbols.get(k)) {
+                        if (name.toLowerCase(Locale.ROOT).equals(entry.getKey())) {
+                            matches.add(new SymbolMatchDTO(codeId, document.fileName, document.ownerId,
+                                    k.name().toLowerCase(Locale.ROOT), name));
+                            if (matches.size() >= limit) {
+                                return matches;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return matches;
+    }
+
+    void put(Long codeId, long ownerId, String fileName, long version, CodeSymbols symbols) {
+        synchronized (writeLock) {
+            IndexedCode existing = documents.get(codeId);
+            if (existing != null) {
+                if (existing.version > version) {
+                    return; // 启动重建读到的旧版本晚于在线更新到达
+                }
+                unlink(codeId, existing.symbols);
+            }
+            link(codeId, symbols);
+            documents.put(codeId, new IndexedCode(ownerId, fileName, version, symbols));
+            dirty.set(true);
+        }
+    }
+
+    void remove(Long codeId) {
+        synchronized (writeLock) {
+            IndexedCode existing = documents.remove(codeId);
+            if (existing != null) {
+                unlink(codeId, existing.symbols);
+                dirty.set(true);
+            }
+        }
+    }
+
+    private void link(Long codeId, CodeSymbols symbols) {
+        for (SymbolKind kind : SymbolKind.values()) {
+            ConcurrentSkipListMap<String, Set<Long>> names = postings.get(kind);
+            for (String name : symbols.get(kind)) {
+                names.computeIfAbsent(name.toLowerCase(Locale.ROOT), k -> ConcurrentHashMap.newKeySet()).add(codeId);
+            }
+        }
+    }
+
+    private void unlink(Long codeId, CodeSymbols symbols) {
+        for (SymbolKind kind : SymbolKind.values()) {
+            ConcurrentSkipListMap<String, Set<Long>> names = postings.get(kind);
+            for (String name : symbols.get(kind)) {
+                String key = name.toLowerCase(Locale.ROOT);
+                Set<Long> codeIds = names.get(key);
+                if (codeIds != null) {
+                    codeIds.remove(codeId);
+                    if (codeIds.isEmpty()) {
+                        names.remove(key, codeIds);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 启动后在后台线程中加载快照并与数据库对齐，不阻塞应用启动 (期间的查询结果可能不完整)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadInBackground() {
+        Thread loader = new Thread(() -> {
+            try {
+                long startedAt = System.currentTimeMillis();
+                LocalDateTime since = loadSnapshot();
+                lastSyncAt = LocalDateTime.now();
+                int reparsed = reindexChangedSince(since);
+                int removed = removeDeletedCodes();
+                ready = true;
+                logger.info("Symbol index ready: {} codes ({} re-parsed, {} removed) in {} ms.",
+                        documents.size(), reparsed, removed, System.currentTimeMillis() - startedAt);
+                writeSnapshotIfDirty();
+            } catch (Exception e) {
+                logger.error("Failed to build the symbol index: {}", e.getMessage(), e);
+            }
+        }, "symbol-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * 拉取其他节点上传或修改的代码：uploaded_at 在上次拉取开始之前 sync-margin-seconds 之后的代码
+     * (余量覆盖节点之间的时钟偏差和提交晚于 uploaded_at 的事务)；本节点已经按同一版本索引过的代码不重新解析
+     */
+    @Scheduled(fixedDelayString = "${coderater.symbols.sync-interval-ms:10000}")
+    public void syncChanges() {
+        if (!ready) {
+            return;
+        }
+        try {
+            LocalDateTime startedAt = LocalDateTime.now();
+            int reparsed = reindexChangedSince(lastSyncAt.minusSeconds(syncMarginSeconds));
+            lastSyncAt = startedAt;
+            if (reparsed > 0) {
+                logger.debug("Symbol index picked up {} code(s) changed on any node.", reparsed);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Symbol index sync failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 清除其他节点删除的代码
+     */
+    @Scheduled(fixedDelayString = "${coderater.symbols.deletion-sweep-interval-ms:60000}")
+    public void sweepDeletedCodes() {
+        if (!ready) {
+            return;
+        }
+        try {
+            int removed = removeDeletedCodes();
+            if (removed > 0) {
+                logger.debug("Symbol index removed {} code(s) deleted on any node.", removed);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Symbol index deletion sweep failed: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${coderater.symbols.snapshot-interval-ms:60000}")
+    public synchronized void writeSnapshotIfDirty() {
+        if (snapshotPath == null || !ready || !dirty.getAndSet(false)) {
+            return;
+        }
+        try {
+            writeSnapshot();
+        } catch (IOException e) {
+            dirty.set(true); // 下次再试
+            logger.warn("Failed to write symbol index snapshot {}: {}", snapshotPath, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writeSnapshotIfDirty();
+    }
+
+    // 返回快照时间 (减去余量)；没有可用快照时返回 null，表示需要全量重建
+    private LocalDateTime loadSnapshot() {
+        if (snapshotPath == null || !Files.isRegularFile(snapshotPath)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_FORMAT) {
+                logger.warn("Ignoring symbol index snapshot {} with unknown format.", snapshotPath);
+                return null;
+            }
+            LocalDateTime takenAt = LocalDateTime.parse(in.readUTF());
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long codeId = in.readLong();
+                long ownerId = in.readLong();
+                long version = in.readLong();
+                String fileName = in.readUTF();
+                List<List<String>> byKind = new ArrayList<>(SymbolKind.values().length);
+                for (int k = 0; k < SymbolKind.values().length; k++) {
+                    int n = in.readInt();
+                    List<String> names = new ArrayList<>(n);
+                    for (int j = 0; j < n; j++) {
+                        names.add(in.readUTF());
+                    }
+                    byKind.add(List.copyOf(names));
+                }
+                put(codeId, ownerId, fileName, version,
+                        new CodeSymbols(byKind.get(0), byKind.get(1), byKind.get(2), byKind.get(3)));
+            }
+            dirty.set(false);
+            logger.info("Loaded symbol index snapshot with {} codes taken at {}.", count, takenAt);
+            return takenAt;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not read symbol index snapshot {}, rebuilding: {}", snapshotPath, e.getMessage());
+            synchronized (writeLock) {
+                documents.clear();
+                postings.values().forEach(Map::clear);
+            }
+            return null;
+        }
+    }
+
+    // 重新解析 since 之后上传或修改过的代码 (since 为 null 时解析全部代码)，用游标逐行读取；
+    // 同一查询取回内容在 blob 段文件中的位置，直接从映射的段中解码。索引中已是同一版本的代码跳过，返回重新解析的个数
+    int reindexChangedSince(LocalDateTime since) {
+        int[] reparsed = {0};
+        String sql = "SELECT c.id, c.user_id, c.file_name, c.uploaded_at, b.segment, b.segment_offset, b.length"
+                + " FROM codes c LEFT JOIN code_blobs b ON b.id = c.content_hash"
+                + (since != null ? " WHERE c.uploaded_at >= ?" : "");
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setFetchSize(REBUILD_FETCH_SIZE);
+            if (since != null) {
+                ps.setTimestamp(1, Timestamp.valueOf(since));
+            }
+            return ps;
+        }, rs -> {
+            long codeId = rs.getLong("id");
+            Timestamp uploadedAt = rs.getTimestamp("uploaded_at");
+            long version = versionOf(uploadedAt != null ? uploadedAt.toLocalDateTime() : null);
+            IndexedCode existing = documents.get(codeId);
+            if (existing != null && existing.version >= version) {
+                return;
+            }
+            CodeSymbols symbols = CodeSymbols.EMPTY;
+            int segment = rs.getInt("segment");
+            if (!rs.wasNull()) {
+                String content = StandardCharsets.UTF_8.decode(blobSegmentStore.read(segment,
+                        rs.getLong("segment_offset"), rs.getInt("length"))).toString();
+                try {
+                    symbols = CodeSymbols.of(javaParserPool.parse(JavaParserPool.Purpose.SYMBOLS, content));
+                } catch (ParseProblemException e) {
+                    // 语法错误的代码没有符号
+                }
+            }
+            put(codeId, rs.getLong("user_id"), rs.getString("file_name"), version, symbols);
+            reparsed[0]++;
+        });
+        return reparsed[0];
+    }
+
+    // 索引中存在、数据库中已删除的代码。先取索引中的 id 再查询数据库：
+    // 查询之后才提交并加入索引的新代码不在这份列表中，不会被误删
+    int removeDeletedCodes() {
+        List<Long> indexed = List.copyOf(documents.keySet());
+        Set<Long> existing = new HashSet<>(jdbcTemplate.queryForList("SELECT id FROM codes", Long.class));
+        int removed = 0;
+        for (Long codeId : indexed) {
+            if (!existing.contains(codeId)) {
+                remove(codeId);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    // 先写临时文件再原子替换，进程中途退出不会留下半个快照
+    private void writeSnapshot() throws IOException {
+        LocalDateTime takenAt = LocalDateTime.now().minusSeconds(SNAPSHOT_MARGIN_SECONDS);
+        List<Map.Entry<Long, IndexedCode>> entries = new ArrayList<>(documents.entrySet());
+        Path parent = snapshotPath.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tempFile = Files.createTempFile(parent, "symbol-index", ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_FORMAT);
+            out.writeUTF(takenAt.toString());
+            out.writeInt(entries.size());
+            for (Map.Entry<Long, IndexedCode> entry : entries) {
+                IndexedCode document = entry.getValue();
+                out.writeLong(entry.getKey());
+                out.writeLong(document.ownerId);
+                out.writeLong(document.version);
+                out.writeUTF(document.fileName);
+                for (SymbolKind kind : SymbolKind.values()) {
+                    List<String> names = document.symbols.get(kind);
+                    out.writeInt(names.size());
+                    for (String name : names) {
+                        out.writeUTF(name);
+                    }
+                }
+            }
+        }
+        Files.move(tempFile, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.debug("Wrote symbol index snapshot with {} codes to {}.", entries.size(), snapshotPath);
+    }
+
+    private static void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // 用 uploadedAt 作为版本号，保证启动重建不会用旧内容覆盖在线更新
+    private static long versionOf(LocalDateTime uploadedAt) {
+        return uploadedAt != null ? uploadedAt.toInstant(ZoneOffset.UTC).toEpochMilli() : 0L;
+    }
+
+    private static final class IndexedCode {
+        private final long ownerId;
+        private final String fileName;
+        private final long version;
+        private final CodeSymbols symbols;
+
+        private IndexedCode(long ownerId, String fileName, long version, CodeSymbols symbols) {
+            this.ownerId = ownerId;
+            this.fileName = fileName;
+            this.version = version;
+            this.symbols = symbols;
+        }
+    }
+}
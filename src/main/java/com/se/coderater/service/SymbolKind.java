@@ -0,0 +1,9 @@
+package com.se.coderater.service;
+
+// 符号索引中的符号种类
+public enum SymbolKind {
+    CLASS,  // 类、接口、枚举、记录、注解类型
+    METHOD,
+    FIELD,
+    IMPORT  // 导入的完整名字，按需导入以 .* 结尾
+}
@@ -0,0 +1,238 @@
+package com.se.coderater.service;
+
+import com.se.coderater.dto.BulkProvisionResponse;
+import com.se.coderater.dto.BulkUserResult;
+import com.se.coderater.dto.RegisterRequest;
+import com.se.coderater.entity.User;
+import com.se.coderater.repository.UserRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 管理员批量开户 (例如一次导入整门课的学生)。
+ * 流程：逐行校验 -> 一次集合查询找出冲突 -> 并行 BCrypt -> JDBC 批量插入 users 和 user_roles。
+ */
+@Service
+public class UserProvisioningService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserProvisioningService.class);
+
+    private static final String DEFAULT_ROLE = "ROLE_USER";
+    private static final int JDBC_BATCH_SIZE = 200;
+
+    private final UserRepository userRepository;
+    private final CredentialHashingService credentialHashingService;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CacheEvictionService cacheEvictionService;
+    private final Validator validator;
+    private final int maxRows;
+
+    public UserProvisioningService(UserRepository userRepository,
+                                   CredentialHashingService credentialHashingService,
+                                   JdbcTemplate jdbcTemplate,
+                                   NamedParameterJdbcTemplate namedJdbcTemplate,
+                                   PlatformTransactionManager transactionManager,
+                                   CacheEvictionService cacheEvictionService,
+                                   Validator validator,
+                                   @Value("${coderater.admin.bulk-provision.max-rows:2000}") int maxRows) {
+        this.userRepository = userRepository;
+        this.credentialHashingService = credentialHashingService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.cacheEvictionService = cacheEvictionService;
+        this.validator = validator;
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * 解析 CSV (username,email,password，可带表头) 后批量开户
+     */
+    public BulkProvisionResponse provisionFromCsv(String csv) {
+        List<RegisterRequest> requests = new ArrayList<>();
+        List<String> parseErrors = new ArrayList<>(); // 与 requests 下标对应，null 表示该行格式正确
+        List<Integer> lineNumbers = new ArrayList<>(); // 与 requests 下标对应：在 CSV 文件中的行号 (从 1 开始)
+        String[] lines = csv == null ? new String[0] : csv.split("\\r?\\n");
+        boolean firstLine = true;
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (firstLine) {
+                firstLine = false;
+                if (line.startsWith("\uFEFF")) {
+                    line = line.substring(1); // Excel 导出的 UTF-8 BOM
+                }
+                if (line.toLowerCase(Locale.ROOT).startsWith("username")) {
+                    continue; // 表头 (第一个非空行)
+                }
+            }
+            lineNumbers.add(i + 1);
+            String[] fields = line.split(",", -1);
+            if (fields.length != 3) {
+                requests.add(new RegisterRequest());
+                parseErrors.add("Expected 3 columns (username,email,password) but found " + fields.length);
+            } else {
+                requests.add(new RegisterRequest(fields[0].trim(), fields[1].trim(), fields[2].trim()));
+                parseErrors.add(null);
+            }
+        }
+        return provision(requests, parseErrors, lineNumbers);
+    }
+
+    /**
+     * JSON 数组形式批量开户
+     */
+    public BulkProvisionResponse provision(List<RegisterRequest> requests) {
+        List<String> parseErrors = new ArrayList<>();
+        List<Integer> rowNumbers = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            parseErrors.add(requests.get(i) == null ? "Empty row" : null);
+            rowNumbers.add(i + 1);
+        }
+        return provision(requests, parseErrors, rowNumbers);
+    }
+
+    /**
+     * rowNumbers 与 requests 下标对应，是结果中报告的行号 (CSV 为源文件中的行号，JSON 为数组中的序号)
+     */
+    private BulkProvisionResponse provision(List<RegisterRequest> requests, List<String> parseErrors,
+                                            List<Integer> rowNumbers) {
+        if (requests.isEmpty()) {
+            throw new IllegalArgumentException("No users to provision.");
+        }
+        if (requests.size() > maxRows) {
+            throw new IllegalArgumentException("Too many rows: " + requests.size() + " (max " + maxRows + ").");
+        }
+
+        BulkUserResult[] results = new BulkUserResult[requests.size()];
+
+        // 1. 逐行校验 (与 /api/auth/register 相同的 Bean Validation 规则)，并排除批次内部重复
+        Set<String> seenUsernames = new HashSet<>();
+        Set<String> seenEmails = new HashSet<>();
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            RegisterRequest request = requests.get(i);
+            String username = request != null ? request.getUsername() : null;
+            if (parseErrors.get(i) != null) {
+                results[i] = new BulkUserResult(rowNumbers.get(i), username, "INVALID", parseErrors.get(i));
+                continue;
+            }
+            Set<ConstraintViolation<RegisterRequest>> violations = validator.validate(request);
+            if (!violations.isEmpty()) {
+                String message = violations.stream()
+                        .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining("; "));
+                results[i] = new BulkUserResult(rowNumbers.get(i), username, "INVALID", message);
+                continue;
+            }
+            // MySQL 默认排序规则不区分大小写，这里同样按小写判重
+            if (!seenUsernames.add(username.toLowerCase(Locale.ROOT))) {
+                results[i] = new BulkUserResult(rowNumbers.get(i), username, "CONFLICT", "Duplicate username within this batch");
+                continue;
+            }
+            if (!seenEmails.add(request.getEmail().toLowerCase(Locale.ROOT))) {
+                results[i] = new BulkUserResult(rowNumbers.get(i), username, "CONFLICT", "Duplicate email within this batch");
+                continue;
+            }
+            candidates.add(i);
+        }
+
+        // 2. 一次查询找出已存在的用户名/邮箱
+        List<Integer> toCreate = new ArrayList<>();
+        if (!candidates.isEmpty()) {
+            Set<String> takenUsernames = new HashSet<>();
+            Set<String> takenEmails = new HashSet<>();
+            List<String> usernames = candidates.stream().map(i -> requests.get(i).getUsername()).toList();
+            List<String> emails = candidates.stream().map(i -> requests.get(i).getEmail()).toList();
+            for (Object[] row : userRepository.findUsernamesAndEmailsIn(usernames, emails)) {
+                takenUsernames.add(((String) row[0]).toLowerCase(Locale.ROOT));
+                takenEmails.add(((String) row[1]).toLowerCase(Locale.ROOT));
+            }
+            for (Integer i : candidates) {
+                RegisterRequest request = requests.get(i);
+                if (takenUsernames.contains(request.getUsername().toLowerCase(Locale.ROOT))) {
+                    results[i] = new BulkUserResult(rowNumbers.get(i), request.getUsername(), "CONFLICT", "Username is already taken");
+                } else if (takenEmails.contains(request.getEmail().toLowerCase(Locale.ROOT))) {
+                    results[i] = new BulkUserResult(rowNumbers.get(i), request.getUsername(), "CONFLICT", "Email is already in use");
+                } else {
+                    toCreate.add(i);
+                }
+            }
+        }
+
+        // 3. 并行哈希 + 批量插入
+        if (!toCreate.isEmpty()) {
+            List<String> encodedPasswords = credentialHashingService.encodeAll(
+                    toCreate.stream().map(i -> requests.get(i).getPassword()).toList());
+
+            // 哈希在事务外完成，只有插入部分占用数据库连接；
+            // 期间被并发注册抢占的用户名由唯一约束兜底 (DuplicateKeyException，整批回滚)
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Object[]> userRows = new ArrayList<>(toCreate.size());
+                for (int k = 0; k < toCreate.size(); k++) {
+                    RegisterRequest request = requests.get(toCreate.get(k));
+                    userRows.add(new Object[]{request.getUsername(), request.getEmail(), encodedPasswords.get(k)});
+                }
+                batchInsert("INSERT INTO users (username, email, password) VALUES (?, ?, ?)", userRows);
+
+                // IDENTITY 主键无法在批量插入时逐条取回，按用户名一次查回 id
+                Map<String, Long> idsByUsername = new HashMap<>();
+                List<String> createdUsernames = toCreate.stream().map(i -> requests.get(i).getUsername()).toList();
+                namedJdbcTemplate.query("SELECT id, username FROM users WHERE username IN (:usernames)",
+                        new MapSqlParameterSource("usernames", createdUsernames),
+                        rs -> {
+                            idsByUsername.put(rs.getString("username").toLowerCase(Locale.ROOT), rs.getLong("id"));
+                        });
+
+                List<Object[]> roleRows = new ArrayList<>(toCreate.size());
+                for (String username : createdUsernames) {
+                    roleRows.add(new Object[]{idsByUsername.get(username.toLowerCase(Locale.ROOT)), DEFAULT_ROLE});
+                }
+                batchInsert("INSERT INTO user_roles (user_id, role) VALUES (?, ?)", roleRows);
+            });
+            // 事务已提交：清理查询缓存中 "用户名不存在" 之类的旧结果
+            cacheEvictionService.evictAfterJdbcWrite(User.class);
+
+            for (Integer i : toCreate) {
+                results[i] = new BulkUserResult(rowNumbers.get(i), requests.get(i).getUsername(), "CREATED", null);
+            }
+        }
+
+        List<BulkUserResult> resultList = List.of(results);
+        int created = (int) resultList.stream().filter(r -> "CREATED".equals(r.getStatus())).count();
+        int conflicts = (int) resultList.stream().filter(r -> "CONFLICT".equals(r.getStatus())).count();
+        int invalid = resultList.size() - created - conflicts;
+        logger.info("Bulk provisioning finished: {} rows, {} created, {} conflicts, {} invalid",
+                resultList.size(), created, conflicts, invalid);
+        return new BulkProvisionResponse(created, conflicts, invalid, resultList);
+    }
+
+    private void batchInsert(String sql, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += JDBC_BATCH_SIZE) {
+            jdbcTemplate.batchUpdate(sql, rows.subList(from, Math.min(from + JDBC_BATCH_SIZE, rows.size())));
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.se.coderater.config;
+
+import com.se.coderater.repository.AnalysisRepository;
+import com.se.coderater.repository.CodeRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * 多节点共用数据库：另一个节点 (这里直接用 JDBC 写库) 写入的分析结果和代码修改，本节点的下一次读取立即可见
+ */
+@DataJpaTest
+@Import(HibernateCacheConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // 每次仓库调用各自一个事务，不共用一级缓存
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "coderater.cluster.multi-node=true"
+})
+class HibernateCacheConfigTest {
+
+    private static final LocalDateTime ANALYZED = LocalDateTime.of(2025, 5, 1, 10, 0);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private AnalysisRepository analysisRepository;
+
+    @Autowired
+    private CodeRepository codeRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM analyses");
+        jdbcTemplate.update("DELETE FROM codes");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    @Test
+    void resultsWrittenByAnotherNodeAreVisibleImmediately() {
+        assertFalse(entityManagerFactory.unwrap(SessionFactory.class).getSessionFactoryOptions().isSecondLevelCacheEnabled());
+        assertFalse(entityManagerFactory.unwrap(SessionFactory.class).getSessionFactoryOptions().isQueryCacheEnabled());
+
+        jdbcTemplate.update("INSERT INTO users (username, email, password) VALUES ('nodes', 'nodes@example.com', 'x')");
+        long userId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = 'nodes'", Long.class);
+        jdbcTemplate.update("INSERT INTO codes (user_id, file_name, uploaded_at) VALUES (?, 'A.java', ?)",
+                userId, Timestamp.valueOf(ANALYZED.minusMinutes(1)));
+        long codeId = jdbcTemplate.queryForObject("SELECT id FROM codes WHERE user_id = ?", Long.class, userId);
+        jdbcTemplate.update("INSERT INTO analyses (code_id, style_issue_count, analyzed_at) VALUES (?, 3, ?)",
+                codeId, Timestamp.valueOf(ANALYZED));
+
+        assertEquals(3, analysisRepository.findByCodeId(codeId).orElseThrow().getStyleIssueCount());
+        assertEquals("A.java", codeRepository.findById(codeId).orElseThrow().getFileName());
+
+        // 另一个节点的后台任务重新分析、用户在另一个节点上改了文件名
+        jdbcTemplate.update("UPDATE analyses SET style_issue_count = 7, analyzed_at = ? WHERE code_id = ?",
+                Timestamp.valueOf(ANALYZED.plusMinutes(5)), codeId);
+        jdbcTemplate.update("UPDATE codes SET file_name = 'B.java' WHERE id = ?", codeId);
+
+        assertEquals(7, analysisRepository.findByCodeId(codeId).orElseThrow().getStyleIssueCount());
+        assertEquals(ANALYZED.plusMinutes(5), analysisRepository.findByCodeId(codeId).orElseThrow().getAnalyzedAt());
+        assertEquals("B.java", codeRepository.findById(codeId).orElseThrow().getFileName());
+    }
+}
@@ -0,0 +1,136 @@
+package com.se.coderater.service;
+
+import com.se.coderater.entity.AnalysisMode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 多实例：一个节点完成的分析通过 analysis_notifications 转发给其他节点，每个事件只转发一次，不转发回自己；
+ * 不读数据的客户端占住全部发送线程时，其他连接仍能收到事件
+ */
+@DataJpaTest
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+class AnalysisEventServiceTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private AnalysisEventService nodeA;
+    private AnalysisEventService nodeB;
+
+    @BeforeEach
+    void setUp() {
+        nodeA = newNode();
+        nodeB = newNode();
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.shutdown();
+        nodeB.shutdown();
+    }
+
+    @Test
+    void completionOnOneNodeIsForwardedToTheOthersOnce() {
+        LocalDateTime analyzedAt = LocalDateTime.of(2025, 5, 1, 10, 0);
+        nodeA.recordForOtherNodes(new AnalysisCompletedEvent(7L, 11L, 2, 13L, AnalysisMode.PRECISE, analyzedAt, 85));
+
+        List<AnalysisCompletedEvent> forwarded = nodeB.pollOtherNodes();
+        assertEquals(1, forwarded.size());
+        AnalysisCompletedEvent event = forwarded.get(0);
+        assertEquals(7L, event.getOwnerId());
+        assertEquals(11L, event.getCodeId());
+        assertEquals(2, event.getRevisionNo());
+        assertEquals(13L, event.getAnalysisId());
+        assertEquals(AnalysisMode.PRECISE, event.getAnalysisMode());
+        assertEquals(analyzedAt, event.getAnalyzedAt());
+        assertEquals(85, event.getOverallScore());
+
+        assertEquals(List.of(), nodeB.pollOtherNodes()); // 仍在窗口内，但已经推送过
+        assertEquals(List.of(), nodeA.pollOtherNodes()); // 本节点的事件已在提交后直接推送
+    }
+
+    @Test
+    void stalledClientsDoNotBlockOtherConnections() throws Exception {
+        // 2 个发送线程，发送超时 50 ms
+        AnalysisEventService events = new AnalysisEventService(new SimpleMeterRegistry(), jdbcTemplate, 2, 60_000, 8, 4,
+                30, 50);
+        CountDownLatch stalledSends = new CountDownLatch(2);
+        CountDownLatch unblock = new CountDownLatch(1);
+        CountDownLatch received = new CountDownLatch(2); // connected + 一个事件
+        try {
+            events.subscribe(1L, new StalledEmitter(stalledSends, unblock));
+            events.subscribe(2L, new StalledEmitter(stalledSends, unblock));
+            assertTrue(stalledSends.await(5, TimeUnit.SECONDS)); // 两个发送线程都卡在 connected 上
+            events.subscribe(3L, new RecordingEmitter(received));
+
+            Thread.sleep(200);
+            events.checkStalledSends();
+            events.onAnalysisCompleted(new AnalysisCompletedEvent(3L, 1L, 1, 1L, AnalysisMode.FAST,
+                    LocalDateTime.now(), 50));
+            assertTrue(received.await(5, TimeUnit.SECONDS));
+        } finally {
+            unblock.countDown();
+            events.shutdown();
+        }
+    }
+
+    private static final class StalledEmitter extends SseEmitter {
+        private final CountDownLatch started;
+        private final CountDownLatch unblock;
+
+        StalledEmitter(CountDownLatch started, CountDownLatch unblock) {
+            this.started = started;
+            this.unblock = unblock;
+        }
+
+        @Override
+        public void send(Set<DataWithMediaType> items) throws IOException {
+            started.countDown();
+            try {
+                unblock.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("Client went away.");
+        }
+    }
+
+    private static final class RecordingEmitter extends SseEmitter {
+        private final CountDownLatch received;
+
+        RecordingEmitter(CountDownLatch received) {
+            this.received = received;
+        }
+
+        @Override
+        public void send(Set<DataWithMediaType> items) {
+            received.countDown();
+        }
+    }
+
+    private AnalysisEventService newNode() {
+        return new AnalysisEventService(new SimpleMeterRegistry(), jdbcTemplate, 1, 60_000, 8, 4, 30, 10_000);
+    }
+}
@@ -0,0 +1,214 @@
+package com.se.coderater.service;
+
+import com.se.coderater.dto.AnalysisJobDTO;
+import com.se.coderater.entity.AnalysisJobStatus;
+import com.se.coderater.entity.AnalysisMode;
+import com.se.coderater.entity.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 任务队列的租约条件：旧租约持有者在任务被其他节点接手后写入不生效
+ */
+@DataJpaTest
+@Import(AnalysisJobService.class)
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false",
+        "coderater.jobs.max-attempts=3",
+        "coderater.jobs.backoff-base-seconds=5",
+        "coderater.jobs.backoff-max-seconds=600"
+})
+class AnalysisJobServiceTest {
+
+    private static final String NODE_A = "node-a";
+    private static final String NODE_B = "node-b";
+
+    @Autowired
+    private AnalysisJobService jobService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long codeId;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO users (username, email, password) VALUES ('jobs', 'jobs@example.com', 'x')");
+        long userId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = 'jobs'", Long.class);
+        jdbcTemplate.update("INSERT INTO codes (user_id, file_name) VALUES (?, 'A.java')", userId);
+        codeId = jdbcTemplate.queryForObject("SELECT id FROM codes WHERE user_id = ?", Long.class, userId);
+        User user = new User("jobs", "jobs@example.com", "x");
+        user.setId(userId);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void completeRequiresTheCurrentLease() {
+        long jobId = enqueue();
+        AnalysisJobService.ClaimedJob first = claimOne(NODE_A);
+        expireLease(jobId);
+        AnalysisJobService.ClaimedJob second = claimOne(NODE_B);
+        assertEquals(2, second.getAttempts());
+
+        assertFalse(jobService.complete(first, NODE_A, 1L)); // 租约已被 B 接手
+        assertFalse(jobService.complete(second, NODE_A, 1L)); // 持有者不对
+        assertEquals("RUNNING", status(jobId));
+        assertTrue(jobService.complete(second, NODE_B, 1L));
+        assertEquals("SUCCEEDED", status(jobId));
+        assertNull(activeKey(jobId));
+    }
+
+    @Test
+    void failRequiresTheCurrentLease() {
+        long jobId = enqueue();
+        AnalysisJobService.ClaimedJob first = claimOne(NODE_A);
+        expireLease(jobId);
+        AnalysisJobService.ClaimedJob second = claimOne(NODE_B);
+
+        assertNull(jobService.fail(first, NODE_A, "late failure", true));
+        assertNull(jobService.fail(first, NODE_A, "late failure", false));
+        assertEquals("RUNNING", status(jobId));
+        assertEquals(AnalysisJobStatus.PENDING, jobService.fail(second, NODE_B, "boom", true));
+        assertEquals("PENDING", status(jobId));
+    }
+
+    @Test
+    void lastAttemptFailureIsDead() {
+        long jobId = enqueue();
+        for (int attempt = 1; attempt < 3; attempt++) {
+            assertEquals(AnalysisJobStatus.PENDING, jobService.fail(claimOne(NODE_A), NODE_A, "boom", true));
+            jdbcTemplate.update("UPDATE analysis_jobs SET run_after = LOCALTIMESTAMP WHERE id = ?", jobId); // 跳过退避
+        }
+        AnalysisJobService.ClaimedJob last = claimOne(NODE_A);
+        assertEquals(3, last.getAttempts());
+        assertEquals(AnalysisJobStatus.DEAD, jobService.fail(last, NODE_A, "boom", true));
+        assertNull(activeKey(jobId));
+        assertEquals(List.of(), jobService.claim(NODE_A, 10, 60));
+    }
+
+    @Test
+    void releaseOnlyReturnsJobsStillHeld() {
+        long jobId = enqueue();
+        claimOne(NODE_A);
+        expireLease(jobId);
+        AnalysisJobService.ClaimedJob second = claimOne(NODE_B);
+
+        assertEquals(0, jobService.release(NODE_A, List.of(jobId)));
+        assertEquals("RUNNING", status(jobId));
+        assertEquals(1, jobService.release(NODE_B, List.of(jobId)));
+        assertEquals("PENDING", status(jobId));
+        // 交还的那次领取不计入重试次数
+        assertEquals(second.getAttempts() - 1,
+                (int) jdbcTemplate.queryForObject("SELECT attempts FROM analysis_jobs WHERE id = ?", Integer.class, jobId));
+    }
+
+    @Test
+    void expiredLeaseOnLastAttemptBecomesDead() {
+        long jobId = enqueue();
+        jdbcTemplate.update("UPDATE analysis_jobs SET attempts = max_attempts - 1 WHERE id = ?", jobId);
+        claimOne(NODE_A);
+        expireLease(jobId);
+
+        assertEquals(List.of(), jobService.claim(NODE_B, 10, 60));
+        assertEquals("DEAD", status(jobId));
+        assertNull(activeKey(jobId));
+    }
+
+    @Test
+    void onlyOneActiveJobPerCodeAndMode() {
+        long jobId = enqueue();
+        assertEquals(jobId, enqueue());
+        // 另一个节点绕过查询直接插入，被唯一索引拦下
+        assertEquals(1, (int) jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM analysis_jobs WHERE active_key = ?", Integer.class,
+                AnalysisJobService.activeKey(codeId, AnalysisMode.FAST)));
+        assertThrows(DuplicateKeyException.class, () -> jdbcTemplate.update("INSERT INTO analysis_jobs "
+                + "(code_id, user_id, analysis_mode, status, attempts, max_attempts, run_after, active_key, created_at, "
+                + "updated_at) SELECT code_id, user_id, analysis_mode, 'PENDING', 0, 3, run_after, active_key, "
+                + "created_at, updated_at FROM analysis_jobs WHERE id = ?", jobId));
+
+        AnalysisJobService.ClaimedJob claimed = claimOne(NODE_A);
+        assertEquals(AnalysisJobStatus.DEAD, jobService.fail(claimed, NODE_A, "syntax error", false));
+        long nextJobId = enqueue(); // DEAD 后可以重新提交
+        assertTrue(nextJobId != jobId);
+        // 已有活动任务时，重试 DEAD 任务返回那个活动任务
+        assertEquals(nextJobId, jobService.retryForCurrentUser(jobId).orElseThrow().getId());
+        assertEquals("DEAD", status(jobId));
+    }
+
+    @Test
+    void purgeDeletesOnlyFinishedJobsPastRetention() {
+        long oldJob = enqueue();
+        jobService.complete(claimOne(NODE_A), NODE_A, 1L);
+        long recentJob = enqueue();
+        jobService.complete(claimOne(NODE_A), NODE_A, 1L);
+        long activeJob = enqueue();
+        jdbcTemplate.update("UPDATE analysis_jobs SET finished_at = TIMESTAMPADD(DAY, -8, LOCALTIMESTAMP) WHERE id = ?", oldJob);
+        jdbcTemplate.update("UPDATE analysis_jobs SET created_at = TIMESTAMPADD(DAY, -30, LOCALTIMESTAMP) WHERE id = ?",
+                activeJob);
+
+        assertEquals(1, jobService.purgeFinished());
+        assertEquals(List.of(recentJob, activeJob), jdbcTemplate.queryForList(
+                "SELECT id FROM analysis_jobs ORDER BY id", Long.class));
+    }
+
+    @Test
+    void backoffDoublesUpToTheCap() {
+        assertEquals(5, jobService.backoffSeconds(1));
+        assertEquals(10, jobService.backoffSeconds(2));
+        assertEquals(20, jobService.backoffSeconds(3));
+        assertEquals(320, jobService.backoffSeconds(7));
+        assertEquals(600, jobService.backoffSeconds(8));
+        assertEquals(600, jobService.backoffSeconds(100)); // 不会溢出
+    }
+
+    private long enqueue() {
+        List<AnalysisJobDTO> jobs = jobService.enqueueForCurrentUser(List.of(codeId), AnalysisMode.FAST);
+        assertEquals(1, jobs.size());
+        return jobs.get(0).getId();
+    }
+
+    private AnalysisJobService.ClaimedJob claimOne(String owner) {
+        List<AnalysisJobService.ClaimedJob> claimed = jobService.claim(owner, 10, 60);
+        assertEquals(1, claimed.size());
+        return claimed.get(0);
+    }
+
+    private void expireLease(long jobId) {
+        jdbcTemplate.update("UPDATE analysis_jobs SET lease_expires_at = TIMESTAMPADD(SECOND, -1, LOCALTIMESTAMP) "
+                + "WHERE id = ?", jobId);
+    }
+
+    private String status(long jobId) {
+        return jdbcTemplate.queryForObject("SELECT status FROM analysis_jobs WHERE id = ?", String.class, jobId);
+    }
+
+    private String activeKey(long jobId) {
+        return jdbcTemplate.queryForObject("SELECT active_key FROM analysis_jobs WHERE id = ?", String.class, jobId);
+    }
+}
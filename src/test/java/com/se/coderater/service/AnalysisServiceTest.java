@@ -0,0 +1,51 @@
+package com.se.coderater.service;
+
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+import com.se.coderater.entity.Analysis;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 相同内容复用分析结果时，保存的违规明细 (包括 WARNING 级别) 要能与 styleIssueCount (只有 ERROR 级别) 对上
+ */
+class AnalysisServiceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void analysisWithWarningLevelViolationsCanBeReused() throws Exception {
+        // 只用到不访问数据库的部分，仓库和违规明细服务传 null
+        AnalysisService analysisService = new AnalysisService(null, null, new ScoreCalculator(),
+                new AnalysisMetrics(new SimpleMeterRegistry()), null, null, new JavaParserPool(), null, null, null, null,
+                directory.resolve("cache").toString(), 0);
+        // 类名不符合 TypeName (checkstyle.xml 中为 warning 级别)
+        File file = directory.resolve("lower.java").toFile();
+        Files.writeString(file.toPath(), "public class lower {\n    private int value;\n}\n", StandardCharsets.UTF_8);
+
+        AnalysisService.CheckstyleResult result = analysisService.runCheckstyle(file);
+        StyleViolations violations = result.getViolations();
+        assertTrue(violations.count(SeverityLevel.WARNING) > 0);
+        assertEquals(result.getIssueCount(), violations.count(SeverityLevel.ERROR));
+
+        Analysis donor = new Analysis();
+        donor.setStyleIssueCount(result.getIssueCount());
+        assertTrue(AnalysisService.hasCompleteViolations(donor, violations));
+
+        // 违规明细功能上线之前的结果：有问题数但没有明细
+        donor.setStyleIssueCount(result.getIssueCount() + 1);
+        assertFalse(AnalysisService.hasCompleteViolations(donor, violations));
+        donor.setStyleIssueCount(null);
+        assertFalse(AnalysisService.hasCompleteViolations(donor, violations));
+    }
+}
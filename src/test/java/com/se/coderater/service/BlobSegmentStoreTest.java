@@ -0,0 +1,102 @@
+package com.se.coderater.service;
+
+import com.se.coderater.exception.BlobStoreReadOnlyException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 多实例共享段目录：只读节点 (writer=false) 能读到写入节点追加的内容，但不追加也不删除段文件；
+ * 多个写入节点各自追加到自己创建的段，不删除对方仍在写入的段
+ */
+class BlobSegmentStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readOnlyNodeReadsButNeverWritesOrDeletes() throws Exception {
+        BlobSegmentStore writer = new BlobSegmentStore(directory.toString(), 16, true);
+        BlobSegmentStore reader = new BlobSegmentStore(directory.toString(), 16, false);
+        writer.open();
+        reader.open();
+        try {
+            BlobSegmentStore.Location first = writer.append(bytes("class A {}"));
+            writer.release(first);
+            assertEquals("class A {}", text(reader.read(first.getSegment(), first.getOffset(), first.getLength())));
+
+            assertThrows(BlobStoreReadOnlyException.class, () -> reader.append(bytes("class B {}")));
+            assertThrows(BlobStoreReadOnlyException.class, () -> reader.appendAll(List.of(bytes("class B {}"))));
+
+            // 写入节点切换到新段后，旧段可以回收，但只有写入节点会删除它
+            BlobSegmentStore.Location second = writer.append(bytes("class C {}"));
+            writer.release(second);
+            assertTrue(second.getSegment() > first.getSegment());
+            assertFalse(reader.deleteSegment(first.getSegment()));
+            assertFalse(reader.deleteSegment(second.getSegment()));
+            assertTrue(writer.deleteSegment(first.getSegment()));
+        } finally {
+            writer.close();
+            reader.close();
+        }
+    }
+
+    @Test
+    void writersOnTheSameDirectoryAppendToTheirOwnSegments() throws Exception {
+        BlobSegmentStore first = new BlobSegmentStore(directory.toString(), 64, true);
+        BlobSegmentStore second = new BlobSegmentStore(directory.toString(), 64, true);
+        first.open();
+        second.open();
+        try {
+            BlobSegmentStore.Location a = first.append(bytes("class A {}"));
+            BlobSegmentStore.Location b = second.append(bytes("class B {}"));
+            assertNotEquals(a.getSegment(), b.getSegment());
+            assertEquals("class A {}", text(second.read(a.getSegment(), a.getOffset(), a.getLength())));
+            assertEquals("class B {}", text(first.read(b.getSegment(), b.getOffset(), b.getLength())));
+
+            // 对方正在写入的段 (无论追加是否已提交) 不会被删除
+            assertFalse(second.deleteSegment(a.getSegment()));
+            first.release(a);
+            assertFalse(second.deleteSegment(a.getSegment()));
+            assertFalse(first.deleteSegment(b.getSegment()));
+
+            // first 写满后换到新段，旧段不再被持有，任一节点都可以回收
+            BlobSegmentStore.Location c = first.append(new byte[60]);
+            first.release(c);
+            assertTrue(c.getSegment() > b.getSegment());
+            assertTrue(second.deleteSegment(a.getSegment()));
+        } finally {
+            first.close();
+            second.close();
+        }
+
+        // 节点重启后从新段开始写入，不会追加到其他节点可能仍在写的段
+        BlobSegmentStore next = new BlobSegmentStore(directory.toString(), 64, true);
+        next.open();
+        try {
+            BlobSegmentStore.Location d = next.append(bytes("class D {}"));
+            next.release(d);
+            assertEquals(0, d.getOffset());
+        } finally {
+            next.close();
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(ByteBuffer buffer) {
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+}
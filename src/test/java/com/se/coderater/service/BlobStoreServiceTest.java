@@ -0,0 +1,80 @@
+package com.se.coderater.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 批量 acquireAll 的引用计数与读回；段大小设为 64 字节，一批内容会跨越多个段
+ */
+@DataJpaTest
+@Import({BlobStoreService.class, BlobSegmentStore.class, BlobStoreServiceTest.Config.class})
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false",
+        "coderater.blobs.dir=target/test-blobs/acquire-all",
+        "coderater.blobs.segment-size-bytes=64"
+})
+class BlobStoreServiceTest {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void acquireAllCountsEveryReferenceAndStoresEachContentOnce() {
+        String existing = "class Existing {}\n";
+        String existingId = blobStoreService.acquire(existing);
+        List<String> contents = List.of(
+                "class A { int a; int b; int c; int d; }\n",
+                existing,
+                "class B { int a; int b; int c; int d; }\n",
+                "class A { int a; int b; int c; int d; }\n",
+                "class C { int a; int b; int c; int d; }\n");
+
+        List<String> blobIds = blobStoreService.acquireAll(contents, 2);
+
+        assertEquals(contents.size(), blobIds.size());
+        assertEquals(existingId, blobIds.get(1));
+        assertEquals(blobIds.get(0), blobIds.get(3));
+        assertEquals(3, refCount(existingId));
+        assertEquals(4, refCount(blobIds.get(0)));
+        assertEquals(2, refCount(blobIds.get(2)));
+        assertEquals(4, (int) jdbcTemplate.queryForObject("SELECT COUNT(*) FROM code_blobs", Integer.class));
+        for (int i = 0; i < contents.size(); i++) {
+            assertEquals(contents.get(i), read(blobIds.get(i)));
+        }
+        assertEquals(List.of(), blobStoreService.acquireAll(List.of(), 1));
+    }
+
+    private int refCount(String blobId) {
+        return jdbcTemplate.queryForObject("SELECT ref_count FROM code_blobs WHERE id = ?", Integer.class, blobId);
+    }
+
+    private String read(String blobId) {
+        return StandardCharsets.UTF_8.decode(blobStoreService.open(blobId).orElseThrow()).toString();
+    }
+}
@@ -0,0 +1,147 @@
+package com.se.coderater.service;
+
+import com.se.coderater.dto.CodeRevisionDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 修订历史在嵌入式 H2 上的往返测试：每 3 版一个快照
+ */
+@DataJpaTest
+@Import({CodeRevisionService.class, BlobStoreService.class, BlobSegmentStore.class, ScoreCalculator.class,
+        CodeRevisionServiceTest.Config.class})
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false",
+        "spring.jpa.show-sql=false",
+        "coderater.blobs.dir=target/test-blobs/revisions",
+        "coderater.revisions.snapshot-interval=3"
+})
+class CodeRevisionServiceTest {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private CodeRevisionService revisionService;
+
+    @Test
+    void everyRevisionIsReconstructedAcrossSnapshotBoundaries() {
+        long codeId = 1001L;
+        List<String> versions = new ArrayList<>();
+        String content = "public class A {\r\n}\r\n";
+        versions.add(content);
+        revisionService.recordInitial(codeId, "A.java", content, LocalDateTime.now());
+        for (int i = 1; i < 8; i++) {
+            String previous = content;
+            // 每版只插入一行，增量远小于内容
+            content = previous.replace("}\r\n", "    int f" + i + ";\r\n}\r\n");
+            int revisionNo = revisionService.recordRevision(codeId, i, "A.java", previous, null, "A.java", content);
+            assertEquals(i + 1, revisionNo);
+            versions.add(content);
+        }
+
+        for (int revisionNo = 1; revisionNo <= versions.size(); revisionNo++) {
+            assertEquals(Optional.of(versions.get(revisionNo - 1)),
+                    revisionService.loadRevisionContent(codeId, revisionNo), "revision " + revisionNo);
+        }
+        List<CodeRevisionDTO> revisions = revisionsInOrder(codeId);
+        for (CodeRevisionDTO revision : revisions) {
+            // 第 1、4、7 版是快照，其余是增量
+            assertEquals((revision.getRevisionNo() - 1) % 3 == 0, revision.isSnapshot(),
+                    "revision " + revision.getRevisionNo());
+        }
+        assertEquals(Optional.empty(), revisionService.loadRevisionContent(codeId, 9));
+        assertEquals(Optional.empty(), revisionService.loadRevisionContent(codeId + 1, 1));
+    }
+
+    @Test
+    void lineEndingsAndMissingFinalNewlineSurviveDeltas() {
+        long codeId = 1002L;
+        String first = "a\r\nb\rc";
+        String second = "a\nb\r\nc\n";
+        String third = "a\nb\r\nc\nd";
+        revisionService.recordInitial(codeId, "B.java", first, LocalDateTime.now());
+        revisionService.recordRevision(codeId, 1, "B.java", first, null, "B.java", second);
+        revisionService.recordRevision(codeId, 2, "B.java", second, null, "B.java", third);
+
+        assertEquals(Optional.of(first), revisionService.loadRevisionContent(codeId, 1));
+        assertEquals(Optional.of(second), revisionService.loadRevisionContent(codeId, 2));
+        assertEquals(Optional.of(third), revisionService.loadRevisionContent(codeId, 3));
+    }
+
+    @Test
+    void emptyContentOnEitherSideIsStored() {
+        long codeId = 1003L;
+        revisionService.recordInitial(codeId, "C.java", "", LocalDateTime.now());
+        revisionService.recordRevision(codeId, 1, "C.java", "", null, "C.java", "class C {}\n");
+        revisionService.recordRevision(codeId, 2, "C.java", "class C {}\n", null, "C.java", "");
+
+        assertEquals(Optional.of(""), revisionService.loadRevisionContent(codeId, 1));
+        assertEquals(Optional.of("class C {}\n"), revisionService.loadRevisionContent(codeId, 2));
+        assertEquals(Optional.of(""), revisionService.loadRevisionContent(codeId, 3));
+    }
+
+    @Test
+    void editDistanceAboveLimitFallsBackToSnapshot() {
+        long codeId = 1004L;
+        StringBuilder oldContent = new StringBuilder();
+        StringBuilder newContent = new StringBuilder();
+        for (int i = 0; i <= LineDiff.MAX_EDIT_DISTANCE / 2; i++) {
+            oldContent.append("int a").append(i).append(";\n");
+            newContent.append("int b").append(i).append(";\n");
+        }
+        String next = newContent + "int c;\n";
+        revisionService.recordInitial(codeId, "D.java", oldContent.toString(), LocalDateTime.now());
+        revisionService.recordRevision(codeId, 1, "D.java", oldContent.toString(), null, "D.java", newContent.toString());
+        revisionService.recordRevision(codeId, 2, "D.java", newContent.toString(), null, "D.java", next);
+
+        List<CodeRevisionDTO> revisions = revisionsInOrder(codeId);
+        assertTrue(revisions.get(1).isSnapshot()); // 编辑距离超过上限，不在快照间隔上也保存快照
+        assertFalse(revisions.get(2).isSnapshot()); // 之后的增量以这个快照为基准
+        assertEquals(Optional.of(oldContent.toString()), revisionService.loadRevisionContent(codeId, 1));
+        assertEquals(Optional.of(newContent.toString()), revisionService.loadRevisionContent(codeId, 2));
+        assertEquals(Optional.of(next), revisionService.loadRevisionContent(codeId, 3));
+    }
+
+    @Test
+    void wholesaleRewriteIsStoredAsSnapshot() {
+        long codeId = 1005L;
+        revisionService.recordInitial(codeId, "E.java", "x\n", LocalDateTime.now());
+        revisionService.recordRevision(codeId, 1, "E.java", "x\n", null, "E.java", "y\n");
+
+        List<CodeRevisionDTO> revisions = revisionsInOrder(codeId);
+        assertTrue(revisions.get(1).isSnapshot()); // 增量 "-1\n+1\ny\n" 比内容本身还长
+        assertEquals(Optional.of("x\n"), revisionService.loadRevisionContent(codeId, 1));
+        assertEquals(Optional.of("y\n"), revisionService.loadRevisionContent(codeId, 2));
+    }
+
+    private List<CodeRevisionDTO> revisionsInOrder(long codeId) {
+        return revisionService.listRevisions(codeId).stream()
+                .sorted(Comparator.comparing(CodeRevisionDTO::getRevisionNo))
+                .toList();
+    }
+}
@@ -0,0 +1,147 @@
+package com.se.coderater.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FairShareQueueTest {
+
+    private static final Map<AnalysisPriority, Integer> WEIGHTS =
+            Map.of(AnalysisPriority.INTERACTIVE, 4, AnalysisPriority.BULK, 1);
+
+    @Test
+    void heavyUserBatchDoesNotStarveLaterUsers() {
+        FairShareQueue<String> queue = new FairShareQueue<>(WEIGHTS);
+        for (int i = 0; i < 500; i++) {
+            queue.add(AnalysisPriority.BULK, "heavy", 1, 1, "heavy-" + i);
+        }
+        for (int i = 0; i < 5; i++) {
+            queue.add(AnalysisPriority.BULK, "light", 1, 1, "light-" + i);
+        }
+
+        List<String> firstTen = pollAll(queue, 10);
+        // 后到的用户与大批量用户交替出队，而不是排在 500 个任务之后
+        assertEquals(List.of("heavy-0", "light-0", "heavy-1", "light-1", "heavy-2", "light-2",
+                "heavy-3", "light-3", "heavy-4", "light-4"), firstTen);
+        assertEquals(495, queue.size());
+    }
+
+    @Test
+    void tasksOfOneUserKeepSubmissionOrder() {
+        FairShareQueue<Integer> queue = new FairShareQueue<>(WEIGHTS);
+        for (int i = 0; i < 20; i++) {
+            queue.add(AnalysisPriority.INTERACTIVE, i % 2 == 0 ? "a" : "b", 1, 1, i);
+        }
+        List<Integer> a = new ArrayList<>();
+        List<Integer> b = new ArrayList<>();
+        for (Integer item : pollAll(queue, 20)) {
+            (item % 2 == 0 ? a : b).add(item);
+        }
+        assertEquals(List.of(0, 2, 4, 6, 8, 10, 12, 14, 16, 18), a);
+        assertEquals(List.of(1, 3, 5, 7, 9, 11, 13, 15, 17, 19), b);
+    }
+
+    @Test
+    void userWeightsDetermineShares() {
+        FairShareQueue<String> queue = new FairShareQueue<>(WEIGHTS);
+        for (int i = 0; i < 300; i++) {
+            queue.add(AnalysisPriority.INTERACTIVE, "double", 2, 1, "double");
+            queue.add(AnalysisPriority.INTERACTIVE, "single", 1, 1, "single");
+        }
+        List<String> window = pollAll(queue, 90);
+        assertEquals(60, count(window, "double"));
+        assertEquals(30, count(window, "single"));
+    }
+
+    @Test
+    void costCountsAgainstTheUsersShare() {
+        FairShareQueue<String> queue = new FairShareQueue<>(WEIGHTS);
+        for (int i = 0; i < 50; i++) {
+            queue.add(AnalysisPriority.BULK, "big", 1, 5, "big");
+            queue.add(AnalysisPriority.BULK, "small", 1, 1, "small");
+        }
+        List<String> window = pollAll(queue, 30);
+        assertEquals(5, count(window, "big"));
+        assertEquals(25, count(window, "small"));
+    }
+
+    @Test
+    void bulkIsNotStarvedByContinuousInteractiveLoad() {
+        FairShareQueue<String> queue = new FairShareQueue<>(WEIGHTS);
+        queue.add(AnalysisPriority.BULK, "batch", 1, 1, "bulk-0");
+        queue.add(AnalysisPriority.BULK, "batch", 1, 1, "bulk-1");
+        int bulkServed = 0;
+        for (int round = 0; round < 100; round++) {
+            // 每取出一个任务就补充一个交互式任务，交互式队列始终非空
+            queue.add(AnalysisPriority.INTERACTIVE, "user-" + (round % 7), 1, 1, "interactive");
+            String item = queue.poll(priority -> true);
+            if (item.startsWith("bulk")) {
+                bulkServed++;
+                queue.add(AnalysisPriority.BULK, "batch", 1, 1, "bulk-" + (bulkServed + 1));
+            }
+        }
+        // 权重 4:1，积压的 BULK 每 5 个任务轮到 1 个
+        assertEquals(20, bulkServed);
+    }
+
+    @Test
+    void interactiveWorkGoesFirstWhenClassesAreEven() {
+        FairShareQueue<String> queue = new FairShareQueue<>(WEIGHTS);
+        queue.add(AnalysisPriority.BULK, "u", 1, 1, "bulk");
+        queue.add(AnalysisPriority.INTERACTIVE, "u", 1, 1, "interactive");
+        assertEquals("interactive", queue.poll(priority -> true));
+        assertEquals("bulk", queue.poll(priority -> true));
+        assertNull(queue.poll(priority -> true));
+    }
+
+    @Test
+    void idleUsersAndClassesDoNotBankCredit() {
+        FairShareQueue<String> queue = new FairShareQueue<>(WEIGHTS);
+        // 只有 a 在排队时取出 100 个任务，b 和 BULK 一直空闲
+        for (int i = 0; i < 100; i++) {
+            queue.add(AnalysisPriority.INTERACTIVE, "a", 1, 1, "a");
+            assertEquals("a", queue.poll(priority -> true));
+        }
+        for (int i = 0; i < 10; i++) {
+            queue.add(AnalysisPriority.INTERACTIVE, "a", 1, 1, "a");
+            queue.add(AnalysisPriority.INTERACTIVE, "b", 1, 1, "b");
+        }
+        queue.add(AnalysisPriority.BULK, "c", 1, 1, "bulk");
+        queue.add(AnalysisPriority.BULK, "c", 1, 1, "bulk");
+
+        // 空闲之后到达的 b 与 a 平分，BULK 也只按权重分到份额，而不是连续占满
+        List<String> window = pollAll(queue, 10);
+        assertEquals(4, count(window, "a"));
+        assertEquals(4, count(window, "b"));
+        assertEquals(2, count(window, "bulk"));
+    }
+
+    @Test
+    void ineligibleClassesAreSkipped() {
+        FairShareQueue<String> queue = new FairShareQueue<>(WEIGHTS);
+        queue.add(AnalysisPriority.BULK, "u", 1, 1, "bulk");
+        assertNull(queue.poll(priority -> priority != AnalysisPriority.BULK));
+        queue.add(AnalysisPriority.INTERACTIVE, "u", 1, 1, "interactive");
+        assertEquals("interactive", queue.poll(priority -> priority != AnalysisPriority.BULK));
+        assertEquals(1, queue.size(AnalysisPriority.BULK));
+        assertEquals("bulk", queue.poll(priority -> true));
+        assertEquals(0, queue.size());
+    }
+
+    private static <T> List<T> pollAll(FairShareQueue<T> queue, int count) {
+        List<T> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            items.add(queue.poll(priority -> true));
+        }
+        return items;
+    }
+
+    private static int count(List<String> items, String value) {
+        return (int) items.stream().filter(value::equals).count();
+    }
+}
@@ -0,0 +1,120 @@
+package com.se.coderater.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LineDiffTest {
+
+    @Test
+    void crlfLinesRoundTrip() {
+        String base = "class A {\r\n    int x;\r\n}\r\n";
+        String target = "class A {\r\n    int x;\r\n    int y;\r\n}\r\n";
+        assertRoundTrip(base, target);
+        // 只改换行符也是不同的行，必须逐字符还原
+        assertRoundTrip("a\nb\nc\n", "a\r\nb\r\nc\r\n");
+        assertRoundTrip("a\r\nb\nc\r", "a\nb\r\nc\r\n");
+    }
+
+    @Test
+    void loneCarriageReturnsRoundTrip() {
+        assertRoundTrip("a\rb\rc\r", "a\rx\rc\r");
+        assertRoundTrip("a\rb", "a\r\rb");
+        assertEquals(List.of("a\r", "\r\n", "b"), LineDiff.splitLines("a\r\r\nb"));
+    }
+
+    @Test
+    void missingFinalNewlineRoundTrips() {
+        assertRoundTrip("a\nb", "a\nb\n");
+        assertRoundTrip("a\nb\n", "a\nb");
+        assertRoundTrip("a\nb", "a\nb\nc");
+        assertRoundTrip("x", "y");
+    }
+
+    @Test
+    void emptyBaseOrTargetRoundTrips() {
+        assertRoundTrip("", "a\nb\n");
+        assertRoundTrip("a\nb\n", "");
+        assertEquals("", LineDiff.encode("", ""));
+        assertEquals("", LineDiff.apply("", ""));
+    }
+
+    @Test
+    void unchangedTextIsOneKeepRun() {
+        assertEquals("=3\n", LineDiff.encode("a\nb\nc\n", "a\nb\nc\n"));
+    }
+
+    @Test
+    void randomEditsRoundTrip() {
+        Random random = new Random(42);
+        String[] endings = {"\n", "\r\n", "\r"};
+        for (int round = 0; round < 500; round++) {
+            List<String> lines = new ArrayList<>();
+            int count = random.nextInt(40);
+            for (int i = 0; i < count; i++) {
+                lines.add("line " + random.nextInt(10) + endings[random.nextInt(endings.length)]);
+            }
+            String base = String.join("", lines);
+            int edits = random.nextInt(10);
+            for (int i = 0; i < edits; i++) {
+                int position = lines.isEmpty() ? 0 : random.nextInt(lines.size());
+                switch (random.nextInt(3)) {
+                    case 0 -> lines.add(position, "new " + random.nextInt(100) + "\n");
+                    case 1 -> {
+                        if (!lines.isEmpty()) {
+                            lines.remove(position);
+                        }
+                    }
+                    default -> {
+                        if (!lines.isEmpty()) {
+                            lines.set(position, "changed " + random.nextInt(100) + "\n");
+                        }
+                    }
+                }
+            }
+            String target = String.join("", lines);
+            if (random.nextBoolean() && target.endsWith("\n")) {
+                target = target.substring(0, target.length() - 1); // 最后一行没有换行符
+            }
+            assertRoundTrip(base, target);
+        }
+    }
+
+    @Test
+    void editDistanceAboveLimitGivesUp() {
+        StringBuilder base = new StringBuilder();
+        StringBuilder target = new StringBuilder();
+        int lines = LineDiff.MAX_EDIT_DISTANCE / 2 + 1; // 全部替换：编辑距离 2 * lines > 上限
+        for (int i = 0; i < lines; i++) {
+            base.append("old ").append(i).append('\n');
+            target.append("new ").append(i).append('\n');
+        }
+        assertNull(LineDiff.encode(base.toString(), target.toString()));
+
+        // 恰好在上限之内仍然编码
+        String within = target.substring(target.indexOf("\n") + 1);
+        String withinBase = base.substring(base.indexOf("\n") + 1);
+        assertRoundTrip(withinBase, within);
+    }
+
+    @Test
+    void deltaForAnotherBaseIsRejected() {
+        String delta = LineDiff.encode("a\nb\nc\n", "a\nc\n");
+        assertThrows(IllegalArgumentException.class, () -> LineDiff.apply("a\nb\n", delta));
+        assertThrows(IllegalArgumentException.class, () -> LineDiff.apply("a\nb\nc\nd\n", delta));
+        assertThrows(IllegalArgumentException.class, () -> LineDiff.apply("a\n", "?1\n"));
+    }
+
+    private static void assertRoundTrip(String base, String target) {
+        String delta = LineDiff.encode(base, target);
+        assertNotNull(delta);
+        assertEquals(target, LineDiff.apply(base, delta));
+    }
+}
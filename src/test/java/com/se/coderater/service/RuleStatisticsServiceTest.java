@@ -0,0 +1,111 @@
+package com.se.coderater.service;
+
+import com.puppycrawl.tools.checkstyle.api.SeverityLevel;
+import com.se.coderater.dto.RuleViolationStat;
+import com.se.coderater.entity.AnalysisMode;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 按时间窗口统计规则违规：修改代码、重新分析后，过去窗口的结果不变
+ */
+@DataJpaTest
+@Import(RuleStatisticsService.class)
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"
+})
+class RuleStatisticsServiceTest {
+
+    private static final LocalDateTime MAY = LocalDateTime.of(2025, 5, 1, 0, 0);
+    private static final LocalDateTime JUNE = LocalDateTime.of(2025, 6, 1, 0, 0);
+    private static final LocalDateTime JULY = LocalDateTime.of(2025, 7, 1, 0, 0);
+
+    @Autowired
+    private RuleStatisticsService ruleStatisticsService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void earlierWindowsKeepTheirCountsAfterLaterRevisions() {
+        // 代码 1：5 月第 1 版 3 个 MagicNumber，6 月第 2 版修好了 (没有违规)
+        analyze(1L, 1, 10L, MAY.plusDays(3), "MagicNumber", "MagicNumber", "MagicNumber");
+        analyze(1L, 2, 10L, JUNE.plusDays(3));
+        // 代码 2：5 月分析两版，只计较新的一版；6 月没有分析
+        analyze(2L, 1, 20L, MAY.plusDays(1), "LineLength", "LineLength");
+        analyze(2L, 2, 20L, MAY.plusDays(2), "LineLength", "MagicNumber");
+
+        assertEquals(List.of(new RuleViolationStat("MagicNumber", 4L, 2L), new RuleViolationStat("LineLength", 1L, 1L)),
+                ruleStatisticsService.getTopRules(null, MAY, JUNE, 20));
+        assertEquals(List.of(), ruleStatisticsService.getTopRules(null, JUNE, JULY, 20));
+        assertEquals(List.of(new RuleViolationStat("MagicNumber", 3L, 1L)),
+                ruleStatisticsService.getTopRules(List.of(10L), MAY, JUNE, 20));
+        assertEquals(List.of(new RuleViolationStat("LineLength", 1L, 1L), new RuleViolationStat("MagicNumber", 1L, 1L)),
+                ruleStatisticsService.getTopRules(List.of(20L), MAY, JUNE, 20));
+        assertEquals(1, ruleStatisticsService.getTopRules(null, MAY, JUNE, 1).size());
+    }
+
+    @Test
+    void reanalyzingARevisionReplacesOnlyThatRevision() {
+        analyze(3L, 1, 30L, MAY.plusDays(1), "MagicNumber");
+        analyze(3L, 2, 30L, JUNE.plusDays(1), "LineLength", "LineLength");
+        analyze(3L, 2, 30L, JUNE.plusDays(2), "LineLength");
+
+        assertEquals(List.of(new RuleViolationStat("MagicNumber", 1L, 1L)),
+                ruleStatisticsService.getTopRules(null, MAY, JUNE, 20));
+        assertEquals(List.of(new RuleViolationStat("LineLength", 1L, 1L)),
+                ruleStatisticsService.getTopRules(null, JUNE, JULY, 20));
+    }
+
+    @Test
+    void fastAnalysisAfterPreciseLeavesEveryWindowUnchanged() {
+        analyze(4L, 1, 40L, MAY.plusDays(1), "MagicNumber", "MagicNumber");
+        List<RuleViolationStat> may = ruleStatisticsService.getTopRules(null, MAY, JUNE, 20);
+        assertEquals(List.of(new RuleViolationStat("MagicNumber", 2L, 1L)), may);
+
+        // 6 月对同一版做快速分析 (没有违规明细)，再做一次精确分析：版本的 analyzed_at 移到 6 月，窗口仍按 5 月计
+        analyze(4L, 1, 40L, AnalysisMode.FAST, JUNE.plusDays(1));
+        assertEquals(may, ruleStatisticsService.getTopRules(null, MAY, JUNE, 20));
+        assertEquals(List.of(), ruleStatisticsService.getTopRules(null, JUNE, JULY, 20));
+        analyze(4L, 1, 40L, JUNE.plusDays(2), "MagicNumber", "MagicNumber");
+        assertEquals(may, ruleStatisticsService.getTopRules(null, MAY, JUNE, 20));
+        assertEquals(List.of(), ruleStatisticsService.getTopRules(null, JUNE, JULY, 20));
+
+        // 只做过快速分析的版本不计入任何窗口
+        analyze(5L, 1, 50L, AnalysisMode.FAST, MAY.plusDays(1));
+        assertEquals(may, ruleStatisticsService.getTopRules(null, MAY, JUNE, 20));
+    }
+
+    private void analyze(long codeId, int revisionNo, long userId, LocalDateTime analyzedAt, String... ruleIds) {
+        analyze(codeId, revisionNo, userId, AnalysisMode.PRECISE, analyzedAt, ruleIds);
+    }
+
+    // 与 AnalysisService.saveAnalysis 相同：版本记下分析时间和模式 (linkAnalysis)，再记按规则计数
+    private void analyze(long codeId, int revisionNo, long userId, AnalysisMode mode, LocalDateTime analyzedAt,
+                         String... ruleIds) {
+        if (jdbcTemplate.update("UPDATE code_revisions SET analyzed_at = ?, analysis_mode = ? "
+                        + "WHERE code_id = ? AND revision_no = ?",
+                Timestamp.valueOf(analyzedAt), mode.name(), codeId, revisionNo) == 0) {
+            jdbcTemplate.update("INSERT INTO code_revisions (code_id, revision_no, file_name, content_hash, "
+                            + "content_length, created_at, analyzed_at, analysis_mode) VALUES (?, ?, 'A.java', 'hash', 0, ?, ?, ?)",
+                    codeId, revisionNo, Timestamp.valueOf(analyzedAt), Timestamp.valueOf(analyzedAt), mode.name());
+        }
+        StyleViolations violations = new StyleViolations();
+        for (String ruleId : ruleIds) {
+            violations.add(ruleId, "key", 1, 1, SeverityLevel.WARNING);
+        }
+        ruleStatisticsService.recordCounts(codeId, revisionNo, userId, mode, analyzedAt, violations);
+    }
+}
@@ -0,0 +1,95 @@
+package com.se.coderater.service;
+
+import com.se.coderater.dto.SymbolMatchDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 多实例：另一个节点的上传、修改和删除只写数据库，本节点的索引通过拉取 codes.uploaded_at 和清除已删除的代码跟上
+ */
+@DataJpaTest
+@Import({BlobStoreService.class, BlobSegmentStore.class, JavaParserPool.class, SymbolIndexServiceTest.Config.class})
+@TestPropertySource(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false",
+        "coderater.blobs.dir=target/test-blobs/symbols"
+})
+class SymbolIndexServiceTest {
+
+    private static final LocalDateTime UPLOADED = LocalDateTime.of(2025, 5, 1, 10, 0);
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BlobStoreService blobStoreService;
+
+    @Autowired
+    private BlobSegmentStore blobSegmentStore;
+
+    @Autowired
+    private JavaParserPool javaParserPool;
+
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("INSERT INTO users (username, email, password) VALUES ('symbols', 'symbols@example.com', 'x')");
+        userId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = 'symbols'", Long.class);
+    }
+
+    @Test
+    void changesWrittenByAnotherNodeAreSynced() {
+        SymbolIndexService index = new SymbolIndexService(jdbcTemplate, javaParserPool, blobSegmentStore, "", 120);
+
+        // 另一个节点上传：只有 codes 行和 blob
+        jdbcTemplate.update("INSERT INTO codes (user_id, file_name, content_hash, uploaded_at) VALUES (?, 'Alpha.java', ?, ?)",
+                userId, blobStoreService.acquire("public class Alpha { void run() {} }\n"), Timestamp.valueOf(UPLOADED));
+        long codeId = jdbcTemplate.queryForObject("SELECT id FROM codes WHERE user_id = ?", Long.class, userId);
+        assertEquals(1, index.reindexChangedSince(UPLOADED.minusMinutes(2)));
+        assertEquals(List.of(codeId), codeIds(index.search("alpha", SymbolKind.CLASS, false, null, 10)));
+        // 版本没变的代码不重新解析
+        assertEquals(0, index.reindexChangedSince(UPLOADED.minusMinutes(2)));
+
+        // 另一个节点修改
+        jdbcTemplate.update("UPDATE codes SET content_hash = ?, uploaded_at = ? WHERE id = ?",
+                blobStoreService.acquire("public class Beta { int count; }\n"), Timestamp.valueOf(UPLOADED.plusMinutes(5)),
+                codeId);
+        assertEquals(1, index.reindexChangedSince(UPLOADED));
+        assertEquals(List.of(), index.search("alpha", SymbolKind.CLASS, false, null, 10));
+        assertEquals(List.of(codeId), codeIds(index.search("be", SymbolKind.CLASS, true, userId, 10)));
+
+        // 另一个节点删除
+        jdbcTemplate.update("DELETE FROM codes WHERE id = ?", codeId);
+        assertEquals(1, index.removeDeletedCodes());
+        assertEquals(List.of(), index.search("beta", null, false, null, 10));
+    }
+
+    private static List<Long> codeIds(List<SymbolMatchDTO> matches) {
+        return matches.stream().map(SymbolMatchDTO::getCodeId).toList();
+    }
+}